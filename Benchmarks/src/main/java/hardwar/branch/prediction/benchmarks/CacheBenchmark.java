@@ -0,0 +1,109 @@
+package hardwar.branch.prediction.benchmarks;
+
+/*
+ * the PHT and PAPHT access pattern of the predictors: setDefault, get and put on the same entry
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the entries and blocks are random and built before the measurement, the scores are normalized to one
+ * setDefault, get and put sequence
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.packed.devices.PackedPageHistoryTable;
+import hardwar.branch.prediction.packed.devices.PackedPerAddressPredictionHistoryTable;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.Cache;
+import hardwar.branch.prediction.shared.devices.PageHistoryTable;
+import hardwar.branch.prediction.shared.devices.PerAddressPredictionHistoryTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+    static final int OPERATIONS = 1024;
+
+    @Param({"MAP", "PACKED"})
+    StorageMode storageMode;
+
+    @Param({"4", "10"})
+    int rowBits;
+
+    @Param({"4"})
+    int selectorBits;
+
+    @Param({"2"})
+    int blockSize;
+
+    private Cache<Bit[], Bit[]> PHT;
+    private Cache<Bit[], Bit[]> PAPHT;
+    private Bit[][] rows;
+    private Bit[][] entries;
+    private Bit[][] blocks;
+    private Bit[] defaultBlock;
+
+    @Setup
+    public void setup() {
+        if (storageMode == StorageMode.PACKED) {
+            PHT = new PackedPageHistoryTable(1 << rowBits, blockSize);
+            PAPHT = new PackedPerAddressPredictionHistoryTable(selectorBits, 1 << rowBits, blockSize);
+        } else {
+            PHT = new PageHistoryTable(1 << rowBits, blockSize);
+            PAPHT = new PerAddressPredictionHistoryTable(selectorBits, 1 << rowBits, blockSize);
+        }
+
+        Random random = new Random(42);
+        rows = new Bit[OPERATIONS][];
+        entries = new Bit[OPERATIONS][];
+        blocks = new Bit[OPERATIONS][];
+        for (int i = 0; i < OPERATIONS; i++) {
+            rows[i] = Bits.fromNumber(random.nextInt(1 << rowBits), rowBits);
+            entries[i] = Bits.fromNumber(random.nextInt(1 << (selectorBits + rowBits)), selectorBits + rowBits);
+            blocks[i] = Bits.fromNumber(random.nextInt(1 << blockSize), blockSize);
+        }
+        defaultBlock = new Bit[blockSize];
+        Arrays.fill(defaultBlock, Bit.ZERO);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void pageHistoryTable(Blackhole blackhole) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            PHT.setDefault(rows[i], defaultBlock);
+            blackhole.consume(PHT.get(rows[i]));
+            PHT.put(rows[i], blocks[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void perAddressPredictionHistoryTable(Blackhole blackhole) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            PAPHT.setDefault(entries[i], defaultBlock);
+            blackhole.consume(PAPHT.get(entries[i]));
+            PAPHT.put(entries[i], blocks[i]);
+        }
+    }
+}
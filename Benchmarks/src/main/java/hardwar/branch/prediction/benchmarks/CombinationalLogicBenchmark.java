@@ -0,0 +1,136 @@
+package hardwar.branch.prediction.benchmarks;
+
+/*
+ * the count and hash circuits, in their Bit[] and numeric forms
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the inputs are random and built before the measurement, the scores are normalized to one count or hash
+ *
+ * 2) the Bit[] forms run on the baseline CombinationalLogic or on PackedLogic. the baseline only counts SATURATING
+ * and hashes XOR, so those are the default modes, the others are measured on packed with -p
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.CountMode;
+import hardwar.branch.prediction.shared.HashMode;
+import hardwar.branch.prediction.shared.devices.CombinationalLogic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombinationalLogicBenchmark {
+    static final int OPERATIONS = 1024;
+
+    @Param({"baseline", "packed"})
+    String implementation;
+
+    @Param({"SATURATING"})
+    CountMode countMode;
+
+    @Param({"2", "3"})
+    int counterSize;
+
+    @Param({"XOR"})
+    HashMode hashMode;
+
+    @Param({"32"})
+    int addressWidth;
+
+    @Param({"8"})
+    int KSize;
+
+    private Bit[][] counters;
+    private int[] counterValues;
+    private boolean[] directions;
+    private Bit[][] addresses;
+    private long[] addressValues;
+    private boolean baseline;
+
+    @Setup
+    public void setup() {
+        baseline = implementation.equals("baseline");
+        if (baseline && (countMode != CountMode.SATURATING || hashMode != HashMode.XOR))
+            throw new IllegalArgumentException("the baseline only counts SATURATING and hashes XOR");
+
+        Random random = new Random(42);
+        counters = new Bit[OPERATIONS][];
+        counterValues = new int[OPERATIONS];
+        directions = new boolean[OPERATIONS];
+        addresses = new Bit[OPERATIONS][];
+        addressValues = new long[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            counterValues[i] = random.nextInt(1 << counterSize);
+            counters[i] = Bits.fromNumber(counterValues[i], counterSize);
+            directions[i] = random.nextBoolean();
+            addressValues[i] = random.nextLong() & (-1L >>> (64 - addressWidth));
+            addresses[i] = Bits.fromNumber(addressValues[i], addressWidth);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void countBits(Blackhole blackhole) {
+        if (baseline) {
+            for (int i = 0; i < OPERATIONS; i++) {
+                blackhole.consume(CombinationalLogic.count(counters[i], directions[i], countMode));
+            }
+            return;
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            blackhole.consume(PackedLogic.count(counters[i], directions[i], countMode));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void countNumeric(Blackhole blackhole) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            blackhole.consume(PackedLogic.count(counterValues[i], counterSize, directions[i], countMode));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void hashBits(Blackhole blackhole) {
+        if (baseline) {
+            for (int i = 0; i < OPERATIONS; i++) {
+                blackhole.consume(CombinationalLogic.hash(addresses[i], KSize, hashMode));
+            }
+            return;
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            blackhole.consume(PackedLogic.hash(addresses[i], KSize, hashMode));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void hashNumeric(Blackhole blackhole) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            blackhole.consume(PackedLogic.hash(addressValues[i], addressWidth, KSize, hashMode));
+        }
+    }
+}
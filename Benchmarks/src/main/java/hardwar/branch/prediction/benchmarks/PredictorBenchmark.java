@@ -0,0 +1,98 @@
+package hardwar.branch.prediction.benchmarks;
+
+/*
+ * end to end throughput of the judged predictors
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) one invocation runs the whole synthetic trace, the scores are normalized to one branch
+ *
+ * 2) predictUpdate calls predict and update per branch like the judge does, simulate runs the batch entry point
+ *
+ * 3) the predictor is created once per trial and keeps learning across the invocations, so the measurement is
+ * of the steady state. run with -prof gc to get the allocated bytes per branch (gc.alloc.rate.norm)
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import hardwar.branch.prediction.simulation.Configuration;
+import hardwar.branch.prediction.simulation.PredictorFamily;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictorBenchmark {
+    static final int BRANCHES = 1 << 16;
+    static final int ADDRESS_WIDTH = 8;
+
+    @Param({"GAg", "GAp", "GAs", "PAg", "PAp", "PAs", "SAg", "SAp", "SAs", "Bimodal", "Gshare", "Perceptron", "TAGE"})
+    PredictorFamily family;
+
+    @Param({"MAP", "PACKED"})
+    StorageMode storageMode;
+
+    @Param({"4"})
+    int BHRSize;
+
+    @Param({"2"})
+    int SCSize;
+
+    @Param({"4"})
+    int KSize;
+
+    @Param({"16", "256"})
+    int footprint;
+
+    @Param({"0.5", "0.9"})
+    double takenRatio;
+
+    private SyntheticTrace trace;
+    private BranchPredictor predictor;
+    private boolean[] predictions;
+
+    @Setup
+    public void setup() {
+        trace = new SyntheticTrace(BRANCHES, footprint, ADDRESS_WIDTH, takenRatio, 42);
+        predictor = new Configuration(family, BHRSize, SCSize, ADDRESS_WIDTH, KSize, HashMode.XOR, storageMode).create();
+        predictions = new boolean[BRANCHES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BRANCHES)
+    public int predictUpdate() {
+        int taken = 0;
+        for (int i = 0; i < BRANCHES; i++) {
+            if (predictor.predict(trace.instructions[i]) == BranchResult.TAKEN) taken++;
+            predictor.update(trace.instructions[i], trace.results[i]);
+        }
+        return taken;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BRANCHES)
+    public boolean[] simulate() {
+        BatchPredictor.simulate(predictor, trace.addresses, ADDRESS_WIDTH, trace.outcomes, predictions, 0, BRANCHES);
+        return predictions;
+    }
+}
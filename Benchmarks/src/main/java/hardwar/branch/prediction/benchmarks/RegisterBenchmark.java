@@ -0,0 +1,109 @@
+package hardwar.branch.prediction.benchmarks;
+
+/*
+ * the register operations of the predictors
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the register bank is read and written back with one more bit, like the PA and SA predictors update their
+ * history, and the same update is measured with shiftIn
+ *
+ * 2) the shift register is read after every insert, like the global history of the GA predictors
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.packed.devices.MapRegisterBank;
+import hardwar.branch.prediction.packed.devices.PackedRegisterBank;
+import hardwar.branch.prediction.packed.devices.PackedShiftRegister;
+import hardwar.branch.prediction.packed.devices.ShiftRegisterBank;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.SIPORegister;
+import hardwar.branch.prediction.shared.devices.ShiftRegister;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisterBenchmark {
+    static final int OPERATIONS = 1024;
+
+    @Param({"MAP", "PACKED"})
+    StorageMode storageMode;
+
+    @Param({"8"})
+    int selectorBits;
+
+    @Param({"4", "16"})
+    int registerSize;
+
+    private ShiftRegisterBank bank;
+    private ShiftRegister register;
+    private Bit[][] selectors;
+    private Bit[] bits;
+
+    @Setup
+    public void setup() {
+        if (storageMode == StorageMode.PACKED) {
+            bank = new PackedRegisterBank(selectorBits, registerSize);
+            register = new PackedShiftRegister("BHR", registerSize, null);
+        } else {
+            bank = new MapRegisterBank(selectorBits, registerSize);
+            register = new SIPORegister("BHR", registerSize, null);
+        }
+
+        Random random = new Random(42);
+        selectors = new Bit[OPERATIONS][];
+        bits = new Bit[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            selectors[i] = Bits.fromNumber(random.nextInt(1 << selectorBits), selectorBits);
+            bits[i] = Bit.of(random.nextBoolean());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void registerBankReadWrite() {
+        for (int i = 0; i < OPERATIONS; i++) {
+            ShiftRegister history = bank.read(selectors[i]);
+            history.insert(bits[i]);
+            bank.write(selectors[i], history.read());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void registerBankShiftIn() {
+        for (int i = 0; i < OPERATIONS; i++) {
+            bank.shiftIn(selectors[i], bits[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void shiftRegisterInsertRead(Blackhole blackhole) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            register.insert(bits[i]);
+            blackhole.consume(register.read());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package hardwar.branch.prediction.benchmarks;
+
+/*
+ * a random trace for the benchmarks
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the trace has `footprint` distinct branch addresses of `addressWidth` bits, each branch picks one of them
+ * uniformly, so the footprint controls how many table rows and registers the predictors touch
+ *
+ * 2) every branch is taken with the probability `takenRatio`, independently of the others
+ *
+ * 3) the branches are kept both as BranchInstruction objects (for predict and update) and as primitive
+ * arrays (for simulate), the instructions of one address share their arrays
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+final class SyntheticTrace {
+    static final int OPCODE_WIDTH = 6;
+
+    final int addressWidth;
+    final long[] addresses;
+    final boolean[] outcomes;
+    final BranchInstruction[] instructions;
+    final BranchResult[] results;
+
+    /**
+     * @param length       number of branches
+     * @param footprint    number of distinct branch addresses, at most 2^addressWidth
+     * @param addressWidth number of bits of the branch addresses
+     * @param takenRatio   probability of a branch being taken
+     * @param seed         seed of the random generator
+     */
+    SyntheticTrace(int length, int footprint, int addressWidth, double takenRatio, long seed) {
+        if (addressWidth < 1 || addressWidth > 63 || footprint < 1 || footprint > 1L << addressWidth)
+            throw new IllegalArgumentException("footprint does not fit in the address width");
+
+        Random random = new Random(seed);
+        long[] sites = distinctAddresses(random, footprint, addressWidth);
+        BranchInstruction[] siteInstructions = new BranchInstruction[footprint];
+        Bit[] opcode = Bits.fromNumber(0, OPCODE_WIDTH);
+        for (int k = 0; k < footprint; k++) {
+            siteInstructions[k] = new BranchInstruction(opcode, Bits.fromNumber(sites[k], addressWidth),
+                    Bits.fromNumber(random.nextLong(), addressWidth));
+        }
+
+        this.addressWidth = addressWidth;
+        this.addresses = new long[length];
+        this.outcomes = new boolean[length];
+        this.instructions = new BranchInstruction[length];
+        this.results = new BranchResult[length];
+        for (int i = 0; i < length; i++) {
+            int k = random.nextInt(footprint);
+            addresses[i] = sites[k];
+            instructions[i] = siteInstructions[k];
+            outcomes[i] = random.nextDouble() < takenRatio;
+            results[i] = BranchResult.of(outcomes[i]);
+        }
+    }
+
+    private static long[] distinctAddresses(Random random, int footprint, int addressWidth) {
+        long space = 1L << addressWidth;
+        long[] addresses = new long[footprint];
+        if (footprint * 2L > space) {
+            // dense footprint: the first addresses of a random permutation
+            long[] all = new long[(int) space];
+            for (int a = 0; a < all.length; a++) all[a] = a;
+            for (int k = 0; k < footprint; k++) {
+                int j = k + random.nextInt(all.length - k);
+                long t = all[k];
+                all[k] = all[j];
+                all[j] = t;
+                addresses[k] = all[k];
+            }
+            return addresses;
+        }
+
+        Set<Long> used = new HashSet<>();
+        for (int k = 0; k < footprint; k++) {
+            long address;
+            do {
+                address = random.nextLong() & (space - 1);
+            } while (!used.add(address));
+            addresses[k] = address;
+        }
+        return addresses;
+    }
+}
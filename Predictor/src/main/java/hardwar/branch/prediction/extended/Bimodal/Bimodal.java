@@ -0,0 +1,182 @@
+package hardwar.branch.prediction.extended.Bimodal;
+
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
+import hardwar.branch.prediction.shared.*;
+import hardwar.branch.prediction.shared.devices.*;
+
+import java.util.Arrays;
+
+public class Bimodal implements BatchPredictor {
+    private final int KSize;
+    private final HashFunction hashFunction;
+    private final Cache<Bit[], Bit[]> PHT; // page history table, one counter per hashed address
+    private final ShiftRegister SC; // saturating counter register
+    private int row; // PHT row of the last prediction, which the update writes
+    private HashUnit hashUnit; // the hash of the simulated addresses, created for their width
+
+    public Bimodal() {
+        this(10, 2, HashMode.XOR);
+    }
+
+    /**
+     * Creates a new Bimodal predictor with a PHT of 2^KSize counters
+     *
+     * @param KSize    the number of bits of the hashed branch address which select the counter
+     * @param SCSize   the size of the register which hold the saturating counter value and the cache block size
+     * @param hashMode the hash function of the branch address
+     */
+    public Bimodal(int KSize, int SCSize, HashMode hashMode) {
+        this(KSize, SCSize, hashMode, StorageMode.MAP);
+    }
+
+    /**
+     * Creates a new Bimodal predictor with a PHT of 2^KSize counters
+     *
+     * @param KSize       the number of bits of the hashed branch address which select the counter
+     * @param SCSize      the size of the register which hold the saturating counter value and the cache block size
+     * @param hashMode    the hash function of the branch address
+     * @param storageMode the storage model of the PHT and the SC register
+     */
+    public Bimodal(int KSize, int SCSize, HashMode hashMode, StorageMode storageMode) {
+        this(KSize, SCSize, hashMode, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    /**
+     * Creates a new Bimodal predictor with a PHT of 2^KSize counters
+     *
+     * @param KSize       the number of bits of the hashed branch address which select the counter
+     * @param SCSize      the size of the register which hold the saturating counter value and the cache block size
+     * @param hashMode    the hash function of the branch address
+     * @param storageMode the storage model of the PHT and the SC register
+     * @param geometry    the sets, ways and replacement policy of the BOUNDED tables
+     */
+    public Bimodal(int KSize, int SCSize, HashMode hashMode, StorageMode storageMode, CacheGeometry geometry) {
+        this(KSize, SCSize, HashFunction.of(hashMode), storageMode, geometry);
+    }
+
+    /**
+     * Creates a new Bimodal predictor with a PHT of 2^KSize counters
+     *
+     * @param KSize        the number of bits of the hashed branch address which select the counter
+     * @param SCSize       the size of the register which hold the saturating counter value and the cache block size
+     * @param hashFunction the hash function of the branch address, MULTIPLICATIVE and SKEWED included
+     * @param storageMode  the storage model of the PHT and the SC register
+     * @param geometry     the sets, ways and replacement policy of the BOUNDED tables
+     */
+    public Bimodal(int KSize, int SCSize, HashFunction hashFunction, StorageMode storageMode,
+                   CacheGeometry geometry) {
+        this.KSize = KSize;
+        this.hashFunction = hashFunction;
+
+        // Initialize the PHT with a size of 2^KSize and each entry having a saturating counter of size "SCSize"
+        if (storageMode == StorageMode.PACKED) PHT = new PackedPageHistoryTable(1 << KSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PHT = new SetAssociativeCache(geometry, SCSize);
+        else PHT = new PageHistoryTable(1 << KSize, SCSize);
+
+        // Initialize the SC register
+        Bit[] defaultValue = new Bit[SCSize];
+        for (int i = 0; i < SCSize; i++) {
+            defaultValue[i] = Bit.ZERO;
+        }
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("Bimodal SC", SCSize, defaultValue);
+        else SC = new SIPORegister("Bimodal SC", SCSize, defaultValue);
+    }
+
+    /**
+     * predicts the result of a branch instruction based on the counter of its hashed address
+     *
+     * @param branchInstruction the branch instruction
+     * @return the predicted outcome of the branch instruction (taken or not taken)
+     */
+    @Override
+    public BranchResult predict(BranchInstruction branchInstruction) {
+        if (isPacked(branchInstruction)) {
+            // one hash and one counter read, the update writes the same row
+            row = PackedBranchInstruction.hashAddress(branchInstruction, KSize, hashFunction);
+            Bits.loadLong(SC, ((PackedPageHistoryTable) PHT).setDefault(row, 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
+        Bit[] key = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashFunction);
+        SC.load(PHT.setDefault(key, getDefaultBlock()));
+        return BranchResult.of(SC.read()[0].getValue());
+    }
+
+    /**
+     * Updates the counter of the branch based on the actual branch result
+     *
+     * @param branchInstruction the branch instruction
+     * @param actual            the actual result of branch (Taken or Not)
+     */
+    @Override
+    public void update(BranchInstruction branchInstruction, BranchResult actual) {
+        if (isPacked(branchInstruction)) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            ((PackedPageHistoryTable) PHT).put(row, (int) Bits.readLong(SC));
+            return;
+        }
+
+        Bit[] key = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashFunction);
+        SC.load(CombinationalLogic.count(SC.read(), BranchResult.isTaken(actual), CountMode.SATURATING));
+        PHT.put(key, SC.read());
+    }
+
+    /**
+     * predict and update the branches with the numeric API of the packed PHT,
+     * the map based devices go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (!(PHT instanceof PackedPageHistoryTable) || addressWidth > 64 || from >= to) {
+            BatchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPageHistoryTable table = (PackedPageHistoryTable) PHT;
+        int SCSize = SC.getLength();
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            row = hash(addresses[i], addressWidth);
+            counter = table.setDefault(row, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            counter = PackedLogic.count(counter, SCSize, outcomes[i], CountMode.SATURATING);
+            table.put(row, counter);
+        }
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @return the hash of the address through the hash unit of its width, which remembers the recent addresses
+     */
+    private int hash(long address, int addressWidth) {
+        if (hashUnit == null || hashUnit.getInBitNumber() != addressWidth) {
+            hashUnit = new HashUnit(addressWidth, KSize, hashFunction);
+        }
+        return hashUnit.hash(address);
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PHT instanceof PackedPageHistoryTable && PackedBranchInstruction.addressWidthOf(instruction) <= 64;
+    }
+
+    /**
+     * @return a zero series of bits as default value of cache block
+     */
+    private Bit[] getDefaultBlock() {
+        Bit[] defaultBlock = new Bit[SC.getLength()];
+        Arrays.fill(defaultBlock, Bit.ZERO);
+        return defaultBlock;
+    }
+
+    @Override
+    public String monitor() {
+        return "Bimodal predictor snapshot: \n" + SC.monitor() + PHT.monitor();
+    }
+}
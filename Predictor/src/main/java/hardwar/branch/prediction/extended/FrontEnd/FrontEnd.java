@@ -0,0 +1,143 @@
+package hardwar.branch.prediction.extended.FrontEnd;
+
+/*
+ * FrontEnd: a direction predictor with a loop table and a branch target buffer
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the direction comes from the loop table when the branch has a confident entry, otherwise from the
+ * direction predictor. a branch which the direction predictor mispredicts gets a loop table entry
+ *
+ * 2) the target of a branch is its jump address. the BTB is looked up on every predict and written by every taken
+ * branch. a taken branch is a target hit if the BTB held its target when it was predicted, otherwise a target miss
+ *
+ * 3) the addresses are the lowest 64 bits of the instruction and jump addresses
+ *
+ * 4) the BTB and loop table entries of the last prediction are kept for the update, like the SC register
+ * of the other predictors, so every predict is followed by the update of the same branch.
+ * the devices never allocate, so the front end costs only what the direction predictor costs per branch
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.judged.GAs.GAs;
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.BranchTargetBuffer;
+import hardwar.branch.prediction.packed.devices.LoopTable;
+import hardwar.branch.prediction.shared.*;
+
+public class FrontEnd implements BranchPredictor {
+    private final BranchPredictor direction;
+    private final BranchTargetBuffer BTB;
+    private final LoopTable loops;
+    private int targetEntry; // BTB entry of the last prediction, -1 if it missed
+    private int loopEntry; // loop table entry of the last prediction, -1 if it missed
+    private boolean directionTaken; // prediction of the direction predictor for the last branch
+    private long targetHits;
+    private long targetMisses;
+    private long loopPredictions;
+
+    public FrontEnd() {
+        this(new GAs(8, 2, 8, 4, HashMode.XOR, StorageMode.PACKED),
+                new BranchTargetBuffer(7, 4, 16, ReplacementPolicy.LRU),
+                new LoopTable(4, 4, 14, 10, ReplacementPolicy.PSEUDO_LRU));
+    }
+
+    /**
+     * @param direction the predictor of the branch directions
+     * @param BTB       the branch target buffer
+     * @param loops     the loop table, which overrides the direction of the confident loops
+     */
+    public FrontEnd(BranchPredictor direction, BranchTargetBuffer BTB, LoopTable loops) {
+        if (direction == null || BTB == null || loops == null)
+            throw new IllegalArgumentException("the predictor and the devices must not be null");
+
+        this.direction = direction;
+        this.BTB = BTB;
+        this.loops = loops;
+    }
+
+    /**
+     * predicts the direction of a branch instruction and looks up its target
+     *
+     * @param branchInstruction the branch instruction
+     * @return the predicted outcome of the branch instruction (taken or not taken)
+     */
+    @Override
+    public BranchResult predict(BranchInstruction branchInstruction) {
+        long address = PackedBranchInstruction.addressOf(branchInstruction);
+        directionTaken = BranchResult.isTaken(direction.predict(branchInstruction));
+        targetEntry = BTB.find(address);
+        loopEntry = loops.find(address);
+
+        if (loopEntry >= 0 && loops.isConfident(loopEntry)) {
+            loopPredictions++;
+            return BranchResult.of(loops.predict(loopEntry));
+        }
+        return BranchResult.of(directionTaken);
+    }
+
+    /**
+     * Updates the direction predictor, the loop table and the BTB with the actual result of the branch
+     *
+     * @param branchInstruction the branch instruction
+     * @param actual            the actual result of branch (Taken or Not)
+     */
+    @Override
+    public void update(BranchInstruction branchInstruction, BranchResult actual) {
+        boolean taken = BranchResult.isTaken(actual);
+        long address = PackedBranchInstruction.addressOf(branchInstruction);
+        direction.update(branchInstruction, actual);
+
+        if (loopEntry < 0 && directionTaken != taken) loopEntry = loops.allocate(address);
+        if (loopEntry >= 0) loops.update(loopEntry, taken);
+
+        if (taken) {
+            long target = PackedBranchInstruction.jumpAddressOf(branchInstruction);
+            if (targetEntry >= 0 && BTB.getTarget(targetEntry) == target) targetHits++;
+            else targetMisses++;
+            BTB.put(address, target);
+        }
+    }
+
+    /**
+     * @return number of taken branches whose target was in the BTB
+     */
+    public long getTargetHits() {
+        return targetHits;
+    }
+
+    /**
+     * @return number of taken branches whose target was not in the BTB, or was another address
+     */
+    public long getTargetMisses() {
+        return targetMisses;
+    }
+
+    /**
+     * @return number of predictions which came from the loop table
+     */
+    public long getLoopPredictions() {
+        return loopPredictions;
+    }
+
+    public BranchPredictor getDirection() {
+        return direction;
+    }
+
+    public BranchTargetBuffer getBTB() {
+        return BTB;
+    }
+
+    public LoopTable getLoops() {
+        return loops;
+    }
+
+    @Override
+    public String monitor() {
+        return "FrontEnd predictor snapshot: \n" +
+                "target hits: " + targetHits + ", target misses: " + targetMisses +
+                ", loop predictions: " + loopPredictions + "\n" +
+                "BTB entries: " + BTB.countValid() + ", loop entries: " + loops.countValid() + "\n" +
+                direction.monitor();
+    }
+}
@@ -0,0 +1,215 @@
+package hardwar.branch.prediction.extended.Gshare;
+
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
+import hardwar.branch.prediction.shared.*;
+import hardwar.branch.prediction.shared.devices.*;
+
+import java.util.Arrays;
+
+public class Gshare implements BatchPredictor {
+    private final int KSize;
+    private final HashFunction hashFunction;
+    private final ShiftRegister BHR; // branch history register
+    private final Cache<Bit[], Bit[]> PHT; // page history table, indexed by the hashed address xor the history
+    private final ShiftRegister SC; // saturating counter register
+    private int row; // PHT row of the last prediction, which the update writes
+    private HashUnit hashUnit; // the hash of the simulated addresses, created for their width
+
+    public Gshare() {
+        this(10, 2, 10, HashMode.XOR);
+    }
+
+    /**
+     * Creates a new Gshare predictor with a PHT of 2^KSize counters
+     *
+     * @param BHRSize  the size of the BHR register
+     * @param SCSize   the size of the register which hold the saturating counter value and the cache block size
+     * @param KSize    the number of bits of the PHT index
+     * @param hashMode the hash function of the branch address
+     */
+    public Gshare(int BHRSize, int SCSize, int KSize, HashMode hashMode) {
+        this(BHRSize, SCSize, KSize, hashMode, StorageMode.MAP);
+    }
+
+    /**
+     * Creates a new Gshare predictor with a PHT of 2^KSize counters
+     *
+     * @param BHRSize     the size of the BHR register
+     * @param SCSize      the size of the register which hold the saturating counter value and the cache block size
+     * @param KSize       the number of bits of the PHT index
+     * @param hashMode    the hash function of the branch address
+     * @param storageMode the storage model of the PHT and the registers
+     */
+    public Gshare(int BHRSize, int SCSize, int KSize, HashMode hashMode, StorageMode storageMode) {
+        this(BHRSize, SCSize, KSize, hashMode, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    /**
+     * Creates a new Gshare predictor with a PHT of 2^KSize counters
+     *
+     * @param BHRSize     the size of the BHR register
+     * @param SCSize      the size of the register which hold the saturating counter value and the cache block size
+     * @param KSize       the number of bits of the PHT index
+     * @param hashMode    the hash function of the branch address
+     * @param storageMode the storage model of the PHT and the registers
+     * @param geometry    the sets, ways and replacement policy of the BOUNDED tables
+     */
+    public Gshare(int BHRSize, int SCSize, int KSize, HashMode hashMode, StorageMode storageMode,
+                  CacheGeometry geometry) {
+        this(BHRSize, SCSize, KSize, HashFunction.of(hashMode), storageMode, geometry);
+    }
+
+    /**
+     * Creates a new Gshare predictor with a PHT of 2^KSize counters
+     *
+     * @param BHRSize      the size of the BHR register
+     * @param SCSize       the size of the register which hold the saturating counter value and the cache block size
+     * @param KSize        the number of bits of the PHT index
+     * @param hashFunction the hash function of the branch address, MULTIPLICATIVE and SKEWED included
+     * @param storageMode  the storage model of the PHT and the registers
+     * @param geometry     the sets, ways and replacement policy of the BOUNDED tables
+     */
+    public Gshare(int BHRSize, int SCSize, int KSize, HashFunction hashFunction, StorageMode storageMode,
+                  CacheGeometry geometry) {
+        this.KSize = KSize;
+        this.hashFunction = hashFunction;
+
+        // Initialize the BHR register with the given size and no default value
+        Bit[] defaultValue = new Bit[BHRSize];
+        for (int i = 0; i < BHRSize; i++) {
+            defaultValue[i] = Bit.ZERO;
+        }
+        if (storageMode == StorageMode.PACKED) BHR = new PackedShiftRegister("Gshare BHR", BHRSize, defaultValue);
+        else BHR = new SIPORegister("Gshare BHR", BHRSize, defaultValue);
+
+        // Initialize the PHT with a size of 2^KSize and each entry having a saturating counter of size "SCSize"
+        if (storageMode == StorageMode.PACKED) PHT = new PackedPageHistoryTable(1 << KSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PHT = new SetAssociativeCache(geometry, SCSize);
+        else PHT = new PageHistoryTable(1 << KSize, SCSize);
+
+        // Initialize the SC register
+        defaultValue = new Bit[SCSize];
+        for (int i = 0; i < SCSize; i++) {
+            defaultValue[i] = Bit.ZERO;
+        }
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("Gshare SC", SCSize, defaultValue);
+        else SC = new SIPORegister("Gshare SC", SCSize, defaultValue);
+    }
+
+    /**
+     * predicts the result of a branch instruction based on the counter of its address xor the global history
+     *
+     * @param branchInstruction the branch instruction
+     * @return the predicted outcome of the branch instruction (taken or not taken)
+     */
+    @Override
+    public BranchResult predict(BranchInstruction branchInstruction) {
+        if (isPacked(branchInstruction)) {
+            // one index computation and one counter read, the update writes the same row
+            row = PackedBranchInstruction.hashAddress(branchInstruction, KSize, hashFunction)
+                    ^ PackedLogic.hash(Bits.readLong(BHR), BHR.getLength(), KSize, HashMode.XOR);
+            Bits.loadLong(SC, ((PackedPageHistoryTable) PHT).setDefault(row, 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
+        Bit[] key = getKey(branchInstruction);
+        SC.load(PHT.setDefault(key, getDefaultBlock()));
+        return BranchResult.of(SC.read()[0].getValue());
+    }
+
+    /**
+     * Updates the counter of the branch and the BHR based on the actual branch result
+     *
+     * @param branchInstruction the branch instruction
+     * @param actual            the actual result of branch (Taken or Not)
+     */
+    @Override
+    public void update(BranchInstruction branchInstruction, BranchResult actual) {
+        boolean taken = BranchResult.isTaken(actual);
+        if (isPacked(branchInstruction)) {
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            ((PackedPageHistoryTable) PHT).put(row, (int) Bits.readLong(SC));
+            BHR.insert(Bit.of(taken));
+            return;
+        }
+
+        Bit[] key = getKey(branchInstruction);
+        SC.load(CombinationalLogic.count(SC.read(), taken, CountMode.SATURATING));
+        PHT.put(key, SC.read());
+        BHR.insert(Bit.of(taken));
+    }
+
+    /**
+     * predict and update the branches with the numeric API of the packed PHT and registers,
+     * the map based devices go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (!(PHT instanceof PackedPageHistoryTable) || addressWidth > 64 || BHR.getLength() > 64 || from >= to) {
+            BatchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPageHistoryTable table = (PackedPageHistoryTable) PHT;
+        int BHRSize = BHR.getLength();
+        int SCSize = SC.getLength();
+        long history = Bits.readLong(BHR);
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            row = hash(addresses[i], addressWidth) ^ PackedLogic.hash(history, BHRSize, KSize, HashMode.XOR);
+            counter = table.setDefault(row, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(row, counter);
+            history = (history >>> 1) | ((taken ? 1L : 0L) << (BHRSize - 1));
+        }
+        Bits.loadLong(BHR, history);
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @return the hashed branch address xor the BHR folded to KSize bits
+     */
+    private Bit[] getKey(BranchInstruction branchInstruction) {
+        Bit[] key = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashFunction);
+        Bit[] history = PackedLogic.hash(BHR.read(), KSize, HashMode.XOR);
+        for (int i = 0; i < KSize; i++) key[i] = Bit.of(key[i].getValue() ^ history[i].getValue());
+        return key;
+    }
+
+    /**
+     * @return the hash of the address through the hash unit of its width, which remembers the recent addresses
+     */
+    private int hash(long address, int addressWidth) {
+        if (hashUnit == null || hashUnit.getInBitNumber() != addressWidth) {
+            hashUnit = new HashUnit(addressWidth, KSize, hashFunction);
+        }
+        return hashUnit.hash(address);
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PHT instanceof PackedPageHistoryTable && PackedBranchInstruction.addressWidthOf(instruction) <= 64
+                && BHR.getLength() <= 64;
+    }
+
+    /**
+     * @return a zero series of bits as default value of cache block
+     */
+    private Bit[] getDefaultBlock() {
+        Bit[] defaultBlock = new Bit[SC.getLength()];
+        Arrays.fill(defaultBlock, Bit.ZERO);
+        return defaultBlock;
+    }
+
+    @Override
+    public String monitor() {
+        return "Gshare predictor snapshot: \n" + BHR.monitor() + SC.monitor() + PHT.monitor();
+    }
+}
@@ -0,0 +1,226 @@
+package hardwar.branch.prediction.extended.Perceptron;
+
+/*
+ * a perceptron predictor: a weight vector per hashed branch address over the global history
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the weights are bytes in one flat table, a row of historyLength + 1 weights (the bias first) per
+ * hashed address. the weights saturate at -127 and 127
+ *
+ * 2) the history is kept as +1 (taken) and -1 (not taken) bytes, written twice in a buffer of
+ * 2 x historyLength bytes. so the newest historyLength outcomes are always one contiguous window, newest first,
+ * and inserting an outcome writes two bytes instead of shifting the history
+ *
+ * 3) the dot product and the training are plain counted loops over the row and the window, which the JIT
+ * compiles to vector instructions
+ *
+ * 4) the predictor is trained when it mispredicts or when the output is not above the threshold
+ * 1.93 x historyLength + 14
+ *
+ * 5) the row and the output of the last prediction are kept for the update, like the SC register
+ * of the other predictors, so every predict is followed by the update of the same branch
+ *
+ * 6) the weight vector is selected by the branch address hashed to K bits with the hash function of the predictor,
+ * through a hash unit which remembers the recent addresses
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.HashFunction;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.devices.HashUnit;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+
+import java.util.Arrays;
+
+public class Perceptron implements BatchPredictor {
+    private static final int WEIGHT_MAX = 127;
+
+    private final int historyLength;
+    private final int KSize;
+    private final HashFunction hashFunction;
+    private final int rowLength; // historyLength + 1, the bias and a weight per history bit
+    private final int threshold;
+    private final byte[] weights;
+    private final byte[] history; // the outcomes as +1 and -1, twice
+    private int position; // start of the window of the newest outcomes
+    private HashUnit hashUnit; // the hash of the addresses, created for their width
+
+    // the state of the last prediction
+    private int row;
+    private int output;
+
+    public Perceptron() {
+        this(64, 10);
+    }
+
+    /**
+     * Creates a new perceptron predictor with 2^KSize weight vectors
+     *
+     * @param historyLength the number of global history bits, one weight each besides the bias
+     * @param KSize         the number of bits of the hashed branch address which select the weight vector
+     */
+    public Perceptron(int historyLength, int KSize) {
+        this(historyLength, KSize, HashMode.XOR);
+    }
+
+    /**
+     * Creates a new perceptron predictor with 2^KSize weight vectors
+     *
+     * @param historyLength the number of global history bits, one weight each besides the bias
+     * @param KSize         the number of bits of the hashed branch address which select the weight vector
+     * @param hashMode      the hash function of the branch address
+     */
+    public Perceptron(int historyLength, int KSize, HashMode hashMode) {
+        this(historyLength, KSize, HashFunction.of(hashMode));
+    }
+
+    /**
+     * Creates a new perceptron predictor with 2^KSize weight vectors
+     *
+     * @param historyLength the number of global history bits, one weight each besides the bias
+     * @param KSize         the number of bits of the hashed branch address which select the weight vector
+     * @param hashFunction  the hash function of the branch address, MULTIPLICATIVE and SKEWED included
+     */
+    public Perceptron(int historyLength, int KSize, HashFunction hashFunction) {
+        if (historyLength < 1 || historyLength > 4096)
+            throw new IllegalArgumentException("history length must be between 1 and 4096");
+        if (KSize < 0 || KSize > 24) throw new IllegalArgumentException("K size must be between 0 and 24");
+        if ((long) (historyLength + 1) << KSize > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("too many weights for one table");
+
+        this.historyLength = historyLength;
+        this.KSize = KSize;
+        this.hashFunction = hashFunction;
+        this.rowLength = historyLength + 1;
+        this.threshold = (int) (1.93 * historyLength + 14);
+        this.weights = new byte[rowLength << KSize];
+        this.history = new byte[2 * historyLength];
+        Arrays.fill(history, (byte) -1);
+    }
+
+    /**
+     * predicts the result of a branch instruction with the sign of the dot product of its weights and the history
+     *
+     * @param branchInstruction the branch instruction
+     * @return the predicted outcome of the branch instruction (taken or not taken)
+     */
+    @Override
+    public BranchResult predict(BranchInstruction branchInstruction) {
+        row = hash(PackedBranchInstruction.addressOf(branchInstruction),
+                Math.min(64, PackedBranchInstruction.addressWidthOf(branchInstruction)));
+        output = dot(weights, row * rowLength, history, position, historyLength);
+        return BranchResult.of(output >= 0);
+    }
+
+    /**
+     * trains the weights of the branch if needed and inserts the outcome into the history
+     *
+     * @param instruction the branch instruction
+     * @param actual      the actual result of the branch condition
+     */
+    @Override
+    public void update(BranchInstruction instruction, BranchResult actual) {
+        boolean taken = BranchResult.isTaken(actual);
+        if ((output >= 0) != taken || Math.abs(output) <= threshold) {
+            train(weights, row * rowLength, history, position, historyLength, taken ? 1 : -1);
+        }
+
+        // write the outcome before the window and at the same place in the second copy
+        position = position == 0 ? historyLength - 1 : position - 1;
+        byte x = (byte) (taken ? 1 : -1);
+        history[position] = x;
+        history[position + historyLength] = x;
+    }
+
+    /**
+     * predict and update the branches on the weight table and the history buffer directly, with no instruction
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        for (int i = from; i < to; i++) {
+            row = hash(addresses[i], addressWidth);
+            int base = row * rowLength;
+            output = dot(weights, base, history, position, historyLength);
+            predictionsOut[i] = output >= 0;
+
+            boolean taken = outcomes[i];
+            if ((output >= 0) != taken || Math.abs(output) <= threshold) {
+                train(weights, base, history, position, historyLength, taken ? 1 : -1);
+            }
+            position = position == 0 ? historyLength - 1 : position - 1;
+            byte x = (byte) (taken ? 1 : -1);
+            history[position] = x;
+            history[position + historyLength] = x;
+        }
+    }
+
+    /**
+     * @return the row of the address, hashed through the hash unit of its width
+     */
+    private int hash(long address, int addressWidth) {
+        if (KSize == 0) return 0;
+        if (hashUnit == null || hashUnit.getInBitNumber() != addressWidth) {
+            hashUnit = new HashUnit(addressWidth, KSize, hashFunction);
+        }
+        return hashUnit.hash(address);
+    }
+
+    /**
+     * @return the bias plus the sum of the weights times the history outcomes
+     */
+    private static int dot(byte[] weights, int from, byte[] history, int window, int length) {
+        int sum = weights[from];
+        int base = from + 1;
+        for (int i = 0; i < length; i++) {
+            sum += weights[base + i] * history[window + i];
+        }
+        return sum;
+    }
+
+    /**
+     * move the weights toward the outcome: the bias by t, every weight by t times its history outcome
+     */
+    private static void train(byte[] weights, int from, byte[] history, int window, int length, int t) {
+        weights[from] = saturate(weights[from] + t);
+        int base = from + 1;
+        for (int i = 0; i < length; i++) {
+            weights[base + i] = saturate(weights[base + i] + t * history[window + i]);
+        }
+    }
+
+    private static byte saturate(int weight) {
+        return (byte) Math.max(-WEIGHT_MAX, Math.min(WEIGHT_MAX, weight));
+    }
+
+    public int getHistoryLength() {
+        return historyLength;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public String monitor() {
+        StringBuilder sb = new StringBuilder("Perceptron predictor snapshot: \n");
+        sb.append("history: ");
+        for (int i = 0; i < Math.min(64, historyLength); i++) sb.append(history[position + i] > 0 ? '1' : '0');
+        sb.append("\n+----------------------------------+\n");
+        sb.append(String.format("| %-19s | %-10s |\n", "Address", "Bias"));
+        sb.append("|---------------------|------------|\n");
+        for (int r = 0; r < 1 << KSize; r++) {
+            if (weights[r * rowLength] == 0) continue;
+            sb.append(String.format("| %-19s | %-10d |\n", Bit.arrayToString(Bits.fromNumber(r, KSize)),
+                    weights[r * rowLength]));
+            sb.append("+----------------------------------+\n");
+        }
+        return sb.toString();
+    }
+}
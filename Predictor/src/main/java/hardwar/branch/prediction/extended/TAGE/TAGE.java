@@ -0,0 +1,286 @@
+package hardwar.branch.prediction.extended.TAGE;
+
+/*
+ * TAGE: a bimodal base table and tagged tables indexed with geometrically increasing global history lengths
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the global history lives in a CircularHistoryBuffer, and every tagged table has three folded registers
+ * of its history length: one for the index and two (of tagSize and tagSize - 1 bits) for the tag.
+ * an outcome costs one update per folded register, whatever the history lengths are
+ *
+ * 2) the provider is the hitting table with the longest history, the alternate prediction is the next hitting
+ * table or the base table. a newly allocated provider (weak counter and no usefulness) is not trusted when
+ * the USE_ALT_ON_NA counter says the alternate prediction was better on such entries
+ *
+ * 3) on a misprediction one entry is allocated in a table with a longer history than the provider, the first one
+ * whose entry is not useful. if there is none, the entries of all the longer tables lose usefulness
+ *
+ * 4) the useful counters of all the tables are halved every RESET_PERIOD updates
+ *
+ * 5) the state of the last prediction (indices, tags, provider) is kept for the update, like the SC register
+ * of the other predictors, so every predict is followed by the update of the same branch
+ *
+ * 6) the addresses are the lowest 64 bits of the instruction addresses, so simulate runs the same prediction and
+ * update on the numeric addresses of the trace
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.devices.CircularHistoryBuffer;
+import hardwar.branch.prediction.packed.devices.FoldedHistoryRegister;
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.packed.devices.TaggedTable;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.CountMode;
+
+import java.util.Arrays;
+
+public class TAGE implements BatchPredictor {
+    private static final int RESET_PERIOD = 1 << 18; // updates between two halvings of the useful counters
+    private static final int USE_ALT_MAX = 15; // the USE_ALT_ON_NA counter is 4 bits
+
+    private final int baseSize;
+    private final int indexSize;
+    private final int tagSize;
+    private final int[] historyLengths;
+    private final int[] addressShifts; // the address is xored with itself shifted by a different amount per table
+    private final byte[] base; // 2-bit counters of the bimodal table
+    private final TaggedTable[] tables;
+    private final CircularHistoryBuffer history;
+    private final FoldedHistoryRegister[] indexFolds;
+    private final FoldedHistoryRegister[] tagFolds;
+    private final FoldedHistoryRegister[] tagFolds2;
+    private int useAltOnNewlyAllocated = 8;
+    private int updates;
+
+    // the state of the last prediction
+    private final int[] indices;
+    private final int[] tags;
+    private int baseIndex;
+    private int provider; // index of the provider table, -1 for the base table
+    private int alternate; // index of the alternate table, -1 for the base table
+    private boolean providerPrediction;
+    private boolean alternatePrediction;
+    private boolean prediction;
+
+    public TAGE() {
+        this(12, 7, 4, 640, 10, 11);
+    }
+
+    /**
+     * Creates a new TAGE predictor
+     *
+     * @param baseSize       the number of address bits which select the counter of the base table
+     * @param nTables        the number of tagged tables
+     * @param minHistory     the history length of the first tagged table
+     * @param maxHistory     the history length of the last tagged table
+     * @param indexSize      the number of bits which select the entry of a tagged table
+     * @param tagSize        the number of bits of the tags, at least 2
+     */
+    public TAGE(int baseSize, int nTables, int minHistory, int maxHistory, int indexSize, int tagSize) {
+        if (baseSize < 1 || baseSize > 28) throw new IllegalArgumentException("base size must be between 1 and 28");
+        if (nTables < 1) throw new IllegalArgumentException("number of tagged tables must be positive");
+        if (minHistory < 1 || maxHistory < minHistory)
+            throw new IllegalArgumentException("history lengths must be positive and increasing");
+        if (indexSize < 1 || indexSize > 28) throw new IllegalArgumentException("index size must be between 1 and 28");
+        if (tagSize < 2 || tagSize > 16) throw new IllegalArgumentException("tag size must be between 2 and 16");
+
+        this.baseSize = baseSize;
+        this.indexSize = indexSize;
+        this.tagSize = tagSize;
+        this.base = new byte[1 << baseSize];
+        this.historyLengths = new int[nTables];
+        this.addressShifts = new int[nTables];
+        this.tables = new TaggedTable[nTables];
+        this.indexFolds = new FoldedHistoryRegister[nTables];
+        this.tagFolds = new FoldedHistoryRegister[nTables];
+        this.tagFolds2 = new FoldedHistoryRegister[nTables];
+        this.indices = new int[nTables];
+        this.tags = new int[nTables];
+
+        // geometric series of history lengths from minHistory to maxHistory
+        for (int i = 0; i < nTables; i++) {
+            double ratio = nTables == 1 ? 0 : (double) i / (nTables - 1);
+            int length = (int) Math.round(minHistory * Math.pow((double) maxHistory / minHistory, ratio));
+            historyLengths[i] = i == 0 ? length : Math.max(length, historyLengths[i - 1] + 1);
+
+            addressShifts[i] = indexSize - i % indexSize;
+            tables[i] = new TaggedTable(indexSize, tagSize);
+            indexFolds[i] = new FoldedHistoryRegister(historyLengths[i], indexSize);
+            tagFolds[i] = new FoldedHistoryRegister(historyLengths[i], tagSize);
+            tagFolds2[i] = new FoldedHistoryRegister(historyLengths[i], tagSize - 1);
+        }
+        this.history = new CircularHistoryBuffer(historyLengths[nTables - 1] + 1);
+
+        // Initialize the base table with weak not taken counters
+        Arrays.fill(base, (byte) 1);
+    }
+
+    /**
+     * predicts the result of a branch instruction with the tagged table of the longest matching history
+     *
+     * @param branchInstruction the branch instruction
+     * @return the predicted outcome of the branch instruction (taken or not taken)
+     */
+    @Override
+    public BranchResult predict(BranchInstruction branchInstruction) {
+        return BranchResult.of(predict(PackedBranchInstruction.addressOf(branchInstruction)));
+    }
+
+    /**
+     * @param pc the branch address
+     * @return true if the branch is predicted taken
+     */
+    private boolean predict(long pc) {
+        int indexMask = (1 << indexSize) - 1;
+        int tagMask = (1 << tagSize) - 1;
+
+        baseIndex = (int) (pc ^ (pc >>> baseSize)) & ((1 << baseSize) - 1);
+        provider = -1;
+        alternate = -1;
+        for (int i = tables.length - 1; i >= 0; i--) {
+            indices[i] = (int) (pc ^ (pc >>> addressShifts[i]) ^ indexFolds[i].get()) & indexMask;
+            tags[i] = (int) (pc ^ tagFolds[i].get() ^ (tagFolds2[i].get() << 1)) & tagMask;
+            if (tables[i].hits(indices[i], tags[i])) {
+                if (provider < 0) provider = i;
+                else if (alternate < 0) alternate = i;
+            }
+        }
+
+        alternatePrediction = alternate >= 0
+                ? tables[alternate].counter(indices[alternate]) >= 4 : base[baseIndex] >= 2;
+        if (provider < 0) {
+            providerPrediction = alternatePrediction;
+            prediction = alternatePrediction;
+        } else {
+            int counter = tables[provider].counter(indices[provider]);
+            providerPrediction = counter >= 4;
+            boolean newlyAllocated = (counter == 3 || counter == 4) && tables[provider].useful(indices[provider]) == 0;
+            prediction = newlyAllocated && useAltOnNewlyAllocated >= 8 ? alternatePrediction : providerPrediction;
+        }
+        return prediction;
+    }
+
+    /**
+     * Updates the provider, allocates an entry on a misprediction and shifts the outcome into the history
+     *
+     * @param instruction the branch instruction
+     * @param actual      the actual result of the branch condition
+     */
+    @Override
+    public void update(BranchInstruction instruction, BranchResult actual) {
+        update(BranchResult.isTaken(actual));
+    }
+
+    /**
+     * predict and update the branches on their numeric addresses, without the instruction objects
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        for (int i = from; i < to; i++) {
+            predictionsOut[i] = predict(addresses[i]);
+            update(outcomes[i]);
+        }
+    }
+
+    /**
+     * @param taken the actual result of the last predicted branch
+     */
+    private void update(boolean taken) {
+        if (provider >= 0) {
+            TaggedTable table = tables[provider];
+            int index = indices[provider];
+            int counter = table.counter(index);
+
+            // learn whether the newly allocated entries or the alternate predictions are better
+            boolean newlyAllocated = (counter == 3 || counter == 4) && table.useful(index) == 0;
+            if (newlyAllocated && providerPrediction != alternatePrediction) {
+                useAltOnNewlyAllocated = PackedLogic.count(useAltOnNewlyAllocated, 4,
+                        alternatePrediction == taken, CountMode.SATURATING);
+            }
+
+            table.setCounter(index, PackedLogic.count(counter, 3, taken, CountMode.SATURATING));
+            if (providerPrediction != alternatePrediction) {
+                int useful = table.useful(index);
+                if (providerPrediction == taken) table.setUseful(index, Math.min(useful + 1, TaggedTable.USEFUL_MAX));
+                else table.setUseful(index, Math.max(useful - 1, 0));
+            }
+            // a new entry is not trained alone, the alternate prediction learns too
+            if (newlyAllocated) {
+                if (alternate >= 0) {
+                    int alt = indices[alternate];
+                    tables[alternate].setCounter(alt, PackedLogic.count(tables[alternate].counter(alt), 3,
+                            taken, CountMode.SATURATING));
+                } else {
+                    base[baseIndex] = (byte) PackedLogic.count(base[baseIndex], 2, taken, CountMode.SATURATING);
+                }
+            }
+        } else {
+            base[baseIndex] = (byte) PackedLogic.count(base[baseIndex], 2, taken, CountMode.SATURATING);
+        }
+
+        if (prediction != taken && provider < tables.length - 1) allocate(taken);
+
+        if (++updates == RESET_PERIOD) {
+            updates = 0;
+            for (TaggedTable table : tables) table.age();
+        }
+
+        insert(taken);
+    }
+
+    /**
+     * allocate an entry for the branch in the first table with a longer history than the provider
+     * whose entry is not useful
+     */
+    private void allocate(boolean taken) {
+        for (int i = provider + 1; i < tables.length; i++) {
+            if (tables[i].useful(indices[i]) == 0) {
+                tables[i].set(indices[i], tags[i], taken ? 4 : 3, 0);
+                return;
+            }
+        }
+        for (int i = provider + 1; i < tables.length; i++) {
+            tables[i].setUseful(indices[i], tables[i].useful(indices[i]) - 1);
+        }
+    }
+
+    /**
+     * shift the outcome into the global history and the folded registers
+     */
+    private void insert(boolean taken) {
+        history.insert(taken);
+        for (int i = 0; i < tables.length; i++) {
+            boolean out = history.get(historyLengths[i]);
+            indexFolds[i].update(taken, out);
+            tagFolds[i].update(taken, out);
+            tagFolds2[i].update(taken, out);
+        }
+    }
+
+    /**
+     * @return the history lengths of the tagged tables
+     */
+    public int[] getHistoryLengths() {
+        return historyLengths.clone();
+    }
+
+    @Override
+    public String monitor() {
+        StringBuilder sb = new StringBuilder("TAGE predictor snapshot: \n");
+        sb.append(history.monitor());
+        sb.append("+----------------------------------+\n");
+        sb.append(String.format("| %-8s | %-8s | %-10s |\n", "Table", "History", "Useful"));
+        sb.append("|----------|----------|------------|\n");
+        sb.append(String.format("| %-8s | %-8d | %-10s |\n", "base", 0, "-"));
+        for (int i = 0; i < tables.length; i++) {
+            sb.append(String.format("| %-8d | %-8d | %-10d |\n", i + 1, historyLengths[i], tables[i].countUseful()));
+        }
+        sb.append("+----------------------------------+\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,170 @@
+package hardwar.branch.prediction.extended.Tournament;
+
+/*
+ * Tournament: two component predictors side by side and a chooser table which picks one of them per branch
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the chooser is a packed PHT of 2^KSize saturating counters indexed by the hashed branch address.
+ * a counter whose most significant bit is set selects the second component, so a fresh chooser trusts the first
+ *
+ * 2) both components predict and learn every branch. the chooser learns only when they disagree,
+ * counting towards the component which was right
+ *
+ * 3) the components get the instruction as it was given. a PackedBranchInstruction remembers the hashes of its
+ * address, so the components and the chooser which hash the address the same way compute the hash once per branch
+ *
+ * 4) the predictions of the components are kept for the update, like the SC register of the other predictors,
+ * so every predict is followed by the update of the same branch
+ *
+ * 5) simulate runs the batch simulation of each component over the branches, then the chooser over their
+ * predictions. the components do not depend on the chooser, so the results are the same as predict and update.
+ * the branches of the batch are copied to the start of the buffers, so the buffers have the size of the batch
+ * and not of the arrays
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.judged.GAs.GAs;
+import hardwar.branch.prediction.judged.PAg.PAg;
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.packed.devices.PackedPageHistoryTable;
+import hardwar.branch.prediction.shared.*;
+
+public class Tournament implements BatchPredictor {
+    private final BranchPredictor first;
+    private final BranchPredictor second;
+    private final int KSize;
+    private final int chooserSize;
+    private final HashMode hashMode;
+    private final PackedPageHistoryTable chooser; // one counter per hashed address, selects the component
+    private int row; // chooser row of the last prediction
+    private boolean firstTaken; // prediction of the first component for the last branch
+    private boolean secondTaken; // prediction of the second component for the last branch
+
+    // the branches of the batch and the predictions of the components in simulate, reused between the calls
+    private long[] batchAddresses = new long[0];
+    private boolean[] batchOutcomes = new boolean[0];
+    private boolean[] firstPredictions = new boolean[0];
+    private boolean[] secondPredictions = new boolean[0];
+
+    public Tournament() {
+        this(new PAg(8, 2, 8, StorageMode.PACKED),
+                new GAs(8, 2, 8, 4, HashMode.XOR, StorageMode.PACKED),
+                10, 2, HashMode.XOR);
+    }
+
+    /**
+     * Creates a new Tournament predictor with a chooser of 2^KSize counters
+     *
+     * @param first       the component which a fresh chooser counter selects
+     * @param second      the other component
+     * @param KSize       the number of bits of the hashed branch address which select the chooser counter
+     * @param chooserSize the number of bits of a chooser counter
+     * @param hashMode    the hash function of the branch address
+     */
+    public Tournament(BranchPredictor first, BranchPredictor second, int KSize, int chooserSize, HashMode hashMode) {
+        if (first == null || second == null) throw new IllegalArgumentException("components must not be null");
+        if (first == second) throw new IllegalArgumentException("components must be two different predictors");
+        if (KSize < 0 || KSize > 30) throw new IllegalArgumentException("KSize must be between 0 and 30");
+        if (chooserSize < 1 || chooserSize > 31)
+            throw new IllegalArgumentException("chooser counters must be 1 to 31 bits");
+
+        this.first = first;
+        this.second = second;
+        this.KSize = KSize;
+        this.chooserSize = chooserSize;
+        this.hashMode = hashMode;
+        this.chooser = new PackedPageHistoryTable(1 << KSize, chooserSize);
+    }
+
+    /**
+     * predicts the result of a branch instruction with the component which its chooser counter selects
+     *
+     * @param branchInstruction the branch instruction
+     * @return the predicted outcome of the branch instruction (taken or not taken)
+     */
+    @Override
+    public BranchResult predict(BranchInstruction branchInstruction) {
+        firstTaken = BranchResult.isTaken(first.predict(branchInstruction));
+        secondTaken = BranchResult.isTaken(second.predict(branchInstruction));
+        row = getRow(branchInstruction);
+        return BranchResult.of(chooser.setDefault(row, 0) >>> (chooserSize - 1) != 0 ? secondTaken : firstTaken);
+    }
+
+    /**
+     * Updates both components, and the chooser counter of the branch if the components disagreed
+     *
+     * @param branchInstruction the branch instruction
+     * @param actual            the actual result of branch (Taken or Not)
+     */
+    @Override
+    public void update(BranchInstruction branchInstruction, BranchResult actual) {
+        first.update(branchInstruction, actual);
+        second.update(branchInstruction, actual);
+        if (firstTaken != secondTaken) {
+            boolean secondRight = secondTaken == BranchResult.isTaken(actual);
+            chooser.put(row, PackedLogic.count(chooser.get(row), chooserSize, secondRight, CountMode.SATURATING));
+        }
+    }
+
+    /**
+     * simulate each component over the branches with its own batch simulation, then the chooser over
+     * their predictions
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (addressWidth > 64 || from >= to) {
+            BatchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        int size = to - from;
+        if (firstPredictions.length < size) {
+            batchAddresses = new long[size];
+            batchOutcomes = new boolean[size];
+            firstPredictions = new boolean[size];
+            secondPredictions = new boolean[size];
+        }
+        System.arraycopy(addresses, from, batchAddresses, 0, size);
+        System.arraycopy(outcomes, from, batchOutcomes, 0, size);
+        BatchPredictor.simulate(first, batchAddresses, addressWidth, batchOutcomes, firstPredictions, 0, size);
+        BatchPredictor.simulate(second, batchAddresses, addressWidth, batchOutcomes, secondPredictions, 0, size);
+
+        for (int i = from; i < to; i++) {
+            firstTaken = firstPredictions[i - from];
+            secondTaken = secondPredictions[i - from];
+            row = KSize == 0 ? 0 : PackedLogic.hash(addresses[i], addressWidth, KSize, hashMode);
+            int counter = chooser.setDefault(row, 0);
+            predictionsOut[i] = counter >>> (chooserSize - 1) != 0 ? secondTaken : firstTaken;
+            if (firstTaken != secondTaken) {
+                chooser.put(row, PackedLogic.count(counter, chooserSize, secondTaken == outcomes[i],
+                        CountMode.SATURATING));
+            }
+        }
+    }
+
+    /**
+     * @return the chooser row of the branch, the packed instructions remember the hash
+     */
+    private int getRow(BranchInstruction instruction) {
+        if (KSize == 0) return 0;
+        if (PackedBranchInstruction.addressWidthOf(instruction) <= 64)
+            return PackedBranchInstruction.hashAddress(instruction, KSize, hashMode);
+        return Bit.toNumber(PackedLogic.hash(instruction.getInstructionAddress(), KSize, hashMode));
+    }
+
+    public BranchPredictor getFirst() {
+        return first;
+    }
+
+    public BranchPredictor getSecond() {
+        return second;
+    }
+
+    @Override
+    public String monitor() {
+        return "Tournament predictor snapshot: \n" + first.monitor() + second.monitor() + chooser.monitor();
+    }
+}
@@ -1,14 +1,18 @@
 package hardwar.branch.prediction.judged.GAg;
 
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
 import hardwar.branch.prediction.shared.*;
 import hardwar.branch.prediction.shared.devices.*;
 
 import java.util.Arrays;
 
-public class GAg implements BranchPredictor {
+public class GAg implements PipelinedBranchPredictor {
     private final ShiftRegister BHR; // branch history register
     private final Cache<Bit[], Bit[]> PHT; // page history table
     private final ShiftRegister SC; // saturated counter register
+    private final SpeculativeHistory speculation; // the in-flight branches, null if the history is not speculative
+    private PredictionToken tokenLayout; // layout of the prediction tokens, created by the first predictToken
 
     public GAg() {
         this(4, 2);
@@ -21,22 +25,65 @@ public class GAg implements BranchPredictor {
      * @param SCSize  the size of the register which hold the saturating counter value and the cache block size
      */
     public GAg(int BHRSize, int SCSize) {
+        this(BHRSize, SCSize, StorageMode.MAP);
+    }
+
+    /**
+     * Creates a new GAg predictor with the given BHR register size and initializes the BHR and PHT.
+     *
+     * @param BHRSize     the size of the BHR register
+     * @param SCSize      the size of the register which hold the saturating counter value and the cache block size
+     * @param storageMode the storage model of the PHT and the registers
+     */
+    public GAg(int BHRSize, int SCSize, StorageMode storageMode) {
+        this(BHRSize, SCSize, storageMode, HistoryMode.RETIRED);
+    }
+
+    /**
+     * Creates a new GAg predictor with the given BHR register size and initializes the BHR and PHT.
+     *
+     * @param BHRSize     the size of the BHR register
+     * @param SCSize      the size of the register which hold the saturating counter value and the cache block size
+     * @param storageMode the storage model of the PHT and the registers
+     * @param historyMode RETIRED or SPECULATIVE update of the BHR
+     */
+    public GAg(int BHRSize, int SCSize, StorageMode storageMode, HistoryMode historyMode) {
+        this(BHRSize, SCSize, storageMode, historyMode, CacheGeometry.DEFAULT);
+    }
+
+    /**
+     * Creates a new GAg predictor with the given BHR register size and initializes the BHR and PHT.
+     *
+     * @param BHRSize     the size of the BHR register
+     * @param SCSize      the size of the register which hold the saturating counter value and the cache block size
+     * @param storageMode the storage model of the PHT and the registers
+     * @param historyMode RETIRED or SPECULATIVE update of the BHR
+     * @param geometry    the sets, ways and replacement policy of the BOUNDED tables
+     */
+    public GAg(int BHRSize, int SCSize, StorageMode storageMode, HistoryMode historyMode, CacheGeometry geometry) {
         // Initialize the BHR register with the given size and no default value
         Bit[] defaultValue = new Bit[BHRSize];
         for (int i = 0; i < BHRSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        this.BHR = new SIPORegister("Gag BHR", BHRSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) this.BHR = new PackedShiftRegister("Gag BHR", BHRSize, defaultValue);
+        else this.BHR = new SIPORegister("Gag BHR", BHRSize, defaultValue);
 
         // Initialize the PHT with a size of 2^size and each entry having a saturating counter of size "SCSize"
-        PHT = new PageHistoryTable(1<<BHRSize, SCSize);
+        if (storageMode == StorageMode.PACKED) PHT = new PackedPageHistoryTable(1 << BHRSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PHT = new SetAssociativeCache(geometry, SCSize);
+        else PHT = new PageHistoryTable(1 << BHRSize, SCSize);
 
         // Initialize the SC register
         defaultValue = new Bit[SCSize];
         for (int i = 0; i < SCSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        SC = new SIPORegister("GAg SC", SCSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("GAg SC", SCSize, defaultValue);
+        else SC = new SIPORegister("GAg SC", SCSize, defaultValue);
+
+        // Initialize the checkpoints of the in-flight branches, the BHR is saved as a number
+        speculation = historyMode == HistoryMode.SPECULATIVE ? new SpeculativeHistory(BHR) : null;
     }
 
     /**
@@ -47,13 +94,32 @@ public class GAg implements BranchPredictor {
      */
     @Override
     public BranchResult predict(BranchInstruction branchInstruction) {
+        BranchResult result = lookup(branchInstruction, speculation == null);
+        if (speculation != null) speculation.speculate(BranchResult.isTaken(result));
+        return result;
+    }
+
+    /**
+     * read the counter of the branch on the current BHR into the SC register, a row which is not allocated reads
+     * as zero. a speculative prediction does not allocate, the history may be on the wrong path
+     */
+    private BranchResult lookup(BranchInstruction branchInstruction, boolean allocate) {
+        if (isPacked()) {
+            // the numeric API of the packed devices
+            PackedPageHistoryTable table = (PackedPageHistoryTable) PHT;
+            int row = (int) Bits.readLong(BHR);
+            Bits.loadLong(SC, allocate ? table.setDefault(row, 0) : Math.max(table.get(row), 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
         Bit[] BHRContent = BHR.read();
         Bit[] defaultValue = new Bit[SC.getLength()];
         for (int i = 0; i < SC.getLength(); i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        PHT.setDefault(BHRContent, defaultValue);
-        SC.load(PHT.get(BHRContent));
+        if (allocate) PHT.setDefault(BHRContent, defaultValue);
+        Bit[] block = PHT.get(BHRContent);
+        SC.load(block == null ? defaultValue : block);
         return BranchResult.of(SC.read()[0].getValue());
     }
 
@@ -65,12 +131,126 @@ public class GAg implements BranchPredictor {
      */
     @Override
     public void update(BranchInstruction instruction, BranchResult actual) {
+        if (speculation == null) {
+            retire(instruction, actual);
+            return;
+        }
+
+        // update the oldest in-flight branch on its history, and the counter which the history selects now
+        speculation.restore();
+        lookup(instruction, true);
+        retire(instruction, actual);
+        speculation.repair(BranchResult.isTaken(actual));
+    }
+
+    /**
+     * update the counter in the SC register and shift the outcome into the BHR
+     */
+    private void retire(BranchInstruction instruction, BranchResult actual) {
+        if (isPacked()) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            ((PackedPageHistoryTable) PHT).put((int) Bits.readLong(BHR), (int) Bits.readLong(SC));
+            BHR.insert(Bit.of(taken));
+            return;
+        }
+
         Bit[] countResult = CombinationalLogic.count(SC.read(), BranchResult.isTaken(actual), CountMode.SATURATING);
         SC.load(countResult);
         PHT.put(BHR.read(), SC.read());
         BHR.insert(Bit.of(BranchResult.isTaken(actual)));
     }
 
+    /**
+     * predict and update the branches with the numeric API of the packed PHT and registers,
+     * the map based devices go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (speculation != null && !speculation.isEmpty())
+            throw new IllegalStateException("simulate needs all the predicted branches to be updated");
+        if (!(PHT instanceof PackedPageHistoryTable) || from >= to) {
+            PipelinedBranchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPageHistoryTable table = (PackedPageHistoryTable) PHT;
+        int BHRSize = BHR.getLength();
+        int SCSize = SC.getLength();
+        long history = Bits.readLong(BHR);
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            int row = (int) history;
+            counter = table.setDefault(row, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(row, counter);
+            history = (history >>> 1) | ((taken ? 1L : 0L) << (BHRSize - 1));
+        }
+        Bits.loadLong(BHR, history);
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the devices are not packed, the address width is not supported
+     *                                       or the fields of the token are wider than 63 bits
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        if (!isPacked()) throw new UnsupportedOperationException("prediction tokens need the PACKED storage mode");
+        PredictionToken layout = tokenLayout();
+
+        // a speculative prediction does not allocate the row, the history may be on the wrong path
+        PackedPageHistoryTable table = (PackedPageHistoryTable) PHT;
+        int row = (int) Bits.readLong(BHR);
+        int counter = speculation == null ? table.setDefault(row, 0) : Math.max(table.get(row), 0);
+        Bits.loadLong(SC, counter);
+        long token = layout.pack(counter, row, 0, 0);
+        if (speculation != null) speculation.speculate(token < 0);
+        return token;
+    }
+
+    /**
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        if (tokenLayout == null) throw new IllegalStateException("no prediction token is issued by the predictor");
+
+        PredictionToken layout = tokenLayout;
+        boolean taken = BranchResult.isTaken(actual);
+        // a speculative branch counts the row of its history, which a misprediction may have repaired
+        if (speculation != null) speculation.restore();
+        int row = speculation == null ? layout.row(token) : (int) Bits.readLong(BHR);
+        // the counter is read again, the updates of older tokens on the row count too
+        int counter = ((PackedPageHistoryTable) PHT).setDefault(row, 0);
+        counter = PackedLogic.count(counter, SC.getLength(), taken, CountMode.SATURATING);
+        Bits.loadLong(SC, counter);
+        ((PackedPageHistoryTable) PHT).put(row, counter);
+        if (speculation == null) BHR.insert(Bit.of(taken));
+        else speculation.repair(taken);
+    }
+
+    private PredictionToken tokenLayout() {
+        if (tokenLayout == null) {
+            tokenLayout = PredictionToken.layout(SC.getLength(), BHR.getLength(), 0, 0);
+        }
+        return tokenLayout;
+    }
+
+    /**
+     * @return true if the branches go through the numeric API of the packed devices
+     */
+    private boolean isPacked() {
+        return PHT instanceof PackedPageHistoryTable;
+    }
+
 
     /**
      * @return a zero series of bits as default value of cache block
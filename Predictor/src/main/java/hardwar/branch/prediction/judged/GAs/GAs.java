@@ -1,12 +1,14 @@
 package hardwar.branch.prediction.judged.GAs;
 
 
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
 import hardwar.branch.prediction.shared.*;
 import hardwar.branch.prediction.shared.devices.*;
 
 import java.util.Arrays;
 
-public class GAs implements BranchPredictor {
+public class GAs implements PipelinedBranchPredictor {
 
     private final int branchInstructionSize;
     private final int KSize;
@@ -14,6 +16,8 @@ public class GAs implements BranchPredictor {
     private final ShiftRegister SC; // saturating counter register
     private final ShiftRegister BHR; // branch history register
     private final Cache<Bit[], Bit[]> PSPHT; // Per Set Predication History Table
+    private final SpeculativeHistory speculation; // the in-flight branches, null if the history is not speculative
+    private PredictionToken tokenLayout; // layout of the prediction tokens, created by the first predictToken
 
     public GAs() {
         this(4, 2, 8, 4, HashMode.XOR);
@@ -28,6 +32,51 @@ public class GAs implements BranchPredictor {
      * @param branchInstructionSize the number of bits which is used for saving a branch instruction
      */
     public GAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashmode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, hashmode, StorageMode.MAP);
+    }
+
+    /**
+     * Creates a new GAs predictor with the given BHR register size and initializes the PAPHT based on
+     * the Ksize and saturating counter size
+     *
+     * @param BHRSize               the size of the BHR register
+     * @param SCSize                the size of the register which hold the saturating counter value
+     * @param branchInstructionSize the number of bits which is used for saving a branch instruction
+     * @param storageMode           the storage model of the PSPHT and the registers
+     */
+    public GAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashmode,
+               StorageMode storageMode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, hashmode, storageMode, HistoryMode.RETIRED);
+    }
+
+    /**
+     * Creates a new GAs predictor with the given BHR register size and initializes the PAPHT based on
+     * the Ksize and saturating counter size
+     *
+     * @param BHRSize               the size of the BHR register
+     * @param SCSize                the size of the register which hold the saturating counter value
+     * @param branchInstructionSize the number of bits which is used for saving a branch instruction
+     * @param storageMode           the storage model of the PSPHT and the registers
+     * @param historyMode           RETIRED or SPECULATIVE update of the BHR
+     */
+    public GAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashmode,
+               StorageMode storageMode, HistoryMode historyMode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, hashmode, storageMode, historyMode, CacheGeometry.DEFAULT);
+    }
+
+    /**
+     * Creates a new GAs predictor with the given BHR register size and initializes the PAPHT based on
+     * the Ksize and saturating counter size
+     *
+     * @param BHRSize               the size of the BHR register
+     * @param SCSize                the size of the register which hold the saturating counter value
+     * @param branchInstructionSize the number of bits which is used for saving a branch instruction
+     * @param storageMode           the storage model of the PSPHT and the registers
+     * @param historyMode           RETIRED or SPECULATIVE update of the BHR
+     * @param geometry              the sets, ways and replacement policy of the BOUNDED tables
+     */
+    public GAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashmode,
+               StorageMode storageMode, HistoryMode historyMode, CacheGeometry geometry) {
         this.branchInstructionSize = branchInstructionSize;
         this.KSize = KSize;
         this.hashMode = HashMode.XOR;
@@ -37,18 +86,25 @@ public class GAs implements BranchPredictor {
         for (int i = 0; i < BHRSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        this.BHR = new SIPORegister("Gag BHR", BHRSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) this.BHR = new PackedShiftRegister("Gag BHR", BHRSize, defaultValue);
+        else this.BHR = new SIPORegister("Gag BHR", BHRSize, defaultValue);
 
         // Initializing the PAPHT with K bit as PHT selector and 2^BHRSize row as each PHT entries
         // number and SCSize as block size
-        PSPHT = new PerAddressPredictionHistoryTable(KSize, 1<<BHRSize, SCSize);
+        if (storageMode == StorageMode.PACKED) PSPHT = new PackedPerAddressPredictionHistoryTable(KSize, 1 << BHRSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PSPHT = new SetAssociativeCache(geometry, SCSize);
+        else PSPHT = new PerAddressPredictionHistoryTable(KSize, 1 << BHRSize, SCSize);
 
         // Initialize the saturating counter
         defaultValue = new Bit[SCSize];
         for (int i = 0; i < SCSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        SC = new SIPORegister("GAg SC", SCSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("GAg SC", SCSize, defaultValue);
+        else SC = new SIPORegister("GAg SC", SCSize, defaultValue);
+
+        // Initialize the checkpoints of the in-flight branches, the BHR is saved as a number
+        speculation = historyMode == HistoryMode.SPECULATIVE ? new SpeculativeHistory(BHR) : null;
     }
 
     /**
@@ -60,7 +116,24 @@ public class GAs implements BranchPredictor {
      */
     @Override
     public BranchResult predict(BranchInstruction branchInstruction) {
-        Bit[] PCSegment = CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
+        BranchResult result = lookup(branchInstruction, speculation == null);
+        if (speculation != null) speculation.speculate(BranchResult.isTaken(result));
+        return result;
+    }
+
+    /**
+     * read the counter of the branch on the current BHR into the SC register, a row which is not allocated reads
+     * as zero. a speculative prediction does not allocate, the history may be on the wrong path
+     */
+    private BranchResult lookup(BranchInstruction branchInstruction, boolean allocate) {
+        if (isPacked(branchInstruction)) {
+            // the numeric API of the packed devices
+            int selector = PackedBranchInstruction.hashAddress(branchInstruction, KSize, hashMode);
+            Bits.loadLong(SC, read(selector, (int) Bits.readLong(BHR), allocate));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
+        Bit[] PCSegment = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
         Bit[] BHRSegment = BHR.read();
         Bit[] key = new Bit[PCSegment.length + BHRSegment.length];
         for (int i = 0; i < key.length; i++) {
@@ -75,8 +148,8 @@ public class GAs implements BranchPredictor {
         for (int i = 0; i < SC.getLength(); i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        PSPHT.setDefault(key, defaultValue);
-        SC.load(PSPHT.get(key));
+        Bit[] block = allocate ? PSPHT.setDefault(key, defaultValue) : peek(key);
+        SC.load(block == null ? defaultValue : block);
         return BranchResult.of(SC.read()[0].getValue());
     }
 
@@ -88,7 +161,33 @@ public class GAs implements BranchPredictor {
      */
     @Override
     public void update(BranchInstruction branchInstruction, BranchResult actual) {
-        Bit[] PCSegment = CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
+        if (speculation == null) {
+            retire(branchInstruction, actual);
+            return;
+        }
+
+        // update the oldest in-flight branch on its history, and the counter which the history selects now
+        speculation.restore();
+        lookup(branchInstruction, true);
+        retire(branchInstruction, actual);
+        speculation.repair(BranchResult.isTaken(actual));
+    }
+
+    /**
+     * update the counter in the SC register and shift the outcome into the BHR
+     */
+    private void retire(BranchInstruction branchInstruction, BranchResult actual) {
+        if (isPacked(branchInstruction)) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            int selector = PackedBranchInstruction.hashAddress(branchInstruction, KSize, hashMode);
+            ((PackedPerAddressPredictionHistoryTable) PSPHT).put(selector, (int) Bits.readLong(BHR),
+                    (int) Bits.readLong(SC));
+            BHR.insert(Bit.of(taken));
+            return;
+        }
+
+        Bit[] PCSegment = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
         Bit[] BHRSegment = BHR.read();
         Bit[] key = new Bit[PCSegment.length + BHRSegment.length];
         for (int i = 0; i < key.length; i++) {
@@ -105,6 +204,120 @@ public class GAs implements BranchPredictor {
         BHR.insert(Bit.of(BranchResult.isTaken(actual)));
     }
 
+    /**
+     * predict and update the branches with the numeric API of the packed PSPHT and registers,
+     * the branch address is hashed with the numeric hash circuit.
+     * the map based devices go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (speculation != null && !speculation.isEmpty())
+            throw new IllegalStateException("simulate needs all the predicted branches to be updated");
+        if (!(PSPHT instanceof PackedPerAddressPredictionHistoryTable) || from >= to) {
+            PipelinedBranchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPerAddressPredictionHistoryTable table = (PackedPerAddressPredictionHistoryTable) PSPHT;
+        int BHRSize = BHR.getLength();
+        int SCSize = SC.getLength();
+        long history = Bits.readLong(BHR);
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            int selector = PackedLogic.hash(addresses[i], addressWidth, KSize, hashMode);
+            int row = (int) history;
+            counter = table.setDefault(selector, row, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(selector, row, counter);
+            history = (history >>> 1) | ((taken ? 1L : 0L) << (BHRSize - 1));
+        }
+        Bits.loadLong(BHR, history);
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the devices are not packed, the address width is not supported
+     *                                       or the fields of the token are wider than 63 bits
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        if (!isPacked(instruction)) throw new UnsupportedOperationException("prediction tokens need the PACKED storage mode");
+        PredictionToken layout = tokenLayout();
+
+        int selector = PackedBranchInstruction.hashAddress(instruction, KSize, hashMode);
+        int row = (int) Bits.readLong(BHR);
+        // a speculative prediction does not allocate the row, the history may be on the wrong path
+        int counter = read(selector, row, speculation == null);
+        Bits.loadLong(SC, counter);
+        long token = layout.pack(counter, row, selector, 0);
+        if (speculation != null) speculation.speculate(token < 0);
+        return token;
+    }
+
+    /**
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        if (tokenLayout == null) throw new IllegalStateException("no prediction token is issued by the predictor");
+
+        PredictionToken layout = tokenLayout;
+        boolean taken = BranchResult.isTaken(actual);
+        // a speculative branch counts the row of its history, which a misprediction may have repaired
+        if (speculation != null) speculation.restore();
+        int row = speculation == null ? layout.row(token) : (int) Bits.readLong(BHR);
+        // the counter is read again, the updates of older tokens on the row count too
+        int counter = ((PackedPerAddressPredictionHistoryTable) PSPHT).setDefault(layout.selector(token), row, 0);
+        counter = PackedLogic.count(counter, SC.getLength(), taken, CountMode.SATURATING);
+        Bits.loadLong(SC, counter);
+        ((PackedPerAddressPredictionHistoryTable) PSPHT).put(layout.selector(token), row, counter);
+        if (speculation == null) BHR.insert(Bit.of(taken));
+        else speculation.repair(taken);
+    }
+
+    /**
+     * @return the counter of the row of the packed table, zero if the row is not allocated and allocate is false
+     */
+    private int read(int selector, int row, boolean allocate) {
+        PackedPerAddressPredictionHistoryTable table = (PackedPerAddressPredictionHistoryTable) PSPHT;
+        if (allocate) return table.setDefault(selector, row, 0);
+        return table.isAssociated(selector) ? Math.max(table.get(selector, row), 0) : 0;
+    }
+
+    /**
+     * @return the block of the key, null if it is not allocated
+     */
+    private Bit[] peek(Bit[] key) {
+        try {
+            return PSPHT.get(key);
+        } catch (NullPointerException e) {
+            // the map based table has no PHT for the address yet
+            return null;
+        }
+    }
+
+    private PredictionToken tokenLayout() {
+        if (tokenLayout == null) {
+            tokenLayout = PredictionToken.layout(SC.getLength(), BHR.getLength(), KSize, 0);
+        }
+        return tokenLayout;
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PSPHT instanceof PackedPerAddressPredictionHistoryTable
+                && PackedBranchInstruction.addressWidthOf(instruction) <= 64;
+    }
+
     /**
      * @return snapshot of caches and registers content
      */
@@ -121,7 +334,7 @@ public class GAs implements BranchPredictor {
      */
     private Bit[] getCacheEntry(Bit[] branchAddress) {
         // hash the branch address
-        Bit[] hashKSize = CombinationalLogic.hash(branchAddress, KSize, hashMode);
+        Bit[] hashKSize = PackedLogic.hash(branchAddress, KSize, hashMode);
 
         // Concatenate the Hash bits with the BHR bits
         Bit[] bhrBits = BHR.read();
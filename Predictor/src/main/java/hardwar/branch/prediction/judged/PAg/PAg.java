@@ -1,14 +1,17 @@
 package hardwar.branch.prediction.judged.PAg;
 
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
 import hardwar.branch.prediction.shared.*;
 import hardwar.branch.prediction.shared.devices.*;
 
 import java.util.Arrays;
 
-public class PAg implements BranchPredictor {
+public class PAg implements PipelinedBranchPredictor {
     private final ShiftRegister SC; // saturating counter register
-    private final RegisterBank PABHR; // per address branch history register
+    private final ShiftRegisterBank PABHR; // per address branch history register
     private final Cache<Bit[], Bit[]> PHT; // page history table
+    private PredictionToken tokenLayout; // layout of the prediction tokens, created by the first predictToken
 
     public PAg() {
         this(4, 2, 8);
@@ -23,18 +26,49 @@ public class PAg implements BranchPredictor {
      * @param branchInstructionSize the number of bits which is used for saving a branch instruction
      */
     public PAg(int BHRSize, int SCSize, int branchInstructionSize) {
+        this(BHRSize, SCSize, branchInstructionSize, StorageMode.MAP);
+    }
+
+    /**
+     * Creates a new PAg predictor with the given BHR register size and initializes the PABHR based on
+     * the branch instruction size and BHR size
+     *
+     * @param BHRSize               the size of the BHR register
+     * @param SCSize                the size of the register which hold the saturating counter value
+     * @param branchInstructionSize the number of bits which is used for saving a branch instruction
+     * @param storageMode           the storage model of the PHT, the PABHR and the SC register
+     */
+    public PAg(int BHRSize, int SCSize, int branchInstructionSize, StorageMode storageMode) {
+        this(BHRSize, SCSize, branchInstructionSize, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    /**
+     * Creates a new PAg predictor with the given BHR register size and initializes the PABHR based on
+     * the branch instruction size and BHR size
+     *
+     * @param BHRSize               the size of the BHR register
+     * @param SCSize                the size of the register which hold the saturating counter value
+     * @param branchInstructionSize the number of bits which is used for saving a branch instruction
+     * @param storageMode           the storage model of the PHT, the PABHR and the SC register
+     * @param geometry              the sets, ways and replacement policy of the BOUNDED tables
+     */
+    public PAg(int BHRSize, int SCSize, int branchInstructionSize, StorageMode storageMode, CacheGeometry geometry) {
         // Initialize the PABHR with the given bhr and branch instruction size
-        PABHR = new RegisterBank(branchInstructionSize, BHRSize);
+        if (storageMode == StorageMode.PACKED) PABHR = new PackedRegisterBank(branchInstructionSize, BHRSize);
+        else PABHR = new MapRegisterBank(branchInstructionSize, BHRSize);
 
         // Initialize the PHT with a size of 2^size and each entry having a saturating counter of size "SCSize"
-        PHT = new PageHistoryTable(1<<BHRSize, SCSize);
+        if (storageMode == StorageMode.PACKED) PHT = new PackedPageHistoryTable(1 << BHRSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PHT = new SetAssociativeCache(geometry, SCSize);
+        else PHT = new PageHistoryTable(1 << BHRSize, SCSize);
 
         // Initialize the SC register
         Bit[] defaultValue = new Bit[SCSize];
         for (int i = 0; i < SCSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        SC = new SIPORegister("PAg SC", SCSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("PAg SC", SCSize, defaultValue);
+        else SC = new SIPORegister("PAg SC", SCSize, defaultValue);
     }
 
     /**
@@ -43,6 +77,13 @@ public class PAg implements BranchPredictor {
      */
     @Override
     public BranchResult predict(BranchInstruction instruction) {
+        if (isPacked(instruction)) {
+            // the numeric API of the packed devices, which does not allocate
+            int row = (int) ((PackedRegisterBank) PABHR).read((int) PackedBranchInstruction.addressOf(instruction));
+            Bits.loadLong(SC, ((PackedPageHistoryTable) PHT).setDefault(row, 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
         ShiftRegister BHR = PABHR.read(instruction.getInstructionAddress());
         Bit[] BHRContent = BHR.read();
         Bit[] defaultValue = new Bit[SC.getLength()];
@@ -60,12 +101,106 @@ public class PAg implements BranchPredictor {
      */
     @Override
     public void update(BranchInstruction instruction, BranchResult actual) {
+        if (isPacked(instruction)) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            PackedRegisterBank bank = (PackedRegisterBank) PABHR;
+            int address = (int) PackedBranchInstruction.addressOf(instruction);
+            ((PackedPageHistoryTable) PHT).put((int) bank.read(address), (int) Bits.readLong(SC));
+            bank.shiftIn(address, Bit.of(taken));
+            return;
+        }
+
         ShiftRegister BHR = PABHR.read(instruction.getInstructionAddress());
         Bit[] countResult = CombinationalLogic.count(SC.read(), BranchResult.isTaken(actual), CountMode.SATURATING);
         SC.load(countResult);
         PHT.put(BHR.read(), SC.read());
-        BHR.insert(Bit.of(BranchResult.isTaken(actual)));
-        PABHR.write(instruction.getInstructionAddress(), BHR.read());
+        PABHR.shiftIn(instruction.getInstructionAddress(), Bit.of(BranchResult.isTaken(actual)));
+    }
+
+    /**
+     * predict and update the branches with the numeric API of the packed PHT and PABHR.
+     * the map based devices and the addresses which are not branchInstructionSize bits wide
+     * go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (!(PHT instanceof PackedPageHistoryTable) || !(PABHR instanceof PackedRegisterBank)
+                || addressWidth != ((PackedRegisterBank) PABHR).getSelectorSize() || from >= to) {
+            PipelinedBranchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPageHistoryTable table = (PackedPageHistoryTable) PHT;
+        PackedRegisterBank bank = (PackedRegisterBank) PABHR;
+        long addressMask = (1L << addressWidth) - 1;
+        int SCSize = SC.getLength();
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            int selector = (int) (addresses[i] & addressMask);
+            int row = (int) bank.read(selector);
+            counter = table.setDefault(row, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(row, counter);
+            bank.shiftIn(selector, Bit.of(taken));
+        }
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the devices are not packed, the address width is not supported
+     *                                       or the fields of the token are wider than 63 bits
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        if (!isPacked(instruction)) throw new UnsupportedOperationException("prediction tokens need the PACKED storage mode");
+        PredictionToken layout = tokenLayout();
+
+        int address = (int) PackedBranchInstruction.addressOf(instruction);
+        int row = (int) ((PackedRegisterBank) PABHR).read(address);
+        int counter = ((PackedPageHistoryTable) PHT).setDefault(row, 0);
+        Bits.loadLong(SC, counter);
+        return layout.pack(counter, row, 0, address);
+    }
+
+    /**
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        if (tokenLayout == null) throw new IllegalStateException("no prediction token is issued by the predictor");
+
+        PredictionToken layout = tokenLayout;
+        boolean taken = BranchResult.isTaken(actual);
+        // the counter is read again, the updates of older tokens on the row count too
+        int counter = ((PackedPageHistoryTable) PHT).setDefault(layout.row(token), 0);
+        counter = PackedLogic.count(counter, SC.getLength(), taken, CountMode.SATURATING);
+        Bits.loadLong(SC, counter);
+        ((PackedPageHistoryTable) PHT).put(layout.row(token), counter);
+        ((PackedRegisterBank) PABHR).shiftIn(layout.historySelector(token), Bit.of(taken));
+    }
+
+    private PredictionToken tokenLayout() {
+        if (tokenLayout == null) {
+            tokenLayout = PredictionToken.layout(SC.getLength(), ((PackedRegisterBank) PABHR).getRegisterSize(), 0,
+                    ((PackedRegisterBank) PABHR).getSelectorSize());
+        }
+        return tokenLayout;
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PHT instanceof PackedPageHistoryTable && PABHR instanceof PackedRegisterBank
+                && PackedBranchInstruction.addressWidthOf(instruction) == ((PackedRegisterBank) PABHR).getSelectorSize();
     }
 
     /**
@@ -1,45 +1,68 @@
 package hardwar.branch.prediction.judged.PAp;
 
 
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
 import hardwar.branch.prediction.shared.*;
 import hardwar.branch.prediction.shared.devices.*;
 
 import java.util.Arrays;
 
-public class PAp implements BranchPredictor {
+public class PAp implements PipelinedBranchPredictor {
 
     private final int branchInstructionSize;
 
     private final ShiftRegister SC; // saturating counter register
 
-    private final RegisterBank PABHR; // per address branch history register
+    private final ShiftRegisterBank PABHR; // per address branch history register
 
     private final Cache<Bit[], Bit[]> PAPHT; // Per Address Predication History Table
+    private PredictionToken tokenLayout; // layout of the prediction tokens, created by the first predictToken
 
     public PAp() {
         this(4, 2, 8);
     }
 
     public PAp(int BHRSize, int SCSize, int branchInstructionSize) {
+        this(BHRSize, SCSize, branchInstructionSize, StorageMode.MAP);
+    }
+
+    public PAp(int BHRSize, int SCSize, int branchInstructionSize, StorageMode storageMode) {
+        this(BHRSize, SCSize, branchInstructionSize, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    public PAp(int BHRSize, int SCSize, int branchInstructionSize, StorageMode storageMode, CacheGeometry geometry) {
         this.branchInstructionSize = branchInstructionSize;
 
         // Initialize the PABHR with the given bhr and branch instruction size
-        PABHR = new RegisterBank(branchInstructionSize, BHRSize);
+        if (storageMode == StorageMode.PACKED) PABHR = new PackedRegisterBank(branchInstructionSize, BHRSize);
+        else PABHR = new MapRegisterBank(branchInstructionSize, BHRSize);
 
         // Initializing the PAPHT with BranchInstructionSize as PHT Selector and 2^BHRSize row as each PHT entries
         // number and SCSize as block size
-        PAPHT = new PerAddressPredictionHistoryTable(branchInstructionSize, 1<<BHRSize, SCSize);
+        if (storageMode == StorageMode.PACKED) PAPHT = new PackedPerAddressPredictionHistoryTable(branchInstructionSize, 1 << BHRSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PAPHT = new SetAssociativeCache(geometry, SCSize);
+        else PAPHT = new PerAddressPredictionHistoryTable(branchInstructionSize, 1 << BHRSize, SCSize);
 
         // Initialize the SC register
         Bit[] defaultValue = new Bit[SCSize];
         for (int i = 0; i < SCSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        SC = new SIPORegister("PAg SC", SCSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("PAg SC", SCSize, defaultValue);
+        else SC = new SIPORegister("PAg SC", SCSize, defaultValue);
     }
 
     @Override
     public BranchResult predict(BranchInstruction branchInstruction) {
+        if (isPacked(branchInstruction)) {
+            // the numeric API of the packed devices, which does not allocate
+            int address = (int) PackedBranchInstruction.addressOf(branchInstruction);
+            int row = (int) ((PackedRegisterBank) PABHR).read(address);
+            Bits.loadLong(SC, ((PackedPerAddressPredictionHistoryTable) PAPHT).setDefault(address, row, 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
         ShiftRegister BHR = PABHR.read(branchInstruction.getInstructionAddress());
 
         Bit[] PCSegment = branchInstruction.getInstructionAddress();
@@ -65,6 +88,17 @@ public class PAp implements BranchPredictor {
 
     @Override
     public void update(BranchInstruction instruction, BranchResult actual) {
+        if (isPacked(instruction)) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            PackedRegisterBank bank = (PackedRegisterBank) PABHR;
+            int address = (int) PackedBranchInstruction.addressOf(instruction);
+            ((PackedPerAddressPredictionHistoryTable) PAPHT).put(address, (int) bank.read(address),
+                    (int) Bits.readLong(SC));
+            bank.shiftIn(address, Bit.of(taken));
+            return;
+        }
+
         ShiftRegister BHR = PABHR.read(instruction.getInstructionAddress());
         Bit[] countResult = CombinationalLogic.count(SC.read(), BranchResult.isTaken(actual), CountMode.SATURATING);
         SC.load(countResult);
@@ -81,8 +115,94 @@ public class PAp implements BranchPredictor {
         }
         PAPHT.put(key, SC.read());
 
-        BHR.insert(Bit.of(BranchResult.isTaken(actual)));
-        PABHR.write(instruction.getInstructionAddress(), BHR.read());
+        PABHR.shiftIn(instruction.getInstructionAddress(), Bit.of(BranchResult.isTaken(actual)));
+    }
+
+    /**
+     * predict and update the branches with the numeric API of the packed PAPHT and PABHR.
+     * the map based devices and the addresses which are not branchInstructionSize bits wide
+     * go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (!(PAPHT instanceof PackedPerAddressPredictionHistoryTable) || !(PABHR instanceof PackedRegisterBank)
+                || addressWidth != branchInstructionSize || from >= to) {
+            PipelinedBranchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPerAddressPredictionHistoryTable table = (PackedPerAddressPredictionHistoryTable) PAPHT;
+        PackedRegisterBank bank = (PackedRegisterBank) PABHR;
+        long addressMask = (1L << addressWidth) - 1;
+        int SCSize = SC.getLength();
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            int selector = (int) (addresses[i] & addressMask);
+            int row = (int) bank.read(selector);
+            counter = table.setDefault(selector, row, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(selector, row, counter);
+            bank.shiftIn(selector, Bit.of(taken));
+        }
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the devices are not packed, the address width is not supported
+     *                                       or the fields of the token are wider than 63 bits
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        if (!isPacked(instruction)) throw new UnsupportedOperationException("prediction tokens need the PACKED storage mode");
+        PredictionToken layout = tokenLayout();
+
+        int address = (int) PackedBranchInstruction.addressOf(instruction);
+        int row = (int) ((PackedRegisterBank) PABHR).read(address);
+        int counter = ((PackedPerAddressPredictionHistoryTable) PAPHT).setDefault(address, row, 0);
+        Bits.loadLong(SC, counter);
+        return layout.pack(counter, row, address, 0);
+    }
+
+    /**
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        if (tokenLayout == null) throw new IllegalStateException("no prediction token is issued by the predictor");
+
+        PredictionToken layout = tokenLayout;
+        boolean taken = BranchResult.isTaken(actual);
+        // the counter is read again, the updates of older tokens on the row count too
+        int counter = ((PackedPerAddressPredictionHistoryTable) PAPHT).setDefault(layout.selector(token),
+                layout.row(token), 0);
+        counter = PackedLogic.count(counter, SC.getLength(), taken, CountMode.SATURATING);
+        Bits.loadLong(SC, counter);
+        // the table and the history register are both selected by the address
+        ((PackedPerAddressPredictionHistoryTable) PAPHT).put(layout.selector(token), layout.row(token), counter);
+        ((PackedRegisterBank) PABHR).shiftIn(layout.selector(token), Bit.of(taken));
+    }
+
+    private PredictionToken tokenLayout() {
+        if (tokenLayout == null) {
+            tokenLayout = PredictionToken.layout(SC.getLength(), ((PackedRegisterBank) PABHR).getRegisterSize(),
+                    branchInstructionSize, 0);
+        }
+        return tokenLayout;
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PAPHT instanceof PackedPerAddressPredictionHistoryTable && PABHR instanceof PackedRegisterBank
+                && PackedBranchInstruction.addressWidthOf(instruction) == branchInstructionSize;
     }
 
 
@@ -1,42 +1,59 @@
 package hardwar.branch.prediction.judged.PAs;
 
 
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
 import hardwar.branch.prediction.shared.*;
 import hardwar.branch.prediction.shared.devices.*;
 
 import java.util.Arrays;
 
-public class PAs implements BranchPredictor {
+public class PAs implements PipelinedBranchPredictor {
 
     private final int branchInstructionSize;
     private final int KSize;
     private final HashMode hashMode;
     private final ShiftRegister SC; // saturating counter register
-    private final RegisterBank PABHR; // per address Branch History Register
+    private final ShiftRegisterBank PABHR; // per address Branch History Register
     private final Cache<Bit[], Bit[]> PSPHT; // Per Set Predication History Table
+    private PredictionToken tokenLayout; // layout of the prediction tokens, created by the first predictToken
 
     public PAs() {
         this(4, 2, 8, 4, HashMode.XOR);
     }
 
     public PAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashMode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, hashMode, StorageMode.MAP);
+    }
+
+    public PAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashMode,
+               StorageMode storageMode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, hashMode, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    public PAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashMode,
+               StorageMode storageMode, CacheGeometry geometry) {
         this.branchInstructionSize = branchInstructionSize;
         this.KSize = KSize;
         this.hashMode = HashMode.XOR;
 
         // Initialize the PABHR with the given bhr and branch instruction size
-        PABHR = new RegisterBank(branchInstructionSize, BHRSize);
+        if (storageMode == StorageMode.PACKED) PABHR = new PackedRegisterBank(branchInstructionSize, BHRSize);
+        else PABHR = new MapRegisterBank(branchInstructionSize, BHRSize);
 
         // Initializing the PAPHT with K bit as PHT selector and 2^BHRSize row as each PHT entries
         // number and SCSize as block size
-        PSPHT = new PerAddressPredictionHistoryTable(KSize, 1<<BHRSize, SCSize);
+        if (storageMode == StorageMode.PACKED) PSPHT = new PackedPerAddressPredictionHistoryTable(KSize, 1 << BHRSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PSPHT = new SetAssociativeCache(geometry, SCSize);
+        else PSPHT = new PerAddressPredictionHistoryTable(KSize, 1 << BHRSize, SCSize);
 
         // Initialize the saturating counter
         Bit[] defaultValue = new Bit[SCSize];
         for (int i = 0; i < SCSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        SC = new SIPORegister("PAg SC", SCSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("PAg SC", SCSize, defaultValue);
+        else SC = new SIPORegister("PAg SC", SCSize, defaultValue);
     }
 
     /**
@@ -48,10 +65,20 @@ public class PAs implements BranchPredictor {
      */
     @Override
     public BranchResult predict(BranchInstruction branchInstruction) {
+        if (isPacked(branchInstruction)) {
+            // the numeric API of the packed devices, which does not allocate
+            PackedRegisterBank bank = (PackedRegisterBank) PABHR;
+            int address = (int) PackedBranchInstruction.addressOf(branchInstruction);
+            int selector = PackedLogic.hash(address, branchInstructionSize, KSize, hashMode);
+            int row = PackedLogic.hash(bank.read(address), bank.getRegisterSize(), KSize, hashMode);
+            Bits.loadLong(SC, ((PackedPerAddressPredictionHistoryTable) PSPHT).setDefault(selector, row, KSize, 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
         ShiftRegister BHR = PABHR.read(branchInstruction.getInstructionAddress());
 
-        Bit[] PCSegment = CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
-        Bit[] BHRSegment = CombinationalLogic.hash(BHR.read(), KSize, hashMode);
+        Bit[] PCSegment = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
+        Bit[] BHRSegment = PackedLogic.hash(BHR.read(), KSize, hashMode);
         Bit[] key = new Bit[PCSegment.length + BHRSegment.length];
         for (int i = 0; i < key.length; i++) {
             if (i < PCSegment.length) {
@@ -73,11 +100,23 @@ public class PAs implements BranchPredictor {
 
     @Override
     public void update(BranchInstruction instruction, BranchResult actual) {
+        if (isPacked(instruction)) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            PackedRegisterBank bank = (PackedRegisterBank) PABHR;
+            int address = (int) PackedBranchInstruction.addressOf(instruction);
+            int selector = PackedLogic.hash(address, branchInstructionSize, KSize, hashMode);
+            ((PackedPerAddressPredictionHistoryTable) PSPHT).put(selector, (int) bank.read(address),
+                    bank.getRegisterSize(), (int) Bits.readLong(SC));
+            bank.shiftIn(address, Bit.of(taken));
+            return;
+        }
+
         ShiftRegister BHR = PABHR.read(instruction.getInstructionAddress());
         Bit[] countResult = CombinationalLogic.count(SC.read(), BranchResult.isTaken(actual), CountMode.SATURATING);
         SC.load(countResult);
 
-        Bit[] PCSegment = CombinationalLogic.hash(instruction.getInstructionAddress(), KSize, hashMode);
+        Bit[] PCSegment = PackedLogic.hash(instruction.getInstructionAddress(), KSize, hashMode);
         Bit[] BHRSegment = BHR.read();
         Bit[] key = new Bit[PCSegment.length + BHRSegment.length];
         for (int i = 0; i < key.length; i++) {
@@ -89,8 +128,103 @@ public class PAs implements BranchPredictor {
         }
         PSPHT.put(key, SC.read());
 
-        BHR.insert(Bit.of(BranchResult.isTaken(actual)));
-        PABHR.write(instruction.getInstructionAddress(), BHR.read());
+        PABHR.shiftIn(instruction.getInstructionAddress(), Bit.of(BranchResult.isTaken(actual)));
+    }
+
+    /**
+     * predict and update the branches with the numeric API of the packed PSPHT and PABHR.
+     * like predict and update, the prediction reads the row of the hashed history and the update
+     * writes the row of the history itself, the rows of the two widths are different blocks like in the map.
+     * the map based devices and the addresses which are not branchInstructionSize bits wide
+     * go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (!(PSPHT instanceof PackedPerAddressPredictionHistoryTable) || !(PABHR instanceof PackedRegisterBank)
+                || addressWidth != branchInstructionSize || from >= to) {
+            PipelinedBranchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPerAddressPredictionHistoryTable table = (PackedPerAddressPredictionHistoryTable) PSPHT;
+        PackedRegisterBank bank = (PackedRegisterBank) PABHR;
+        long addressMask = (1L << addressWidth) - 1;
+        int BHRSize = bank.getRegisterSize();
+        int SCSize = SC.getLength();
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            int address = (int) (addresses[i] & addressMask);
+            int selector = PackedLogic.hash(address, addressWidth, KSize, hashMode);
+            long history = bank.read(address);
+            counter = table.setDefault(selector, PackedLogic.hash(history, BHRSize, KSize, hashMode), KSize, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(selector, (int) history, BHRSize, counter);
+            bank.shiftIn(address, Bit.of(taken));
+        }
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the devices are not packed, the address width is not supported
+     *                                       or the fields of the token are wider than 63 bits
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        if (!isPacked(instruction)) throw new UnsupportedOperationException("prediction tokens need the PACKED storage mode");
+        PredictionToken layout = tokenLayout();
+
+        PackedRegisterBank bank = (PackedRegisterBank) PABHR;
+        int address = (int) PackedBranchInstruction.addressOf(instruction);
+        int selector = PackedLogic.hash(address, branchInstructionSize, KSize, hashMode);
+        long history = bank.read(address);
+        int counter = ((PackedPerAddressPredictionHistoryTable) PSPHT).setDefault(selector,
+                PackedLogic.hash(history, bank.getRegisterSize(), KSize, hashMode), KSize, 0);
+        Bits.loadLong(SC, counter);
+        return layout.pack(counter, (int) history, selector, address);
+    }
+
+    /**
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        if (tokenLayout == null) throw new IllegalStateException("no prediction token is issued by the predictor");
+
+        PredictionToken layout = tokenLayout;
+        boolean taken = BranchResult.isTaken(actual);
+        // the counter of the hashed history is read again, the updates of older tokens on the row count too
+        int registerSize = ((PackedRegisterBank) PABHR).getRegisterSize();
+        int counter = ((PackedPerAddressPredictionHistoryTable) PSPHT).setDefault(layout.selector(token),
+                PackedLogic.hash(layout.row(token), registerSize, KSize, hashMode), KSize, 0);
+        counter = PackedLogic.count(counter, SC.getLength(), taken, CountMode.SATURATING);
+        Bits.loadLong(SC, counter);
+        // like update, the counter is written on the row of the history itself
+        ((PackedPerAddressPredictionHistoryTable) PSPHT).put(layout.selector(token), layout.row(token), registerSize,
+                counter);
+        ((PackedRegisterBank) PABHR).shiftIn(layout.historySelector(token), Bit.of(taken));
+    }
+
+    private PredictionToken tokenLayout() {
+        if (tokenLayout == null) {
+            tokenLayout = PredictionToken.layout(SC.getLength(), ((PackedRegisterBank) PABHR).getRegisterSize(), KSize,
+                    branchInstructionSize);
+        }
+        return tokenLayout;
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PSPHT instanceof PackedPerAddressPredictionHistoryTable && PABHR instanceof PackedRegisterBank
+                && PackedBranchInstruction.addressWidthOf(instruction) == branchInstructionSize;
     }
 
     @Override
@@ -100,7 +234,7 @@ public class PAs implements BranchPredictor {
 
     private Bit[] getCacheEntry(Bit[] branchAddress, Bit[] BHRValue) {
         // hash the branch address
-        Bit[] hashKSize = CombinationalLogic.hash(branchAddress, KSize, hashMode);
+        Bit[] hashKSize = PackedLogic.hash(branchAddress, KSize, hashMode);
 
         // Concatenate the Hash bits with the BHR bits
         Bit[] cacheEntry = new Bit[hashKSize.length + BHRValue.length];
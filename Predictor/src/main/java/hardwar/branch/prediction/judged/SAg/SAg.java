@@ -1,43 +1,67 @@
 package hardwar.branch.prediction.judged.SAg;
 
 
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
 import hardwar.branch.prediction.shared.*;
 import hardwar.branch.prediction.shared.devices.*;
 
 import java.util.Arrays;
 
-public class SAg implements BranchPredictor {
+public class SAg implements PipelinedBranchPredictor {
     private final int branchInstructionSize;
     private final int KSize;
     private final ShiftRegister SC; // saturating counter register
-    private final RegisterBank PSBHR; // per set branch history register
+    private final ShiftRegisterBank PSBHR; // per set branch history register
     private final Cache<Bit[], Bit[]> PHT; // page history table
+    private PredictionToken tokenLayout; // layout of the prediction tokens, created by the first predictToken
 
     public SAg() {
         this(4, 2, 8, 4);
     }
 
     public SAg(int BHRSize, int SCSize, int branchInstructionSize, int KSize) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, StorageMode.MAP);
+    }
+
+    public SAg(int BHRSize, int SCSize, int branchInstructionSize, int KSize, StorageMode storageMode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    public SAg(int BHRSize, int SCSize, int branchInstructionSize, int KSize, StorageMode storageMode,
+               CacheGeometry geometry) {
         this.branchInstructionSize = branchInstructionSize;
         this.KSize = KSize;
 
         // Initialize the PABHR with the given bhr and Ksize
-        PSBHR = new RegisterBank(KSize, BHRSize);
+        if (storageMode == StorageMode.PACKED) PSBHR = new PackedRegisterBank(KSize, BHRSize);
+        else PSBHR = new MapRegisterBank(KSize, BHRSize);
 
         // Initialize the PHT with a size of 2^size and each entry having a saturating counter of size "SCSize"
-        PHT = new PageHistoryTable(1<<BHRSize, SCSize);
+        if (storageMode == StorageMode.PACKED) PHT = new PackedPageHistoryTable(1 << BHRSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PHT = new SetAssociativeCache(geometry, SCSize);
+        else PHT = new PageHistoryTable(1 << BHRSize, SCSize);
 
         // Initialize the SC register
         Bit[] defaultValue = new Bit[SCSize];
         for (int i = 0; i < SCSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        SC = new SIPORegister("PAg SC", SCSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("PAg SC", SCSize, defaultValue);
+        else SC = new SIPORegister("PAg SC", SCSize, defaultValue);
     }
 
     @Override
     public BranchResult predict(BranchInstruction instruction) {
-        ShiftRegister BHR = PSBHR.read(CombinationalLogic.hash(instruction.getInstructionAddress(), KSize, HashMode.XOR));
+        if (isPacked(instruction)) {
+            // the numeric API of the packed devices, which does not allocate
+            int selector = PackedBranchInstruction.hashAddress(instruction, KSize, HashMode.XOR);
+            int row = (int) ((PackedRegisterBank) PSBHR).read(selector);
+            Bits.loadLong(SC, ((PackedPageHistoryTable) PHT).setDefault(row, 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
+        ShiftRegister BHR = PSBHR.read(PackedLogic.hash(instruction.getInstructionAddress(), KSize, HashMode.XOR));
         Bit[] BHRContent = BHR.read();
         Bit[] defaultValue = new Bit[SC.getLength()];
         for (int i = 0; i < SC.getLength(); i++) {
@@ -50,12 +74,105 @@ public class SAg implements BranchPredictor {
 
     @Override
     public void update(BranchInstruction branchInstruction, BranchResult actual) {
-        ShiftRegister BHR = PSBHR.read(CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR));
+        if (isPacked(branchInstruction)) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            PackedRegisterBank bank = (PackedRegisterBank) PSBHR;
+            int selector = PackedBranchInstruction.hashAddress(branchInstruction, KSize, HashMode.XOR);
+            ((PackedPageHistoryTable) PHT).put((int) bank.read(selector), (int) Bits.readLong(SC));
+            bank.shiftIn(selector, Bit.of(taken));
+            return;
+        }
+
+        Bit[] selector = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR);
+        ShiftRegister BHR = PSBHR.read(selector);
         Bit[] countResult = CombinationalLogic.count(SC.read(), BranchResult.isTaken(actual), CountMode.SATURATING);
         SC.load(countResult);
         PHT.put(BHR.read(), SC.read());
-        BHR.insert(Bit.of(BranchResult.isTaken(actual)));
-        PSBHR.write(CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR), BHR.read());
+        PSBHR.shiftIn(selector, Bit.of(BranchResult.isTaken(actual)));
+    }
+
+    /**
+     * predict and update the branches with the numeric API of the packed PHT and PSBHR,
+     * the branch address is hashed with the numeric hash circuit.
+     * the map based devices go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (!(PHT instanceof PackedPageHistoryTable) || !(PSBHR instanceof PackedRegisterBank) || from >= to) {
+            PipelinedBranchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPageHistoryTable table = (PackedPageHistoryTable) PHT;
+        PackedRegisterBank bank = (PackedRegisterBank) PSBHR;
+        int SCSize = SC.getLength();
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            int selector = PackedLogic.hash(addresses[i], addressWidth, KSize, HashMode.XOR);
+            int row = (int) bank.read(selector);
+            counter = table.setDefault(row, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(row, counter);
+            bank.shiftIn(selector, Bit.of(taken));
+        }
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the devices are not packed, the address width is not supported
+     *                                       or the fields of the token are wider than 63 bits
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        if (!isPacked(instruction)) throw new UnsupportedOperationException("prediction tokens need the PACKED storage mode");
+        PredictionToken layout = tokenLayout();
+
+        int selector = PackedBranchInstruction.hashAddress(instruction, KSize, HashMode.XOR);
+        int row = (int) ((PackedRegisterBank) PSBHR).read(selector);
+        int counter = ((PackedPageHistoryTable) PHT).setDefault(row, 0);
+        Bits.loadLong(SC, counter);
+        return layout.pack(counter, row, 0, selector);
+    }
+
+    /**
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        if (tokenLayout == null) throw new IllegalStateException("no prediction token is issued by the predictor");
+
+        PredictionToken layout = tokenLayout;
+        boolean taken = BranchResult.isTaken(actual);
+        // the counter is read again, the updates of older tokens on the row count too
+        int counter = ((PackedPageHistoryTable) PHT).setDefault(layout.row(token), 0);
+        counter = PackedLogic.count(counter, SC.getLength(), taken, CountMode.SATURATING);
+        Bits.loadLong(SC, counter);
+        ((PackedPageHistoryTable) PHT).put(layout.row(token), counter);
+        ((PackedRegisterBank) PSBHR).shiftIn(layout.historySelector(token), Bit.of(taken));
+    }
+
+    private PredictionToken tokenLayout() {
+        if (tokenLayout == null) {
+            tokenLayout = PredictionToken.layout(SC.getLength(), ((PackedRegisterBank) PSBHR).getRegisterSize(),
+                    0, KSize);
+        }
+        return tokenLayout;
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PHT instanceof PackedPageHistoryTable && PSBHR instanceof PackedRegisterBank
+                && PackedBranchInstruction.addressWidthOf(instruction) <= 64;
     }
 
     private Bit[] getRBAddressLine(Bit[] branchAddress) {
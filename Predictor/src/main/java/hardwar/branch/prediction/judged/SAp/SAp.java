@@ -1,45 +1,70 @@
 package hardwar.branch.prediction.judged.SAp;
 
 
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
 import hardwar.branch.prediction.shared.*;
 import hardwar.branch.prediction.shared.devices.*;
 
 import java.util.Arrays;
 
-public class SAp implements BranchPredictor {
+public class SAp implements PipelinedBranchPredictor {
 
     private final int branchInstructionSize;
     private final int KSize;
     private final ShiftRegister SC;
-    private final RegisterBank PSBHR; // per set branch history register
+    private final ShiftRegisterBank PSBHR; // per set branch history register
     private final Cache<Bit[], Bit[]> PAPHT; // per address predication history table
+    private PredictionToken tokenLayout; // layout of the prediction tokens, created by the first predictToken
 
     public SAp() {
         this(4, 2, 8, 4);
     }
 
     public SAp(int BHRSize, int SCSize, int branchInstructionSize, int KSize) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, StorageMode.MAP);
+    }
+
+    public SAp(int BHRSize, int SCSize, int branchInstructionSize, int KSize, StorageMode storageMode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    public SAp(int BHRSize, int SCSize, int branchInstructionSize, int KSize, StorageMode storageMode,
+               CacheGeometry geometry) {
         this.branchInstructionSize = branchInstructionSize;
         this.KSize = KSize;
 
         // Initialize the PSBHR with the given bhr and Ksize
-        PSBHR = new RegisterBank(KSize, BHRSize);;
+        if (storageMode == StorageMode.PACKED) PSBHR = new PackedRegisterBank(KSize, BHRSize);
+        else PSBHR = new MapRegisterBank(KSize, BHRSize);
 
         // Initializing the PAPHT with BranchInstructionSize as PHT Selector and 2^BHRSize row as each PHT entries
         // number and SCSize as block size
-        PAPHT = new PerAddressPredictionHistoryTable(branchInstructionSize, 1<<BHRSize, SCSize);
+        if (storageMode == StorageMode.PACKED) PAPHT = new PackedPerAddressPredictionHistoryTable(branchInstructionSize, 1 << BHRSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PAPHT = new SetAssociativeCache(geometry, SCSize);
+        else PAPHT = new PerAddressPredictionHistoryTable(branchInstructionSize, 1 << BHRSize, SCSize);
 
         // Initialize the SC register
         Bit[] defaultValue = new Bit[SCSize];
         for (int i = 0; i < SCSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        SC = new SIPORegister("PAg SC", SCSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("PAg SC", SCSize, defaultValue);
+        else SC = new SIPORegister("PAg SC", SCSize, defaultValue);
     }
 
     @Override
     public BranchResult predict(BranchInstruction branchInstruction) {
-        ShiftRegister BHR = PSBHR.read(CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR));
+        if (isPacked(branchInstruction)) {
+            // the numeric API of the packed devices, which does not allocate
+            int address = (int) PackedBranchInstruction.addressOf(branchInstruction);
+            int selector = PackedLogic.hash(address, branchInstructionSize, KSize, HashMode.XOR);
+            int row = (int) ((PackedRegisterBank) PSBHR).read(selector);
+            Bits.loadLong(SC, ((PackedPerAddressPredictionHistoryTable) PAPHT).setDefault(address, row, 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
+
+        ShiftRegister BHR = PSBHR.read(PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR));
 
         Bit[] PCSegment = branchInstruction.getInstructionAddress();
         Bit[] BHRSegment = BHR.read();
@@ -64,7 +89,20 @@ public class SAp implements BranchPredictor {
 
     @Override
     public void update(BranchInstruction branchInstruction, BranchResult actual) {
-        ShiftRegister BHR = PSBHR.read(CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR));
+        if (isPacked(branchInstruction)) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            PackedRegisterBank bank = (PackedRegisterBank) PSBHR;
+            int address = (int) PackedBranchInstruction.addressOf(branchInstruction);
+            int selector = PackedLogic.hash(address, branchInstructionSize, KSize, HashMode.XOR);
+            ((PackedPerAddressPredictionHistoryTable) PAPHT).put(address, (int) bank.read(selector),
+                    (int) Bits.readLong(SC));
+            bank.shiftIn(selector, Bit.of(taken));
+            return;
+        }
+
+        Bit[] selector = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR);
+        ShiftRegister BHR = PSBHR.read(selector);
         Bit[] countResult = CombinationalLogic.count(SC.read(), BranchResult.isTaken(actual), CountMode.SATURATING);
         SC.load(countResult);
 
@@ -80,8 +118,95 @@ public class SAp implements BranchPredictor {
         }
         PAPHT.put(key, SC.read());
 
-        BHR.insert(Bit.of(BranchResult.isTaken(actual)));
-        PSBHR.write(CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR), BHR.read());
+        PSBHR.shiftIn(selector, Bit.of(BranchResult.isTaken(actual)));
+    }
+
+    /**
+     * predict and update the branches with the numeric API of the packed PAPHT and PSBHR.
+     * the map based devices and the addresses which are not branchInstructionSize bits wide
+     * go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (!(PAPHT instanceof PackedPerAddressPredictionHistoryTable) || !(PSBHR instanceof PackedRegisterBank)
+                || addressWidth != branchInstructionSize || from >= to) {
+            PipelinedBranchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPerAddressPredictionHistoryTable table = (PackedPerAddressPredictionHistoryTable) PAPHT;
+        PackedRegisterBank bank = (PackedRegisterBank) PSBHR;
+        long addressMask = (1L << addressWidth) - 1;
+        int SCSize = SC.getLength();
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            int address = (int) (addresses[i] & addressMask);
+            int selector = PackedLogic.hash(address, addressWidth, KSize, HashMode.XOR);
+            int row = (int) bank.read(selector);
+            counter = table.setDefault(address, row, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(address, row, counter);
+            bank.shiftIn(selector, Bit.of(taken));
+        }
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the devices are not packed, the address width is not supported
+     *                                       or the fields of the token are wider than 63 bits
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        if (!isPacked(instruction)) throw new UnsupportedOperationException("prediction tokens need the PACKED storage mode");
+        PredictionToken layout = tokenLayout();
+
+        int address = (int) PackedBranchInstruction.addressOf(instruction);
+        int selector = PackedLogic.hash(address, branchInstructionSize, KSize, HashMode.XOR);
+        int row = (int) ((PackedRegisterBank) PSBHR).read(selector);
+        int counter = ((PackedPerAddressPredictionHistoryTable) PAPHT).setDefault(address, row, 0);
+        Bits.loadLong(SC, counter);
+        return layout.pack(counter, row, address, selector);
+    }
+
+    /**
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        if (tokenLayout == null) throw new IllegalStateException("no prediction token is issued by the predictor");
+
+        PredictionToken layout = tokenLayout;
+        boolean taken = BranchResult.isTaken(actual);
+        // the counter is read again, the updates of older tokens on the row count too
+        int counter = ((PackedPerAddressPredictionHistoryTable) PAPHT).setDefault(layout.selector(token),
+                layout.row(token), 0);
+        counter = PackedLogic.count(counter, SC.getLength(), taken, CountMode.SATURATING);
+        Bits.loadLong(SC, counter);
+        ((PackedPerAddressPredictionHistoryTable) PAPHT).put(layout.selector(token), layout.row(token), counter);
+        ((PackedRegisterBank) PSBHR).shiftIn(layout.historySelector(token), Bit.of(taken));
+    }
+
+    private PredictionToken tokenLayout() {
+        if (tokenLayout == null) {
+            tokenLayout = PredictionToken.layout(SC.getLength(), ((PackedRegisterBank) PSBHR).getRegisterSize(),
+                    branchInstructionSize, KSize);
+        }
+        return tokenLayout;
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PAPHT instanceof PackedPerAddressPredictionHistoryTable && PSBHR instanceof PackedRegisterBank
+                && PackedBranchInstruction.addressWidthOf(instruction) == branchInstructionSize;
     }
 
 
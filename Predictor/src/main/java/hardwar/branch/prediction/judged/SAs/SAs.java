@@ -1,49 +1,75 @@
 package hardwar.branch.prediction.judged.SAs;
 
+import hardwar.branch.prediction.packed.*;
+import hardwar.branch.prediction.packed.devices.*;
 import hardwar.branch.prediction.shared.*;
 import hardwar.branch.prediction.shared.devices.*;
 
 import java.util.Arrays;
 
-public class SAs implements BranchPredictor {
+public class SAs implements PipelinedBranchPredictor {
 
     private final int branchInstructionSize;
     private final int KSize;
     private final ShiftRegister SC;
-    private final RegisterBank PSBHR; // per set branch history register
+    private final ShiftRegisterBank PSBHR; // per set branch history register
     private final Cache<Bit[], Bit[]> PSPHT; // per set predication history table
     private final HashMode hashMode;
+    private PredictionToken tokenLayout; // layout of the prediction tokens, created by the first predictToken
 
     public SAs() {
         this(4, 2, 8, 4, HashMode.XOR);
     }
 
     public SAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashMode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, hashMode, StorageMode.MAP);
+    }
+
+    public SAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashMode,
+               StorageMode storageMode) {
+        this(BHRSize, SCSize, branchInstructionSize, KSize, hashMode, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    public SAs(int BHRSize, int SCSize, int branchInstructionSize, int KSize, HashMode hashMode,
+               StorageMode storageMode, CacheGeometry geometry) {
         this.branchInstructionSize = branchInstructionSize;
         this.KSize = KSize;
         this.hashMode = HashMode.XOR;
 
         // Initialize the PSBHR with the given bhr and branch instruction size
-        PSBHR = new RegisterBank(KSize, BHRSize);
+        if (storageMode == StorageMode.PACKED) PSBHR = new PackedRegisterBank(KSize, BHRSize);
+        else PSBHR = new MapRegisterBank(KSize, BHRSize);
 
         // Initializing the PAPHT with BranchInstructionSize as PHT Selector and 2^BHRSize row as each PHT entries
         // number and SCSize as block size
-        PSPHT = new PerAddressPredictionHistoryTable(KSize, 1<<BHRSize, SCSize);
+        if (storageMode == StorageMode.PACKED) PSPHT = new PackedPerAddressPredictionHistoryTable(KSize, 1 << BHRSize, SCSize);
+        else if (storageMode == StorageMode.BOUNDED) PSPHT = new SetAssociativeCache(geometry, SCSize);
+        else PSPHT = new PerAddressPredictionHistoryTable(KSize, 1 << BHRSize, SCSize);
 
         // Initialize the SC register
         Bit[] defaultValue = new Bit[SCSize];
         for (int i = 0; i < SCSize; i++) {
             defaultValue[i] = Bit.ZERO;
         }
-        SC = new SIPORegister("PAg SC", SCSize, defaultValue);
+        if (storageMode == StorageMode.PACKED) SC = new PackedShiftRegister("PAg SC", SCSize, defaultValue);
+        else SC = new SIPORegister("PAg SC", SCSize, defaultValue);
     }
 
     @Override
     public BranchResult predict(BranchInstruction branchInstruction) {
-        ShiftRegister BHR = PSBHR.read(CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR));
+        if (isPacked(branchInstruction)) {
+            // the numeric API of the packed devices, which does not allocate
+            PackedRegisterBank bank = (PackedRegisterBank) PSBHR;
+            int selector = PackedBranchInstruction.hashAddress(branchInstruction, KSize, hashMode);
+            int row = PackedLogic.hash(bank.read(selector), bank.getRegisterSize(), KSize, hashMode);
+            Bits.loadLong(SC, ((PackedPerAddressPredictionHistoryTable) PSPHT).setDefault(selector, row, KSize, 0));
+            return BranchResult.of(Bits.readLong(SC) >>> (SC.getLength() - 1) != 0);
+        }
 
-        Bit[] PCSegment = CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
-        Bit[] BHRSegment = CombinationalLogic.hash(BHR.read(), KSize, hashMode);
+        ShiftRegister BHR = PSBHR.read(PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode));
+
+        Bit[] PCSegment = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
+        Bit[] BHRSegment = PackedLogic.hash(BHR.read(), KSize, hashMode);
         Bit[] key = new Bit[PCSegment.length + BHRSegment.length];
         for (int i = 0; i < key.length; i++) {
             if (i < PCSegment.length) {
@@ -65,11 +91,23 @@ public class SAs implements BranchPredictor {
 
     @Override
     public void update(BranchInstruction branchInstruction, BranchResult actual) {
-        ShiftRegister BHR = PSBHR.read(CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR));
+        if (isPacked(branchInstruction)) {
+            boolean taken = BranchResult.isTaken(actual);
+            Bits.loadLong(SC, PackedLogic.count((int) Bits.readLong(SC), SC.getLength(), taken, CountMode.SATURATING));
+            PackedRegisterBank bank = (PackedRegisterBank) PSBHR;
+            int selector = PackedBranchInstruction.hashAddress(branchInstruction, KSize, hashMode);
+            ((PackedPerAddressPredictionHistoryTable) PSPHT).put(selector, (int) bank.read(selector),
+                    bank.getRegisterSize(), (int) Bits.readLong(SC));
+            bank.shiftIn(selector, Bit.of(taken));
+            return;
+        }
+
+        Bit[] selector = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
+        ShiftRegister BHR = PSBHR.read(selector);
         Bit[] countResult = CombinationalLogic.count(SC.read(), BranchResult.isTaken(actual), CountMode.SATURATING);
         SC.load(countResult);
 
-        Bit[] PCSegment = CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
+        Bit[] PCSegment = PackedLogic.hash(branchInstruction.getInstructionAddress(), KSize, hashMode);
         Bit[] BHRSegment = BHR.read();
         Bit[] key = new Bit[PCSegment.length + BHRSegment.length];
         for (int i = 0; i < key.length; i++) {
@@ -81,14 +119,106 @@ public class SAs implements BranchPredictor {
         }
         PSPHT.put(key, SC.read());
 
-        BHR.insert(Bit.of(BranchResult.isTaken(actual)));
-        PSBHR.write(CombinationalLogic.hash(branchInstruction.getInstructionAddress(), KSize, HashMode.XOR), BHR.read());
+        PSBHR.shiftIn(selector, Bit.of(BranchResult.isTaken(actual)));
+    }
+
+    /**
+     * predict and update the branches with the numeric API of the packed PSPHT and PSBHR.
+     * like predict and update, the prediction reads the row of the hashed history and the update
+     * writes the row of the history itself, the rows of the two widths are different blocks like in the map.
+     * the map based devices go through the default implementation.
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        if (!(PSPHT instanceof PackedPerAddressPredictionHistoryTable) || !(PSBHR instanceof PackedRegisterBank)
+                || from >= to) {
+            PipelinedBranchPredictor.super.simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+            return;
+        }
+
+        PackedPerAddressPredictionHistoryTable table = (PackedPerAddressPredictionHistoryTable) PSPHT;
+        PackedRegisterBank bank = (PackedRegisterBank) PSBHR;
+        int BHRSize = bank.getRegisterSize();
+        int SCSize = SC.getLength();
+        int counter = 0;
+        for (int i = from; i < to; i++) {
+            int selector = PackedLogic.hash(addresses[i], addressWidth, KSize, hashMode);
+            long history = bank.read(selector);
+            counter = table.setDefault(selector, PackedLogic.hash(history, BHRSize, KSize, hashMode), KSize, 0);
+            predictionsOut[i] = counter >>> (SCSize - 1) != 0;
+
+            boolean taken = outcomes[i];
+            counter = PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING);
+            table.put(selector, (int) history, BHRSize, counter);
+            bank.shiftIn(selector, Bit.of(taken));
+        }
+        Bits.loadLong(SC, counter);
+    }
+
+    /**
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the devices are not packed, the address width is not supported
+     *                                       or the fields of the token are wider than 63 bits
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        if (!isPacked(instruction)) throw new UnsupportedOperationException("prediction tokens need the PACKED storage mode");
+        PredictionToken layout = tokenLayout();
+
+        PackedRegisterBank bank = (PackedRegisterBank) PSBHR;
+        int selector = PackedBranchInstruction.hashAddress(instruction, KSize, hashMode);
+        long history = bank.read(selector);
+        int counter = ((PackedPerAddressPredictionHistoryTable) PSPHT).setDefault(selector,
+                PackedLogic.hash(history, bank.getRegisterSize(), KSize, hashMode), KSize, 0);
+        Bits.loadLong(SC, counter);
+        return layout.pack(counter, (int) history, selector, 0);
+    }
+
+    /**
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        if (tokenLayout == null) throw new IllegalStateException("no prediction token is issued by the predictor");
+
+        PredictionToken layout = tokenLayout;
+        boolean taken = BranchResult.isTaken(actual);
+        // the counter of the hashed history is read again, the updates of older tokens on the row count too
+        int registerSize = ((PackedRegisterBank) PSBHR).getRegisterSize();
+        int counter = ((PackedPerAddressPredictionHistoryTable) PSPHT).setDefault(layout.selector(token),
+                PackedLogic.hash(layout.row(token), registerSize, KSize, hashMode), KSize, 0);
+        counter = PackedLogic.count(counter, SC.getLength(), taken, CountMode.SATURATING);
+        Bits.loadLong(SC, counter);
+        // like update, the counter is written on the row of the history itself,
+        // the table and the history register are both selected by the hashed address
+        ((PackedPerAddressPredictionHistoryTable) PSPHT).put(layout.selector(token), layout.row(token), registerSize,
+                counter);
+        ((PackedRegisterBank) PSBHR).shiftIn(layout.selector(token), Bit.of(taken));
+    }
+
+    private PredictionToken tokenLayout() {
+        if (tokenLayout == null) {
+            tokenLayout = PredictionToken.layout(SC.getLength(), ((PackedRegisterBank) PSBHR).getRegisterSize(),
+                    KSize, 0);
+        }
+        return tokenLayout;
+    }
+
+    /**
+     * @return true if the branch goes through the numeric API of the packed devices
+     */
+    private boolean isPacked(BranchInstruction instruction) {
+        return PSPHT instanceof PackedPerAddressPredictionHistoryTable && PSBHR instanceof PackedRegisterBank
+                && PackedBranchInstruction.addressWidthOf(instruction) <= 64;
     }
 
 
     private Bit[] getAddressLine(Bit[] branchAddress) {
         // hash the branch address
-        return CombinationalLogic.hash(branchAddress, KSize, hashMode);
+        return PackedLogic.hash(branchAddress, KSize, hashMode);
     }
 
     private Bit[] getCacheEntry(Bit[] branchAddress, Bit[] BHRValue) {
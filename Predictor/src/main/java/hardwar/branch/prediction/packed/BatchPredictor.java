@@ -0,0 +1,40 @@
+package hardwar.branch.prediction.packed;
+
+import hardwar.branch.prediction.shared.BranchPredictor;
+
+public interface BatchPredictor extends BranchPredictor {
+    /**
+     * Predict and update a batch of branches, in order. For each branch the prediction is written
+     * to predictionsOut before the predictor learns the actual result.
+     * <p>
+     * The default implementation calls predict and update for every branch, the predictors may replace
+     * it with a loop over their primitive state.
+     *
+     * @param addresses      the branch instruction addresses
+     * @param addressWidth   number of bits of the addresses, at most 64
+     * @param outcomes       the actual results of the branches, true if taken
+     * @param predictionsOut the predicted results of the branches, true if taken
+     * @param from           index of the first branch (inclusive)
+     * @param to             index of the last branch (exclusive)
+     */
+    default void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                          int from, int to) {
+        PredictLoop.run(this, addresses, addressWidth, outcomes, predictionsOut, from, to);
+    }
+
+    /**
+     * Predict and update a batch of branches with any predictor, the batch predictors run their own simulate
+     * and the other ones are called with predict and update for every branch.
+     *
+     * @param predictor the predictor of the branches
+     * @see #simulate(long[], int, boolean[], boolean[], int, int)
+     */
+    static void simulate(BranchPredictor predictor, long[] addresses, int addressWidth, boolean[] outcomes,
+                         boolean[] predictionsOut, int from, int to) {
+        if (predictor instanceof BatchPredictor) {
+            ((BatchPredictor) predictor).simulate(addresses, addressWidth, outcomes, predictionsOut, from, to);
+        } else {
+            PredictLoop.run(predictor, addresses, addressWidth, outcomes, predictionsOut, from, to);
+        }
+    }
+}
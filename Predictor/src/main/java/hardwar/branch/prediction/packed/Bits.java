@@ -0,0 +1,68 @@
+package hardwar.branch.prediction.packed;
+
+/*
+ * conversions between the Bit[] form of the devices and their numeric form
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the first bit of a Bit[] is the most significant bit of the number, like Bit.toNumber.
+ * therefore a number holds at most 64 bits
+ *
+ * 2) the packed shift registers are read and loaded in place, the other registers through their Bit[] form
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.devices.PackedShiftRegister;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.ShiftRegister;
+
+public final class Bits {
+    private Bits() {
+        // make the constructor private to avoid instantiating.
+    }
+
+    /**
+     * Converts the bits to a number like {@link Bit#toNumber(Bit[])}, for arrays up to 64 bits.
+     *
+     * @return the unsigned value of the bits
+     */
+    public static long toLong(Bit[] array) {
+        long result = 0;
+        for (Bit bit : array) result = (result << 1) | (bit == Bit.ONE ? 1 : 0);
+        return result;
+    }
+
+    /**
+     * Converts the given number to an array of bits. The most significant bit is written
+     * in the leftmost element of the array, as expected by {@link Bit#toNumber(Bit[])}.
+     *
+     * @param value  the number to convert
+     * @param length the number of bits in the result
+     * @return the lowest {@code length} bits of the value
+     */
+    public static Bit[] fromNumber(long value, int length) {
+        Bit[] result = new Bit[length];
+        for (int i = length - 1; i >= 0; i--, value >>>= 1) result[i] = (value & 1) == 1 ? Bit.ONE : Bit.ZERO;
+        return result;
+    }
+
+    /**
+     * read the register as a number, the first bit of the register being the most significant one
+     *
+     * @return the lowest 64 bits of the register value
+     */
+    public static long readLong(ShiftRegister register) {
+        if (register instanceof PackedShiftRegister) return ((PackedShiftRegister) register).readLong();
+        return toLong(register.read());
+    }
+
+    /**
+     * load a number into the register, the inverse of {@link #readLong(ShiftRegister)}
+     *
+     * @param value the value to be loaded, the bits above the register length are ignored
+     */
+    public static void loadLong(ShiftRegister register, long value) {
+        if (register instanceof PackedShiftRegister) ((PackedShiftRegister) register).loadLong(value);
+        else register.load(fromNumber(value, register.getLength()));
+    }
+}
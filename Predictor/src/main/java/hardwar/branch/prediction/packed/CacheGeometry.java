@@ -0,0 +1,68 @@
+package hardwar.branch.prediction.packed;
+
+import java.util.Objects;
+
+/**
+ * the sets, ways and replacement policy of the tables of the BOUNDED storage mode. a BOUNDED predictor predicts
+ * like the MAP one only while the entries of each set fit in its ways, past that the evicted counters restart
+ * from their default value
+ */
+public final class CacheGeometry {
+    public static final CacheGeometry DEFAULT = new CacheGeometry(10, 4, ReplacementPolicy.LRU);
+
+    private final int indexSize;
+    private final int ways;
+    private final ReplacementPolicy policy;
+
+    /**
+     * @param indexSize number of entry bits which select the set, at most 24
+     * @param ways      number of blocks of a set, at most 32 and a power of two for PSEUDO_LRU
+     * @param policy    replacement policy of the sets
+     */
+    public CacheGeometry(int indexSize, int ways, ReplacementPolicy policy) {
+        if (indexSize < 0 || indexSize > 24) throw new IllegalArgumentException("index size must be between 0 and 24");
+        if (ways < 1 || ways > 32) throw new IllegalArgumentException("ways must be between 1 and 32");
+        if (policy == ReplacementPolicy.PSEUDO_LRU && Integer.bitCount(ways) != 1)
+            throw new IllegalArgumentException("pseudo LRU needs a power of two ways");
+        this.indexSize = indexSize;
+        this.ways = ways;
+        this.policy = Objects.requireNonNull(policy);
+    }
+
+    public int getIndexSize() {
+        return indexSize;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public ReplacementPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of blocks of a table
+     */
+    public int capacity() {
+        return ways << indexSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CacheGeometry)) return false;
+        CacheGeometry that = (CacheGeometry) o;
+        return indexSize == that.indexSize && ways == that.ways && policy == that.policy;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(indexSize, ways, policy);
+    }
+
+    @Override
+    public String toString() {
+        return (1 << indexSize) + "x" + ways + " " + policy;
+    }
+}
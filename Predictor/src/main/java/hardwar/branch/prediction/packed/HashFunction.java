@@ -0,0 +1,27 @@
+package hardwar.branch.prediction.packed;
+
+import hardwar.branch.prediction.shared.HashMode;
+
+public enum HashFunction {
+    XOR, // using xor method for hashing
+    SIMPLE_CUT, // using first K bit as key value
+    MULTIPLICATIVE, // using the top K bits of the input multiplied by the golden ratio (fibonacci hashing)
+    SKEWED; // using the skewing function of skewed associative caches on the low K bits and the folded upper bits
+
+    private static final HashFunction[] BY_MODE = new HashFunction[HashMode.values().length];
+
+    static {
+        for (HashMode mode : HashMode.values()) BY_MODE[mode.ordinal()] = valueOf(mode.name());
+    }
+
+    /**
+     * the hash modes only name XOR and SIMPLE_CUT, the other functions are selected by the predictors which
+     * take a HashFunction
+     *
+     * @param mode the hash mode of a predictor
+     * @return the hash function of the same name
+     */
+    public static HashFunction of(HashMode mode) {
+        return BY_MODE[mode.ordinal()];
+    }
+}
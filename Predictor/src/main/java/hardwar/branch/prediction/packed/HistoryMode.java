@@ -0,0 +1,6 @@
+package hardwar.branch.prediction.packed;
+
+public enum HistoryMode {
+    RETIRED, // the history takes the outcome of a branch in update
+    SPECULATIVE // the history takes the prediction of a branch in predict and is repaired in update
+}
@@ -0,0 +1,235 @@
+package hardwar.branch.prediction.packed;
+
+/*
+ * a branch instruction which keeps its fields as numbers
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) every field is stored as a long and its width, the first bit of the field being the most significant one.
+ * therefore the fields are at most 64 bits
+ *
+ * 2) the Bit[] getters build their arrays on the first call and keep them until the fields change,
+ * every call returns the kept array like the getters of BranchInstruction, so a caller must not change it.
+ * the numeric getters never allocate
+ *
+ * 3) the fields can be replaced with set, so trace readers can reuse one instance for many branches.
+ * a predictor must not keep a reference to the instruction after update
+ *
+ * 4) the last hashes of the address are remembered until the fields change, one per (output bits, hash mode)
+ * in a small direct mapped table. the predict and update of a branch, and the components of a hybrid predictor
+ * which hash the address the same way, compute the hash once
+ *
+ * 5) the static accessors give the numeric fields of any BranchInstruction, the packed ones without allocating
+ *
+ * 6) the base class keeps no Bit[] fields for a packed instruction, so toString is built from the Bit[] getters
+ * -------------------------------------------------------
+ */
+
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.HashMode;
+
+import java.util.Arrays;
+
+public class PackedBranchInstruction extends BranchInstruction {
+    private long opcode;
+    private long instructionAddress;
+    private long jumpAddress;
+    private int opcodeWidth;
+    private int instructionAddressWidth;
+    private int jumpAddressWidth;
+
+    // Bit[] views of the fields, built lazily
+    private Bit[] opcodeBits;
+    private Bit[] instructionAddressBits;
+    private Bit[] jumpAddressBits;
+
+    // remembered hashes of the instruction address, a key is -1 if its slot is empty
+    private final int[] hashKeys = {-1, -1, -1, -1};
+    private final int[] hashes = new int[4];
+
+    /**
+     * Creates an instruction with empty fields, to be filled with set
+     */
+    public PackedBranchInstruction() {
+        super(null, null, null);
+    }
+
+    public PackedBranchInstruction(long opcode, int opcodeWidth, long instructionAddress, int instructionAddressWidth,
+                                   long jumpAddress, int jumpAddressWidth) {
+        super(null, null, null);
+        set(opcode, opcodeWidth, instructionAddress, instructionAddressWidth, jumpAddress, jumpAddressWidth);
+    }
+
+    /**
+     * @param instruction the instruction to be copied
+     * @return a packed copy of the instruction
+     */
+    public static PackedBranchInstruction of(BranchInstruction instruction) {
+        return new PackedBranchInstruction(
+                opcodeOf(instruction), opcodeWidthOf(instruction),
+                addressOf(instruction), addressWidthOf(instruction),
+                jumpAddressOf(instruction), jumpAddressWidthOf(instruction));
+    }
+
+    /**
+     * @return the opcode as a number, the first bit being the most significant one (lowest 64 bits)
+     */
+    public static long opcodeOf(BranchInstruction instruction) {
+        if (instruction instanceof PackedBranchInstruction) return ((PackedBranchInstruction) instruction).opcode;
+        return Bits.toLong(instruction.getOpcode());
+    }
+
+    /**
+     * @return the instruction address as a number, the first bit being the most significant one (lowest 64 bits)
+     */
+    public static long addressOf(BranchInstruction instruction) {
+        if (instruction instanceof PackedBranchInstruction) {
+            return ((PackedBranchInstruction) instruction).instructionAddress;
+        }
+        return Bits.toLong(instruction.getInstructionAddress());
+    }
+
+    /**
+     * @return the jump address as a number, the first bit being the most significant one (lowest 64 bits)
+     */
+    public static long jumpAddressOf(BranchInstruction instruction) {
+        if (instruction instanceof PackedBranchInstruction) return ((PackedBranchInstruction) instruction).jumpAddress;
+        return Bits.toLong(instruction.getJumpAddress());
+    }
+
+    public static int opcodeWidthOf(BranchInstruction instruction) {
+        if (instruction instanceof PackedBranchInstruction) return ((PackedBranchInstruction) instruction).opcodeWidth;
+        return instruction.getOpcode().length;
+    }
+
+    public static int addressWidthOf(BranchInstruction instruction) {
+        if (instruction instanceof PackedBranchInstruction) {
+            return ((PackedBranchInstruction) instruction).instructionAddressWidth;
+        }
+        return instruction.getInstructionAddress().length;
+    }
+
+    public static int jumpAddressWidthOf(BranchInstruction instruction) {
+        if (instruction instanceof PackedBranchInstruction) {
+            return ((PackedBranchInstruction) instruction).jumpAddressWidth;
+        }
+        return instruction.getJumpAddress().length;
+    }
+
+    /**
+     * the numeric hash of the instruction address, see PackedLogic.hash. a packed instruction remembers it
+     *
+     * @param outBitNumber number of output bits, at most 31
+     * @param mode         hash mode
+     * @return hashed value of the instruction address, which must be at most 64 bits
+     */
+    public static int hashAddress(BranchInstruction instruction, int outBitNumber, HashMode mode) {
+        return hashAddress(instruction, outBitNumber, HashFunction.of(mode));
+    }
+
+    /**
+     * the numeric hash of the instruction address, see PackedLogic.hash. a packed instruction remembers it
+     *
+     * @param outBitNumber number of output bits, at most 31
+     * @param function     hash function
+     * @return hashed value of the instruction address, which must be at most 64 bits
+     */
+    public static int hashAddress(BranchInstruction instruction, int outBitNumber, HashFunction function) {
+        if (instruction instanceof PackedBranchInstruction) {
+            return ((PackedBranchInstruction) instruction).hashInstructionAddress(outBitNumber, function);
+        }
+        return PackedLogic.hash(addressOf(instruction), addressWidthOf(instruction), outBitNumber, function);
+    }
+
+    /**
+     * replace all the fields of the instruction
+     *
+     * @throws IllegalArgumentException if a width is not between 0 and 64
+     */
+    public void set(long opcode, int opcodeWidth, long instructionAddress, int instructionAddressWidth,
+                    long jumpAddress, int jumpAddressWidth) {
+        this.opcode = mask(opcode, opcodeWidth);
+        this.instructionAddress = mask(instructionAddress, instructionAddressWidth);
+        this.jumpAddress = mask(jumpAddress, jumpAddressWidth);
+        this.opcodeWidth = opcodeWidth;
+        this.instructionAddressWidth = instructionAddressWidth;
+        this.jumpAddressWidth = jumpAddressWidth;
+        this.opcodeBits = null;
+        this.instructionAddressBits = null;
+        this.jumpAddressBits = null;
+        Arrays.fill(hashKeys, -1);
+    }
+
+    private static long mask(long value, int width) {
+        if (width < 0 || width > 64) throw new IllegalArgumentException("field width must be between 0 and 64");
+        return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    @Override
+    public Bit[] getOpcode() {
+        if (opcodeBits == null) opcodeBits = Bits.fromNumber(opcode, opcodeWidth);
+        return opcodeBits;
+    }
+
+    @Override
+    public Bit[] getInstructionAddress() {
+        if (instructionAddressBits == null) {
+            instructionAddressBits = Bits.fromNumber(instructionAddress, instructionAddressWidth);
+        }
+        return instructionAddressBits;
+    }
+
+    @Override
+    public Bit[] getJumpAddress() {
+        if (jumpAddressBits == null) jumpAddressBits = Bits.fromNumber(jumpAddress, jumpAddressWidth);
+        return jumpAddressBits;
+    }
+
+    @Override
+    public String toString() {
+        return "BranchInstruction{" +
+                "opcode=" + Bit.arrayToString(getOpcode()) +
+                ", sourceAddress=" + Bit.arrayToString(getInstructionAddress()) +
+                ", targetAddress=" + Bit.arrayToString(getJumpAddress()) +
+                '}';
+    }
+
+    /**
+     * the hash of the instruction address, computed once per (output bits, hash function) until the fields change
+     */
+    public int hashInstructionAddress(int outBitNumber, HashFunction function) {
+        int key = outBitNumber << 2 | function.ordinal();
+        int slot = (outBitNumber ^ function.ordinal()) & 3;
+        if (hashKeys[slot] == key) return hashes[slot];
+
+        int hash = PackedLogic.hash(instructionAddress, instructionAddressWidth, outBitNumber, function);
+        hashKeys[slot] = key;
+        hashes[slot] = hash;
+        return hash;
+    }
+
+    public long getOpcodeBits() {
+        return opcode;
+    }
+
+    public long getInstructionAddressBits() {
+        return instructionAddress;
+    }
+
+    public long getJumpAddressBits() {
+        return jumpAddress;
+    }
+
+    public int getOpcodeWidth() {
+        return opcodeWidth;
+    }
+
+    public int getInstructionAddressWidth() {
+        return instructionAddressWidth;
+    }
+
+    public int getJumpAddressWidth() {
+        return jumpAddressWidth;
+    }
+}
@@ -0,0 +1,29 @@
+package hardwar.branch.prediction.packed;
+
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+
+public interface PipelinedBranchPredictor extends BatchPredictor {
+    /**
+     * Predict if the branch is taken or not, and return everything the update of the branch needs
+     * (the table indices and the counter value) in a token, so many predictions can be in flight at once.
+     * The predicted result is read with {@link PredictionToken#result(long)}.
+     *
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws UnsupportedOperationException if the predictor can not issue tokens in its configuration
+     */
+    long predictToken(BranchInstruction instruction);
+
+    /**
+     * Update the predictor with the actual result of a branch which was predicted with predictToken.
+     * The tokens should be updated in program order, since the history registers take the results
+     * in the order of the updates. The update counts the counter which the row of the token holds at the update,
+     * not the one in the token, so the updates of many tokens in flight on the same row all take effect.
+     *
+     * @param token  the prediction token of the branch
+     * @param result the actual result of branch (taken or not)
+     */
+    void update(long token, BranchResult result);
+}
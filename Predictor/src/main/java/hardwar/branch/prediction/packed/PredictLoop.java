@@ -0,0 +1,26 @@
+package hardwar.branch.prediction.packed;
+
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+
+/**
+ * the batch simulation of the predictors which have no loop of their own: predict and update every branch
+ */
+final class PredictLoop {
+    // the instruction which carries the branches of a batch, one per thread so a batch allocates nothing
+    private static final ThreadLocal<PackedBranchInstruction> INSTRUCTION =
+            ThreadLocal.withInitial(PackedBranchInstruction::new);
+
+    private PredictLoop() {
+    }
+
+    static void run(BranchPredictor predictor, long[] addresses, int addressWidth, boolean[] outcomes,
+                    boolean[] predictionsOut, int from, int to) {
+        PackedBranchInstruction instruction = INSTRUCTION.get();
+        for (int i = from; i < to; i++) {
+            instruction.set(0, 0, addresses[i], addressWidth, 0, 0);
+            predictionsOut[i] = BranchResult.isTaken(predictor.predict(instruction));
+            predictor.update(instruction, BranchResult.of(outcomes[i]));
+        }
+    }
+}
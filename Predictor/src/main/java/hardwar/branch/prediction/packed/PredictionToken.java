@@ -0,0 +1,107 @@
+package hardwar.branch.prediction.packed;
+
+import hardwar.branch.prediction.shared.BranchResult;
+
+/*
+ * the layout of a prediction token
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a token is a long. the most significant bit is the predicted result (1 for taken), so the prediction of any
+ * token is read without knowing its layout
+ *
+ * 2) the other 63 bits hold, from the least significant side: the counter value which the prediction read,
+ * the row of the table, the selector of the table and the selector of the history register.
+ * each predictor picks the width of the fields, a field which the predictor does not use has no bits
+ * -------------------------------------------------------
+ */
+
+
+public final class PredictionToken {
+    private final int counterBits;
+    private final int rowBits;
+    private final int selectorBits;
+    private final int historySelectorBits;
+    private final int rowShift;
+    private final int selectorShift;
+    private final int historySelectorShift;
+
+    /**
+     * @param counterBits         number of bits of the counter
+     * @param rowBits             number of bits of the table row
+     * @param selectorBits        number of bits of the table selector
+     * @param historySelectorBits number of bits of the history register selector
+     * @throws IllegalArgumentException if the fields do not fit in 63 bits
+     */
+    public PredictionToken(int counterBits, int rowBits, int selectorBits, int historySelectorBits) {
+        if (counterBits < 1 || rowBits < 0 || selectorBits < 0 || historySelectorBits < 0)
+            throw new IllegalArgumentException("invalid token field width");
+        if (counterBits > 32 || rowBits > 32 || selectorBits > 32 || historySelectorBits > 32
+                || counterBits + rowBits + selectorBits + historySelectorBits > 63)
+            throw new IllegalArgumentException("the fields of the token are wider than 63 bits");
+
+        this.counterBits = counterBits;
+        this.rowBits = rowBits;
+        this.selectorBits = selectorBits;
+        this.historySelectorBits = historySelectorBits;
+        this.rowShift = counterBits;
+        this.selectorShift = rowShift + rowBits;
+        this.historySelectorShift = selectorShift + selectorBits;
+    }
+
+    /**
+     * the layout of the tokens of a predictor, which checks the widths before the predictor issues any token
+     *
+     * @throws UnsupportedOperationException if the fields do not fit in 63 bits
+     * @see #PredictionToken(int, int, int, int)
+     */
+    public static PredictionToken layout(int counterBits, int rowBits, int selectorBits, int historySelectorBits) {
+        if (counterBits > 32 || rowBits > 32 || selectorBits > 32 || historySelectorBits > 32
+                || counterBits + rowBits + selectorBits + historySelectorBits > 63)
+            throw new UnsupportedOperationException("the fields of the prediction token are wider than 63 bits: "
+                    + counterBits + "+" + rowBits + "+" + selectorBits + "+" + historySelectorBits);
+        return new PredictionToken(counterBits, rowBits, selectorBits, historySelectorBits);
+    }
+
+    /**
+     * @return the token of a prediction, the predicted result is the most significant bit of the counter
+     */
+    public long pack(int counter, int row, int selector, int historySelector) {
+        long token = field(counter, counterBits)
+                | field(row, rowBits) << rowShift
+                | field(selector, selectorBits) << selectorShift
+                | field(historySelector, historySelectorBits) << historySelectorShift;
+        return (counter >>> (counterBits - 1) & 1) != 0 ? token | Long.MIN_VALUE : token;
+    }
+
+    public int counter(long token) {
+        return (int) (token & mask(counterBits));
+    }
+
+    public int row(long token) {
+        return (int) (token >>> rowShift & mask(rowBits));
+    }
+
+    public int selector(long token) {
+        return (int) (token >>> selectorShift & mask(selectorBits));
+    }
+
+    public int historySelector(long token) {
+        return (int) (token >>> historySelectorShift & mask(historySelectorBits));
+    }
+
+    /**
+     * @param token a prediction token of any layout
+     * @return the predicted result of the token
+     */
+    public static BranchResult result(long token) {
+        return BranchResult.of(token < 0);
+    }
+
+    private static long field(int value, int bits) {
+        return value & mask(bits);
+    }
+
+    private static long mask(int bits) {
+        return (1L << bits) - 1;
+    }
+}
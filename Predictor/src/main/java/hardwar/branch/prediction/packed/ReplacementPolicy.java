@@ -0,0 +1,8 @@
+package hardwar.branch.prediction.packed;
+
+public enum ReplacementPolicy {
+    LRU, // replace the least recently used way of the set
+    PSEUDO_LRU, // follow the bits of a binary tree over the ways, each bit points away from the last used half
+    RANDOM, // replace a pseudo random way, from a fixed seed so the simulations repeat
+    FIFO // replace the way which was filled first, the hits do not matter
+}
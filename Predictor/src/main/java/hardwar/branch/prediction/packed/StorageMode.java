@@ -0,0 +1,7 @@
+package hardwar.branch.prediction.packed;
+
+public enum StorageMode {
+    MAP, // string keyed maps, the reference model of the devices
+    PACKED, // primitive arrays indexed by the numeric value of the address
+    BOUNDED // set associative tagged tables of a CacheGeometry, the registers are the map based ones
+}
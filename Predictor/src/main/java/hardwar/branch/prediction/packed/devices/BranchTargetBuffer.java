@@ -0,0 +1,150 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a set associative branch target buffer
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the low indexSize bits of the branch address select the set, the next tagSize bits are the tag.
+ * a tag shorter than the rest of the address lets different branches alias on one entry, like real BTBs
+ *
+ * 2) an entry is the tag, the target and a valid bit, each in a primitive array indexed by set * ways + way.
+ * a lookup is one pass over the ways of the set and never allocates
+ *
+ * 3) a hit and a new entry are uses of the entry for the replacement policy. a new branch takes an empty way of its set
+ * if there is one, otherwise the victim of the replacement unit
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+
+import java.util.Arrays;
+
+public class BranchTargetBuffer {
+    private final int indexSize;
+    private final int ways;
+    private final int tagSize;
+    private final long tagMask;
+    private final long[] tags;
+    private final long[] targets;
+    private final boolean[] valid;
+    private final ReplacementUnit replacement;
+
+    /**
+     * @param indexSize number of address bits which select the set, at most 24
+     * @param ways      number of entries of a set
+     * @param tagSize   number of address bits of a tag, between 1 and 64
+     * @param policy    replacement policy of the sets
+     */
+    public BranchTargetBuffer(int indexSize, int ways, int tagSize, ReplacementPolicy policy) {
+        if (indexSize < 0 || indexSize > 24) throw new IllegalArgumentException("index size must be between 0 and 24");
+        if (tagSize < 1 || tagSize > 64) throw new IllegalArgumentException("tag size must be between 1 and 64");
+
+        int sets = 1 << indexSize;
+        this.replacement = new ReplacementUnit(sets, ways, policy);
+        this.indexSize = indexSize;
+        this.ways = ways;
+        this.tagSize = tagSize;
+        this.tagMask = tagSize == 64 ? -1L : (1L << tagSize) - 1;
+        this.tags = new long[sets * ways];
+        this.targets = new long[sets * ways];
+        this.valid = new boolean[sets * ways];
+    }
+
+    /**
+     * @param address the branch address
+     * @return the entry of the branch, or -1 if the branch is not in the buffer
+     */
+    public int find(long address) {
+        int set = set(address);
+        long tag = tag(address);
+        int base = set * ways;
+        for (int way = 0; way < ways; way++) {
+            if (valid[base + way] && tags[base + way] == tag) {
+                replacement.touch(set, way);
+                return base + way;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param entry an entry which find returned
+     * @return the target of the entry
+     */
+    public long getTarget(int entry) {
+        return targets[entry];
+    }
+
+    /**
+     * write the target of a branch, the branch replaces an entry of its set if it is not in the buffer
+     *
+     * @param address the branch address
+     * @param target  the target address
+     * @return the entry of the branch
+     */
+    public int put(long address, long target) {
+        int entry = find(address);
+        if (entry < 0) {
+            int set = set(address);
+            int way = empty(set);
+            if (way < 0) way = replacement.victim(set);
+            replacement.fill(set, way);
+
+            entry = set * ways + way;
+            tags[entry] = tag(address);
+            valid[entry] = true;
+        }
+        targets[entry] = target;
+        return entry;
+    }
+
+    /**
+     * @return number of valid entries
+     */
+    public int countValid() {
+        int count = 0;
+        for (boolean entry : valid) if (entry) count++;
+        return count;
+    }
+
+    private int set(long address) {
+        return (int) address & ((1 << indexSize) - 1);
+    }
+
+    private long tag(long address) {
+        return address >>> indexSize & tagMask;
+    }
+
+    /**
+     * @return an empty way of the set, or -1 if all of them are valid
+     */
+    private int empty(int set) {
+        int base = set * ways;
+        for (int way = 0; way < ways; way++) if (!valid[base + way]) return way;
+        return -1;
+    }
+
+    public int getSets() {
+        return 1 << indexSize;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getTagSize() {
+        return tagSize;
+    }
+
+    public ReplacementPolicy getPolicy() {
+        return replacement.getPolicy();
+    }
+
+    public void clear() {
+        Arrays.fill(tags, 0);
+        Arrays.fill(targets, 0);
+        Arrays.fill(valid, false);
+        replacement.clear();
+    }
+}
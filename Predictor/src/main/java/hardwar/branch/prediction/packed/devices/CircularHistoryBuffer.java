@@ -0,0 +1,78 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a long global history, one bit per branch outcome, in a circular buffer of long words
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the buffer keeps the newest `capacity` outcomes, the capacity is rounded up to a power of two of at least 64.
+ * inserting a bit overwrites the oldest one, nothing is shifted
+ *
+ * 2) the bits are read by their age: age 0 is the newest outcome. the outcomes which are older than
+ * the capacity, and the ones before the first insert, read as zero
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.Monitorable;
+
+import java.util.Arrays;
+
+public class CircularHistoryBuffer implements Monitorable {
+    private final long[] words;
+    private final int mask; // capacity - 1
+    private int head; // position of the newest bit
+
+    /**
+     * @param capacity number of outcomes which the buffer keeps
+     */
+    public CircularHistoryBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and " + (1 << 30));
+
+        int size = Math.max(64, Integer.highestOneBit(capacity - 1) << 1);
+        this.words = new long[size >>> 6];
+        this.mask = size - 1;
+    }
+
+    /**
+     * insert the newest outcome
+     *
+     * @param bit true if the branch is taken
+     */
+    public void insert(boolean bit) {
+        head = (head + 1) & mask;
+        words[head >>> 6] = words[head >>> 6] & ~(1L << head) | (bit ? 1L : 0L) << head;
+    }
+
+    /**
+     * @param age 0 for the newest outcome
+     * @return the outcome of that age
+     */
+    public boolean get(int age) {
+        int position = (head - age) & mask;
+        return (words[position >>> 6] >>> position & 1) != 0;
+    }
+
+    /**
+     * @return number of outcomes which the buffer keeps
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+        head = 0;
+    }
+
+    /**
+     * @return the newest 64 outcomes, the newest one first
+     */
+    @Override
+    public String monitor() {
+        Bit[] bits = new Bit[Math.min(64, getCapacity())];
+        for (int age = 0; age < bits.length; age++) bits[age] = Bit.of(get(age));
+        return "history: " + Bit.arrayToString(bits) + "\n";
+    }
+}
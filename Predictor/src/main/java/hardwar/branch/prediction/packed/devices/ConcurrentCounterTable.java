@@ -0,0 +1,181 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a counter table which many threads can read and count at once
+ * it plays the role of a packed PHT (no selector bits) or PAPHT, but it has no Bit[] API
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the counters are packed in the words of an AtomicLongArray, 64 / width counters per word, and a counter never
+ * spans two words. so a counter is counted by a compare-and-set of its word, there is no lock
+ *
+ * 2) the counter of a selector and row is at index selector * nRows + row. all the PHTs are allocated at once and
+ * every counter starts as zero, which is the default block of the predictors
+ *
+ * 3) a counter shows up in the monitor after it is read or counted, like the rows which are associated
+ * in the packed tables. the presence bits are set with a compare-and-set as well
+ *
+ * 4) a count is atomic: two threads which count the same counter at the same time both take effect, one after the other
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.CountMode;
+import hardwar.branch.prediction.shared.Monitorable;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ConcurrentCounterTable implements Monitorable {
+    private static final int MAX_SELECTOR = 24; // widest selector of the table
+
+    private final int selectorSize; // number of bits which select the PHT
+    private final int nRows; // number of rows per PHT
+    private final int width; // number of bits of a counter
+    private final int perWord; // counters per word
+    private final long mask;
+    private final AtomicLongArray words;
+    private final AtomicLongArray present; // one bit per counter which is read or counted
+
+    /**
+     * @param selectorSize number of bits which select the PHT, zero for a single PHT
+     * @param nRows        number of rows per PHT
+     * @param width        number of bits of a counter, at most 32
+     */
+    public ConcurrentCounterTable(int selectorSize, int nRows, int width) {
+        if (selectorSize < 0 || selectorSize > MAX_SELECTOR)
+            throw new IllegalArgumentException("PHT selector is too wide for a concurrent table");
+        if (nRows < 1) throw new IllegalArgumentException("number of rows must be positive");
+        if (width < 1 || width > 32) throw new IllegalArgumentException("counter width must be between 1 and 32");
+
+        long size = (long) nRows << selectorSize;
+        int perWord = 64 / width;
+        long nWords = (size + perWord - 1) / perWord;
+        if (size > Integer.MAX_VALUE || nWords > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("too many counters for a concurrent table");
+
+        this.selectorSize = selectorSize;
+        this.nRows = nRows;
+        this.width = width;
+        this.perWord = perWord;
+        this.mask = (1L << width) - 1;
+        this.words = new AtomicLongArray((int) nWords);
+        this.present = new AtomicLongArray((int) ((size + 63) >>> 6));
+    }
+
+    /**
+     * @param selector the PHT selector
+     * @param row      the row of the PHT
+     * @return the counter value
+     */
+    public int read(int selector, int row) {
+        int index = index(selector, row);
+        touch(index);
+        return (int) (words.get(index / perWord) >>> shift(index) & mask);
+    }
+
+    /**
+     * pass the counter through the counter circuit, atomically
+     *
+     * @param selector the PHT selector
+     * @param row      the row of the PHT
+     * @param up       the counter direction
+     * @param mode     counter mode
+     * @return the next counter value
+     */
+    public int count(int selector, int row, boolean up, CountMode mode) {
+        int index = index(selector, row);
+        touch(index);
+
+        int word = index / perWord;
+        int shift = shift(index);
+        while (true) {
+            long current = words.get(word);
+            int value = (int) (current >>> shift & mask);
+            int next = PackedLogic.count(value, width, up, mode);
+            if (next == value) return value;
+            long updated = (current & ~(mask << shift)) | ((long) next << shift);
+            if (words.compareAndSet(word, current, updated)) return next;
+        }
+    }
+
+    /**
+     * @return number of bits which select the PHT
+     */
+    public int getSelectorSize() {
+        return selectorSize;
+    }
+
+    /**
+     * @return number of rows per PHT
+     */
+    public int getRows() {
+        return nRows;
+    }
+
+    /**
+     * @return number of bits of a counter
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    private int index(int selector, int row) {
+        if (selector < 0 || selector >= 1 << selectorSize)
+            throw new IndexOutOfBoundsException("PHT selector is out of the table range");
+        if (row < 0 || row >= nRows) throw new IndexOutOfBoundsException("PHT entry is out of the table range");
+        return selector * nRows + row;
+    }
+
+    private int shift(int index) {
+        return (index % perWord) * width;
+    }
+
+    private void touch(int index) {
+        long bit = 1L << index;
+        while (true) {
+            long current = present.get(index >>> 6);
+            if ((current & bit) != 0 || present.compareAndSet(index >>> 6, current, current | bit)) return;
+        }
+    }
+
+    private boolean isPresent(int index) {
+        return (present.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the PHTs in the format of the packed tables, the PHTs which have no counter shown are skipped
+     */
+    @Override
+    public String monitor() {
+        int rowLength = nRows > 1 ? 32 - Integer.numberOfLeadingZeros(nRows - 1) : 1;
+        StringBuilder sb = new StringBuilder();
+        for (int selector = 0; selector < 1 << selectorSize; selector++) {
+            int from = selector * nRows;
+            boolean used = false;
+            for (int i = from; i < from + nRows && !used; i++) used = isPresent(i);
+            if (!used) continue;
+
+            if (selectorSize > 0) {
+                sb.append("PHT for selector: ");
+                sb.append(Bit.arrayToString(Bits.fromNumber(selector, selectorSize)));
+                sb.append("\n");
+            }
+            sb.append("+----------------------------------+\n");
+            sb.append(String.format("| %-19s | %-10s |\n", "Address", "Block"));
+            sb.append("|---------------------|------------|\n");
+            for (int row = 0; row < nRows; row++) {
+                if (!isPresent(from + row)) continue;
+
+                String address = Bit.arrayToString(Bits.fromNumber(row, rowLength));
+                if (address.length() > 16) address = address.substring(0, 16) + "...";
+                String block = Bit.arrayToString(Bits.fromNumber(words.get((from + row) / perWord)
+                        >>> shift(from + row) & mask, width));
+                sb.append(String.format("| %-19s | %-10s |\n", address, block));
+                sb.append("+----------------------------------+\n");
+            }
+            if (selectorSize > 0) sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
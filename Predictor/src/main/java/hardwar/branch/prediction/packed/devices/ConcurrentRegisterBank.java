@@ -0,0 +1,130 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a register bank whose registers many threads can read and shift at once
+ * it plays the role of a packed register bank, but it has no Bit[] API
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) each register is a number of at most 64 bits in an AtomicLongArray, the first bit of the register
+ * is the most significant one. a shift is a compare-and-set of the register, there is no lock
+ *
+ * 2) in the striped layout each register has a cache line (8 longs) of its own, so the threads which shift
+ * different registers do not share lines. it is meant for a few busy registers, such as one global history
+ * per hardware thread. the dense layout keeps the registers back to back, for the large per address banks
+ *
+ * 3) every register starts as zero and shows up in the monitor after it is read or shifted
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.Monitorable;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ConcurrentRegisterBank implements Monitorable {
+    private static final int MAX_SELECTOR = 24; // widest selector of the bank
+    private static final int LINE = 8; // longs per cache line
+
+    private final int selectorSize;
+    private final int registerSize;
+    private final int stride; // longs between two registers
+    private final AtomicLongArray registers;
+    private final AtomicLongArray initialized; // one bit per register which is read or shifted
+
+    /**
+     * @param selectorSize number of bits which is needed for selecting a register
+     * @param registerSize number of bits of each register, at most 64
+     * @param striped      true to give each register a cache line of its own
+     */
+    public ConcurrentRegisterBank(int selectorSize, int registerSize, boolean striped) {
+        if (selectorSize < 0 || selectorSize > MAX_SELECTOR)
+            throw new IllegalArgumentException("selector is too wide for a concurrent register bank");
+        if (registerSize < 1 || registerSize > 64)
+            throw new IllegalArgumentException("register size must be between 1 and 64");
+        if (striped && selectorSize > MAX_SELECTOR - 3)
+            throw new IllegalArgumentException("selector is too wide for a striped register bank");
+
+        this.selectorSize = selectorSize;
+        this.registerSize = registerSize;
+        this.stride = striped ? LINE : 1;
+        this.registers = new AtomicLongArray((1 << selectorSize) * stride);
+        this.initialized = new AtomicLongArray(((1 << selectorSize) + 63) >>> 6);
+    }
+
+    /**
+     * @param selector the index of the register
+     * @return the register value, the first bit of the register being the most significant one
+     */
+    public long read(int selector) {
+        touch(check(selector));
+        return registers.get(selector * stride);
+    }
+
+    /**
+     * insert a bit at the beginning of the register, atomically
+     *
+     * @param selector the index of the register
+     * @param bit      the bit which is inserted in the register
+     * @return the register value after the shift
+     */
+    public long shiftIn(int selector, Bit bit) {
+        touch(check(selector));
+        long in = (bit == Bit.ONE ? 1L : 0L) << (registerSize - 1);
+        int index = selector * stride;
+        while (true) {
+            long current = registers.get(index);
+            long next = (current >>> 1) | in;
+            if (registers.compareAndSet(index, current, next)) return next;
+        }
+    }
+
+    /**
+     * @return number of bits which is needed for selecting a register
+     */
+    public int getSelectorSize() {
+        return selectorSize;
+    }
+
+    /**
+     * @return number of bits of each register
+     */
+    public int getRegisterSize() {
+        return registerSize;
+    }
+
+    private int check(int selector) {
+        if (selector < 0 || selector >= 1 << selectorSize)
+            throw new IndexOutOfBoundsException("register bank selector is out of range");
+        return selector;
+    }
+
+    private void touch(int selector) {
+        long bit = 1L << selector;
+        while (true) {
+            long current = initialized.get(selector >>> 6);
+            if ((current & bit) != 0 || initialized.compareAndSet(selector >>> 6, current, current | bit)) return;
+        }
+    }
+
+    @Override
+    public String monitor() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("+----------------------------------+\n");
+        sb.append(String.format("| %-19s | %-10s |\n", "Register Number", "Value"));
+        sb.append("|---------------------|------------|\n");
+
+        for (int selector = 0; selector < 1 << selectorSize; selector++) {
+            if ((initialized.get(selector >>> 6) & (1L << selector)) == 0) continue;
+
+            String regNumber = Bit.arrayToString(Bits.fromNumber(selector, selectorSize));
+            if (regNumber.length() > 16) regNumber = regNumber.substring(0, 16) + "...";
+            Bit[] block = Bits.fromNumber(registers.get(selector * stride), registerSize);
+            sb.append(String.format("| %-19s | %-10s |\n", regNumber, Bit.arrayToString(block)));
+            sb.append("+----------------------------------+\n");
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * the newest `length` bits of a long global history folded (xor) into `width` bits
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the bit of age i is folded into bit (i mod width) of the register, so the register is the xor of
+ * the consecutive width-bit chunks of the history, the newest chunk being the first one
+ *
+ * 2) the register is updated incrementally with the outcome which enters the history and the one which leaves it
+ * (the bit of age `length` after the insert), so an update costs the same for any history length
+ * -------------------------------------------------------
+ */
+
+
+public class FoldedHistoryRegister {
+    private final int length;
+    private final int width;
+    private final int outPosition; // where the leaving bit lands after the shift
+    private final int mask;
+    private int value;
+
+    /**
+     * @param length number of history bits which are folded
+     * @param width  number of bits of the register, between 1 and 30
+     */
+    public FoldedHistoryRegister(int length, int width) {
+        if (length < 0) throw new IllegalArgumentException("history length can not be negative");
+        if (width < 1 || width > 30) throw new IllegalArgumentException("register width must be between 1 and 30");
+
+        this.length = length;
+        this.width = width;
+        this.outPosition = length % width;
+        this.mask = (1 << width) - 1;
+    }
+
+    /**
+     * @param in  the outcome which enters the history
+     * @param out the outcome which leaves the folded window, the one of age `length` after the insert
+     */
+    public void update(boolean in, boolean out) {
+        if (length == 0) return;
+
+        // branch free, the outcomes are hard to predict for the host as well
+        int v = (value << 1 | (in ? 1 : 0)) ^ (out ? 1 : 0) << outPosition;
+        value = (v ^ v >>> width) & mask;
+    }
+
+    /**
+     * @return the folded history
+     */
+    public int get() {
+        return value;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void clear() {
+        value = 0;
+    }
+}
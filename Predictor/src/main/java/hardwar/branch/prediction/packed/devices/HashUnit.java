@@ -0,0 +1,88 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a hash circuit with a fixed configuration and a small memory of its recent results
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the unit always hashes inBitNumber bits to outBitNumber bits with the same hash mode,
+ * see PackedLogic.hash for the hash functions
+ *
+ * 2) the results are remembered in a direct mapped table indexed by the low bits of the input,
+ * so the branches of a loop are hashed once. the cheap hash modes (SIMPLE_CUT and MULTIPLICATIVE)
+ * are computed every time
+ *
+ * 3) the unit is not thread safe, like the predictors which own it
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.HashFunction;
+
+import java.util.Arrays;
+
+public final class HashUnit {
+    private static final int DEFAULT_SLOTS = 256;
+
+    private final int inBitNumber;
+    private final int outBitNumber;
+    private final HashFunction mode;
+    private final boolean memoized;
+    private final long[] inputs; // the input of each slot
+    private final int[] outputs; // the hash of each slot, -1 if the slot is empty
+    private final int slotMask;
+
+    public HashUnit(int inBitNumber, int outBitNumber, HashFunction mode) {
+        this(inBitNumber, outBitNumber, mode, DEFAULT_SLOTS);
+    }
+
+    /**
+     * @param inBitNumber  number of input bits, at most 64
+     * @param outBitNumber number of output bits, at most 31
+     * @param mode         hash function
+     * @param slots        number of remembered results, rounded up to a power of two
+     */
+    public HashUnit(int inBitNumber, int outBitNumber, HashFunction mode, int slots) {
+        if (inBitNumber < 1 || inBitNumber > 64) throw new IllegalArgumentException("input must be 1 to 64 bits");
+        if (outBitNumber < 1 || outBitNumber > 31) throw new IllegalArgumentException("output must be 1 to 31 bits");
+
+        this.inBitNumber = inBitNumber;
+        this.outBitNumber = outBitNumber;
+        this.mode = mode;
+        this.memoized = mode == HashFunction.XOR || mode == HashFunction.SKEWED;
+
+        int size = Integer.highestOneBit(Math.max(1, slots - 1) << 1);
+        this.inputs = new long[memoized ? size : 0];
+        this.outputs = new int[memoized ? size : 0];
+        this.slotMask = size - 1;
+        Arrays.fill(outputs, -1);
+    }
+
+    /**
+     * @param input the input bits as a number, the bits above inBitNumber are ignored
+     * @return the hash of the input
+     */
+    public int hash(long input) {
+        if (inBitNumber < 64) input &= (1L << inBitNumber) - 1;
+        if (!memoized) return PackedLogic.hash(input, inBitNumber, outBitNumber, mode);
+
+        int slot = (int) (input ^ (input >>> 32)) & slotMask;
+        if (outputs[slot] != -1 && inputs[slot] == input) return outputs[slot];
+
+        int output = PackedLogic.hash(input, inBitNumber, outBitNumber, mode);
+        inputs[slot] = input;
+        outputs[slot] = output;
+        return output;
+    }
+
+    public int getInBitNumber() {
+        return inBitNumber;
+    }
+
+    public int getOutBitNumber() {
+        return outBitNumber;
+    }
+
+    public HashFunction getMode() {
+        return mode;
+    }
+}
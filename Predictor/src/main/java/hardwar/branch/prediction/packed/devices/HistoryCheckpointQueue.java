@@ -0,0 +1,131 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * the checkpoints of the branches which are predicted but not updated yet
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a checkpoint is the history register (at most 64 bits, as a number) which the prediction of a branch read
+ * and the predicted result. the checkpoints live in a ring buffer of primitive arrays,
+ * so pushing and popping does not allocate
+ *
+ * 2) the branches are updated in program order, the oldest checkpoint is the one of the next updated branch
+ *
+ * 3) the queue has a fixed capacity, pushing more in-flight branches than the capacity is an error
+ * -------------------------------------------------------
+ */
+
+
+public class HistoryCheckpointQueue {
+    public static final int DEFAULT_CAPACITY = 256; // in-flight branches of a speculative predictor
+
+    private final long[] histories;
+    private final boolean[] predictions;
+    private final int mask;
+    private int head; // index of the oldest checkpoint
+    private int size;
+
+    /**
+     * @param capacity the most in-flight branches, rounded up to a power of two
+     */
+    public HistoryCheckpointQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 24)
+            throw new IllegalArgumentException("capacity must be between 1 and " + (1 << 24));
+
+        int length = Integer.highestOneBit(capacity - 1) << 1;
+        if (capacity == 1) length = 1;
+        this.histories = new long[length];
+        this.predictions = new boolean[length];
+        this.mask = length - 1;
+    }
+
+    /**
+     * add the checkpoint of the youngest branch
+     *
+     * @param history    the history register which the prediction read
+     * @param prediction the predicted result
+     * @throws IllegalStateException if the queue is full
+     */
+    public void push(long history, boolean prediction) {
+        if (size == histories.length) throw new IllegalStateException("too many branches are in flight");
+
+        int tail = (head + size) & mask;
+        histories[tail] = history;
+        predictions[tail] = prediction;
+        size++;
+    }
+
+    /**
+     * remove the checkpoint of the oldest branch
+     *
+     * @throws IllegalStateException if the queue is empty
+     */
+    public void pop() {
+        checkNotEmpty();
+        head = (head + 1) & mask;
+        size--;
+    }
+
+    /**
+     * @return the history register of the oldest branch
+     */
+    public long history() {
+        checkNotEmpty();
+        return histories[head];
+    }
+
+    /**
+     * @return the predicted result of the oldest branch
+     */
+    public boolean prediction() {
+        checkNotEmpty();
+        return predictions[head];
+    }
+
+    /**
+     * rebuild the history of the front end: shift the outcome of a branch into its history, then the predictions
+     * of all the branches in the queue, from the oldest to the youngest. the checkpoint of every branch in the
+     * queue takes the history before its own prediction, so a later misprediction replays from the repaired one.
+     *
+     * @param history the history register which the branch was predicted with
+     * @param outcome the actual result of the branch
+     * @param length  number of bits of the history register, at most 64
+     * @return the history register after the branch and all the in-flight branches
+     */
+    public long replay(long history, boolean outcome, int length) {
+        history = shift(history, outcome, length);
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) & mask;
+            histories[slot] = history;
+            history = shift(history, predictions[slot], length);
+        }
+        return history;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getCapacity() {
+        return histories.length;
+    }
+
+    /**
+     * drop all the checkpoints
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private static long shift(long history, boolean bit, int length) {
+        return (history >>> 1) | ((bit ? 1L : 0L) << (length - 1));
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) throw new IllegalStateException("no branch is in flight");
+    }
+}
@@ -0,0 +1,210 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a set associative table of loop branches and their trip counts
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a loop branch is taken trip times in a row and then not taken once. an entry keeps the trip count of the
+ * last loop, the taken outcomes of the current one and a confidence counter, in primitive arrays
+ * indexed by set * ways + way
+ *
+ * 2) the low indexSize bits of the branch address select the set, the next tagSize bits are the tag
+ *
+ * 3) a not taken outcome after as many taken outcomes as the trip count makes the entry more confident, any other
+ * count becomes the new trip count and resets the confidence. an entry is confident at CONFIDENCE_MAX,
+ * then it predicts the exit of the loop. a loop longer than the iteration counter frees its entry
+ *
+ * 4) a hit and an allocation are uses of the entry for the replacement policy, like the BTB.
+ * the table never allocates after construction
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+
+import java.util.Arrays;
+
+public class LoopTable {
+    public static final int CONFIDENCE_MAX = 3;
+
+    private final int indexSize;
+    private final int ways;
+    private final int tagSize;
+    private final long tagMask;
+    private final int iterationMax;
+    private final long[] tags;
+    private final boolean[] valid;
+    private final int[] trips; // taken outcomes of the last loop
+    private final int[] iterations; // taken outcomes of the current loop
+    private final byte[] confidences;
+    private final ReplacementUnit replacement;
+
+    /**
+     * @param indexSize     number of address bits which select the set, at most 24
+     * @param ways          number of entries of a set
+     * @param tagSize       number of address bits of a tag, between 1 and 64
+     * @param iterationSize number of bits of the iteration counters, between 1 and 30
+     * @param policy        replacement policy of the sets
+     */
+    public LoopTable(int indexSize, int ways, int tagSize, int iterationSize, ReplacementPolicy policy) {
+        if (indexSize < 0 || indexSize > 24) throw new IllegalArgumentException("index size must be between 0 and 24");
+        if (tagSize < 1 || tagSize > 64) throw new IllegalArgumentException("tag size must be between 1 and 64");
+        if (iterationSize < 1 || iterationSize > 30)
+            throw new IllegalArgumentException("iteration size must be between 1 and 30");
+
+        int sets = 1 << indexSize;
+        this.replacement = new ReplacementUnit(sets, ways, policy);
+        this.indexSize = indexSize;
+        this.ways = ways;
+        this.tagSize = tagSize;
+        this.tagMask = tagSize == 64 ? -1L : (1L << tagSize) - 1;
+        this.iterationMax = (1 << iterationSize) - 1;
+        this.tags = new long[sets * ways];
+        this.valid = new boolean[sets * ways];
+        this.trips = new int[sets * ways];
+        this.iterations = new int[sets * ways];
+        this.confidences = new byte[sets * ways];
+    }
+
+    /**
+     * @param address the branch address
+     * @return the entry of the branch, or -1 if the branch is not in the table
+     */
+    public int find(long address) {
+        int set = set(address);
+        long tag = tag(address);
+        int base = set * ways;
+        for (int way = 0; way < ways; way++) {
+            if (valid[base + way] && tags[base + way] == tag) {
+                replacement.touch(set, way);
+                return base + way;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if the entry has seen the same trip count for CONFIDENCE_MAX loops
+     */
+    public boolean isConfident(int entry) {
+        return confidences[entry] == CONFIDENCE_MAX;
+    }
+
+    /**
+     * @return the predicted outcome of the branch, taken until the current loop reaches the trip count
+     */
+    public boolean predict(int entry) {
+        return iterations[entry] < trips[entry];
+    }
+
+    /**
+     * learn the outcome of the branch of the entry
+     *
+     * @param entry an entry which find or allocate returned
+     * @param taken the actual result of the branch
+     */
+    public void update(int entry, boolean taken) {
+        if (taken) {
+            int iteration = iterations[entry] + 1;
+            if (iteration > iterationMax) {
+                valid[entry] = false; // not a loop which the counters can follow
+                return;
+            }
+            if (iteration > trips[entry]) confidences[entry] = 0;
+            iterations[entry] = iteration;
+            return;
+        }
+
+        if (iterations[entry] == trips[entry]) {
+            if (confidences[entry] < CONFIDENCE_MAX) confidences[entry]++;
+        } else {
+            trips[entry] = iterations[entry];
+            confidences[entry] = 0;
+        }
+        iterations[entry] = 0;
+    }
+
+    /**
+     * give the branch an entry of its set, an empty one if there is one
+     *
+     * @param address the branch address
+     * @return the new entry of the branch, with no trip count
+     */
+    public int allocate(long address) {
+        int set = set(address);
+        int way = empty(set);
+        if (way < 0) way = replacement.victim(set);
+        replacement.fill(set, way);
+
+        int entry = set * ways + way;
+        tags[entry] = tag(address);
+        valid[entry] = true;
+        trips[entry] = 0;
+        iterations[entry] = 0;
+        confidences[entry] = 0;
+        return entry;
+    }
+
+    public int trip(int entry) {
+        return trips[entry];
+    }
+
+    public int iteration(int entry) {
+        return iterations[entry];
+    }
+
+    public int confidence(int entry) {
+        return confidences[entry];
+    }
+
+    /**
+     * @return number of valid entries
+     */
+    public int countValid() {
+        int count = 0;
+        for (boolean entry : valid) if (entry) count++;
+        return count;
+    }
+
+    private int set(long address) {
+        return (int) address & ((1 << indexSize) - 1);
+    }
+
+    private long tag(long address) {
+        return address >>> indexSize & tagMask;
+    }
+
+    /**
+     * @return an empty way of the set, or -1 if all of them are valid
+     */
+    private int empty(int set) {
+        int base = set * ways;
+        for (int way = 0; way < ways; way++) if (!valid[base + way]) return way;
+        return -1;
+    }
+
+    public int getSets() {
+        return 1 << indexSize;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getTagSize() {
+        return tagSize;
+    }
+
+    public ReplacementPolicy getPolicy() {
+        return replacement.getPolicy();
+    }
+
+    public void clear() {
+        Arrays.fill(tags, 0);
+        Arrays.fill(valid, false);
+        Arrays.fill(trips, 0);
+        Arrays.fill(iterations, 0);
+        Arrays.fill(confidences, (byte) 0);
+        replacement.clear();
+    }
+}
@@ -0,0 +1,16 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.shared.devices.RegisterBank;
+
+/**
+ * the map based RegisterBank as a ShiftRegisterBank, the reference model of the packed register banks
+ */
+public class MapRegisterBank extends RegisterBank implements ShiftRegisterBank {
+    /**
+     * @param selectorSize number of bits which is needed for selecting a register from register bank
+     * @param registerSize number of bits which is used for each register in register bank
+     */
+    public MapRegisterBank(int selectorSize, int registerSize) {
+        super(selectorSize, registerSize);
+    }
+}
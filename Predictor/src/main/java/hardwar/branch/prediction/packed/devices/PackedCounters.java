@@ -0,0 +1,107 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * fixed size array of small counters packed into long words
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) every counter is `width` bits wide and counters are stored back to back, so a counter may
+ * span two words
+ *
+ * 2) each counter has a presence bit. a counter is present after the first set and until the
+ * next clear. this is what the packed caches use to model the "no block is mapped" state
+ * -------------------------------------------------------
+ */
+
+
+import java.util.Arrays;
+
+final class PackedCounters {
+    private final int size; // number of counters
+    private final int width; // number of bits per counter
+    private final long mask;
+    private final long[] words; // counter values
+    private final long[] present; // one presence bit per counter
+
+    /**
+     * @param size  number of counters
+     * @param width number of bits per counter, at most 32
+     */
+    PackedCounters(int size, int width) {
+        if (size < 0) throw new IllegalArgumentException("number of counters can not be negative");
+        if (width < 1 || width > 32) throw new IllegalArgumentException("counter width must be between 1 and 32");
+
+        long nWords = ((long) size * width + 63) >>> 6;
+        if (nWords > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("too many counters for a packed array");
+
+        this.size = size;
+        this.width = width;
+        this.mask = (1L << width) - 1;
+        this.words = new long[(int) nWords];
+        this.present = new long[(size + 63) >>> 6];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int width() {
+        return width;
+    }
+
+    boolean isPresent(int index) {
+        return (present[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the counter value, regardless of its presence bit
+     */
+    int get(int index) {
+        long bit = (long) index * width;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = words[word] >>> offset;
+        if (offset + width > 64) value |= words[word + 1] << (64 - offset);
+        return (int) (value & mask);
+    }
+
+    /**
+     * write the counter value and mark it as present
+     */
+    void set(int index, int value) {
+        long bit = (long) index * width;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long v = value & mask;
+        words[word] = (words[word] & ~(mask << offset)) | (v << offset);
+        if (offset + width > 64) {
+            int spill = 64 - offset;
+            words[word + 1] = (words[word + 1] & ~(mask >>> spill)) | (v >>> spill);
+        }
+        present[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * reset all the counters to zero and mark them as absent
+     */
+    void clear() {
+        Arrays.fill(words, 0L);
+        Arrays.fill(present, 0L);
+    }
+
+    /**
+     * @return the index of the first present counter at or after `from`, or -1 if there is none
+     */
+    int nextPresent(int from) {
+        if (from >= size) return -1;
+        int w = from >>> 6;
+        long bits = present[w] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                return index < size ? index : -1;
+            }
+            if (++w == present.length) return -1;
+            bits = present[w];
+        }
+    }
+}
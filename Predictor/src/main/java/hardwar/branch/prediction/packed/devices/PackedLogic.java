@@ -0,0 +1,258 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * the numeric form of CombinationalLogic, used by the packed devices and predictors
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a counter or a hash input is a number whose most significant bit is the first bit of the Bit[] form,
+ * so the numeric and the Bit[] forms give the same bits
+ *
+ * 2) every CountMode is supported, counters up to TABLE_WIDTH bits are a lookup in a precomputed transition table
+ *
+ * 3) the hash functions are the ones of HashFunction, a HashMode is hashed with the function of the same name
+ *
+ * 4) a hash has at least one output bit, a predictor without index bits must not hash at all
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.HashFunction;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.CountMode;
+import hardwar.branch.prediction.shared.HashMode;
+
+import java.util.Arrays;
+
+public final class PackedLogic {
+    private static final int TABLE_WIDTH = 10; // widest counter which has a precomputed transition table
+    private static final int[][][] COUNT_TABLES = new int[CountMode.values().length][TABLE_WIDTH + 1][];
+
+    static {
+        for (CountMode mode : CountMode.values()) {
+            for (int width = 1; width <= TABLE_WIDTH; width++) {
+                int[] table = new int[2 << width];
+                for (int value = 0; value < 1 << width; value++) {
+                    table[value << 1] = step(value, width, false, mode);
+                    table[value << 1 | 1] = step(value, width, true, mode);
+                }
+                COUNT_TABLES[mode.ordinal()][width] = table;
+            }
+        }
+    }
+
+    private PackedLogic() {
+        // make the constructor private to avoid instantiating.
+    }
+
+    /**
+     * pass the counter bits through the counter circuit
+     *
+     * @param input the counter bits, the first bit is the most significant one
+     * @param up    the counter direction
+     * @param mode  counter mode
+     * @return the next counter bits
+     */
+    public static Bit[] count(Bit[] input, boolean up, CountMode mode) {
+        return Bits.fromNumber(count(Bit.toNumber(input), input.length, up, mode), input.length);
+    }
+
+    /**
+     * the numeric form of the counter circuit. counters up to TABLE_WIDTH bits are a single lookup
+     * in a precomputed transition table.
+     *
+     * @param value the counter value
+     * @param width number of bits of the counter, at most 31
+     * @param up    the counter direction
+     * @param mode  counter mode
+     * @return the next counter value
+     */
+    public static int count(int value, int width, boolean up, CountMode mode) {
+        if (width <= TABLE_WIDTH) return COUNT_TABLES[mode.ordinal()][width][value << 1 | (up ? 1 : 0)];
+        return step(value, width, up, mode);
+    }
+
+
+    /**
+     * Computes the next value of a counter.
+     * SATURATING: increments or decrements the counter, if all bits are already set to 1 (or 0) the
+     * counter saturates at the maximum (or minimum) value.
+     * UP_DOWN: increments or decrements the counter and wraps around at the limits.
+     * JOHNSON: shifts the counter to the right and feeds the inverted last bit back into the first bit,
+     * or to the left feeding the inverted first bit into the last bit when counting down.
+     *
+     * @param value the counter value
+     * @param width number of bits of the counter
+     * @param up    the counter direction
+     * @param mode  counter mode
+     */
+    private static int step(int value, int width, boolean up, CountMode mode) {
+        int max = (1 << width) - 1;
+        switch (mode) {
+            case SATURATING:
+                if (up) return value == max ? max : value + 1;
+                else return value == 0 ? 0 : value - 1;
+            case UP_DOWN:
+                return (up ? value + 1 : value - 1) & max;
+            case JOHNSON:
+                if (up) return (value >>> 1) | ((~value & 1) << (width - 1));
+                else return ((value << 1) & max) | (~value >>> (width - 1) & 1);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+
+    /**
+     * @param input        the hash function
+     * @param outBitNumber number of output bits
+     * @param mode         hash mode
+     * @return hashed value of input based on the specified mode
+     */
+    public static Bit[] hash(Bit[] input, int outBitNumber, HashMode mode) {
+        return hash(input, outBitNumber, HashFunction.of(mode));
+    }
+
+    /**
+     * @param input        the hash function
+     * @param outBitNumber number of output bits
+     * @param function     hash function
+     * @return hashed value of input based on the specified function
+     * @throws IllegalArgumentException if outBitNumber is less than 1
+     */
+    public static Bit[] hash(Bit[] input, int outBitNumber, HashFunction function) {
+        checkOutBitNumber(outBitNumber);
+        if (input.length <= 64) {
+            return Bits.fromNumber(hash(Bits.toLong(input), input.length, outBitNumber, function), outBitNumber);
+        } else if (function == HashFunction.XOR) {
+            return hash(input, outBitNumber);
+        } else if (function == HashFunction.SIMPLE_CUT) {
+            return Bits.fromNumber(hash(Bits.toLong(Arrays.copyOf(input, 64)), 64, outBitNumber, function),
+                    outBitNumber);
+        }
+
+        // fold the wide inputs to 64 bits before the other hash functions
+        return Bits.fromNumber(hash(Bits.toLong(hash(input, 64)), 64, outBitNumber, function), outBitNumber);
+    }
+
+    /**
+     * the numeric form of the hash circuit, the bits of the input are read MSB first like the Bit[] form.
+     *
+     * @param input        the input bits as a number
+     * @param inBitNumber  number of input bits, at most 64
+     * @param outBitNumber number of output bits, at most 31
+     * @param mode         hash mode
+     * @return hashed value of input based on the specified mode
+     */
+    public static int hash(long input, int inBitNumber, int outBitNumber, HashMode mode) {
+        return hash(input, inBitNumber, outBitNumber, HashFunction.of(mode));
+    }
+
+    /**
+     * the numeric form of the hash circuit, the bits of the input are read MSB first like the Bit[] form.
+     *
+     * @param input        the input bits as a number
+     * @param inBitNumber  number of input bits, at most 64
+     * @param outBitNumber number of output bits, at most 31
+     * @param function     hash function
+     * @return hashed value of input based on the specified function
+     * @throws IllegalArgumentException if outBitNumber is less than 1
+     */
+    public static int hash(long input, int inBitNumber, int outBitNumber, HashFunction function) {
+        checkOutBitNumber(outBitNumber);
+        if (inBitNumber < 64) input &= (1L << inBitNumber) - 1;
+
+        switch (function) {
+            case XOR:
+                return xorFold(input, inBitNumber, outBitNumber);
+            case SIMPLE_CUT:
+                if (inBitNumber >= outBitNumber) return (int) (input >>> (inBitNumber - outBitNumber));
+                return (int) input << (outBitNumber - inBitNumber);
+            case MULTIPLICATIVE:
+                return (int) ((input * 0x9E3779B97F4A7C15L) >>> (64 - outBitNumber));
+            case SKEWED:
+                int low = (int) input & ((1 << outBitNumber) - 1);
+                int high = inBitNumber > outBitNumber
+                        ? xorFold(input >>> outBitNumber, inBitNumber - outBitNumber, outBitNumber) : 0;
+                return skew(low, outBitNumber) ^ unskew(high, outBitNumber);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    private static void checkOutBitNumber(int outBitNumber) {
+        if (outBitNumber < 1) throw new IllegalArgumentException("a hash needs at least one output bit");
+    }
+
+    /**
+     * the gshare index function: the hashed branch address xor the history folded to the same number of bits
+     *
+     * @param address        the branch address
+     * @param addressBits    number of bits of the branch address
+     * @param history        the branch history, the first bit of the history register is the most significant one
+     * @param historyBits    number of bits of the branch history
+     * @param outBitNumber   number of output bits
+     * @param addressHashing hash mode of the branch address
+     * @return the index of the branch
+     */
+    public static int gshare(long address, int addressBits, long history, int historyBits, int outBitNumber,
+                             HashMode addressHashing) {
+        return hash(address, addressBits, outBitNumber, addressHashing)
+                ^ hash(history, historyBits, outBitNumber, HashFunction.XOR);
+    }
+
+    /**
+     * xor every K bits of the input, starting from the most significant bits. the last chunk is aligned to the most
+     * significant bits of the output if the input size is not a multiple of K, as the Bit[] form does.
+     */
+    private static int xorFold(long input, int inBitNumber, int outBitNumber) {
+        int mask = (1 << outBitNumber) - 1;
+        int hash = 0;
+        int shift = inBitNumber - outBitNumber;
+        for (; shift >= 0; shift -= outBitNumber) hash ^= (int) (input >>> shift) & mask;
+
+        int rest = shift + outBitNumber;
+        if (rest > 0) hash ^= ((int) input & ((1 << rest) - 1)) << (outBitNumber - rest);
+        return hash;
+    }
+
+    /**
+     * one step of the skewing shuffle: shift right and feed the xor of the first and last bits to the first bit
+     */
+    private static int skew(int value, int width) {
+        if (width < 2) return value;
+        return (value >>> 1) | (((value ^ (value >>> (width - 1))) & 1) << (width - 1));
+    }
+
+    /**
+     * the inverse of {@link #skew(int, int)}
+     */
+    private static int unskew(int value, int width) {
+        if (width < 2) return value;
+        return ((value << 1) & ((1 << width) - 1)) | ((value >>> (width - 1) ^ value >>> (width - 2)) & 1);
+    }
+
+
+    /**
+     * hash N bits to a K bit value
+     *
+     * @param bits program counter
+     * @return hash value of fist M bits of `bits` in K bits
+     */
+    private static Bit[] hash(Bit[] bits, int outBitNumber) {
+        Bit[] hash = new Bit[outBitNumber];
+
+        // XOR the first M bits of the PC to produce the hash
+        for (int i = 0; i < bits.length; i++) {
+            int j = i % outBitNumber;
+            if (hash[j] == null) {
+                hash[j] = bits[i];
+            } else {
+                Bit xorProduce = hash[j].getValue() ^ bits[i].getValue() ? Bit.ONE : Bit.ZERO;
+                hash[j] = xorProduce;
+
+            }
+        }
+        return hash;
+    }
+}
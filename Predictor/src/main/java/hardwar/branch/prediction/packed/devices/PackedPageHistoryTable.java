@@ -0,0 +1,231 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * our packed Page History Table model
+ * it behaves like PageHistoryTable but keeps the blocks in a flat primitive array
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the entry of the PHT is read as an unsigned number (MSB first) and used as the row index,
+ * therefore the table has exactly nRows blocks and all the entries must have the same number of bits
+ *
+ * 2) each row holds a nColumns-bit block. the blocks are packed back to back in long words,
+ * so the whole table takes nRows x nColumns bits plus one presence bit per row
+ *
+ * 3) a row which is never written is not associated to any block, exactly like a missing key
+ * of the map based PHT
+ *
+ * 4) the Bit[] returned by get and setDefault is a new array built from the packed block,
+ * so the outer components can not manipulate the cache directly
+ *
+ * 5) unlike PageHistoryTable, an entry which is bigger than the last row throws an
+ * IndexOutOfBoundsException
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.Cache;
+
+public class PackedPageHistoryTable implements Cache<Bit[], Bit[]> {
+
+    private final int nRows; // number of PHT entries
+    private final int nColumns; // number of bits in a block
+    private final PackedCounters PHT; // blocks of the table
+    private int entryLength; // number of bits of the entries, used for printing the addresses
+
+
+    /**
+     * @param nRows    number of PHT entries
+     * @param nColumns number of bits in a block, at most 32
+     */
+    public PackedPageHistoryTable(int nRows, int nColumns) {
+        this.nRows = nRows;
+        this.nColumns = nColumns;
+        this.PHT = new PackedCounters(nRows, nColumns);
+        this.entryLength = nRows > 1 ? 32 - Integer.numberOfLeadingZeros(nRows - 1) : 1;
+    }
+
+    /**
+     * Get the value associated with the given key from the cache.
+     *
+     * @param entry the key to look up in the cache
+     * @return the value associated with the key, or null if the key is not found
+     */
+    @Override
+    public Bit[] get(Bit[] entry) {
+        int row = toRow(entry);
+        if (!PHT.isPresent(row)) return null;
+        return Bits.fromNumber(PHT.get(row), nColumns);
+    }
+
+    /**
+     * Insert a new key-value pair into the cache.
+     *
+     * @param entry the key to insert into the cache
+     * @param value the value to associate with the key
+     * @throws RuntimeException if the length of the block is not equal to nColumns
+     */
+    @Override
+    public void put(Bit[] entry, Bit[] value) {
+        // Check that the length of the block is equal to nColumns
+        if (value.length != nColumns) {
+            throw new RuntimeException("invalid number of bits for cache block");
+        }
+
+        entryLength = entry.length;
+        PHT.set(toRow(entry), Bit.toNumber(value));
+    }
+
+    /**
+     * put the value in the entry if the entry is not associated to any block.
+     *
+     * @param entry the address which is selected to put the data in it
+     * @param value the data which is saved in address (key) if the key is not mapped to any not-null data
+     */
+    @Override
+    public void putIfAbsent(Bit[] entry, Bit[] value) {
+        if (!PHT.isPresent(toRow(entry))) {
+            put(entry, value);
+        }
+    }
+
+    /**
+     * Returns the value associated with the given key, or a default value if the key is not found in the cache.
+     * If the key is not found in the cache, the default value is inserted into the cache.
+     *
+     * @param entry        the address to look up in the cache
+     * @param defaultValue the default value to insert into the cache if the key is not found
+     * @return the value associated with the key, or the default value if the key is not found
+     */
+    @Override
+    public Bit[] setDefault(Bit[] entry, Bit[] defaultValue) {
+        if (defaultValue == null) throw new RuntimeException("block can not be null");
+
+        putIfAbsent(entry, defaultValue);
+        return get(entry);
+    }
+
+    /**
+     * @param row the row index of the PHT
+     * @return true if a block is associated with the row
+     */
+    public boolean contains(int row) {
+        return PHT.isPresent(checkRow(row));
+    }
+
+    /**
+     * @param row the row index of the PHT
+     * @return the block value of the row, or -1 if the row is not associated with any block
+     */
+    public int get(int row) {
+        return PHT.isPresent(checkRow(row)) ? PHT.get(row) : -1;
+    }
+
+    /**
+     * write the block value on the row
+     *
+     * @param row   the row index of the PHT
+     * @param value the block value, only the lowest nColumns bits are kept
+     */
+    public void put(int row, int value) {
+        PHT.set(checkRow(row), value);
+    }
+
+    /**
+     * @param row          the row index of the PHT
+     * @param defaultValue the block value which is written if the row is not associated with any block
+     * @return the block value of the row
+     */
+    public int setDefault(int row, int defaultValue) {
+        if (!PHT.isPresent(checkRow(row))) PHT.set(row, defaultValue);
+        return PHT.get(row);
+    }
+
+    /**
+     * @return number of PHT entries
+     */
+    public int getRows() {
+        return nRows;
+    }
+
+    /**
+     * @return number of bits in a block
+     */
+    public int getColumns() {
+        return nColumns;
+    }
+
+    /**
+     * Clear all entries from the cache.
+     */
+    @Override
+    public void clear() {
+        PHT.clear();
+    }
+
+    /**
+     * Returns a string representation of the current state of the PHT.
+     *
+     * @return a table with the address and block data for each entry in the PHT
+     */
+    @Override
+    public String monitor() {
+        StringBuilder sb = new StringBuilder();
+        monitor(sb, PHT, 0, nRows, entryLength);
+        return sb.toString();
+    }
+
+    /**
+     * Append the PHT table of a range of packed blocks, in the same format as PageHistoryTable.
+     *
+     * @param sb          the output
+     * @param blocks      the packed blocks
+     * @param from        index of the first block of the table
+     * @param nRows       number of rows of the table
+     * @param entryLength number of bits which is printed for the address of a row
+     */
+    static void monitor(StringBuilder sb, PackedCounters blocks, int from, int nRows, int entryLength) {
+        monitorHeader(sb);
+
+        int to = from + nRows;
+        for (int i = blocks.nextPresent(from); i != -1 && i < to; i = blocks.nextPresent(i + 1)) {
+            String address = Bit.arrayToString(Bits.fromNumber(i - from, entryLength));
+            monitorRow(sb, address, Bits.fromNumber(blocks.get(i), blocks.width()));
+        }
+    }
+
+    static void monitorHeader(StringBuilder sb) {
+        sb.append("+----------------------------------+\n");
+        sb.append(String.format("| %-19s | %-10s |\n", "Address", "Block"));
+        sb.append("|---------------------|------------|\n");
+    }
+
+    static void monitorRow(StringBuilder sb, String address, Bit[] block) {
+        if (address.length() > 16) {
+            String address16 = address.substring(0, 16);
+            sb.append(String.format("| %-16s... | %-10s |\n", address16, Bit.arrayToString(block)));
+        } else {
+            sb.append(String.format("| %-19s | %-10s |\n", address, Bit.arrayToString(block)));
+        }
+        sb.append("+----------------------------------+\n");
+    }
+
+    /**
+     * @param entry the PHT entry
+     * @return the row index of the entry
+     */
+    private int toRow(Bit[] entry) {
+        long row = 0;
+        for (Bit bit : entry) {
+            row = (row << 1) | (bit == Bit.ONE ? 1 : 0);
+            if (row >= nRows) throw new IndexOutOfBoundsException("PHT entry is out of the table range");
+        }
+        return (int) row;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= nRows) throw new IndexOutOfBoundsException("PHT entry is out of the table range");
+        return row;
+    }
+}
@@ -0,0 +1,485 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * Our packed Per Address Predication History Table
+ * it behaves like PerAddressPredictionHistoryTable but keeps the blocks in primitive arrays
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the entry of the PAPHT is a number of bits which the first nPCSelector bits select the PHT and other bits
+ * select the row of that PHT. both parts are read as unsigned numbers (MSB first)
+ *
+ * 2) in the dense layout all the PHTs live in one packed array and a block is found at index
+ * selector * nRowsPerPHT + row. in the paged layout each PHT gets its own packed page when it is associated,
+ * which keeps the memory low when only a few selectors are used. the paged layout takes selectors up to 32 bits
+ *
+ * 3) a PHT is associated to the PAPHT by putIfAbsent (or setDefault). reading or writing a PHT which is not
+ * associated yet fails, exactly like the map based PAPHT
+ *
+ * 4) the Bit[] returned by get and setDefault is a new array built from the packed block,
+ * so the outer components can not manipulate the cache directly
+ *
+ * 5) unlike PerAddressPredictionHistoryTable, a selector or row which is bigger than the last one
+ * throws an IndexOutOfBoundsException
+ *
+ * 6) like the string keys of the map based PAPHT, rows of different widths are different blocks even if they
+ * have the same value. the rows which are not log2(nRowsPerPHT) bits wide live in a table of their own width,
+ * which is created by the first row of that width. it is paged up to PAGED_ROW_WIDTH bits and sparse above
+ * ------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.Cache;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class PackedPerAddressPredictionHistoryTable implements Cache<Bit[], Bit[]> {
+
+    private static final long DENSE_LIMIT = 1L << 26; // biggest dense layout in bits picked by default
+    private static final int MAX_SELECTOR = 32; // widest selector of the paged layout
+    private static final int MAX_ROW_WIDTH = 31; // widest row of the tables of the other widths
+    private static final int PAGED_ROW_WIDTH = 16; // widest row of the other widths which is kept in pages
+
+    private final int nPCSelector; // number of bits from pc which determine which PHT in PAPHT must be used.
+    private final int nRowsPerPHT; // number of rows per PHT
+    private final int nColumnsPerBlock; // number of columns per block in a PHT
+    private final PackedCounters blocks; // dense layout, null if the table is paged
+    private final long[] associated; // dense layout, one bit per associated PHT
+    private final PageDirectory<PackedCounters> pages; // paged layout, null if the table is dense
+    private final int rowWidth; // number of bits of the rows of this table
+    private PackedPerAddressPredictionHistoryTable[] pagedWidths; // the tables of the narrow other widths, by width
+    private SparseCounters[] sparseWidths; // the blocks of the wide other widths, by width
+
+
+    /**
+     * Creates a PAPHT and picks the dense layout if the whole table is small enough, otherwise the paged one.
+     */
+    public PackedPerAddressPredictionHistoryTable(int nPCSelector, int nRowsPerPHT, int nColumnsPerBlock) {
+        this(nPCSelector, nRowsPerPHT, nColumnsPerBlock,
+                ((long) nRowsPerPHT * nColumnsPerBlock << nPCSelector) > DENSE_LIMIT);
+    }
+
+    /**
+     * @param nPCSelector      number of bits which select the PHT
+     * @param nRowsPerPHT      number of rows per PHT
+     * @param nColumnsPerBlock number of bits in a block, at most 32
+     * @param paged            true to allocate the PHTs lazily, false to allocate all of them in one array
+     */
+    public PackedPerAddressPredictionHistoryTable(int nPCSelector, int nRowsPerPHT, int nColumnsPerBlock,
+                                                  boolean paged) {
+        if (nPCSelector < 0 || nPCSelector > MAX_SELECTOR)
+            throw new IllegalArgumentException("PHT selector is too wide for a packed PAPHT");
+
+        this.nPCSelector = nPCSelector;
+        this.nRowsPerPHT = nRowsPerPHT;
+        this.nColumnsPerBlock = nColumnsPerBlock;
+        this.rowWidth = nRowsPerPHT > 1 ? 32 - Integer.numberOfLeadingZeros(nRowsPerPHT - 1) : 0;
+
+        if (paged) {
+            this.blocks = null;
+            this.associated = null;
+            this.pages = new PageDirectory<>(nPCSelector);
+        } else {
+            long size = (long) nRowsPerPHT << nPCSelector;
+            if (nPCSelector > 30 || size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("too many blocks for a dense PAPHT");
+            this.blocks = new PackedCounters((int) size, nColumnsPerBlock);
+            this.associated = new long[((1 << nPCSelector) + 63) >>> 6];
+            this.pages = null;
+        }
+    }
+
+    /**
+     * @param entry think of key as address. First nPCSelector bits is used for finding the associated PHT
+     *              next bits is used to find the block.
+     * @return the value associated with the key, or null if the key is not found
+     * @throws NullPointerException if the PHT is not associated to the PAPHT
+     */
+    @Override
+    public Bit[] get(Bit[] entry) {
+        int width = entry.length - nPCSelector;
+        int value = get(getCacheSelector(entry), getBlockSelector(entry, width), width);
+        return value == -1 ? null : Bits.fromNumber(value, nColumnsPerBlock);
+    }
+
+    /**
+     * Map the value to the entry.
+     * if the associated cache or block is not defined then exception will be thrown
+     *
+     * @param entry the address which is selected to put the data in it
+     * @param value the data which is saved in address (key)
+     */
+    @Override
+    public void put(Bit[] entry, Bit[] value) {
+        // Check that the length of the block is equal to nColumns
+        if (value.length != nColumnsPerBlock) {
+            throw new RuntimeException("invalid number of bits for cache block");
+        }
+
+        int width = entry.length - nPCSelector;
+        int selector = getCacheSelector(entry);
+        int row = getBlockSelector(entry, width);
+        if (!isAssociated(selector)) throw new RuntimeException("The PHT is not associated to the PAPHT");
+
+        put(selector, row, width, Bit.toNumber(value));
+    }
+
+    /**
+     * If the cache is not associated yet or no block is mapped to the PHT then map the default value
+     * to the PAPHT
+     *
+     * @param entry the address which is selected to put the data in it
+     * @param value the data which is saved in address (key) if the key is not mapped to any not-null data
+     */
+    @Override
+    public void putIfAbsent(Bit[] entry, Bit[] value) {
+        // Check that the length of the block is equal to nColumns
+        if (value.length != nColumnsPerBlock) {
+            throw new RuntimeException("invalid number of bits for cache block");
+        }
+
+        int width = entry.length - nPCSelector;
+        setDefault(getCacheSelector(entry), getBlockSelector(entry, width), width, Bit.toNumber(value));
+    }
+
+    /**
+     * @param entry        the address
+     * @param defaultValue default value if the address is not associated with any block in cache
+     * @return the old value if exist otherwise the default value
+     */
+    @Override
+    public Bit[] setDefault(Bit[] entry, Bit[] defaultValue) {
+        if (defaultValue == null) throw new RuntimeException("block can not be null");
+
+        putIfAbsent(entry, defaultValue);
+        return get(entry);
+    }
+
+    /**
+     * @param selector the PHT selector
+     * @return true if the PHT is associated to the PAPHT
+     */
+    public boolean isAssociated(int selector) {
+        checkSelector(selector);
+        if (pages != null) return pages.get(selector) != null;
+        return (associated[selector >>> 6] & (1L << selector)) != 0;
+    }
+
+    /**
+     * @param selector the PHT selector
+     * @param row      the row of the PHT
+     * @return the block value, or -1 if the row is not associated with any block
+     * @throws NullPointerException if the PHT is not associated to the PAPHT
+     */
+    public int get(int selector, int row) {
+        if (!isAssociated(selector)) throw new NullPointerException("The PHT is not associated to the PAPHT");
+        checkRow(row);
+
+        if (pages != null) {
+            PackedCounters page = pages.get(selector);
+            return page.isPresent(row) ? page.get(row) : -1;
+        }
+        int index = selector * nRowsPerPHT + row;
+        return blocks.isPresent(index) ? blocks.get(index) : -1;
+    }
+
+    /**
+     * write the block value on the row of an associated PHT
+     *
+     * @param selector the PHT selector
+     * @param row      the row of the PHT
+     * @param value    the block value, only the lowest nColumnsPerBlock bits are kept
+     * @throws RuntimeException if the PHT is not associated to the PAPHT
+     */
+    public void put(int selector, int row, int value) {
+        if (!isAssociated(selector)) throw new RuntimeException("The PHT is not associated to the PAPHT");
+        checkRow(row);
+
+        if (pages != null) pages.get(selector).set(row, value);
+        else blocks.set(selector * nRowsPerPHT + row, value);
+    }
+
+    /**
+     * associate the PHT if needed and write the default value if the row is not associated with any block
+     *
+     * @param selector     the PHT selector
+     * @param row          the row of the PHT
+     * @param defaultValue the block value which is written if the row is empty
+     * @return the block value of the row
+     */
+    public int setDefault(int selector, int row, int defaultValue) {
+        checkSelector(selector);
+        checkRow(row);
+        associate(selector);
+
+        PackedCounters counters = pages != null ? pages.get(selector) : blocks;
+        int index = pages != null ? row : selector * nRowsPerPHT + row;
+        if (!counters.isPresent(index)) counters.set(index, defaultValue);
+        return counters.get(index);
+    }
+
+    /**
+     * the form of get for a row of the given width, a row of another width is another block
+     *
+     * @param selector the PHT selector
+     * @param row      the row of the PHT
+     * @param width    number of bits of the row
+     * @return the block value, or -1 if the row is not associated with any block
+     * @throws NullPointerException if the PHT is not associated to the PAPHT
+     */
+    public int get(int selector, int row, int width) {
+        if (width == rowWidth) return get(selector, row);
+        if (!isAssociated(selector)) throw new NullPointerException("The PHT is not associated to the PAPHT");
+
+        if (width <= PAGED_ROW_WIDTH) {
+            PackedPerAddressPredictionHistoryTable table = pagedWidths == null ? null : pagedWidths[width];
+            return table == null || !table.isAssociated(selector) ? -1 : table.get(selector, row);
+        }
+        SparseCounters blocks = sparseWidths == null ? null : sparseWidths[width];
+        return blocks == null ? -1 : blocks.get(SparseCounters.key(selector, row));
+    }
+
+    /**
+     * the form of put for a row of the given width, a row of another width is another block
+     *
+     * @param selector the PHT selector
+     * @param row      the row of the PHT
+     * @param width    number of bits of the row
+     * @param value    the block value, only the lowest nColumnsPerBlock bits are kept
+     * @throws RuntimeException if the PHT is not associated to the PAPHT
+     */
+    public void put(int selector, int row, int width, int value) {
+        if (width == rowWidth) {
+            put(selector, row, value);
+            return;
+        }
+        if (!isAssociated(selector)) throw new RuntimeException("The PHT is not associated to the PAPHT");
+
+        if (width <= PAGED_ROW_WIDTH) {
+            PackedPerAddressPredictionHistoryTable table = pagedTable(width);
+            table.associate(selector);
+            table.put(selector, row, value);
+        } else {
+            sparseTable(width).set(SparseCounters.key(selector, row), value);
+        }
+    }
+
+    /**
+     * the form of setDefault for a row of the given width, a row of another width is another block
+     *
+     * @param selector     the PHT selector
+     * @param row          the row of the PHT
+     * @param width        number of bits of the row
+     * @param defaultValue the block value which is written if the row is empty
+     * @return the block value of the row
+     */
+    public int setDefault(int selector, int row, int width, int defaultValue) {
+        if (width == rowWidth) return setDefault(selector, row, defaultValue);
+
+        checkSelector(selector);
+        associate(selector);
+        if (width <= PAGED_ROW_WIDTH) return pagedTable(width).setDefault(selector, row, defaultValue);
+
+        SparseCounters blocks = sparseTable(width);
+        long key = SparseCounters.key(selector, row);
+        if (!blocks.isPresent(key)) blocks.set(key, defaultValue);
+        return blocks.get(key);
+    }
+
+    /**
+     * @return number of bits which select the PHT
+     */
+    public int getSelectorLength() {
+        return nPCSelector;
+    }
+
+    /**
+     * @return number of bits of the rows which are kept in this table, the other widths are kept apart
+     */
+    public int getRowWidth() {
+        return rowWidth;
+    }
+
+    /**
+     * @return number of rows per PHT
+     */
+    public int getRowsPerPHT() {
+        return nRowsPerPHT;
+    }
+
+    /**
+     * @return true if the PHTs are allocated lazily
+     */
+    public boolean isPaged() {
+        return pages != null;
+    }
+
+    /**
+     * Get the cache selector for PAPHT
+     *
+     * @param entry the address
+     * @return the value of the first nPCSelector bits
+     */
+    private int getCacheSelector(Bit[] entry) {
+        if (entry.length < nPCSelector) throw new IndexOutOfBoundsException("PAPHT entry is too short");
+
+        int selector = 0;
+        for (int i = 0; i < nPCSelector; i++) selector = (selector << 1) | (entry[i] == Bit.ONE ? 1 : 0);
+        return selector;
+    }
+
+    /**
+     * Get the block selector for PHT
+     *
+     * @param entry the address
+     * @param width number of bits after the first nPCSelector bits
+     * @return the value of the bits after the first nPCSelector bits
+     */
+    private int getBlockSelector(Bit[] entry, int width) {
+        if (width > MAX_ROW_WIDTH) throw new IndexOutOfBoundsException("PHT entry is out of the table range");
+
+        int row = 0;
+        for (int i = nPCSelector; i < entry.length; i++) row = (row << 1) | (entry[i] == Bit.ONE ? 1 : 0);
+        if (width == rowWidth) checkRow(row);
+        return row;
+    }
+
+    /**
+     * @return the table of the rows of the given width, created by the first row of that width
+     */
+    private PackedPerAddressPredictionHistoryTable pagedTable(int width) {
+        if (width < 0) throw new IndexOutOfBoundsException("PHT entry is out of the table range");
+        if (pagedWidths == null) pagedWidths = new PackedPerAddressPredictionHistoryTable[PAGED_ROW_WIDTH + 1];
+        if (pagedWidths[width] == null) {
+            pagedWidths[width] = new PackedPerAddressPredictionHistoryTable(nPCSelector, 1 << width, nColumnsPerBlock,
+                    true);
+        }
+        return pagedWidths[width];
+    }
+
+    /**
+     * @return the sparse blocks of the rows of the given width, created by the first row of that width
+     */
+    private SparseCounters sparseTable(int width) {
+        if (width > MAX_ROW_WIDTH) throw new IndexOutOfBoundsException("PHT entry is out of the table range");
+        if (sparseWidths == null) sparseWidths = new SparseCounters[MAX_ROW_WIDTH + 1];
+        if (sparseWidths[width] == null) sparseWidths[width] = new SparseCounters(nColumnsPerBlock);
+        return sparseWidths[width];
+    }
+
+    /**
+     * associate the PHT to the PAPHT, without writing any block
+     */
+    private void associate(int selector) {
+        if (pages != null) {
+            if (pages.get(selector) == null) {
+                pages.put(selector, new PackedCounters(nRowsPerPHT, nColumnsPerBlock));
+            }
+        } else {
+            associated[selector >>> 6] |= 1L << selector;
+        }
+    }
+
+    private void checkSelector(int selector) {
+        if (nPCSelector < 32 && selector >>> nPCSelector != 0)
+            throw new IndexOutOfBoundsException("PHT selector is out of the table range");
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= nRowsPerPHT) throw new IndexOutOfBoundsException("PHT entry is out of the table range");
+    }
+
+
+    /**
+     * Clear all the caches.
+     */
+    @Override
+    public void clear() {
+        pagedWidths = null;
+        sparseWidths = null;
+        if (pages != null) {
+            pages.clear();
+        } else {
+            blocks.clear();
+            Arrays.fill(associated, 0L);
+        }
+    }
+
+    /**
+     * Returns a string representing the current state of the Per Address Prediction History Table.
+     * The string includes a separate monitor report for each PHT in the PAPHT, along with the selector
+     * string for each PHT.
+     *
+     * @return a string representing the current state of the Per Address Prediction History Table
+     */
+    @Override
+    public String monitor() {
+        StringBuilder sb = new StringBuilder();
+        for (int selector : associatedSelectors()) {
+            sb.append("PHT for selector: ");
+            sb.append(Bit.arrayToString(Bits.fromNumber(selector & 0xFFFFFFFFL, nPCSelector)));
+            sb.append("\n");
+            if (pagedWidths == null && sparseWidths == null) {
+                if (pages != null) PackedPageHistoryTable.monitor(sb, pages.get(selector), 0, nRowsPerPHT, rowWidth);
+                else PackedPageHistoryTable.monitor(sb, blocks, selector * nRowsPerPHT, nRowsPerPHT, rowWidth);
+            } else {
+                monitor(sb, selector);
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the associated selectors in the unsigned order
+     */
+    private int[] associatedSelectors() {
+        if (pages != null) return pages.keys();
+
+        int[] selectors = new int[1 << nPCSelector];
+        int n = 0;
+        for (int selector = 0; selector < 1 << nPCSelector; selector++) {
+            if (isAssociated(selector)) selectors[n++] = selector;
+        }
+        return Arrays.copyOf(selectors, n);
+    }
+
+    /**
+     * print the rows of all the widths of a PHT in the order of their addresses, like the string keys of the
+     * map based PHT
+     */
+    private void monitor(StringBuilder sb, int selector) {
+        Map<String, Integer> rows = new TreeMap<>();
+        collect(rows, selector);
+        if (pagedWidths != null) {
+            for (PackedPerAddressPredictionHistoryTable table : pagedWidths) {
+                if (table != null && table.isAssociated(selector)) table.collect(rows, selector);
+            }
+        }
+        if (sparseWidths != null) {
+            for (int width = 0; width < sparseWidths.length; width++) {
+                if (sparseWidths[width] == null) continue;
+                for (long key : sparseWidths[width].keys()) {
+                    if (SparseCounters.selectorOf(key) != selector) continue;
+                    int row = SparseCounters.rowOf(key);
+                    rows.put(Bit.arrayToString(Bits.fromNumber(row, width)), sparseWidths[width].get(key));
+                }
+            }
+        }
+
+        PackedPageHistoryTable.monitorHeader(sb);
+        rows.forEach((address, block) ->
+                PackedPageHistoryTable.monitorRow(sb, address, Bits.fromNumber(block, nColumnsPerBlock)));
+    }
+
+    private void collect(Map<String, Integer> rows, int selector) {
+        PackedCounters counters = pages != null ? pages.get(selector) : blocks;
+        int from = pages != null ? 0 : selector * nRowsPerPHT;
+        for (int i = counters.nextPresent(from); i != -1 && i < from + nRowsPerPHT; i = counters.nextPresent(i + 1)) {
+            rows.put(Bit.arrayToString(Bits.fromNumber(i - from, rowWidth)), counters.get(i));
+        }
+    }
+}
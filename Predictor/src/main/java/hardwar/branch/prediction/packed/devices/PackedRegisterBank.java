@@ -0,0 +1,209 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * Our packed Register Bank Model
+ * it behaves like RegisterBank but keeps the registers in primitive arrays
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the selector is read as an unsigned number (MSB first) and used as the index of the register,
+ * each register is stored as a number whose most significant bit is the first bit of the register.
+ * therefore the registers are at most 64 bits and the selector at most 32 bits
+ *
+ * 2) the Register Bank Memory is lazy like RegisterBank: the registers live in pages of PAGE_BITS selector bits
+ * which are allocated by the first register of the page. every register starts as zero and
+ * a register shows up in the monitor only after it is read or written
+ *
+ * 3) the Bit[] API works on copies like RegisterBank, the numeric API (read, write and shiftIn with
+ * an int selector) works on the stored registers in place and does not allocate
+ * -------------------------------------------------------
+ */
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.ShiftRegister;
+
+public class PackedRegisterBank implements ShiftRegisterBank {
+    private static final int MAX_SELECTOR = 32; // widest selector of the bank
+    private static final int PAGE_BITS = 10; // selector bits of the registers of a page
+
+    private final int registerSize;
+    private final int selectorSize;
+    private final long mask; // valid bits of a register
+    private final int pageBits; // selector bits of a page, at most PAGE_BITS
+    private final PageDirectory<long[]> pages; // the registers and then one bit per register which is initialized
+
+    /**
+     * @param selectorSize number of bits which is needed for selecting a register from register bank
+     * @param registerSize number of bits which is used for each register in register bank
+     */
+    public PackedRegisterBank(int selectorSize, int registerSize) {
+        if (selectorSize < 0 || selectorSize > MAX_SELECTOR)
+            throw new IllegalArgumentException("selector is too wide for a packed register bank");
+        if (registerSize < 1 || registerSize > 64)
+            throw new IllegalArgumentException("register size must be between 1 and 64");
+
+        this.registerSize = registerSize;
+        this.selectorSize = selectorSize;
+        this.mask = -1L >>> (64 - registerSize);
+        this.pageBits = Math.min(selectorSize, PAGE_BITS);
+        this.pages = new PageDirectory<>(selectorSize - pageBits);
+    }
+
+    /**
+     * read the specified register from the register bank.
+     *
+     * @param selector the value which is used for reading from the memory bank
+     * @return a shift register associated to that address ( a copy of it )
+     * @throws IllegalArgumentException if the selector is not in legal bound.
+     */
+    @Override
+    public ShiftRegister read(Bit[] selector) {
+        ShiftRegister register = new PackedShiftRegister("r", registerSize, null);
+        Bits.loadLong(register, read(toIndex(selector)));
+        return register;
+    }
+
+    /**
+     * write the value on a specific register.
+     *
+     * @param selector      the value which is used for reading from the memory bank
+     * @param registerValue the value which is written on specific register.
+     * @throws IllegalArgumentException if the selector is not in legal bound or the registerValue size is not as same as
+     *                                  register size
+     */
+    @Override
+    public void write(Bit[] selector, Bit[] registerValue) {
+        int index = toIndex(selector);
+        if (registerValue.length != this.registerSize)
+            throw new IllegalArgumentException("registerValue size is not as same as register size");
+
+        long value = 0;
+        for (Bit bit : registerValue) value = (value << 1) | (bit == Bit.ONE ? 1 : 0);
+        write(index, value);
+    }
+
+    /**
+     * insert a bit at the beginning of the specified register in place.
+     *
+     * @param selector the value which is used for reading from the memory bank
+     * @param bit      the bit which is inserted in the register
+     * @throws IllegalArgumentException if the selector is not in legal bound.
+     */
+    @Override
+    public void shiftIn(Bit[] selector, Bit bit) {
+        shiftIn(toIndex(selector), bit);
+    }
+
+    /**
+     * @param selector the index of the register
+     * @return the register value, the first bit of the register being the most significant one
+     */
+    public long read(int selector) {
+        long[] page = page(selector);
+        int index = selector & ((1 << pageBits) - 1);
+        initialize(page, index);
+        return page[index];
+    }
+
+    /**
+     * @param selector the index of the register
+     * @param value    the register value, the bits above the register size are ignored
+     */
+    public void write(int selector, long value) {
+        long[] page = page(selector);
+        int index = selector & ((1 << pageBits) - 1);
+        initialize(page, index);
+        page[index] = value & mask;
+    }
+
+    /**
+     * insert a bit at the beginning of the register, all the other bits are shifted to the right.
+     *
+     * @param selector the index of the register
+     * @param bit      the bit which is inserted in the register
+     */
+    public void shiftIn(int selector, Bit bit) {
+        long[] page = page(selector);
+        int index = selector & ((1 << pageBits) - 1);
+        initialize(page, index);
+        page[index] = (page[index] >>> 1) | ((bit == Bit.ONE ? 1L : 0L) << (registerSize - 1));
+    }
+
+    /**
+     * @return number of bits which is needed for selecting a register
+     */
+    public int getSelectorSize() {
+        return selectorSize;
+    }
+
+    /**
+     * @return number of bits of each register
+     */
+    public int getRegisterSize() {
+        return registerSize;
+    }
+
+    /**
+     * reset all the registers to zero, as if they were never initialized
+     */
+    public void clear() {
+        pages.clear();
+    }
+
+    /**
+     * @return the page of the register, which is allocated if it is the first register of the page
+     */
+    private long[] page(int selector) {
+        int key = selector >>> pageBits;
+        long[] page = pages.get(key);
+        if (page == null) {
+            // the registers, then the initialized bits
+            page = new long[(1 << pageBits) + ((1 << pageBits) + 63 >>> 6)];
+            pages.put(key, page);
+        }
+        return page;
+    }
+
+    private void initialize(long[] page, int index) {
+        page[(1 << pageBits) + (index >>> 6)] |= 1L << index;
+    }
+
+    private int toIndex(Bit[] selector) {
+        // check the arguments
+        if (selector.length != selectorSize)
+            throw new IllegalArgumentException("register bank selector is not valid");
+
+        int index = 0;
+        for (Bit bit : selector) index = (index << 1) | (bit == Bit.ONE ? 1 : 0);
+        return index;
+    }
+
+    @Override
+    public String monitor() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("+----------------------------------+\n");
+        sb.append(String.format("| %-19s | %-10s |\n", "Register Number", "Value"));
+        sb.append("|---------------------|------------|\n");
+
+        int pageSize = 1 << pageBits;
+        for (int key : pages.keys()) {
+            long[] page = pages.get(key);
+            for (int index = 0; index < pageSize; index++) {
+                if ((page[pageSize + (index >>> 6)] & (1L << index)) == 0) continue;
+
+                long selector = (key & 0xFFFFFFFFL) << pageBits | index;
+                String regNumber = Bit.arrayToString(Bits.fromNumber(selector, selectorSize));
+                Bit[] block = Bits.fromNumber(page[index], registerSize);
+                if (regNumber.length() > 16) {
+                    String address16 = regNumber.substring(0, 16);
+                    sb.append(String.format("| %-16s... | %-10s |\n", address16, Bit.arrayToString(block)));
+                } else {
+                    sb.append(String.format("| %-19s | %-10s |\n", regNumber, Bit.arrayToString(block)));
+                }
+                sb.append("+----------------------------------+\n");
+            }
+        }
+
+        return sb.toString();
+    }
+}
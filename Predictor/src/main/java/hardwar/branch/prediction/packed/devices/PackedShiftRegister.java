@@ -0,0 +1,150 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * our packed serial-in, parallel-out register Model
+ * it behaves like SIPORegister but keeps the bits in long words
+ * ------------------------------------------------------
+ * ASSUMPTIONS
+ * 1) the register is stored as a number, the first bit of the register (the newest inserted bit)
+ * is the most significant one. registers up to 64 bits live in a single long
+ *
+ * 2) insert is a shift-and-or on the words, so its cost does not depend on the register length
+ * (for registers longer than 64 bits it is one shift per word)
+ *
+ * 3) readLong and loadLong move the register value without allocating, read keeps the Bit[]
+ * contract of the other shift registers and returns a new array
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.ShiftRegister;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class PackedShiftRegister implements ShiftRegister {
+    private final long[] register; // register[0] holds the 64 least significant bits
+    private final int size;
+    private final long topMask; // valid bits of the most significant word
+    public final String name;
+
+    /**
+     * Creates a new register with the specified size and default value.
+     * If default_value is null, the register is zero-filled by default.
+     *
+     * @param name         the register name
+     * @param size         the size of the register
+     * @param defaultValue the default value to initialize the register with
+     */
+    public PackedShiftRegister(String name, int size, Bit[] defaultValue) {
+        if (size < 1) throw new IllegalArgumentException("register size must be positive");
+
+        this.name = name;
+        this.size = size;
+        this.register = new long[(size + 63) >>> 6];
+        this.topMask = -1L >>> (-size & 63);
+        if (defaultValue != null) {
+            // fill all the register with default value
+            load(Arrays.copyOf(defaultValue, size));
+        }
+    }
+
+    @Override
+    public Bit[] read() {
+        Bit[] bits = new Bit[size];
+        for (int i = 0; i < size; i++) {
+            int position = size - 1 - i;
+            bits[i] = (register[position >>> 6] >>> position & 1) == 1 ? Bit.ONE : Bit.ZERO;
+        }
+        return bits;
+    }
+
+    /**
+     * load data into register, a null bit is loaded as zero
+     *
+     * @param bits data to be load in register
+     */
+    @Override
+    public void load(Bit[] bits) {
+        Arrays.fill(register, 0L);
+        for (int i = 0; i < size; i++) {
+            if (bits[i] == Bit.ONE) {
+                int position = size - 1 - i;
+                register[position >>> 6] |= 1L << position;
+            }
+        }
+    }
+
+    /**
+     * Inserts a new bit at the beginning of the register and shifts all existing bits
+     * to the right.
+     *
+     * @param bit the Bit enum representing the new bit to be inserted
+     */
+    @Override
+    public void insert(Bit bit) {
+        int last = register.length - 1;
+        for (int i = 0; i < last; i++) {
+            register[i] = (register[i] >>> 1) | (register[i + 1] << 63);
+        }
+        register[last] = (register[last] >>> 1) | ((bit == Bit.ONE ? 1L : 0L) << (size - 1));
+    }
+
+    /**
+     * @return the lowest 64 bits of the register value, without allocating
+     */
+    public long readLong() {
+        return register[0];
+    }
+
+    /**
+     * @param value the value to be loaded, the bits above the register length are ignored
+     */
+    public void loadLong(long value) {
+        if (register.length == 1) {
+            register[0] = value & topMask;
+        } else {
+            Arrays.fill(register, 0L);
+            register[0] = value;
+        }
+    }
+
+    @Override
+    public int getLength() {
+        return size;
+    }
+
+
+    /**
+     * clear the register and set the register value to 0
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(register, 0L);
+    }
+
+    /**
+     * Returns the contents of the register as a binary string.
+     * Each bit is represented as a 0 or 1 character.
+     *
+     * @return the binary string representation of the register
+     */
+    @Override
+    public String monitor() {
+        StringBuilder sb = new StringBuilder();
+        int registerWidth = size * 4; // each bit takes up 4 characters
+        int labelWidth = name.length();
+        int boxWidth = registerWidth + labelWidth + 2; // add 2 for the borders
+        int lastBarIndex = registerWidth + labelWidth;
+        String line = String.join("", Collections.nCopies(boxWidth, "-")); // create a line of dashes for the top and bottom borders
+        sb.append("+").append(line, 0, lastBarIndex + 2).append("+\n");
+        sb.append("|").append(name).append(" ");
+        for (Bit bit : read()) {
+            sb.append(" | ").append(bit.getValue() ? "1" : "0");
+        }
+        sb.append(" |\n");
+        sb.append("+").append(line, 0, lastBarIndex + 2).append("+\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * the directory of the lazily allocated pages of the packed devices
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a page is found by an unsigned key of keyBits bits (at most 32). small key spaces are a plain array,
+ * bigger ones are an open addressing hash table which grows with the pages, so a 32 bit key space costs
+ * only the pages which are used
+ *
+ * 2) the last page which is found is remembered, the branches of a loop usually hit the same page
+ *
+ * 3) the directory is not thread safe, like the devices which own it
+ * -------------------------------------------------------
+ */
+
+
+import java.util.Arrays;
+
+final class PageDirectory<T> {
+    private static final int DIRECT_BITS = 12; // widest key space which is a plain array
+
+    private final int keyBits;
+    private Object[] pages; // the pages, by key or by slot
+    private int[] keys; // the key of each slot, null for the plain array
+    private int size; // number of pages
+    private int lastKey = -1;
+    private Object lastPage;
+
+    /**
+     * @param keyBits number of bits of the keys, at most 32
+     */
+    PageDirectory(int keyBits) {
+        if (keyBits < 0 || keyBits > 32) throw new IllegalArgumentException("page key must be 0 to 32 bits");
+        this.keyBits = keyBits;
+        clear();
+    }
+
+    /**
+     * @param key the unsigned key of the page
+     * @return the page, or null if the page is not allocated
+     */
+    @SuppressWarnings("unchecked")
+    T get(int key) {
+        if (key == lastKey && lastPage != null) return (T) lastPage;
+
+        Object page;
+        if (keys == null) {
+            page = pages[key];
+        } else {
+            int slot = find(key);
+            page = slot < 0 ? null : pages[slot];
+        }
+        if (page != null) {
+            lastKey = key;
+            lastPage = page;
+        }
+        return (T) page;
+    }
+
+    /**
+     * @param key  the unsigned key of the page
+     * @param page the page which is added, the key must not have a page yet
+     */
+    void put(int key, T page) {
+        size++;
+        if (keys == null) {
+            pages[key] = page;
+            return;
+        }
+
+        if (size * 2 > keys.length) grow();
+        int slot = ~find(key);
+        pages[slot] = page;
+        keys[slot] = key;
+    }
+
+    /**
+     * @return the keys of the pages in the unsigned order
+     */
+    int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int slot = 0; slot < pages.length; slot++) {
+            if (pages[slot] != null) result[n++] = keys == null ? slot : keys[slot];
+        }
+        // the unsigned order of the keys is the order of the keys flipped at the sign bit
+        for (int i = 0; i < n; i++) result[i] ^= Integer.MIN_VALUE;
+        Arrays.sort(result);
+        for (int i = 0; i < n; i++) result[i] ^= Integer.MIN_VALUE;
+        return result;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * drop all the pages
+     */
+    void clear() {
+        if (keyBits <= DIRECT_BITS) {
+            pages = new Object[1 << keyBits];
+            keys = null;
+        } else {
+            pages = new Object[16];
+            keys = new int[16];
+        }
+        size = 0;
+        lastKey = -1;
+        lastPage = null;
+    }
+
+    /**
+     * @return the slot of the key, or the complement of the empty slot where it belongs
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (pages[slot] != null) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private void grow() {
+        Object[] oldPages = pages;
+        int[] oldKeys = keys;
+        pages = new Object[oldPages.length * 2];
+        keys = new int[oldKeys.length * 2];
+        for (int slot = 0; slot < oldPages.length; slot++) {
+            if (oldPages[slot] == null) continue;
+            int free = ~find(oldKeys[slot]);
+            pages[free] = oldPages[slot];
+            keys[free] = oldKeys[slot];
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * the replacement state of a set associative table
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the table tells the unit about every hit on a way with touch and every new entry with fill, and asks it for
+ * the way to be replaced with victim. the unit does not know which ways hold valid entries, the table fills its
+ * empty ways first
+ *
+ * 2) LRU keeps the time of the last use of each way, the victim is the way with the oldest one.
+ * a victim costs one pass over the ways of the set
+ *
+ * 3) PSEUDO_LRU keeps a binary tree of ways - 1 bits per set in an int, so the number of ways is a power of two
+ * and at most 32. a use and a victim cost one step per level of the tree
+ *
+ * 4) FIFO keeps the time of the fill of each way, like LRU without the hits.
+ * RANDOM keeps no state per way, its victims come from a xorshift generator with a fixed seed
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+
+import java.util.Arrays;
+
+public final class ReplacementUnit {
+    private static final long SEED = 0x9E3779B97F4A7C15L; // first state of the RANDOM generator
+
+    private final ReplacementPolicy policy;
+    private final int ways;
+    private final int levels; // depth of the pseudo LRU tree
+    private final long[] uses; // LRU and FIFO: time of the last use (or fill) of each way, 0 if it was never used
+    private final int[] trees; // PSEUDO_LRU: the tree bits of each set, node n is bit n (the root is 1)
+    private long time;
+    private long random = SEED; // RANDOM: state of the generator
+
+    /**
+     * @param sets   number of sets
+     * @param ways   number of ways of a set, a power of two for PSEUDO_LRU
+     * @param policy replacement policy
+     */
+    public ReplacementUnit(int sets, int ways, ReplacementPolicy policy) {
+        if (sets < 1) throw new IllegalArgumentException("there must be at least one set");
+        if (ways < 1 || ways > 32) throw new IllegalArgumentException("ways must be between 1 and 32");
+        if (policy == ReplacementPolicy.PSEUDO_LRU && Integer.bitCount(ways) != 1)
+            throw new IllegalArgumentException("pseudo LRU needs a power of two ways");
+
+        this.policy = policy;
+        this.ways = ways;
+        this.levels = Integer.numberOfTrailingZeros(ways);
+        boolean timed = policy == ReplacementPolicy.LRU || policy == ReplacementPolicy.FIFO;
+        this.uses = new long[timed ? sets * ways : 0];
+        this.trees = new int[policy == ReplacementPolicy.PSEUDO_LRU ? sets : 0];
+    }
+
+    /**
+     * record a hit on a way
+     */
+    public void touch(int set, int way) {
+        switch (policy) {
+            case LRU:
+                uses[set * ways + way] = ++time;
+                return;
+            case PSEUDO_LRU:
+                point(set, way);
+                return;
+            case RANDOM:
+            case FIFO:
+                return;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * record a new entry in a way
+     */
+    public void fill(int set, int way) {
+        switch (policy) {
+            case LRU:
+            case FIFO:
+                uses[set * ways + way] = ++time;
+                return;
+            case PSEUDO_LRU:
+                point(set, way);
+                return;
+            case RANDOM:
+                return;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * point the nodes of the tree on the path of the way to the other halves
+     */
+    private void point(int set, int way) {
+        int tree = trees[set];
+        int node = 1;
+        for (int level = levels - 1; level >= 0; level--) {
+            int right = way >>> level & 1;
+            tree = right == 0 ? tree | 1 << node : tree & ~(1 << node);
+            node = node << 1 | right;
+        }
+        trees[set] = tree;
+    }
+
+    /**
+     * @return the way of the set to be replaced
+     */
+    public int victim(int set) {
+        switch (policy) {
+            case LRU:
+            case FIFO:
+                int base = set * ways;
+                int victim = 0;
+                for (int way = 1; way < ways; way++) {
+                    if (uses[base + way] < uses[base + victim]) victim = way;
+                }
+                return victim;
+            case PSEUDO_LRU:
+                int tree = trees[set];
+                int node = 1;
+                for (int level = 0; level < levels; level++) node = node << 1 | (tree >>> node & 1);
+                return node - ways;
+            case RANDOM:
+                random ^= random << 13;
+                random ^= random >>> 7;
+                random ^= random << 17;
+                return (int) ((random >>> 32) * ways >>> 32);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    public ReplacementPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public void clear() {
+        Arrays.fill(uses, 0);
+        Arrays.fill(trees, 0);
+        time = 0;
+        random = SEED;
+    }
+}
@@ -0,0 +1,344 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a set associative tagged cache of a fixed capacity
+ * it can replace PageHistoryTable or PerAddressPredictionHistoryTable when their footprint must be bounded
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the entry is read as an unsigned number (MSB first) of at most 63 bits, with a marker bit above its MSB so
+ * entries of different lengths are different keys, like the keys of the map based tables. the low indexSize bits
+ * of the key select the set and the next tagSize bits are the tag, so keys which differ only above the tag alias
+ * on one block
+ *
+ * 2) a block is a nColumns-bit number. the tags, blocks and valid bits live in primitive arrays indexed by
+ * set * ways + way, so the memory does not grow with the number of distinct entries
+ *
+ * 3) a new entry takes an empty way of its set if there is one, otherwise the victim of the replacement policy.
+ * the block of the victim is lost, so a later read of its entry misses
+ *
+ * 4) a read which finds its entry is a hit and a read which does not is a miss, the counters are kept for the
+ * capacity and aliasing studies
+ *
+ * 5) the Bit[] returned by get and setDefault is a new array built from the block,
+ * so the outer components can not manipulate the cache directly
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.CacheGeometry;
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.Cache;
+
+import java.util.Arrays;
+
+public class SetAssociativeCache implements Cache<Bit[], Bit[]> {
+    private final int indexSize;
+    private final int ways;
+    private final int tagSize;
+    private final int nColumns; // number of bits in a block
+    private final long tagMask;
+    private final long[] tags;
+    private final int[] blocks;
+    private final boolean[] valid;
+    private final ReplacementUnit replacement;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache of the default geometry with full tags
+     *
+     * @param nColumns number of bits in a block
+     */
+    public SetAssociativeCache(int nColumns) {
+        this(CacheGeometry.DEFAULT, nColumns);
+    }
+
+    /**
+     * Creates a cache of the given geometry with full tags
+     *
+     * @param geometry the sets, ways and replacement policy of the cache
+     * @param nColumns number of bits in a block
+     */
+    public SetAssociativeCache(CacheGeometry geometry, int nColumns) {
+        this(geometry.getIndexSize(), geometry.getWays(), 64 - geometry.getIndexSize(), nColumns,
+                geometry.getPolicy());
+    }
+
+    /**
+     * @param indexSize number of entry bits which select the set, at most 24
+     * @param ways      number of blocks of a set
+     * @param tagSize   number of entry bits of a tag, between 1 and 64 - indexSize
+     * @param nColumns  number of bits in a block, at most 31
+     * @param policy    replacement policy of the sets
+     */
+    public SetAssociativeCache(int indexSize, int ways, int tagSize, int nColumns, ReplacementPolicy policy) {
+        if (indexSize < 0 || indexSize > 24) throw new IllegalArgumentException("index size must be between 0 and 24");
+        if (tagSize < 1 || tagSize > 64 - indexSize)
+            throw new IllegalArgumentException("tag size must be between 1 and " + (64 - indexSize));
+        if (nColumns < 1 || nColumns > 31) throw new IllegalArgumentException("blocks must be 1 to 31 bits");
+
+        int sets = 1 << indexSize;
+        this.replacement = new ReplacementUnit(sets, ways, policy);
+        this.indexSize = indexSize;
+        this.ways = ways;
+        this.tagSize = tagSize;
+        this.nColumns = nColumns;
+        this.tagMask = tagSize == 64 ? -1L : (1L << tagSize) - 1;
+        this.tags = new long[sets * ways];
+        this.blocks = new int[sets * ways];
+        this.valid = new boolean[sets * ways];
+    }
+
+    /**
+     * Get the value associated with the given key from the cache.
+     *
+     * @param entry the key to look up in the cache
+     * @return the value associated with the key, or null if the key is not found
+     */
+    @Override
+    public Bit[] get(Bit[] entry) {
+        int value = get(toKey(entry));
+        return value == -1 ? null : Bits.fromNumber(value, nColumns);
+    }
+
+    /**
+     * Insert a new key-value pair into the cache, replacing a block of the set if the key is new.
+     *
+     * @param entry the key to insert into the cache
+     * @param value the value to associate with the key
+     * @throws RuntimeException if the length of the block is not equal to nColumns
+     */
+    @Override
+    public void put(Bit[] entry, Bit[] value) {
+        // Check that the length of the block is equal to nColumns
+        if (value.length != nColumns) {
+            throw new RuntimeException("invalid number of bits for cache block");
+        }
+        put(toKey(entry), Bit.toNumber(value));
+    }
+
+    /**
+     * put the value in the entry if the entry is not associated to any block.
+     *
+     * @param entry the address which is selected to put the data in it
+     * @param value the data which is saved in address (key) if the key is not mapped to any not-null data
+     */
+    @Override
+    public void putIfAbsent(Bit[] entry, Bit[] value) {
+        // Check that the length of the block is equal to nColumns
+        if (value.length != nColumns) {
+            throw new RuntimeException("invalid number of bits for cache block");
+        }
+        setDefault(toKey(entry), Bit.toNumber(value));
+    }
+
+    /**
+     * @param entry        the address to look up in the cache
+     * @param defaultValue the default value to insert into the cache if the key is not found
+     * @return the value associated with the key, or the default value if the key is not found
+     */
+    @Override
+    public Bit[] setDefault(Bit[] entry, Bit[] defaultValue) {
+        if (defaultValue == null) throw new RuntimeException("block can not be null");
+        if (defaultValue.length != nColumns) {
+            throw new RuntimeException("invalid number of bits for cache block");
+        }
+        return Bits.fromNumber(setDefault(toKey(entry), Bit.toNumber(defaultValue)), nColumns);
+    }
+
+    /**
+     * @param key the key of the entry
+     * @return the block value, or -1 if the entry is not in the cache
+     */
+    public int get(long key) {
+        int index = find(key);
+        if (index < 0) {
+            misses++;
+            return -1;
+        }
+        hits++;
+        return blocks[index];
+    }
+
+    /**
+     * write the block value of the entry, the entry replaces a block of its set if it is not in the cache
+     *
+     * @param key   the key of the entry
+     * @param value the block value, only the lowest nColumns bits are kept
+     */
+    public void put(long key, int value) {
+        int index = find(key);
+        if (index < 0) index = insert(key);
+        blocks[index] = value & ((1 << nColumns) - 1);
+    }
+
+    /**
+     * write the default value if the entry is not in the cache
+     *
+     * @param key          the key of the entry
+     * @param defaultValue the block value which is written if the entry is not in the cache
+     * @return the block value of the entry
+     */
+    public int setDefault(long key, int defaultValue) {
+        int index = find(key);
+        if (index >= 0) {
+            hits++;
+            return blocks[index];
+        }
+        misses++;
+        index = insert(key);
+        blocks[index] = defaultValue & ((1 << nColumns) - 1);
+        return blocks[index];
+    }
+
+    /**
+     * @return the index of the block of the entry, or -1 if the entry is not in the cache
+     */
+    private int find(long key) {
+        int set = (int) key & ((1 << indexSize) - 1);
+        long tag = key >>> indexSize & tagMask;
+        int base = set * ways;
+        for (int way = 0; way < ways; way++) {
+            if (valid[base + way] && tags[base + way] == tag) {
+                replacement.touch(set, way);
+                return base + way;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * give the entry a block of its set, an empty one if there is one
+     *
+     * @return the index of the new block
+     */
+    private int insert(long key) {
+        int set = (int) key & ((1 << indexSize) - 1);
+        int base = set * ways;
+        int way = 0;
+        while (way < ways && valid[base + way]) way++;
+        if (way == ways) {
+            way = replacement.victim(set);
+            evictions++;
+        }
+        replacement.fill(set, way);
+
+        tags[base + way] = key >>> indexSize & tagMask;
+        valid[base + way] = true;
+        return base + way;
+    }
+
+    /**
+     * @param entry the cache entry
+     * @return the entry as a number
+     * @throws IllegalArgumentException if the entry is wider than 63 bits
+     */
+    private long toKey(Bit[] entry) {
+        if (entry.length > 63) throw new IllegalArgumentException("cache entry is wider than 63 bits");
+        return key(Bits.toLong(entry), entry.length);
+    }
+
+    /**
+     * @param entry  the entry as a number
+     * @param length number of bits of the entry, at most 63
+     * @return the key of the entry in the numeric API: the entry with a marker bit above its MSB
+     */
+    public static long key(long entry, int length) {
+        return entry | 1L << length;
+    }
+
+    /**
+     * @return number of reads which found their entry
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of reads which did not find their entry
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of valid blocks which were replaced by new entries
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of valid blocks
+     */
+    public int countValid() {
+        int count = 0;
+        for (boolean block : valid) if (block) count++;
+        return count;
+    }
+
+    public int getSets() {
+        return 1 << indexSize;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getTagSize() {
+        return tagSize;
+    }
+
+    public int getColumns() {
+        return nColumns;
+    }
+
+    public ReplacementPolicy getPolicy() {
+        return replacement.getPolicy();
+    }
+
+    /**
+     * Clear all entries from the cache and the hit and miss counters.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(tags, 0);
+        Arrays.fill(blocks, 0);
+        Arrays.fill(valid, false);
+        replacement.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Returns a string representation of the current state of the cache, in the order of the sets.
+     *
+     * @return a table with the address and block data for each valid block
+     */
+    @Override
+    public String monitor() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("+----------------------------------+\n");
+        sb.append(String.format("| %-19s | %-10s |\n", "Address", "Block"));
+        sb.append("|---------------------|------------|\n");
+
+        for (int i = 0; i < valid.length; i++) {
+            if (!valid[i]) continue;
+            long key = tags[i] << indexSize | i / ways;
+            String address = Bit.arrayToString(Bits.fromNumber(key, 63 - Long.numberOfLeadingZeros(key)));
+            Bit[] block = Bits.fromNumber(blocks[i], nColumns);
+            if (address.length() > 16) {
+                String address16 = address.substring(0, 16);
+                sb.append(String.format("| %-16s... | %-10s |\n", address16, Bit.arrayToString(block)));
+            } else {
+                sb.append(String.format("| %-19s | %-10s |\n", address, Bit.arrayToString(block)));
+            }
+            sb.append("+----------------------------------+\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.Monitorable;
+import hardwar.branch.prediction.shared.devices.ShiftRegister;
+
+public interface ShiftRegisterBank extends Monitorable {
+    /**
+     * read the specified register from the register bank, a register which is never written is zero.
+     *
+     * @param selector the value which is used for reading from the memory bank
+     * @return a shift register associated to that address ( a copy of it )
+     * @throws IllegalArgumentException if the selector is not in legal bound.
+     */
+    ShiftRegister read(Bit[] selector);
+
+    /**
+     * write the value on a specific register.
+     *
+     * @param selector      the value which is used for reading from the memory bank
+     * @param registerValue the value which is written on specific register.
+     * @throws IllegalArgumentException if the selector is not in legal bound or the registerValue size is not as same as
+     *                                  register size
+     */
+    void write(Bit[] selector, Bit[] registerValue);
+
+    /**
+     * insert a bit at the beginning of the specified register, the same as reading the register,
+     * inserting the bit and writing it back.
+     *
+     * @param selector the value which is used for reading from the memory bank
+     * @param bit      the bit which is inserted in the register
+     * @throws IllegalArgumentException if the selector is not in legal bound.
+     */
+    default void shiftIn(Bit[] selector, Bit bit) {
+        ShiftRegister register = read(selector);
+        register.insert(bit);
+        write(selector, register.read());
+    }
+}
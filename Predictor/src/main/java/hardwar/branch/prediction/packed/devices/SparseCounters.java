@@ -0,0 +1,125 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a growing set of counters keyed by a (selector, row) pair, for the rows which are too sparse for a packed array
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the key is the unsigned 32 bit selector followed by a row of at most 31 bits, so no key is EMPTY
+ *
+ * 2) a counter is present after its first set, like the presence bits of PackedCounters. the table is an open
+ * addressing hash table which doubles when it is half full, a lookup does not allocate
+ * -------------------------------------------------------
+ */
+
+
+import java.util.Arrays;
+
+final class SparseCounters {
+    private static final long EMPTY = -1L;
+
+    private final int width; // number of bits per counter
+    private final long mask;
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * @param width number of bits per counter, at most 32
+     */
+    SparseCounters(int width) {
+        if (width < 1 || width > 32) throw new IllegalArgumentException("counter width must be between 1 and 32");
+        this.width = width;
+        this.mask = (1L << width) - 1;
+        clear();
+    }
+
+    static long key(int selector, int row) {
+        return (selector & 0xFFFFFFFFL) << 32 | row;
+    }
+
+    static int selectorOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    static int rowOf(long key) {
+        return (int) key;
+    }
+
+    int width() {
+        return width;
+    }
+
+    boolean isPresent(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return the counter value, or -1 if the counter is not present
+     */
+    int get(long key) {
+        int slot = find(key);
+        return slot < 0 ? -1 : values[slot];
+    }
+
+    /**
+     * write the counter value and mark it as present
+     */
+    void set(long key, int value) {
+        int slot = find(key);
+        if (slot < 0) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = find(key);
+            }
+            slot = ~slot;
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = (int) (value & mask);
+    }
+
+    /**
+     * @return the keys of the present counters, in no particular order
+     */
+    long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        for (long key : keys) if (key != EMPTY) result[n++] = key;
+        return result;
+    }
+
+    void clear() {
+        keys = new long[16];
+        values = new int[16];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * @return the slot of the key, or the complement of the empty slot where it belongs
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash >>> 32) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] == EMPTY) continue;
+            int free = ~find(oldKeys[slot]);
+            keys[free] = oldKeys[slot];
+            values[free] = oldValues[slot];
+        }
+    }
+}
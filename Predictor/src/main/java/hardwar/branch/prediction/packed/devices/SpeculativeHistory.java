@@ -0,0 +1,85 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * the speculative global history of the GAg, GAp and GAs predictors
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a prediction saves a checkpoint (the BHR before the branch and the predicted result) and shifts the prediction
+ * into the BHR, so the next branch is predicted on it
+ *
+ * 2) the branches are updated in program order. the update of a branch loads its checkpoint into the BHR, and the
+ * predictor reads the counter again on it: an older update may have counted the row since the prediction, and a
+ * misprediction may have repaired the history. so the predictor trains the counter which a RETIRED predictor
+ * would read
+ *
+ * 3) a misprediction rewrites the BHR and the checkpoint of every younger branch: the outcome of the branch
+ * followed by the predictions of the younger branches. once all the branches are updated the BHR is the one
+ * of the RETIRED mode
+ *
+ * 4) the BHR is saved as a number, so it can not be longer than 64 bits
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.ShiftRegister;
+
+public class SpeculativeHistory {
+    private final ShiftRegister BHR; // branch history register of the predictor
+    private final HistoryCheckpointQueue checkpoints; // the in-flight branches
+
+    // the branch which is being updated
+    private long speculative; // the BHR before the update
+    private long history; // the BHR which the branch was predicted on
+    private boolean predicted;
+
+    /**
+     * @param BHR the branch history register of the predictor, at most 64 bits
+     */
+    public SpeculativeHistory(ShiftRegister BHR) {
+        if (BHR.getLength() > 64)
+            throw new IllegalArgumentException("speculative history can not be longer than 64 bits");
+        this.BHR = BHR;
+        this.checkpoints = new HistoryCheckpointQueue(HistoryCheckpointQueue.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * save the checkpoint of a predicted branch and shift the prediction into the BHR
+     *
+     * @param predicted the predicted result of the branch
+     */
+    public void speculate(boolean predicted) {
+        checkpoints.push(Bits.readLong(BHR), predicted);
+        BHR.insert(Bit.of(predicted));
+    }
+
+    /**
+     * load the BHR with the checkpoint of the oldest branch, before the predictor updates it.
+     * the update must be followed by {@link #repair(boolean)}
+     */
+    public void restore() {
+        speculative = Bits.readLong(BHR);
+        history = checkpoints.history();
+        predicted = checkpoints.prediction();
+        Bits.loadLong(BHR, history);
+        checkpoints.pop();
+    }
+
+    /**
+     * set the BHR after the update of the restored branch: the speculative BHR if the branch was predicted
+     * correctly, otherwise the outcome and the predictions of the younger branches
+     *
+     * @param taken the actual result of the branch
+     */
+    public void repair(boolean taken) {
+        Bits.loadLong(BHR, predicted == taken ? speculative : checkpoints.replay(history, taken, BHR.getLength()));
+    }
+
+    /**
+     * @return true if no branch is in flight
+     */
+    public boolean isEmpty() {
+        return checkpoints.isEmpty();
+    }
+}
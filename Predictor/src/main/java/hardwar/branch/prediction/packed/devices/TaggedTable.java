@@ -0,0 +1,106 @@
+package hardwar.branch.prediction.packed.devices;
+
+/*
+ * a partially tagged table of counters, the building block of the TAGE components
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) each entry is one int: the tag in the lowest 16 bits, then a 3-bit prediction counter and a 2-bit
+ * useful counter. the counter predicts taken from 4 upward
+ *
+ * 2) every entry starts with tag 0, a weak not taken counter (3) and no usefulness. the tags are hashed, so
+ * a zero tag is not special: a branch whose tag is 0 hits the empty entries
+ * -------------------------------------------------------
+ */
+
+
+import java.util.Arrays;
+
+public class TaggedTable {
+    public static final int COUNTER_MAX = 7;
+    public static final int USEFUL_MAX = 3;
+
+    private static final int COUNTER_SHIFT = 16;
+    private static final int USEFUL_SHIFT = 19;
+    private static final int EMPTY = 3 << COUNTER_SHIFT;
+
+    private final int[] entries;
+    private final int tagSize;
+
+    /**
+     * @param indexSize number of bits which select an entry
+     * @param tagSize   number of bits of a tag, at most 16
+     */
+    public TaggedTable(int indexSize, int tagSize) {
+        if (indexSize < 0 || indexSize > 28) throw new IllegalArgumentException("index size must be between 0 and 28");
+        if (tagSize < 1 || tagSize > 16) throw new IllegalArgumentException("tag size must be between 1 and 16");
+
+        this.entries = new int[1 << indexSize];
+        this.tagSize = tagSize;
+        Arrays.fill(entries, EMPTY);
+    }
+
+    public int tag(int index) {
+        return entries[index] & 0xFFFF;
+    }
+
+    public int counter(int index) {
+        return entries[index] >>> COUNTER_SHIFT & 7;
+    }
+
+    public int useful(int index) {
+        return entries[index] >>> USEFUL_SHIFT & 3;
+    }
+
+    /**
+     * @return true if the entry holds the tag
+     */
+    public boolean hits(int index, int tag) {
+        return (entries[index] & 0xFFFF) == tag;
+    }
+
+    /**
+     * write a whole entry
+     */
+    public void set(int index, int tag, int counter, int useful) {
+        entries[index] = tag | counter << COUNTER_SHIFT | useful << USEFUL_SHIFT;
+    }
+
+    public void setCounter(int index, int counter) {
+        entries[index] = entries[index] & ~(7 << COUNTER_SHIFT) | counter << COUNTER_SHIFT;
+    }
+
+    public void setUseful(int index, int useful) {
+        entries[index] = entries[index] & ~(3 << USEFUL_SHIFT) | useful << USEFUL_SHIFT;
+    }
+
+    /**
+     * halve the useful counters of all the entries, so the entries which stopped being useful can be replaced
+     */
+    public void age() {
+        for (int i = 0; i < entries.length; i++) {
+            int useful = entries[i] >>> USEFUL_SHIFT & 3;
+            if (useful != 0) setUseful(i, useful >>> 1);
+        }
+    }
+
+    /**
+     * @return number of entries whose useful counter is not zero
+     */
+    public int countUseful() {
+        int count = 0;
+        for (int entry : entries) if ((entry >>> USEFUL_SHIFT & 3) != 0) count++;
+        return count;
+    }
+
+    public int getSize() {
+        return entries.length;
+    }
+
+    public int getTagSize() {
+        return tagSize;
+    }
+
+    public void clear() {
+        Arrays.fill(entries, EMPTY);
+    }
+}
@@ -0,0 +1,304 @@
+package hardwar.branch.prediction.simulation;
+
+/*
+ * a minimal class file writer for the generated kernels
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the classes are written with version 49 (java 5), which the verifier checks by type inference,
+ * so the methods need no stack map frames
+ *
+ * 2) a class has no fields and no interfaces of its own, only methods. a method is written instruction by
+ * instruction into its code buffer, the jumps are patched when their labels are placed
+ *
+ * 3) the constant pool entries are shared, asking twice for the same constant returns the same index
+ * -------------------------------------------------------
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class ClassAssembler {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // the opcodes which the kernels use
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int LLOAD = 0x16;
+    static final int ALOAD = 0x19;
+    static final int IALOAD = 0x2e;
+    static final int LALOAD = 0x2f;
+    static final int BALOAD = 0x33;
+    static final int ISTORE = 0x36;
+    static final int LSTORE = 0x37;
+    static final int ASTORE = 0x3a;
+    static final int IASTORE = 0x4f;
+    static final int BASTORE = 0x54;
+    static final int ISHL = 0x78;
+    static final int IUSHR = 0x7c;
+    static final int LUSHR = 0x7d;
+    static final int IAND = 0x7e;
+    static final int LAND = 0x7f;
+    static final int IOR = 0x80;
+    static final int IXOR = 0x82;
+    static final int IINC = 0x84;
+    static final int I2L = 0x85;
+    static final int L2I = 0x88;
+    static final int IF_ICMPGE = 0xa2;
+    static final int GOTO = 0xa7;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKESPECIAL = 0xb7;
+
+    private final String name;
+    private final String superName;
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private final List<byte[]> methods = new ArrayList<>();
+    private int poolSize = 1;
+
+    /**
+     * @param name      internal name of the class, like a/b/C
+     * @param superName internal name of the super class
+     */
+    ClassAssembler(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, 1, out -> out.writeUTF(value), 1);
+    }
+
+    int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+        return constant("C" + internalName, 7, out -> out.writeShort(nameIndex), 1);
+    }
+
+    int integer(int value) {
+        return constant("I" + value, 3, out -> out.writeInt(value), 1);
+    }
+
+    int longValue(long value) {
+        return constant("J" + value, 5, out -> out.writeLong(value), 2);
+    }
+
+    int fieldRef(String owner, String field, String descriptor) {
+        return memberRef(9, owner, field, descriptor);
+    }
+
+    int methodRef(String owner, String method, String descriptor) {
+        return memberRef(10, owner, method, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String member, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(member);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + member + ":" + descriptor, 12, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        }, 1);
+        return constant(tag + owner + "." + member + ":" + descriptor, tag, out -> {
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        }, 1);
+    }
+
+    private int constant(String key, int tag, PoolWriter writer, int slots) {
+        Integer index = constants.get(key);
+        if (index != null) return index;
+        try {
+            poolOut.writeByte(tag);
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        constants.put(key, poolSize);
+        poolSize += slots;
+        if (poolSize > 0xFFFF) throw new IllegalStateException("constant pool is full");
+        return poolSize - slots;
+    }
+
+    /**
+     * @return a new method, which is added to the class by its end
+     */
+    Method method(int access, String methodName, String descriptor, int maxStack, int maxLocals) {
+        return new Method(access, utf8(methodName), utf8(descriptor), maxStack, maxLocals);
+    }
+
+    /**
+     * @return the class file
+     */
+    byte[] toByteArray() {
+        int thisIndex = classRef(name);
+        int superIndex = classRef(superName);
+        utf8("Code");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) out.write(method);
+            out.writeShort(0); // attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface PoolWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * a jump target, the jumps which are written before the label is placed are patched when it is placed
+     */
+    static final class Label {
+        private int position = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+    }
+
+    final class Method {
+        private final int access;
+        private final int nameIndex;
+        private final int descriptorIndex;
+        private final int maxStack;
+        private final int maxLocals;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+        private Method(int access, int nameIndex, int descriptorIndex, int maxStack, int maxLocals) {
+            this.access = access;
+            this.nameIndex = nameIndex;
+            this.descriptorIndex = descriptorIndex;
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        Method op(int opcode) {
+            code.write(opcode);
+            return this;
+        }
+
+        Method op(int opcode, int operand) {
+            code.write(opcode);
+            code.write(operand);
+            return this;
+        }
+
+        /**
+         * an instruction with a two byte operand, like the field and method references
+         */
+        Method op2(int opcode, int operand) {
+            code.write(opcode);
+            code.write(operand >>> 8);
+            code.write(operand);
+            return this;
+        }
+
+        /**
+         * push an int constant with the shortest instruction
+         */
+        Method iconst(int value) {
+            if (value >= -1 && value <= 5) return op(ICONST_0 + value);
+            if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) return op(BIPUSH, value & 0xFF);
+            if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) return op2(SIPUSH, value & 0xFFFF);
+            int index = integer(value);
+            return index <= 0xFF ? op(LDC, index) : op2(LDC_W, index);
+        }
+
+        Method lconst(long value) {
+            return op2(LDC2_W, longValue(value));
+        }
+
+        Method iinc(int local, int increment) {
+            code.write(IINC);
+            code.write(local);
+            code.write(increment);
+            return this;
+        }
+
+        Method jump(int opcode, Label label) {
+            int position = code.size();
+            code.write(opcode);
+            if (label.position >= 0) {
+                int offset = label.position - position;
+                code.write(offset >>> 8);
+                code.write(offset);
+            } else {
+                label.jumps.add(position);
+                code.write(0);
+                code.write(0);
+            }
+            return this;
+        }
+
+        Method place(Label label) {
+            label.position = code.size();
+            if (label.jumps.isEmpty()) return this;
+
+            byte[] bytes = code.toByteArray();
+            for (int jump : label.jumps) {
+                int offset = label.position - jump;
+                if (offset > Short.MAX_VALUE) throw new IllegalStateException("method is too long for a jump");
+                bytes[jump + 1] = (byte) (offset >>> 8);
+                bytes[jump + 2] = (byte) offset;
+            }
+            code.reset();
+            code.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        /**
+         * add the method to the class
+         */
+        void end() {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeShort(access);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+                out.writeShort(1); // the Code attribute
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + code.size());
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(code.size());
+                code.writeTo(out);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // attributes of the code
+                methods.add(bytes.toByteArray());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
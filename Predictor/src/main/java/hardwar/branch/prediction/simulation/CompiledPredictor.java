@@ -0,0 +1,245 @@
+package hardwar.branch.prediction.simulation;
+
+/*
+ * a small GAg, GAp, PAg or PAp configuration compiled to a transition table
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a PHT of 2^BHRSize counters of SCSize bits fits in one long word together with a BHR, so the state of
+ * the predictor is a few words: the global PHT word or one PHT word per address, and the global BHR or one BHR
+ * per address. the counter of row r is bits [r * SCSize, (r + 1) * SCSize) of the word, the BHR sits above
+ * the counters in the transition values
+ *
+ * 2) the whole state of a GAg(4, 2) is 36 bits, far too many states for one table. the table is indexed by the part
+ * of the state which a branch reads instead: (BHR, counter of the row, outcome). each value is the xor which moves
+ * the PHT word and the BHR to their next state, and its sign bit is the prediction.
+ * a branch costs one lookup, the shifts which find the counter, and one xor per word
+ *
+ * 3) the results are the ones of the PACKED predictor of the configuration (and of the MAP one, which the packed
+ * devices follow): saturating counters which start at zero and BHRs which start at zero, the newest outcome
+ * being the most significant bit
+ *
+ * 4) the addresses are cut to branchInstructionSize bits and index the per address words directly, a sweep
+ * compiles only the configurations whose address size is the width of the trace
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.CountMode;
+
+public final class CompiledPredictor implements BatchPredictor {
+    public static final int MAX_STATE_BITS = 63; // counters and BHR of a transition value, the sign is the prediction
+    public static final int MAX_SC_SIZE = 10;
+    public static final int MAX_ADDRESS_SIZE = 20;
+
+    private final Configuration configuration;
+    private final int BHRSize;
+    private final int SCSize;
+    private final int addressSize;
+    private final int tableBits; // number of counter bits of a PHT word
+    private final long tableMask;
+    private final long historyMask;
+    private final long addressMask;
+    private final long[] transitions; // indexed by (BHR << SCSize | counter) << 1 | outcome
+
+    private final long[] tables; // GAp and PAp: the PHT word of each address
+    private final byte[] histories; // PAg and PAp: the BHR of each address
+    private long table; // GAg and PAg: the PHT word
+    private long history; // GAg and GAp: the BHR
+    private int selector; // address of the last prediction
+    private int transition; // transition of the last prediction, without the outcome
+
+    private CompiledPredictor(Configuration configuration) {
+        this.configuration = configuration;
+        this.BHRSize = configuration.BHRSize;
+        this.SCSize = configuration.SCSize;
+        this.addressSize = usesAddress(configuration.family) ? configuration.branchInstructionSize : 0;
+        this.tableBits = SCSize << BHRSize;
+        this.tableMask = (1L << tableBits) - 1;
+        this.historyMask = (1L << BHRSize) - 1;
+        this.addressMask = (1L << addressSize) - 1;
+        this.transitions = compile(BHRSize, SCSize);
+
+        PredictorFamily family = configuration.family;
+        boolean perAddressTable = family == PredictorFamily.GAp || family == PredictorFamily.PAp;
+        boolean perAddressHistory = family == PredictorFamily.PAg || family == PredictorFamily.PAp;
+        this.tables = perAddressTable ? new long[1 << addressSize] : null;
+        this.histories = perAddressHistory ? new byte[1 << addressSize] : null;
+    }
+
+    /**
+     * @param configuration the configuration to be compiled
+     * @return a predictor with the same results as the predictor of the configuration
+     * @throws IllegalArgumentException if the configuration can not be compiled
+     */
+    public static CompiledPredictor compile(Configuration configuration) {
+        if (!supports(configuration))
+            throw new IllegalArgumentException(configuration + " is too big to be compiled");
+        return new CompiledPredictor(configuration);
+    }
+
+    /**
+     * @return true if the configuration is a GAg, GAp, PAg or PAp whose PHT and BHR fit in MAX_STATE_BITS bits,
+     * with counters of at most MAX_SC_SIZE bits and addresses of at most MAX_ADDRESS_SIZE bits
+     */
+    public static boolean supports(Configuration configuration) {
+        PredictorFamily family = configuration.family;
+        if (family != PredictorFamily.GAg && !usesAddress(family)) return false;
+        if (configuration.storageMode == StorageMode.BOUNDED) return false; // a bounded table can lose counters
+        if (configuration.BHRSize < 1 || configuration.BHRSize > 6) return false; // 64 one bit counters do not fit
+        if (configuration.SCSize < 1 || configuration.SCSize > MAX_SC_SIZE) return false;
+        if (configuration.BHRSize + (configuration.SCSize << configuration.BHRSize) > MAX_STATE_BITS) return false;
+        return !usesAddress(family) || configuration.branchInstructionSize >= 1
+                && configuration.branchInstructionSize <= MAX_ADDRESS_SIZE;
+    }
+
+    /**
+     * @param configuration the configuration to be simulated
+     * @param addressWidth  number of bits of the addresses of the trace
+     * @return true if the configuration can be compiled and gives the same results as its predictor on the trace
+     */
+    public static boolean supports(Configuration configuration, int addressWidth) {
+        return supports(configuration)
+                && (!usesAddress(configuration.family) || configuration.branchInstructionSize == addressWidth);
+    }
+
+    private static boolean usesAddress(PredictorFamily family) {
+        return family == PredictorFamily.GAp || family == PredictorFamily.PAg || family == PredictorFamily.PAp;
+    }
+
+    /**
+     * build the transition table: for each BHR, counter of its row and outcome, the xor of the next PHT word and BHR
+     * (the counter delta at bits BHR * SCSize, the BHR delta above the counters) and the prediction in the sign bit
+     */
+    private static long[] compile(int BHRSize, int SCSize) {
+        int tableBits = SCSize << BHRSize;
+        long[] transitions = new long[2 << (BHRSize + SCSize)];
+        for (int row = 0; row < 1 << BHRSize; row++) {
+            for (int counter = 0; counter < 1 << SCSize; counter++) {
+                long prediction = counter >>> (SCSize - 1) != 0 ? Long.MIN_VALUE : 0;
+                for (int outcome = 0; outcome < 2; outcome++) {
+                    int next = PackedLogic.count(counter, SCSize, outcome == 1, CountMode.SATURATING);
+                    int nextRow = row >>> 1 | outcome << (BHRSize - 1);
+                    transitions[(row << SCSize | counter) << 1 | outcome] = prediction
+                            | (long) (counter ^ next) << (row * SCSize)
+                            | (long) (row ^ nextRow) << tableBits;
+                }
+            }
+        }
+        return transitions;
+    }
+
+    /**
+     * predicts the result of a branch instruction from the counter of its BHR
+     *
+     * @param instruction the branch instruction
+     * @return the predicted outcome of the branch instruction (taken or not taken)
+     */
+    @Override
+    public BranchResult predict(BranchInstruction instruction) {
+        selector = (int) (PackedBranchInstruction.addressOf(instruction) & addressMask);
+        int row = (int) (histories != null ? histories[selector] : history);
+        long word = tables != null ? tables[selector] : table;
+        int counter = (int) (word >>> (row * SCSize)) & ((1 << SCSize) - 1);
+        transition = (row << SCSize | counter) << 1;
+        return BranchResult.of(counter >>> (SCSize - 1) != 0);
+    }
+
+    /**
+     * move the counter and the BHR of the last prediction to their next state
+     *
+     * @param instruction the branch instruction
+     * @param actual      the actual result of branch (Taken or Not)
+     */
+    @Override
+    public void update(BranchInstruction instruction, BranchResult actual) {
+        long value = transitions[transition | (BranchResult.isTaken(actual) ? 1 : 0)];
+        if (tables != null) tables[selector] ^= value & tableMask;
+        else table ^= value & tableMask;
+        if (histories != null) histories[selector] ^= (byte) (value >>> tableBits & historyMask);
+        else history ^= value >>> tableBits & historyMask;
+    }
+
+    /**
+     * one lookup per branch, with a loop for each way the state is split
+     */
+    @Override
+    public void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                         int from, int to) {
+        long[] transitions = this.transitions;
+        int SCSize = this.SCSize;
+        int counterMask = (1 << SCSize) - 1;
+        long tableMask = this.tableMask;
+        int tableBits = this.tableBits;
+        long historyMask = this.historyMask;
+        long table = this.table;
+        long history = this.history;
+
+        switch (configuration.family) {
+            case GAg:
+                for (int i = from; i < to; i++) {
+                    int row = (int) history;
+                    int counter = (int) (table >>> (row * SCSize)) & counterMask;
+                    long value = transitions[(row << SCSize | counter) << 1 | (outcomes[i] ? 1 : 0)];
+                    table ^= value & tableMask;
+                    history ^= value >>> tableBits & historyMask;
+                    predictionsOut[i] = value < 0;
+                }
+                break;
+            case GAp:
+                for (int i = from; i < to; i++) {
+                    int selector = (int) (addresses[i] & addressMask);
+                    int row = (int) history;
+                    long word = tables[selector];
+                    int counter = (int) (word >>> (row * SCSize)) & counterMask;
+                    long value = transitions[(row << SCSize | counter) << 1 | (outcomes[i] ? 1 : 0)];
+                    tables[selector] = word ^ (value & tableMask);
+                    history ^= value >>> tableBits & historyMask;
+                    predictionsOut[i] = value < 0;
+                }
+                break;
+            case PAg:
+                for (int i = from; i < to; i++) {
+                    int selector = (int) (addresses[i] & addressMask);
+                    int row = histories[selector];
+                    int counter = (int) (table >>> (row * SCSize)) & counterMask;
+                    long value = transitions[(row << SCSize | counter) << 1 | (outcomes[i] ? 1 : 0)];
+                    table ^= value & tableMask;
+                    histories[selector] = (byte) (row ^ (value >>> tableBits & historyMask));
+                    predictionsOut[i] = value < 0;
+                }
+                break;
+            case PAp:
+                for (int i = from; i < to; i++) {
+                    int selector = (int) (addresses[i] & addressMask);
+                    int row = histories[selector];
+                    long word = tables[selector];
+                    int counter = (int) (word >>> (row * SCSize)) & counterMask;
+                    long value = transitions[(row << SCSize | counter) << 1 | (outcomes[i] ? 1 : 0)];
+                    tables[selector] = word ^ (value & tableMask);
+                    histories[selector] = (byte) (row ^ (value >>> tableBits & historyMask));
+                    predictionsOut[i] = value < 0;
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+        this.table = table;
+        this.history = history;
+    }
+
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public String monitor() {
+        return "Compiled " + configuration + " snapshot: \n" +
+                "PHT word: " + Long.toBinaryString(table) + ", BHR: " + Long.toBinaryString(history) + "\n";
+    }
+}
@@ -0,0 +1,267 @@
+package hardwar.branch.prediction.simulation;
+
+/*
+ * a two level predictor which many threads share, like the hardware threads of an SMT core
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the predictor is built from a configuration of any two level family. the counters live in a
+ * ConcurrentCounterTable and the histories in a ConcurrentRegisterBank, both are lock free.
+ * the storage mode of the configuration is ignored
+ *
+ * 2) each hardware thread has its own global history, in a striped register bank so the threads do not share
+ * cache lines. the per address and per set histories and all the counters are shared by the threads
+ *
+ * 3) there is no SC register: everything the update of a branch needs is in its prediction token, and the update
+ * counts the counter of the table atomically. a single thread which updates every branch before the next
+ * prediction gets the same results as the PACKED predictor of the configuration
+ *
+ * 4) unlike the PAs and SAs predictors, which read the row of the hashed history and write the row of the history
+ * itself, the PAs and SAs variants read and count the same row, the hashed history. so each of their PHTs has
+ * 2^K rows
+ *
+ * 5) the branch addresses are at most 64 bits. the families which select by the address itself (GAp, PAg, PAp,
+ * PAs and SAp) need addresses of branchInstructionSize bits
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.PipelinedBranchPredictor;
+import hardwar.branch.prediction.packed.PredictionToken;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.packed.devices.ConcurrentCounterTable;
+import hardwar.branch.prediction.packed.devices.ConcurrentRegisterBank;
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.CountMode;
+import hardwar.branch.prediction.shared.HashMode;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrentPredictor implements PipelinedBranchPredictor {
+    private final Configuration configuration;
+    private final ConcurrentRegisterBank histories; // per thread, per address or per set branch history registers
+    private final ConcurrentCounterTable counters; // the PHT, PAPHT or PSPHT
+    private final PredictionToken tokenLayout;
+
+    /**
+     * @param configuration the family and the parameters of the predictor
+     * @param threads       number of hardware threads which share the predictor
+     * @throws IllegalArgumentException if the tables do not fit the concurrent devices or the tokens
+     */
+    public ConcurrentPredictor(Configuration configuration, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("number of threads must be positive");
+        if (configuration.family == PredictorFamily.Bimodal || configuration.family == PredictorFamily.Gshare
+                || configuration.family == PredictorFamily.Perceptron || configuration.family == PredictorFamily.TAGE)
+            throw new IllegalArgumentException(configuration.family + " is not a two level predictor");
+
+        this.configuration = configuration;
+        int BHRSize = configuration.BHRSize;
+        int threadBits = threads > 1 ? 32 - Integer.numberOfLeadingZeros(threads - 1) : 0;
+
+        switch (configuration.family) {
+            case GAg:
+            case GAp:
+            case GAs:
+                histories = new ConcurrentRegisterBank(threadBits, BHRSize, true);
+                break;
+            case PAg:
+            case PAp:
+            case PAs:
+                histories = new ConcurrentRegisterBank(configuration.branchInstructionSize, BHRSize, false);
+                break;
+            default:
+                histories = new ConcurrentRegisterBank(configuration.KSize, BHRSize, false);
+        }
+
+        int rows = hashesHistory() ? 1 << configuration.KSize : 1 << BHRSize;
+        counters = new ConcurrentCounterTable(tableSelectorSize(), rows, configuration.SCSize);
+        tokenLayout = new PredictionToken(configuration.SCSize, hashesHistory() ? configuration.KSize : BHRSize,
+                tableSelectorSize(), histories.getSelectorSize());
+    }
+
+    /**
+     * @return the configuration of the predictor
+     */
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * the prediction of hardware thread 0
+     */
+    @Override
+    public BranchResult predict(BranchInstruction branchInstruction) {
+        return PredictionToken.result(predictToken(0, branchInstruction));
+    }
+
+    /**
+     * the update of hardware thread 0, on the history and the counter which predict read
+     */
+    @Override
+    public void update(BranchInstruction instruction, BranchResult actual) {
+        update(predictToken(0, instruction), actual);
+    }
+
+    /**
+     * the prediction token of hardware thread 0
+     */
+    @Override
+    public long predictToken(BranchInstruction instruction) {
+        return predictToken(0, instruction);
+    }
+
+    /**
+     * @param thread      the hardware thread of the branch
+     * @param instruction the branch instruction
+     * @return the prediction token of the branch
+     * @throws IndexOutOfBoundsException if the thread is not one of the threads of the predictor
+     * @throws IllegalArgumentException  if the address width is not supported
+     */
+    public long predictToken(int thread, BranchInstruction instruction) {
+        int width = PackedBranchInstruction.addressWidthOf(instruction);
+        long address = PackedBranchInstruction.addressOf(instruction);
+        if (width > 64) throw new IllegalArgumentException("the branch address is wider than 64 bits");
+
+        int historySelector;
+        switch (configuration.family) {
+            case GAg:
+            case GAp:
+            case GAs:
+                historySelector = thread;
+                break;
+            case PAg:
+            case PAp:
+            case PAs:
+                historySelector = addressSelector(address, width);
+                break;
+            case SAs:
+                historySelector = PackedLogic.hash(address, width, configuration.KSize, configuration.hashMode);
+                break;
+            default:
+                historySelector = PackedLogic.hash(address, width, configuration.KSize, HashMode.XOR);
+        }
+
+        int tableSelector;
+        switch (configuration.family) {
+            case GAg:
+            case PAg:
+            case SAg:
+                tableSelector = 0;
+                break;
+            case GAp:
+            case PAp:
+            case SAp:
+                tableSelector = addressSelector(address, width);
+                break;
+            case GAs:
+            case PAs:
+                tableSelector = PackedLogic.hash(address, width, configuration.KSize, configuration.hashMode);
+                break;
+            default:
+                tableSelector = historySelector;
+        }
+
+        long history = histories.read(historySelector);
+        int row = hashesHistory()
+                ? PackedLogic.hash(history, configuration.BHRSize, configuration.KSize, configuration.hashMode)
+                : (int) history;
+        return tokenLayout.pack(counters.read(tableSelector, row), row, tableSelector, historySelector);
+    }
+
+    /**
+     * count the counter of the branch and shift the outcome into its history register, atomically
+     *
+     * @param token  the prediction token of the branch
+     * @param actual the actual result of branch (taken or not)
+     */
+    @Override
+    public void update(long token, BranchResult actual) {
+        boolean taken = BranchResult.isTaken(actual);
+        counters.count(tokenLayout.selector(token), tokenLayout.row(token), taken, CountMode.SATURATING);
+        histories.shiftIn(tokenLayout.historySelector(token), Bit.of(taken));
+    }
+
+    /**
+     * @return true if the row is the history hashed to K bits
+     */
+    private boolean hashesHistory() {
+        return configuration.family == PredictorFamily.PAs || configuration.family == PredictorFamily.SAs;
+    }
+
+    private int tableSelectorSize() {
+        switch (configuration.family) {
+            case GAp:
+            case PAp:
+            case SAp:
+                return configuration.branchInstructionSize;
+            case GAs:
+            case PAs:
+            case SAs:
+                return configuration.KSize;
+            default:
+                return 0;
+        }
+    }
+
+    private int addressSelector(long address, int width) {
+        if (width != configuration.branchInstructionSize)
+            throw new IllegalArgumentException("the branch address is not branchInstructionSize bits wide");
+        return (int) address;
+    }
+
+    @Override
+    public String monitor() {
+        return configuration.family + " concurrent predictor snapshot: \n" + histories.monitor() + counters.monitor();
+    }
+
+    /**
+     * replay a trace on one shared predictor from 1, 2, 4, ... threads, every thread replays the whole trace
+     * as its own hardware thread, and print the throughput
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("usage: ConcurrentPredictor <trace.bin> [family] [max threads]");
+            System.exit(1);
+        }
+        Trace trace = Trace.load(Paths.get(args[0]));
+        PredictorFamily family = args.length > 1 ? PredictorFamily.valueOf(args[1]) : PredictorFamily.GAs;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Configuration configuration = new Configuration(family, 12, 2, trace.getAddressWidth(), 10, HashMode.XOR,
+                StorageMode.PACKED);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ConcurrentPredictor predictor = new ConcurrentPredictor(configuration, threads);
+            AtomicLong hits = new AtomicLong();
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                workers[t] = new Thread(() -> {
+                    PackedBranchInstruction instruction = new PackedBranchInstruction();
+                    long local = 0;
+                    for (int i = 0; i < trace.size(); i++) {
+                        instruction.set(0, 0, trace.getAddress(i), trace.getAddressWidth(), 0, 0);
+                        long token = predictor.predictToken(thread, instruction);
+                        boolean taken = trace.isTaken(i);
+                        if (PredictionToken.result(token) == BranchResult.of(taken)) local++;
+                        predictor.update(token, BranchResult.of(taken));
+                    }
+                    hits.addAndGet(local);
+                });
+            }
+
+            long start = System.nanoTime();
+            for (Thread worker : workers) worker.start();
+            for (Thread worker : workers) worker.join();
+            long elapsed = System.nanoTime() - start;
+
+            long branches = (long) threads * trace.size();
+            System.out.printf("%2d threads: %.1f M branches/s, accuracy %.4f%%%n", threads,
+                    branches * 1e3 / elapsed, 100.0 * hits.get() / branches);
+        }
+    }
+}
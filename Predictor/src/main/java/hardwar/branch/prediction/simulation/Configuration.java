@@ -0,0 +1,116 @@
+package hardwar.branch.prediction.simulation;
+
+import hardwar.branch.prediction.packed.CacheGeometry;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.HashMode;
+
+import java.util.Objects;
+
+/**
+ * one point of a sweep: a predictor family and its constructor parameters.
+ * the parameters which the family does not use are dropped, so equal predictors have equal configurations.
+ * the families which hash K bits without taking a hash mode always hash with XOR, so their hash mode is XOR.
+ */
+public final class Configuration {
+    final PredictorFamily family;
+    final int BHRSize;
+    final int SCSize;
+    final int branchInstructionSize;
+    final int KSize;
+    final HashMode hashMode;
+    final StorageMode storageMode;
+    final CacheGeometry geometry; // the tables of a BOUNDED configuration, null for the other storage modes
+
+    public Configuration(PredictorFamily family, int BHRSize, int SCSize, int branchInstructionSize, int KSize,
+                         HashMode hashMode, StorageMode storageMode) {
+        this(family, BHRSize, SCSize, branchInstructionSize, KSize, hashMode, storageMode, CacheGeometry.DEFAULT);
+    }
+
+    public Configuration(PredictorFamily family, int BHRSize, int SCSize, int branchInstructionSize, int KSize,
+                         HashMode hashMode, StorageMode storageMode, CacheGeometry geometry) {
+        this.family = family;
+        this.BHRSize = family.usesBHRSize ? BHRSize : 0;
+        this.SCSize = family.usesSCSize ? SCSize : 0;
+        this.branchInstructionSize = family.usesAddressSize ? branchInstructionSize : 0;
+        this.KSize = family.usesKSize ? KSize : 0;
+        this.hashMode = family.usesHashMode ? hashMode : family.usesKSize ? HashMode.XOR : null;
+        this.storageMode = storageMode;
+        this.geometry = storageMode == StorageMode.BOUNDED ? geometry : null;
+    }
+
+    /**
+     * @return a new predictor of this configuration
+     */
+    public BranchPredictor create() {
+        return family.create(this);
+    }
+
+    public PredictorFamily getFamily() {
+        return family;
+    }
+
+    public int getBHRSize() {
+        return BHRSize;
+    }
+
+    public int getSCSize() {
+        return SCSize;
+    }
+
+    public int getBranchInstructionSize() {
+        return branchInstructionSize;
+    }
+
+    public int getKSize() {
+        return KSize;
+    }
+
+    public HashMode getHashMode() {
+        return hashMode;
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public CacheGeometry getGeometry() {
+        return geometry;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Configuration)) return false;
+        Configuration that = (Configuration) o;
+        return family == that.family && BHRSize == that.BHRSize && SCSize == that.SCSize
+                && branchInstructionSize == that.branchInstructionSize && KSize == that.KSize
+                && hashMode == that.hashMode && storageMode == that.storageMode
+                && Objects.equals(geometry, that.geometry);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(family, BHRSize, SCSize, branchInstructionSize, KSize, hashMode, storageMode, geometry);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(family).append('(');
+        String separator = "";
+        if (family.usesBHRSize) {
+            sb.append("BHR=").append(BHRSize);
+            separator = ", ";
+        }
+        if (family.usesSCSize) {
+            sb.append(separator).append("SC=").append(SCSize);
+            separator = ", ";
+        }
+        if (family.usesAddressSize) sb.append(separator).append("address=").append(branchInstructionSize);
+        if (family.usesKSize) sb.append(", K=").append(KSize);
+        if (family.usesHashMode) sb.append(", ").append(hashMode);
+        if (geometry != null) sb.append(", bounded=").append(geometry);
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,340 @@
+package hardwar.branch.prediction.simulation;
+
+/*
+ * writes a final kernel class for one configuration at runtime
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the predictors read their widths, masks and hash mode from fields and reach their tables through the
+ * Cache and ShiftRegister interfaces, so a sweep which loads several predictor types keeps these calls
+ * megamorphic. a kernel is a subclass of PredictorKernel whose run method is the simulate loop of one
+ * configuration on one address width, with every width, mask and shift an instruction constant and the hash
+ * unrolled, so the JIT compiles each configuration to its own straight line code
+ *
+ * 2) the tree is built for java 8, which has no hidden classes, so the kernels are written by ClassAssembler and
+ * defined by a class loader of the generator. the classes of a configuration and address width are kept and shared
+ * by the later kernels of the same shape
+ *
+ * 3) the results are the ones of the PACKED predictor of the configuration: saturating counters which start
+ * at zero, BHRs which start at zero with the newest outcome as the most significant bit, the same index and hash
+ * functions. GAg, GAp, GAs, PAg, PAp, Bimodal and Gshare are generated
+ *
+ * 4) the PHT is a flat int array of 2^(index bits) counters, so the index is at most MAX_INDEX_BITS bits.
+ * GAp, PAg and PAp index their tables with the address, so their address size must be the width of the trace
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.HashFunction;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.shared.CountMode;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hardwar.branch.prediction.simulation.ClassAssembler.*;
+
+public final class KernelGenerator {
+    public static final int MAX_INDEX_BITS = 22;
+    public static final int MAX_SC_SIZE = 10;
+
+    private static final String PACKAGE = "hardwar/branch/prediction/simulation/";
+    private static final String BASE = PACKAGE + "PredictorKernel";
+
+    // the locals of run
+    private static final int ADDRESSES = 1;
+    private static final int OUTCOMES = 2;
+    private static final int PREDICTIONS = 3;
+    private static final int FROM = 4;
+    private static final int TO = 5;
+    private static final int COUNTERS = 6;
+    private static final int HISTORIES = 7;
+    private static final int TRANSITIONS = 8;
+    private static final int HISTORY = 9;
+    private static final int I = 10;
+    private static final int ADDRESS = 11; // a long, two slots
+    private static final int SELECTOR = 13;
+    private static final int ROW = 14;
+    private static final int INDEX = 15;
+    private static final int COUNTER = 16;
+    private static final int TAKEN = 17;
+    private static final int FOLDED = 18; // a long, two slots
+    private static final int LOCALS = 20;
+
+    private static final KernelLoader loader = new KernelLoader();
+    private static final ConcurrentMap<String, Constructor<? extends PredictorKernel>> kernels =
+            new ConcurrentHashMap<>();
+    private static final AtomicInteger generated = new AtomicInteger();
+
+    private KernelGenerator() {
+    }
+
+    /**
+     * @param configuration the configuration to be simulated
+     * @param addressWidth  number of bits of the addresses of the trace
+     * @return true if a kernel of the configuration gives the same results as its predictor on the trace
+     */
+    public static boolean supports(Configuration configuration, int addressWidth) {
+        PredictorFamily family = configuration.family;
+        if (configuration.storageMode == StorageMode.BOUNDED) return false; // a bounded table can lose counters
+        if (addressWidth < 1 || addressWidth > 64) return false;
+        if (configuration.SCSize < 1 || configuration.SCSize > MAX_SC_SIZE) return false;
+        if (usesHistory(family) && (configuration.BHRSize < 1 || configuration.BHRSize > 30)) return false;
+        if (usesHash(family) && (configuration.KSize < 1 || configuration.KSize > MAX_INDEX_BITS)) return false;
+        if (usesAddress(family) && (configuration.branchInstructionSize != addressWidth
+                || addressWidth > MAX_INDEX_BITS)) return false;
+
+        switch (family) {
+            case GAg:
+            case PAg:
+                return configuration.BHRSize <= MAX_INDEX_BITS;
+            case GAp:
+            case PAp:
+                return configuration.branchInstructionSize + configuration.BHRSize <= MAX_INDEX_BITS;
+            case GAs:
+                return configuration.KSize + configuration.BHRSize <= MAX_INDEX_BITS;
+            case Bimodal:
+            case Gshare:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param configuration the configuration to be simulated
+     * @param addressWidth  number of bits of the addresses of the trace
+     * @return a new kernel with the same results as the predictor of the configuration
+     * @throws IllegalArgumentException if the configuration has no kernel
+     */
+    public static PredictorKernel generate(Configuration configuration, int addressWidth) {
+        if (!supports(configuration, addressWidth))
+            throw new IllegalArgumentException(configuration + " has no kernel for " + addressWidth + " bit addresses");
+
+        Constructor<? extends PredictorKernel> constructor = kernels.computeIfAbsent(
+                shape(configuration, addressWidth), key -> define(configuration, addressWidth));
+        int[] transitions = transitions(configuration.SCSize);
+        try {
+            boolean perAddressHistory = configuration.family == PredictorFamily.PAg
+                    || configuration.family == PredictorFamily.PAp;
+            PredictorKernel kernel = constructor.newInstance(1 << indexBits(configuration),
+                    perAddressHistory ? 1 << configuration.branchInstructionSize : 0, transitions);
+            kernel.bind(configuration, addressWidth);
+            return kernel;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the parameters which the code of a kernel depends on
+     */
+    private static String shape(Configuration configuration, int addressWidth) {
+        PredictorFamily family = configuration.family;
+        return family + "/" + configuration.SCSize
+                + "/" + (usesHistory(family) ? configuration.BHRSize : 0)
+                + "/" + (usesHash(family) ? configuration.KSize + "/" + configuration.hashMode : "")
+                + "/" + addressWidth;
+    }
+
+    private static boolean usesHistory(PredictorFamily family) {
+        return family != PredictorFamily.Bimodal;
+    }
+
+    private static boolean usesAddress(PredictorFamily family) {
+        return family == PredictorFamily.GAp || family == PredictorFamily.PAg || family == PredictorFamily.PAp;
+    }
+
+    private static boolean usesHash(PredictorFamily family) {
+        return family == PredictorFamily.GAs || family == PredictorFamily.Bimodal || family == PredictorFamily.Gshare;
+    }
+
+    /**
+     * @return number of bits of the PHT index
+     */
+    private static int indexBits(Configuration configuration) {
+        switch (configuration.family) {
+            case GAg:
+            case PAg:
+                return configuration.BHRSize;
+            case GAp:
+            case PAp:
+                return configuration.branchInstructionSize + configuration.BHRSize;
+            case GAs:
+                return configuration.KSize + configuration.BHRSize;
+            default:
+                return configuration.KSize;
+        }
+    }
+
+    /**
+     * @return the next saturating counter, indexed by counter << 1 | outcome
+     */
+    private static int[] transitions(int SCSize) {
+        int[] transitions = new int[2 << SCSize];
+        for (int counter = 0; counter < 1 << SCSize; counter++) {
+            transitions[counter << 1] = PackedLogic.count(counter, SCSize, false, CountMode.SATURATING);
+            transitions[counter << 1 | 1] = PackedLogic.count(counter, SCSize, true, CountMode.SATURATING);
+        }
+        return transitions;
+    }
+
+    private static Constructor<? extends PredictorKernel> define(Configuration configuration, int addressWidth) {
+        String name = PACKAGE + "Kernel$" + configuration.family + "$" + generated.incrementAndGet();
+        ClassAssembler assembler = new ClassAssembler(name, BASE);
+        writeConstructor(assembler);
+        writeRun(assembler, configuration, addressWidth);
+
+        Class<? extends PredictorKernel> kernel = loader.define(name.replace('/', '.'), assembler.toByteArray())
+                .asSubclass(PredictorKernel.class);
+        try {
+            return kernel.getConstructor(int.class, int.class, int[].class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeConstructor(ClassAssembler assembler) {
+        ClassAssembler.Method method = assembler.method(ACC_PUBLIC, "<init>", "(II[I)V", 4, 4);
+        method.op(ALOAD, 0).op(ILOAD, 1).op(ILOAD, 2).op(ALOAD, 3)
+                .op2(INVOKESPECIAL, assembler.methodRef(BASE, "<init>", "(II[I)V"))
+                .op(RETURN)
+                .end();
+    }
+
+    /**
+     * the loop of the PACKED simulate of the family, with the locals numbered as the constants of this class
+     */
+    private static void writeRun(ClassAssembler assembler, Configuration configuration, int addressWidth) {
+        PredictorFamily family = configuration.family;
+        int BHRSize = usesHistory(family) ? configuration.BHRSize : 0;
+        int SCSize = configuration.SCSize;
+        int KSize = configuration.KSize;
+        boolean perAddressHistory = family == PredictorFamily.PAg || family == PredictorFamily.PAp;
+        String name = assembler.getName();
+
+        ClassAssembler.Method method = assembler.method(ACC_PUBLIC | ACC_FINAL, "run", "([J[Z[ZII)V", 12, LOCALS);
+        method.op(ALOAD, 0).op2(GETFIELD, assembler.fieldRef(name, "counters", "[I")).op(ASTORE, COUNTERS);
+        method.op(ALOAD, 0).op2(GETFIELD, assembler.fieldRef(name, "histories", "[I")).op(ASTORE, HISTORIES);
+        method.op(ALOAD, 0).op2(GETFIELD, assembler.fieldRef(name, "transitions", "[I")).op(ASTORE, TRANSITIONS);
+        method.op(ALOAD, 0).op2(GETFIELD, assembler.fieldRef(name, "history", "I")).op(ISTORE, HISTORY);
+        method.op(ILOAD, FROM).op(ISTORE, I);
+
+        Label loop = new Label();
+        Label end = new Label();
+        method.place(loop).op(ILOAD, I).op(ILOAD, TO).jump(IF_ICMPGE, end);
+
+        // the address, cut to the width of the trace
+        method.op(ALOAD, ADDRESSES).op(ILOAD, I).op(LALOAD);
+        if (addressWidth < 64) method.lconst((1L << addressWidth) - 1).op(LAND);
+        method.op(LSTORE, ADDRESS);
+
+        // the selector: the hashed address, or the address itself
+        if (usesHash(family)) hash(method, ADDRESS, addressWidth, KSize, HashFunction.of(configuration.hashMode));
+        else method.op(LLOAD, ADDRESS).op(L2I);
+        method.op(ISTORE, SELECTOR);
+
+        // the row: the BHR of the branch
+        if (perAddressHistory) method.op(ALOAD, HISTORIES).op(ILOAD, SELECTOR).op(IALOAD);
+        else method.op(ILOAD, HISTORY);
+        method.op(ISTORE, ROW);
+
+        switch (family) {
+            case GAg:
+            case PAg:
+                method.op(ILOAD, ROW);
+                break;
+            case GAp:
+            case PAp:
+            case GAs:
+                method.op(ILOAD, SELECTOR).iconst(BHRSize).op(ISHL).op(ILOAD, ROW).op(IOR);
+                break;
+            case Bimodal:
+                method.op(ILOAD, SELECTOR);
+                break;
+            case Gshare:
+                method.op(ILOAD, ROW).op(I2L).op(LSTORE, FOLDED);
+                method.op(ILOAD, SELECTOR);
+                hash(method, FOLDED, BHRSize, KSize, HashFunction.XOR);
+                method.op(IXOR);
+                break;
+            default:
+                throw new IllegalArgumentException(family + " has no kernel");
+        }
+        method.op(ISTORE, INDEX);
+
+        // predict with the sign of the counter, then count
+        method.op(ALOAD, COUNTERS).op(ILOAD, INDEX).op(IALOAD).op(ISTORE, COUNTER);
+        method.op(ALOAD, PREDICTIONS).op(ILOAD, I).op(ILOAD, COUNTER).iconst(SCSize - 1).op(IUSHR).op(BASTORE);
+        method.op(ALOAD, OUTCOMES).op(ILOAD, I).op(BALOAD).op(ISTORE, TAKEN);
+        method.op(ALOAD, COUNTERS).op(ILOAD, INDEX)
+                .op(ALOAD, TRANSITIONS).op(ILOAD, COUNTER).iconst(1).op(ISHL).op(ILOAD, TAKEN).op(IOR).op(IALOAD)
+                .op(IASTORE);
+
+        // shift the outcome in as the most significant bit of the BHR
+        if (usesHistory(family)) {
+            if (perAddressHistory) method.op(ALOAD, HISTORIES).op(ILOAD, SELECTOR);
+            method.op(ILOAD, ROW).iconst(1).op(IUSHR).op(ILOAD, TAKEN).iconst(BHRSize - 1).op(ISHL).op(IOR);
+            if (perAddressHistory) method.op(IASTORE);
+            else method.op(ISTORE, HISTORY);
+        }
+
+        method.iinc(I, 1).jump(GOTO, loop);
+        method.place(end);
+        method.op(ALOAD, 0).op(ILOAD, HISTORY).op2(PUTFIELD, assembler.fieldRef(name, "history", "I"));
+        method.op(RETURN).end();
+    }
+
+    /**
+     * push the hash of the long local, the code of PackedLogic.hash with its widths as constants
+     * (the input is already cut to inBitNumber bits)
+     */
+    private static void hash(ClassAssembler.Method method, int local, int inBitNumber, int outBitNumber,
+                             HashFunction function) {
+        switch (function) {
+            case XOR:
+                int mask = (1 << outBitNumber) - 1;
+                boolean first = true;
+                int shift = inBitNumber - outBitNumber;
+                for (; shift >= 0; shift -= outBitNumber) {
+                    method.op(LLOAD, local);
+                    if (shift > 0) method.iconst(shift).op(LUSHR);
+                    method.op(L2I).iconst(mask).op(IAND);
+                    if (!first) method.op(IXOR);
+                    first = false;
+                }
+                int rest = shift + outBitNumber;
+                if (rest > 0) {
+                    method.op(LLOAD, local).op(L2I).iconst((1 << rest) - 1).op(IAND);
+                    if (outBitNumber > rest) method.iconst(outBitNumber - rest).op(ISHL);
+                    if (!first) method.op(IXOR);
+                }
+                break;
+            case SIMPLE_CUT:
+                method.op(LLOAD, local);
+                if (inBitNumber >= outBitNumber) method.iconst(inBitNumber - outBitNumber).op(LUSHR).op(L2I);
+                else method.op(L2I).iconst(outBitNumber - inBitNumber).op(ISHL);
+                break;
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * the class loader of the kernels, its parent is the loader of PredictorKernel
+     */
+    private static final class KernelLoader extends ClassLoader {
+        KernelLoader() {
+            super(PredictorKernel.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package hardwar.branch.prediction.simulation;
+
+/*
+ * simulates many global history predictors in one pass over a trace
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the configurations are GAg, GAp or GAs ones. all of them see the same global outcome stream,
+ * so one 64 bit global history serves all the history lengths: the newest outcome is the most significant bit
+ * and the BHR of a predictor with h bits is the h most significant bits of the global history
+ *
+ * 2) each configuration has its own packed PHT (or PAPHT) and counter, the results are the same as
+ * running a PACKED predictor of the configuration over the trace. the counters are saturating and the selectors
+ * are hashed by PackedLogic, like the GAg, GAp and GAs predictors do
+ *
+ * 3) the selector of the GAs and GAp tables is computed once per branch for each distinct (K, hash mode),
+ * not once per configuration
+ *
+ * 4) the trace is read once, a block at a time. the histories and selectors of a block are computed first, then
+ * each configuration runs over the whole block, which keeps its table in the cache
+ *
+ * 5) a configuration which can not be simulated in one pass (history longer than 30 bits, a GAp whose branch
+ * instruction size is not the address width of the trace, a table which can not be allocated) fails alone
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.packed.devices.PackedPageHistoryTable;
+import hardwar.branch.prediction.packed.devices.PackedPerAddressPredictionHistoryTable;
+import hardwar.branch.prediction.shared.CountMode;
+import hardwar.branch.prediction.shared.HashMode;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MultiHistorySimulator {
+    private static final int MAX_HISTORY = 30; // longest history whose PHT is indexed by an int
+    private static final int BLOCK_SIZE = 1 << 12; // branches which are simulated on a table before the next one
+
+    private final List<Configuration> configurations;
+
+    /**
+     * @param configurations the GAg, GAp and GAs configurations to be simulated
+     * @throws IllegalArgumentException if a configuration is not a global history one
+     */
+    public MultiHistorySimulator(List<Configuration> configurations) {
+        for (Configuration configuration : configurations) {
+            if (configuration.family != PredictorFamily.GAg && configuration.family != PredictorFamily.GAp
+                    && configuration.family != PredictorFamily.GAs)
+                throw new IllegalArgumentException(configuration + " does not use the global history");
+        }
+        this.configurations = new ArrayList<>(configurations);
+    }
+
+    /**
+     * @param trace the decoded trace
+     * @return one result per configuration, in the order of the configurations
+     */
+    public List<SweepResult> run(Trace trace) {
+        int n = configurations.size();
+        String[] errors = new String[n];
+
+        // the tables and parameters of the configurations which can be simulated, c is their index
+        int[] index = new int[n];
+        int[] shifts = new int[n];
+        int[] SCSizes = new int[n];
+        int[] slotOf = new int[n];
+        PackedPageHistoryTable[] PHTs = new PackedPageHistoryTable[n];
+        PackedPerAddressPredictionHistoryTable[] PAPHTs = new PackedPerAddressPredictionHistoryTable[n];
+        List<Configuration> slots = new ArrayList<>(); // distinct selectors, a null hash mode selects by the address
+        int active = 0;
+
+        for (int k = 0; k < n; k++) {
+            Configuration configuration = configurations.get(k);
+            try {
+                if (configuration.BHRSize < 1 || configuration.BHRSize > MAX_HISTORY)
+                    throw new IllegalArgumentException("history length must be between 1 and " + MAX_HISTORY);
+                if (configuration.family == PredictorFamily.GAp
+                        && configuration.branchInstructionSize != trace.getAddressWidth())
+                    throw new IllegalArgumentException("branch instruction size is not the address width of the trace");
+
+                int rows = 1 << configuration.BHRSize;
+                if (configuration.family == PredictorFamily.GAg) {
+                    PHTs[active] = new PackedPageHistoryTable(rows, configuration.SCSize);
+                    slotOf[active] = -1;
+                } else {
+                    int selectorSize = configuration.family == PredictorFamily.GAp
+                            ? configuration.branchInstructionSize : configuration.KSize;
+                    PAPHTs[active] = new PackedPerAddressPredictionHistoryTable(selectorSize, rows, configuration.SCSize);
+                    slotOf[active] = slot(slots, configuration);
+                }
+                index[active] = k;
+                shifts[active] = 64 - configuration.BHRSize;
+                SCSizes[active] = configuration.SCSize;
+                active++;
+            } catch (RuntimeException e) {
+                errors[k] = e.toString();
+            }
+        }
+
+        long[] hits = simulate(trace, active, shifts, SCSizes, slotOf, PHTs, PAPHTs, slots);
+
+        List<SweepResult> results = new ArrayList<>(n);
+        long[] hitsOf = new long[n];
+        for (int c = 0; c < active; c++) hitsOf[index[c]] = hits[c];
+        for (int k = 0; k < n; k++) {
+            results.add(new SweepResult(configurations.get(k), trace.size(), hitsOf[k], errors[k]));
+        }
+        return results;
+    }
+
+    private static long[] simulate(Trace trace, int active, int[] shifts, int[] SCSizes, int[] slotOf,
+                                   PackedPageHistoryTable[] PHTs, PackedPerAddressPredictionHistoryTable[] PAPHTs,
+                                   List<Configuration> slots) {
+        int addressWidth = trace.getAddressWidth();
+        int nSlots = slots.size();
+        int[] slotK = new int[nSlots];
+        HashMode[] slotHash = new HashMode[nSlots];
+        for (int s = 0; s < nSlots; s++) {
+            slotK[s] = slots.get(s).KSize;
+            slotHash[s] = slots.get(s).hashMode;
+        }
+        long addressMask = addressWidth == 64 ? -1L : (1L << addressWidth) - 1;
+
+        long[] hits = new long[active];
+        long[] histories = new long[BLOCK_SIZE]; // global history before each branch of the block
+        int[][] selectors = new int[nSlots][BLOCK_SIZE];
+        boolean[] outcomes = new boolean[BLOCK_SIZE];
+        long history = 0;
+        for (int from = 0; from < trace.size(); from += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, trace.size() - from);
+            for (int j = 0; j < length; j++) {
+                long address = trace.getAddress(from + j);
+                for (int s = 0; s < nSlots; s++) {
+                    selectors[s][j] = slotHash[s] == null
+                            ? (int) (address & addressMask)
+                            : PackedLogic.hash(address, addressWidth, slotK[s], slotHash[s]);
+                }
+                boolean taken = trace.isTaken(from + j);
+                histories[j] = history;
+                outcomes[j] = taken;
+                history = (history >>> 1) | ((taken ? 1L : 0L) << 63);
+            }
+
+            // one configuration at a time over the block, so its table stays in the cache
+            for (int c = 0; c < active; c++) {
+                if (slotOf[c] < 0) hits[c] += simulate(PHTs[c], shifts[c], SCSizes[c], histories, outcomes, length);
+                else hits[c] += simulate(PAPHTs[c], selectors[slotOf[c]], shifts[c], SCSizes[c], histories, outcomes, length);
+            }
+        }
+        return hits;
+    }
+
+    private static long simulate(PackedPageHistoryTable PHT, int shift, int SCSize, long[] histories,
+                                 boolean[] outcomes, int length) {
+        long hits = 0;
+        for (int j = 0; j < length; j++) {
+            int row = (int) (histories[j] >>> shift);
+            boolean taken = outcomes[j];
+            int counter = PHT.setDefault(row, 0);
+            if (counter >>> (SCSize - 1) != 0 == taken) hits++;
+            PHT.put(row, PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING));
+        }
+        return hits;
+    }
+
+    private static long simulate(PackedPerAddressPredictionHistoryTable PAPHT, int[] selectors, int shift,
+                                 int SCSize, long[] histories, boolean[] outcomes, int length) {
+        long hits = 0;
+        for (int j = 0; j < length; j++) {
+            int row = (int) (histories[j] >>> shift);
+            boolean taken = outcomes[j];
+            int counter = PAPHT.setDefault(selectors[j], row, 0);
+            if (counter >>> (SCSize - 1) != 0 == taken) hits++;
+            PAPHT.put(selectors[j], row, PackedLogic.count(counter, SCSize, taken, CountMode.SATURATING));
+        }
+        return hits;
+    }
+
+    /**
+     * @return the index of the selector of the configuration, which is added if it is new
+     */
+    private static int slot(List<Configuration> slots, Configuration configuration) {
+        for (int s = 0; s < slots.size(); s++) {
+            Configuration slot = slots.get(s);
+            if (configuration.family == PredictorFamily.GAp ? slot.hashMode == null
+                    : slot.hashMode == configuration.hashMode && slot.KSize == configuration.KSize) return s;
+        }
+        slots.add(configuration);
+        return slots.size() - 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 2) {
+            System.err.println("usage: MultiHistorySimulator <trace.bin> | <instruction.json> <result.json>");
+            System.exit(1);
+        }
+        Trace trace = args.length == 1 ? Trace.load(Paths.get(args[0])) : Trace.loadJson(Paths.get(args[0]), Paths.get(args[1]));
+
+        int[] historyLengths = new int[16];
+        for (int h = 0; h < historyLengths.length; h++) historyLengths[h] = h + 1;
+        List<Configuration> configurations = new ParameterGrid(trace.getAddressWidth())
+                .families(PredictorFamily.GAg, PredictorFamily.GAs)
+                .BHRSizes(historyLengths)
+                .KSizes(4, 8)
+                .configurations();
+
+        long start = System.nanoTime();
+        List<SweepResult> results = new MultiHistorySimulator(configurations).run(trace);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.print(SweepRunner.format(results));
+        System.out.printf("%d configurations over %d branches in one pass, %.1f s%n",
+                results.size(), trace.size(), elapsed / 1e9);
+    }
+}
@@ -0,0 +1,88 @@
+package hardwar.branch.prediction.simulation;
+
+import hardwar.branch.prediction.packed.CacheGeometry;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.HashMode;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * the cartesian product of the predictor families and the values of their constructor parameters.
+ * the configurations which only differ in parameters their family does not use are listed once.
+ */
+public class ParameterGrid {
+    private final int branchInstructionSize;
+    private Set<PredictorFamily> families = EnumSet.allOf(PredictorFamily.class);
+    private int[] BHRSizes = {4};
+    private int[] SCSizes = {2};
+    private int[] KSizes = {4};
+    private HashMode[] hashModes = {HashMode.XOR};
+    private StorageMode storageMode = StorageMode.PACKED;
+    private CacheGeometry[] geometries = {CacheGeometry.DEFAULT};
+
+    /**
+     * @param branchInstructionSize the number of bits of the branch addresses, usually the address width of the trace
+     */
+    public ParameterGrid(int branchInstructionSize) {
+        this.branchInstructionSize = branchInstructionSize;
+    }
+
+    public ParameterGrid families(PredictorFamily... families) {
+        this.families = EnumSet.noneOf(PredictorFamily.class);
+        for (PredictorFamily family : families) this.families.add(family);
+        return this;
+    }
+
+    public ParameterGrid BHRSizes(int... BHRSizes) {
+        this.BHRSizes = BHRSizes.clone();
+        return this;
+    }
+
+    public ParameterGrid SCSizes(int... SCSizes) {
+        this.SCSizes = SCSizes.clone();
+        return this;
+    }
+
+    public ParameterGrid KSizes(int... KSizes) {
+        this.KSizes = KSizes.clone();
+        return this;
+    }
+
+    public ParameterGrid hashModes(HashMode... hashModes) {
+        this.hashModes = hashModes.clone();
+        return this;
+    }
+
+    public ParameterGrid storageMode(StorageMode storageMode) {
+        this.storageMode = storageMode;
+        return this;
+    }
+
+    /**
+     * @param geometries the tables of the BOUNDED configurations, the other storage modes ignore them
+     */
+    public ParameterGrid geometries(CacheGeometry... geometries) {
+        this.geometries = geometries.clone();
+        return this;
+    }
+
+    /**
+     * @return all the distinct configurations of the grid, family by family
+     */
+    public List<Configuration> configurations() {
+        Set<Configuration> configurations = new LinkedHashSet<>();
+        for (PredictorFamily family : families)
+            for (int BHRSize : BHRSizes)
+                for (int SCSize : SCSizes)
+                    for (int KSize : KSizes)
+                        for (HashMode hashMode : hashModes)
+                            for (CacheGeometry geometry : geometries)
+                                configurations.add(new Configuration(family, BHRSize, SCSize,
+                                        branchInstructionSize, KSize, hashMode, storageMode, geometry));
+        return new ArrayList<>(configurations);
+    }
+}
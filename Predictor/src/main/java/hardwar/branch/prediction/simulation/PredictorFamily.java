@@ -0,0 +1,125 @@
+package hardwar.branch.prediction.simulation;
+
+import hardwar.branch.prediction.extended.Bimodal.Bimodal;
+import hardwar.branch.prediction.extended.Gshare.Gshare;
+import hardwar.branch.prediction.extended.Perceptron.Perceptron;
+import hardwar.branch.prediction.extended.TAGE.TAGE;
+import hardwar.branch.prediction.judged.GAg.GAg;
+import hardwar.branch.prediction.judged.GAp.GAp;
+import hardwar.branch.prediction.judged.GAs.GAs;
+import hardwar.branch.prediction.judged.PAg.PAg;
+import hardwar.branch.prediction.judged.PAp.PAp;
+import hardwar.branch.prediction.judged.PAs.PAs;
+import hardwar.branch.prediction.judged.SAg.SAg;
+import hardwar.branch.prediction.judged.SAp.SAp;
+import hardwar.branch.prediction.judged.SAs.SAs;
+import hardwar.branch.prediction.packed.HistoryMode;
+import hardwar.branch.prediction.shared.BranchPredictor;
+
+/**
+ * the predictors which a sweep can build, with the constructor parameters each one uses
+ */
+public enum PredictorFamily {
+    GAg(true, true, false, false, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new GAg(c.BHRSize, c.SCSize, c.storageMode, HistoryMode.RETIRED, c.geometry);
+        }
+    },
+    GAp(true, true, true, false, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new GAp(c.BHRSize, c.SCSize, c.branchInstructionSize, c.storageMode, HistoryMode.RETIRED,
+                    c.geometry);
+        }
+    },
+    GAs(true, true, true, true, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new GAs(c.BHRSize, c.SCSize, c.branchInstructionSize, c.KSize, c.hashMode, c.storageMode,
+                    HistoryMode.RETIRED, c.geometry);
+        }
+    },
+    PAg(true, true, true, false, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new PAg(c.BHRSize, c.SCSize, c.branchInstructionSize, c.storageMode, c.geometry);
+        }
+    },
+    PAp(true, true, true, false, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new PAp(c.BHRSize, c.SCSize, c.branchInstructionSize, c.storageMode, c.geometry);
+        }
+    },
+    PAs(true, true, true, true, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new PAs(c.BHRSize, c.SCSize, c.branchInstructionSize, c.KSize, c.hashMode, c.storageMode,
+                    c.geometry);
+        }
+    },
+    SAg(true, true, true, true, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new SAg(c.BHRSize, c.SCSize, c.branchInstructionSize, c.KSize, c.storageMode, c.geometry);
+        }
+    },
+    SAp(true, true, true, true, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new SAp(c.BHRSize, c.SCSize, c.branchInstructionSize, c.KSize, c.storageMode, c.geometry);
+        }
+    },
+    SAs(true, true, true, true, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new SAs(c.BHRSize, c.SCSize, c.branchInstructionSize, c.KSize, c.hashMode, c.storageMode,
+                    c.geometry);
+        }
+    },
+    Bimodal(false, true, false, true, true) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new Bimodal(c.KSize, c.SCSize, c.hashMode, c.storageMode, c.geometry);
+        }
+    },
+    Gshare(true, true, false, true, true) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            return new Gshare(c.BHRSize, c.SCSize, c.KSize, c.hashMode, c.storageMode, c.geometry);
+        }
+    },
+    Perceptron(true, false, false, true, true) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            // the BHR size is the history length and K selects the weight vector
+            return new Perceptron(c.BHRSize, c.KSize, c.hashMode);
+        }
+    },
+    TAGE(true, false, false, true, false) {
+        @Override
+        BranchPredictor create(Configuration c) {
+            // the BHR size is the longest history and K selects the entry of a tagged table,
+            // the base table has 4 times as many counters
+            return new TAGE(Math.min(c.KSize + 2, 28), 4, Math.min(4, c.BHRSize), c.BHRSize, c.KSize, 9);
+        }
+    };
+
+    final boolean usesBHRSize;
+    final boolean usesSCSize;
+    final boolean usesAddressSize;
+    final boolean usesKSize;
+    final boolean usesHashMode;
+
+    PredictorFamily(boolean usesBHRSize, boolean usesSCSize, boolean usesAddressSize, boolean usesKSize,
+                    boolean usesHashMode) {
+        this.usesBHRSize = usesBHRSize;
+        this.usesSCSize = usesSCSize;
+        this.usesAddressSize = usesAddressSize;
+        this.usesKSize = usesKSize;
+        this.usesHashMode = usesHashMode;
+    }
+
+    abstract BranchPredictor create(Configuration configuration);
+}
@@ -0,0 +1,146 @@
+package hardwar.branch.prediction.simulation;
+
+/*
+ * the base class of the kernels which KernelGenerator writes at runtime
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a kernel is the simulate loop of one configuration on one address width. the state lives in the fields of
+ * this class, the generated subclass only holds the loop with the widths, masks and hash function as constants
+ *
+ * 2) predict and update of a single branch are not generated: they compute the index of the branch with
+ * PackedLogic, the function which the generated hash unrolls, and move its counter on the same transition table.
+ * the branches of a batch and the single ones share the state, so they can be mixed
+ *
+ * 3) the fields are protected since a generated class lives in the runtime package of its own class loader
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.HashFunction;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+
+public abstract class PredictorKernel implements BatchPredictor {
+    protected final int[] counters; // the PHT, one counter per int
+    protected final int[] histories; // the BHR of each address, null for the global history predictors
+    protected final int[] transitions; // the next counter, indexed by counter << 1 | outcome
+    protected int history; // the global BHR
+
+    private Configuration configuration;
+    private int addressWidth;
+
+    // the branch of the last prediction
+    private int selector;
+    private int row;
+    private int index;
+
+    /**
+     * @param counterCount number of counters of the PHT
+     * @param historyCount number of per address BHRs, 0 for the global history predictors
+     * @param transitions  the next counter, indexed by counter << 1 | outcome
+     */
+    protected PredictorKernel(int counterCount, int historyCount, int[] transitions) {
+        this.counters = new int[counterCount];
+        this.histories = historyCount > 0 ? new int[historyCount] : null;
+        this.transitions = transitions;
+    }
+
+    /**
+     * called once by the generator after the kernel is constructed
+     */
+    final void bind(Configuration configuration, int addressWidth) {
+        this.configuration = configuration;
+        this.addressWidth = addressWidth;
+    }
+
+    /**
+     * the generated loop, the addresses have the width which the kernel was generated for
+     */
+    protected abstract void run(long[] addresses, boolean[] outcomes, boolean[] predictionsOut, int from, int to);
+
+    /**
+     * @throws IllegalArgumentException if the addresses are not as wide as the ones the kernel was generated for
+     */
+    @Override
+    public final void simulate(long[] addresses, int addressWidth, boolean[] outcomes, boolean[] predictionsOut,
+                               int from, int to) {
+        if (addressWidth != this.addressWidth)
+            throw new IllegalArgumentException("the kernel was generated for " + this.addressWidth + " bit addresses");
+        if (from < to) run(addresses, outcomes, predictionsOut, from, to);
+    }
+
+    /**
+     * predicts the result of a branch instruction with the counter which the generated loop would read
+     *
+     * @param branchInstruction the branch instruction
+     * @return the predicted outcome of the branch instruction (taken or not taken)
+     * @throws IllegalArgumentException if the address is not as wide as the ones the kernel was generated for
+     */
+    @Override
+    public final BranchResult predict(BranchInstruction branchInstruction) {
+        if (PackedBranchInstruction.addressWidthOf(branchInstruction) != addressWidth)
+            throw new IllegalArgumentException("the kernel was generated for " + addressWidth + " bit addresses");
+
+        long address = PackedBranchInstruction.addressOf(branchInstruction);
+        PredictorFamily family = configuration.family;
+        boolean hashed = family == PredictorFamily.GAs || family == PredictorFamily.Bimodal
+                || family == PredictorFamily.Gshare;
+        selector = hashed ? PackedLogic.hash(address, addressWidth, configuration.KSize, configuration.hashMode)
+                : (int) address;
+        boolean perAddressHistory = family == PredictorFamily.PAg || family == PredictorFamily.PAp;
+        row = perAddressHistory ? histories[selector] : history;
+        switch (family) {
+            case GAg:
+            case PAg:
+                index = row;
+                break;
+            case GAp:
+            case PAp:
+            case GAs:
+                index = selector << configuration.BHRSize | row;
+                break;
+            case Bimodal:
+                index = selector;
+                break;
+            default:
+                index = selector ^ PackedLogic.hash(row, configuration.BHRSize, configuration.KSize,
+                        HashFunction.XOR);
+        }
+        return BranchResult.of(counters[index] >>> (configuration.SCSize - 1) != 0);
+    }
+
+    /**
+     * moves the counter of the last prediction on the transition table and shifts the outcome into the BHR
+     *
+     * @param branchInstruction the branch instruction
+     * @param actual            the actual result of branch (taken or not)
+     */
+    @Override
+    public final void update(BranchInstruction branchInstruction, BranchResult actual) {
+        int taken = BranchResult.isTaken(actual) ? 1 : 0;
+        counters[index] = transitions[counters[index] << 1 | taken];
+        if (configuration.family == PredictorFamily.Bimodal) return;
+
+        int next = row >>> 1 | taken << (configuration.BHRSize - 1);
+        if (configuration.family == PredictorFamily.PAg || configuration.family == PredictorFamily.PAp)
+            histories[selector] = next;
+        else history = next;
+    }
+
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    public int getAddressWidth() {
+        return addressWidth;
+    }
+
+    @Override
+    public String monitor() {
+        return "Generated " + configuration + " kernel snapshot: \n" +
+                "BHR: " + Integer.toBinaryString(history) + "\n";
+    }
+}
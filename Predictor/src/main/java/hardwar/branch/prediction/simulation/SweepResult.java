@@ -0,0 +1,54 @@
+package hardwar.branch.prediction.simulation;
+
+/**
+ * the accuracy of one configuration over a trace, or the reason the configuration could not be simulated
+ */
+public final class SweepResult {
+    private final Configuration configuration;
+    private final long branches;
+    private final long hits;
+    private final String error;
+
+    SweepResult(Configuration configuration, long branches, long hits, String error) {
+        this.configuration = configuration;
+        this.branches = branches;
+        this.hits = hits;
+        this.error = error;
+    }
+
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * @return number of simulated branches
+     */
+    public long getBranches() {
+        return branches;
+    }
+
+    /**
+     * @return number of correctly predicted branches
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return ratio of correctly predicted branches, NaN if the configuration failed or the trace is empty
+     */
+    public double getAccuracy() {
+        return error != null || branches == 0 ? Double.NaN : (double) hits / branches;
+    }
+
+    /**
+     * @return the error of the configuration, or null if it was simulated
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
@@ -0,0 +1,124 @@
+package hardwar.branch.prediction.simulation;
+
+/*
+ * runs the configurations of a sweep in parallel over one decoded trace
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) every configuration is one task of the pool with its own predictor instance, the trace is shared
+ * and only read, so the tasks do not synchronize with each other
+ *
+ * 2) a configuration which can not be built or simulated (for example a table which is too big) fails alone,
+ * its error is kept in the result and the other configurations go on
+ *
+ * 3) the small GAg, GAp, PAg and PAp configurations run as compiled predictors (see CompiledPredictor),
+ * which give the same results with one table lookup per branch
+ *
+ * 4) the other GAg, GAp, GAs, PAg, PAp, Bimodal and Gshare configurations which fit run as generated kernels
+ * (see KernelGenerator), a final class per configuration with its widths and hash function as constants
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.HashMode;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class SweepRunner {
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a runner on the common pool, which has one worker per core
+     */
+    public SweepRunner() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SweepRunner(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param trace          the decoded trace
+     * @param configurations the configurations to be simulated
+     * @return one result per configuration, in the order of the configurations
+     */
+    public List<SweepResult> run(Trace trace, List<Configuration> configurations) {
+        List<ForkJoinTask<SweepResult>> tasks = new ArrayList<>(configurations.size());
+        for (Configuration configuration : configurations) {
+            tasks.add(pool.submit(() -> simulate(trace, configuration)));
+        }
+
+        List<SweepResult> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<SweepResult> task : tasks) results.add(task.join());
+        return results;
+    }
+
+    /**
+     * @param trace         the decoded trace
+     * @param configuration the configuration to be simulated
+     * @return the accuracy of a new predictor of the configuration over the whole trace
+     */
+    public static SweepResult simulate(Trace trace, Configuration configuration) {
+        try {
+            int addressWidth = trace.getAddressWidth();
+            BranchPredictor predictor;
+            if (CompiledPredictor.supports(configuration, addressWidth))
+                predictor = CompiledPredictor.compile(configuration);
+            else if (KernelGenerator.supports(configuration, addressWidth))
+                predictor = KernelGenerator.generate(configuration, addressWidth);
+            else predictor = configuration.create();
+            return new SweepResult(configuration, trace.size(), trace.simulate(predictor), null);
+        } catch (RuntimeException e) {
+            return new SweepResult(configuration, trace.size(), 0, e.toString());
+        }
+    }
+
+    /**
+     * @param results the results of a sweep
+     * @return a table of the configurations and their accuracies
+     */
+    public static String format(List<SweepResult> results) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("+------------------------------------------------------------------------+\n");
+        sb.append(String.format("| %-50s | %-17s |\n", "Configuration", "Accuracy"));
+        sb.append("|----------------------------------------------------|-------------------|\n");
+        for (SweepResult result : results) {
+            String accuracy = result.isFailed() ? "failed" : String.format("%.4f%%", 100 * result.getAccuracy());
+            sb.append(String.format("| %-50s | %-17s |\n", result.getConfiguration(), accuracy));
+        }
+        sb.append("+------------------------------------------------------------------------+\n");
+        for (SweepResult result : results) {
+            if (result.isFailed()) sb.append(result.getConfiguration()).append(": ").append(result.getError()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 2) {
+            System.err.println("usage: SweepRunner <trace.bin> | <instruction.json> <result.json>");
+            System.exit(1);
+        }
+        Trace trace = args.length == 1 ? Trace.load(Paths.get(args[0])) : Trace.loadJson(Paths.get(args[0]), Paths.get(args[1]));
+
+        List<Configuration> configurations = new ParameterGrid(trace.getAddressWidth())
+                .BHRSizes(2, 4, 6, 8, 10, 12)
+                .SCSizes(2, 3)
+                .KSizes(4, 8)
+                .hashModes(HashMode.values())
+                .configurations();
+
+        long start = System.nanoTime();
+        List<SweepResult> results = new SweepRunner().run(trace, configurations);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.print(format(results));
+        System.out.printf("%d configurations over %d branches in %.1f s%n",
+                results.size(), trace.size(), elapsed / 1e9);
+    }
+}
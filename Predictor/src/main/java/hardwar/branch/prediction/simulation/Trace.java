@@ -0,0 +1,158 @@
+package hardwar.branch.prediction.simulation;
+
+/*
+ * a trace decoded into primitive arrays
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a trace keeps only what the predictors use: the instruction address of each branch and its result.
+ * the addresses have the same width, at most 64 bits
+ *
+ * 2) the trace is read only after it is decoded, so one instance can be shared by any number of threads
+ *
+ * 3) a trace has at most Integer.MAX_VALUE - 8 branches, the limit of a java array
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.trace.BinaryTraceReader;
+import hardwar.branch.prediction.trace.JsonResultReader;
+import hardwar.branch.prediction.trace.JsonTraceReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public final class Trace {
+    private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+    private static final int CHUNK_SIZE = 1 << 14; // branches per simulate call
+
+    private final long[] addresses;
+    private final boolean[] outcomes;
+    private final int addressWidth;
+
+    private Trace(long[] addresses, int addressWidth, boolean[] outcomes) {
+        this.addresses = addresses;
+        this.addressWidth = addressWidth;
+        this.outcomes = outcomes;
+    }
+
+    /**
+     * @param addresses    the branch instruction addresses, copied
+     * @param addressWidth number of bits of the addresses
+     * @param outcomes     the branch results, true if taken, copied
+     * @return the trace of the branches
+     */
+    public static Trace of(long[] addresses, int addressWidth, boolean[] outcomes) {
+        if (addresses.length != outcomes.length)
+            throw new IllegalArgumentException("every address needs exactly one outcome");
+        if (addressWidth < 0 || addressWidth > 64)
+            throw new IllegalArgumentException("address width must be between 0 and 64");
+        return new Trace(addresses.clone(), addressWidth, outcomes.clone());
+    }
+
+    /**
+     * decode a binary trace
+     *
+     * @param path the binary trace file
+     * @return the trace of the branches
+     * @throws IOException if the file can not be read or is too long
+     */
+    public static Trace load(Path path) throws IOException {
+        try (BinaryTraceReader reader = BinaryTraceReader.open(path)) {
+            if (reader.getCount() > MAX_SIZE) throw new IOException("trace is too long to be decoded in memory");
+
+            int size = (int) reader.getCount();
+            long[] addresses = new long[size];
+            boolean[] outcomes = new boolean[size];
+            PackedBranchInstruction instruction = new PackedBranchInstruction();
+            for (int i = 0; reader.next(instruction); i++) {
+                addresses[i] = PackedBranchInstruction.addressOf(instruction);
+                outcomes[i] = BranchResult.isTaken(reader.getResult());
+            }
+            return new Trace(addresses, reader.getInstructionAddressWidth(), outcomes);
+        }
+    }
+
+    /**
+     * decode an instruction.json and result.json pair
+     *
+     * @param instructions the instruction.json file
+     * @param results      the result.json file
+     * @return the trace of the branches, the address width is the widest address of the file
+     * @throws IOException if a file can not be read, is too long or the files do not match
+     */
+    public static Trace loadJson(Path instructions, Path results) throws IOException {
+        try (JsonTraceReader reader = JsonTraceReader.open(instructions);
+             JsonResultReader resultReader = JsonResultReader.open(results)) {
+            long[] addresses = new long[1024];
+            boolean[] outcomes = new boolean[1024];
+            int size = 0, addressWidth = 0;
+            PackedBranchInstruction instruction = new PackedBranchInstruction();
+            while (reader.next(instruction)) {
+                BranchResult result = resultReader.next();
+                if (result == null) throw new IOException("result file has fewer entries than the trace");
+                if (size == addresses.length) {
+                    if (size == MAX_SIZE) throw new IOException("trace is too long to be decoded in memory");
+                    int capacity = (int) Math.min(MAX_SIZE, 2L * size);
+                    addresses = Arrays.copyOf(addresses, capacity);
+                    outcomes = Arrays.copyOf(outcomes, capacity);
+                }
+                addresses[size] = PackedBranchInstruction.addressOf(instruction);
+                outcomes[size] = BranchResult.isTaken(result);
+                addressWidth = Math.max(addressWidth, PackedBranchInstruction.addressWidthOf(instruction));
+                size++;
+            }
+            if (resultReader.next() != null) throw new IOException("result file has more entries than the trace");
+            return new Trace(Arrays.copyOf(addresses, size), addressWidth, Arrays.copyOf(outcomes, size));
+        }
+    }
+
+    /**
+     * run the whole trace through the predictor with its batch simulate
+     *
+     * @param predictor the predictor which is simulated
+     * @return number of correctly predicted branches
+     */
+    public long simulate(BranchPredictor predictor) {
+        // the predictor writes the predictions of one chunk at a time, so the trace itself is never written
+        long[] chunkAddresses = new long[Math.min(CHUNK_SIZE, addresses.length)];
+        boolean[] chunkOutcomes = new boolean[chunkAddresses.length];
+        boolean[] predictions = new boolean[chunkAddresses.length];
+
+        long hits = 0;
+        for (int from = 0; from < addresses.length; from += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, addresses.length - from);
+            System.arraycopy(addresses, from, chunkAddresses, 0, length);
+            System.arraycopy(outcomes, from, chunkOutcomes, 0, length);
+            BatchPredictor.simulate(predictor, chunkAddresses, addressWidth, chunkOutcomes, predictions, 0, length);
+            for (int i = 0; i < length; i++) if (predictions[i] == chunkOutcomes[i]) hits++;
+        }
+        return hits;
+    }
+
+    /**
+     * @return number of branches
+     */
+    public int size() {
+        return addresses.length;
+    }
+
+    /**
+     * @return number of bits of the addresses
+     */
+    public int getAddressWidth() {
+        return addressWidth;
+    }
+
+    public long getAddress(int index) {
+        return addresses[index];
+    }
+
+    public boolean isTaken(int index) {
+        return outcomes[index];
+    }
+}
@@ -0,0 +1,114 @@
+package hardwar.branch.prediction.trace;
+
+/*
+ * the binary trace format
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) a trace starts with a 32 byte little endian header:
+ *    int magic ("BPTR"), short version, byte opcode width, byte instruction address width,
+ *    byte jump address width, 7 reserved bytes, long number of records, 8 reserved bytes
+ *
+ * 2) the header is followed by fixed size records: the opcode, the instruction address and the jump address,
+ * each one stored little endian in the smallest of 0, 1, 2, 4 or 8 bytes which holds its width,
+ * and one byte for the branch result (1 for taken)
+ *
+ * 3) all the records of a trace have the widths of the header
+ * -------------------------------------------------------
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+final class BinaryTraceFormat {
+    static final int MAGIC = 0x52545042; // "BPTR" in little endian
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int COUNT_OFFSET = 16;
+
+    final int opcodeWidth;
+    final int instructionAddressWidth;
+    final int jumpAddressWidth;
+    final int opcodeBytes;
+    final int instructionAddressBytes;
+    final int jumpAddressBytes;
+    final int recordSize;
+
+    BinaryTraceFormat(int opcodeWidth, int instructionAddressWidth, int jumpAddressWidth) {
+        this.opcodeWidth = opcodeWidth;
+        this.instructionAddressWidth = instructionAddressWidth;
+        this.jumpAddressWidth = jumpAddressWidth;
+        this.opcodeBytes = fieldBytes(opcodeWidth);
+        this.instructionAddressBytes = fieldBytes(instructionAddressWidth);
+        this.jumpAddressBytes = fieldBytes(jumpAddressWidth);
+        this.recordSize = opcodeBytes + instructionAddressBytes + jumpAddressBytes + 1;
+    }
+
+    /**
+     * @return number of bytes of a field with the given number of bits
+     */
+    static int fieldBytes(int width) {
+        if (width < 0 || width > 64) throw new IllegalArgumentException("field width must be between 0 and 64");
+        if (width == 0) return 0;
+        if (width <= 8) return 1;
+        if (width <= 16) return 2;
+        if (width <= 32) return 4;
+        return 8;
+    }
+
+    ByteBuffer header(long count) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC).putShort(4, VERSION);
+        header.put(6, (byte) opcodeWidth).put(7, (byte) instructionAddressWidth).put(8, (byte) jumpAddressWidth);
+        header.putLong(COUNT_OFFSET, count);
+        return header;
+    }
+
+    /**
+     * @param header the first HEADER_SIZE bytes of a trace, in little endian order
+     * @return the format of the trace
+     * @throws IOException if the header is not a binary trace header
+     */
+    static BinaryTraceFormat read(ByteBuffer header) throws IOException {
+        if (header.limit() < HEADER_SIZE || header.getInt(0) != MAGIC) throw new IOException("not a binary trace");
+        if (header.getShort(4) != VERSION) throw new IOException("unsupported binary trace version " + header.getShort(4));
+        for (int i = 6; i <= 8; i++) {
+            if (header.get(i) < 0 || header.get(i) > 64) throw new IOException("invalid field width in the trace header");
+        }
+        return new BinaryTraceFormat(header.get(6), header.get(7), header.get(8));
+    }
+
+    static void putField(ByteBuffer buffer, int bytes, long value) {
+        switch (bytes) {
+            case 0:
+                break;
+            case 1:
+                buffer.put((byte) value);
+                break;
+            case 2:
+                buffer.putShort((short) value);
+                break;
+            case 4:
+                buffer.putInt((int) value);
+                break;
+            default:
+                buffer.putLong(value);
+        }
+    }
+
+    static long getField(ByteBuffer buffer, int bytes) {
+        switch (bytes) {
+            case 0:
+                return 0;
+            case 1:
+                return buffer.get() & 0xFFL;
+            case 2:
+                return buffer.getShort() & 0xFFFFL;
+            case 4:
+                return buffer.getInt() & 0xFFFFFFFFL;
+            default:
+                return buffer.getLong();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package hardwar.branch.prediction.trace;
+
+/*
+ * memory mapped reader of the binary trace files, see BinaryTraceFormat
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the file is mapped read only in windows of whole records, so traces bigger than 2 GiB
+ * are read window by window
+ *
+ * 2) the records are read into a caller owned PackedBranchInstruction and the result of the last read
+ * record is kept by the reader, so reading and replaying a trace does not allocate per branch
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryTraceReader implements Closeable {
+    private static final long WINDOW_SIZE = 1L << 30; // biggest mapped part of the file
+
+    private final FileChannel channel;
+    private final BinaryTraceFormat format;
+    private final long count;
+    private final long recordsPerWindow;
+    private MappedByteBuffer window;
+    private long position; // index of the next record
+    private long windowEnd; // index of the first record after the window
+    private boolean taken; // result of the last read record
+
+    private BinaryTraceReader(FileChannel channel, long windowSize) throws IOException {
+        this.channel = channel;
+
+        ByteBuffer header = ByteBuffer.allocate(BinaryTraceFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) throw new IOException("not a binary trace");
+        }
+        this.format = BinaryTraceFormat.read(header);
+        this.count = header.getLong(BinaryTraceFormat.COUNT_OFFSET);
+        this.recordsPerWindow = Math.max(1, windowSize / format.recordSize);
+
+        if (count < 0 || count > (channel.size() - BinaryTraceFormat.HEADER_SIZE) / format.recordSize)
+            throw new IOException("binary trace is truncated");
+    }
+
+    public static BinaryTraceReader open(Path path) throws IOException {
+        return open(path, WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize biggest mapped part of the file in bytes, a window holds at least one record
+     */
+    static BinaryTraceReader open(Path path, long windowSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new BinaryTraceReader(channel, windowSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * read the next record of the trace
+     *
+     * @param instruction the instruction which is filled with the fields of the next branch
+     * @return false if the trace has no more records, in that case the instruction is not changed
+     * @throws IOException if the file can not be mapped
+     */
+    public boolean next(PackedBranchInstruction instruction) throws IOException {
+        if (position == count) return false;
+        if (position == windowEnd) map();
+
+        MappedByteBuffer buffer = window;
+        long opcode = BinaryTraceFormat.getField(buffer, format.opcodeBytes);
+        long instructionAddress = BinaryTraceFormat.getField(buffer, format.instructionAddressBytes);
+        long jumpAddress = BinaryTraceFormat.getField(buffer, format.jumpAddressBytes);
+        taken = buffer.get() != 0;
+        position++;
+
+        instruction.set(opcode, format.opcodeWidth, instructionAddress, format.instructionAddressWidth,
+                jumpAddress, format.jumpAddressWidth);
+        return true;
+    }
+
+    /**
+     * @return the result of the last read record
+     */
+    public BranchResult getResult() {
+        return BranchResult.of(taken);
+    }
+
+    /**
+     * feed the rest of the trace to the predictor, one predict and update per record
+     *
+     * @param predictor the predictor which is simulated
+     * @return number of correctly predicted branches
+     * @throws IOException if the file can not be mapped
+     */
+    public long replay(BranchPredictor predictor) throws IOException {
+        PackedBranchInstruction instruction = new PackedBranchInstruction();
+        long hits = 0;
+        while (next(instruction)) {
+            BranchResult actual = getResult();
+            if (predictor.predict(instruction) == actual) hits++;
+            predictor.update(instruction, actual);
+        }
+        return hits;
+    }
+
+    /**
+     * @return number of records in the trace
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return number of records which are read so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public int getOpcodeWidth() {
+        return format.opcodeWidth;
+    }
+
+    public int getInstructionAddressWidth() {
+        return format.instructionAddressWidth;
+    }
+
+    public int getJumpAddressWidth() {
+        return format.jumpAddressWidth;
+    }
+
+    private void map() throws IOException {
+        long records = Math.min(recordsPerWindow, count - position);
+        long offset = BinaryTraceFormat.HEADER_SIZE + position * format.recordSize;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, records * format.recordSize);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        windowEnd = position + records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,87 @@
+package hardwar.branch.prediction.trace;
+
+/*
+ * writes a trace in the binary trace format, see BinaryTraceFormat
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the widths of the fields are fixed when the writer is created, the bits of a value above
+ * its width are dropped
+ *
+ * 2) the number of records in the header is written on close, a trace which is not closed is not valid
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryTraceWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final BinaryTraceFormat format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long count;
+
+    /**
+     * @param path                    the trace file, replaced if it exists
+     * @param opcodeWidth             number of bits of the opcodes
+     * @param instructionAddressWidth number of bits of the instruction addresses
+     * @param jumpAddressWidth        number of bits of the jump addresses
+     */
+    public BinaryTraceWriter(Path path, int opcodeWidth, int instructionAddressWidth, int jumpAddressWidth)
+            throws IOException {
+        this.format = new BinaryTraceFormat(opcodeWidth, instructionAddressWidth, jumpAddressWidth);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.put(format.header(0));
+    }
+
+    public void write(BranchInstruction instruction, BranchResult result) throws IOException {
+        write(PackedBranchInstruction.opcodeOf(instruction), PackedBranchInstruction.addressOf(instruction),
+                PackedBranchInstruction.jumpAddressOf(instruction), result == BranchResult.TAKEN);
+    }
+
+    public void write(long opcode, long instructionAddress, long jumpAddress, boolean taken) throws IOException {
+        if (buffer.remaining() < format.recordSize) flush();
+
+        BinaryTraceFormat.putField(buffer, format.opcodeBytes, opcode);
+        BinaryTraceFormat.putField(buffer, format.instructionAddressBytes, instructionAddress);
+        BinaryTraceFormat.putField(buffer, format.jumpAddressBytes, jumpAddress);
+        buffer.put((byte) (taken ? 1 : 0));
+        count++;
+    }
+
+    /**
+     * @return number of written records
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer header = format.header(count);
+            while (header.hasRemaining()) channel.write(header, header.position());
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package hardwar.branch.prediction.trace;
+
+/*
+ * streaming reader of the result.json trace files
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the file is a json array of "TAKEN"/"NOT_TAKEN" strings, one per instruction of the trace
+ *
+ * 2) the results are read one at a time (or into a caller owned array), so the reader keeps
+ * a constant amount of memory
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.shared.BranchResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+public class JsonResultReader implements Closeable {
+    private static final byte[] TAKEN = "TAKEN".getBytes();
+    private static final byte[] NOT_TAKEN = "NOT_TAKEN".getBytes();
+
+    private final JsonScanner scanner;
+    private boolean started;
+    private boolean finished;
+
+    public JsonResultReader(ReadableByteChannel channel) {
+        this(new JsonScanner(channel));
+    }
+
+    private JsonResultReader(JsonScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    public static JsonResultReader open(Path path) throws IOException {
+        return new JsonResultReader(JsonScanner.open(path));
+    }
+
+    /**
+     * @return the next result of the trace, or null at the end of the trace
+     * @throws IOException if the file can not be read or is not a valid result file
+     */
+    public BranchResult next() throws IOException {
+        if (finished) return null;
+
+        if (!started) {
+            scanner.expect('[');
+            started = true;
+            if (scanner.peekToken() == ']') return end();
+        } else if (!scanner.skipComma()) {
+            return end();
+        }
+
+        scanner.expect('"');
+        boolean taken = scanner.peek() == 'T';
+        if (scanner.matchString(taken ? TAKEN : NOT_TAKEN)) return BranchResult.of(taken);
+        throw scanner.error("expected TAKEN or NOT_TAKEN");
+    }
+
+    /**
+     * read the results into an array
+     *
+     * @param taken the array which is filled, true for the taken branches
+     * @param from  the first index to fill
+     * @param to    the index after the last one to fill
+     * @return number of read results, less than to - from only at the end of the trace
+     * @throws IOException if the file can not be read or is not a valid result file
+     */
+    public int next(boolean[] taken, int from, int to) throws IOException {
+        int i = from;
+        for (BranchResult result; i < to && (result = next()) != null; i++) taken[i] = result == BranchResult.TAKEN;
+        return i - from;
+    }
+
+    private BranchResult end() throws IOException {
+        scanner.expect(']');
+        finished = true;
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+}
@@ -0,0 +1,183 @@
+package hardwar.branch.prediction.trace;
+
+/*
+ * a minimal pull scanner for the json trace files
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the input is read through a fixed size buffer, so the memory does not depend on the file size
+ *
+ * 2) only the json needed by the trace files is understood: arrays, objects, strings without
+ * escaped quotes, numbers and literals. strings are never turned into java strings, the readers
+ * match them byte by byte and reject the values they do not know
+ * -------------------------------------------------------
+ */
+
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class JsonScanner implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes); // reads from the channel into bytes
+    private int next; // index of the next byte in bytes
+    private int limit; // number of valid bytes in bytes
+    private long consumed; // number of bytes before the buffer, used in the error messages
+
+    JsonScanner(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    static JsonScanner open(Path path) throws IOException {
+        return new JsonScanner(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * @return the next byte without consuming it, or -1 at the end of the input
+     */
+    int peek() throws IOException {
+        if (next == limit && !fill()) return -1;
+        return bytes[next] & 0xFF;
+    }
+
+    /**
+     * @return the next byte, or -1 at the end of the input
+     */
+    int read() throws IOException {
+        if (next == limit && !fill()) return -1;
+        return bytes[next++] & 0xFF;
+    }
+
+    /**
+     * @return the next byte which is not a white space, without consuming it, or -1 at the end of the input
+     */
+    int peekToken() throws IOException {
+        while (next < limit || fill()) {
+            byte c = bytes[next];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c & 0xFF;
+            next++;
+        }
+        return -1;
+    }
+
+    /**
+     * consume the next token which must be the given character
+     */
+    void expect(char token) throws IOException {
+        int c = peekToken();
+        if (c != token) throw error("expected '" + token + "'");
+        read();
+    }
+
+    /**
+     * consume a ',' if it is the next token
+     *
+     * @return true if a ',' is consumed
+     */
+    boolean skipComma() throws IOException {
+        if (peekToken() != ',') return false;
+        read();
+        return true;
+    }
+
+    /**
+     * consume the rest of a string whose opening quote is already consumed
+     *
+     * @return the length of the string
+     */
+    int skipString() throws IOException {
+        int length = 0;
+        while (true) {
+            for (int i = next; i < limit; i++) {
+                if (bytes[i] == '"') {
+                    length += i - next;
+                    next = i + 1;
+                    return length;
+                }
+            }
+            length += limit - next;
+            next = limit;
+            if (!fill()) throw new EOFException("unterminated string in the trace");
+        }
+    }
+
+    /**
+     * consume the rest of a string whose opening quote is already consumed
+     *
+     * @param expected the bytes of the expected string
+     * @return true if the string is exactly the expected one
+     */
+    boolean matchString(byte[] expected) throws IOException {
+        int length = 0;
+        boolean matches = true;
+        for (int c = read(); c != '"'; c = read(), length++) {
+            if (c == -1) throw new EOFException("unterminated string in the trace");
+            if (length >= expected.length || c != expected[length]) matches = false;
+        }
+        return matches && length == expected.length;
+    }
+
+    /**
+     * consume any json value
+     */
+    void skipValue() throws IOException {
+        int c = peekToken();
+        if (c == '"') {
+            read();
+            skipString();
+        } else if (c == '[' || c == '{') {
+            read();
+            int close = c == '[' ? ']' : '}';
+            if (peekToken() == close) {
+                read();
+                return;
+            }
+            do {
+                if (close == '}') {
+                    expect('"');
+                    skipString();
+                    expect(':');
+                }
+                skipValue();
+            } while (skipComma());
+            expect((char) close);
+        } else if (c == -1) {
+            throw new EOFException("unexpected end of the trace");
+        } else {
+            // numbers and literals
+            while (c != ',' && c != ']' && c != '}' && c != -1 && c > ' ') {
+                read();
+                c = peek();
+            }
+        }
+    }
+
+    IOException error(String message) {
+        return new IOException(message + " at byte " + (consumed + next) + " of the trace");
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        next = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
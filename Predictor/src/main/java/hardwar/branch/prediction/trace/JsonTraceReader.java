@@ -0,0 +1,171 @@
+package hardwar.branch.prediction.trace;
+
+/*
+ * streaming reader of the instruction.json trace files
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the file is a json array of objects with the "opcode", "instructionAddress" and "jumpAddress"
+ * fields, each one an array of "ONE"/"ZERO" strings with the most significant bit first. other fields are skipped
+ *
+ * 2) the instructions are read one at a time into a caller owned PackedBranchInstruction, so the reader
+ * keeps a constant amount of memory and does not allocate per branch or per bit
+ *
+ * 3) the fields are at most 64 bits, as required by PackedBranchInstruction
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+public class JsonTraceReader implements Closeable {
+    private static final byte[] OPCODE = "opcode".getBytes();
+    private static final byte[] INSTRUCTION_ADDRESS = "instructionAddress".getBytes();
+    private static final byte[] JUMP_ADDRESS = "jumpAddress".getBytes();
+    private static final byte[] ONE = "ONE".getBytes();
+    private static final byte[] ZERO = "ZERO".getBytes();
+
+    private final JsonScanner scanner;
+    private final byte[] key = new byte[INSTRUCTION_ADDRESS.length + 1]; // long enough to tell the keys apart
+    private boolean started;
+    private boolean finished;
+    private long bits; // value of the last read field
+    private int width; // width of the last read field
+
+    public JsonTraceReader(ReadableByteChannel channel) {
+        this(new JsonScanner(channel));
+    }
+
+    private JsonTraceReader(JsonScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    public static JsonTraceReader open(Path path) throws IOException {
+        return new JsonTraceReader(JsonScanner.open(path));
+    }
+
+    /**
+     * read the next instruction of the trace
+     *
+     * @param instruction the instruction which is filled with the fields of the next branch
+     * @return false if the trace has no more instructions, in that case the instruction is not changed
+     * @throws IOException if the file can not be read or is not a valid trace
+     */
+    public boolean next(PackedBranchInstruction instruction) throws IOException {
+        if (!nextElement()) return false;
+
+        long opcode = 0, instructionAddress = 0, jumpAddress = 0;
+        int opcodeWidth = 0, instructionAddressWidth = 0, jumpAddressWidth = 0;
+
+        scanner.expect('{');
+        if (scanner.peekToken() != '}') {
+            do {
+                scanner.expect('"');
+                int length = readKey();
+                scanner.expect(':');
+                if (matches(length, OPCODE)) {
+                    readBits();
+                    opcode = bits;
+                    opcodeWidth = width;
+                } else if (matches(length, INSTRUCTION_ADDRESS)) {
+                    readBits();
+                    instructionAddress = bits;
+                    instructionAddressWidth = width;
+                } else if (matches(length, JUMP_ADDRESS)) {
+                    readBits();
+                    jumpAddress = bits;
+                    jumpAddressWidth = width;
+                } else {
+                    scanner.skipValue();
+                }
+            } while (scanner.skipComma());
+        }
+        scanner.expect('}');
+
+        instruction.set(opcode, opcodeWidth, instructionAddress, instructionAddressWidth, jumpAddress, jumpAddressWidth);
+        return true;
+    }
+
+    /**
+     * fill a batch of reusable instructions
+     *
+     * @param batch the instructions to be filled
+     * @return number of filled instructions, less than the batch size only at the end of the trace
+     * @throws IOException if the file can not be read or is not a valid trace
+     */
+    public int next(PackedBranchInstruction[] batch) throws IOException {
+        int n = 0;
+        while (n < batch.length && next(batch[n])) n++;
+        return n;
+    }
+
+    /**
+     * move to the next element of the top level array
+     *
+     * @return false at the end of the array
+     */
+    private boolean nextElement() throws IOException {
+        if (finished) return false;
+
+        if (!started) {
+            scanner.expect('[');
+            started = true;
+            if (scanner.peekToken() != ']') return true;
+        } else if (scanner.skipComma()) {
+            return true;
+        }
+
+        scanner.expect(']');
+        finished = true;
+        return false;
+    }
+
+    /**
+     * read a key whose opening quote is already consumed
+     *
+     * @return the length of the key, the first bytes are kept in `key`
+     */
+    private int readKey() throws IOException {
+        int length = 0;
+        for (int c = scanner.read(); c != '"'; c = scanner.read(), length++) {
+            if (c == -1) throw scanner.error("unterminated key");
+            if (length < key.length) key[length] = (byte) c;
+        }
+        return length;
+    }
+
+    private boolean matches(int length, byte[] expected) {
+        if (length != expected.length) return false;
+        for (int i = 0; i < length; i++) if (key[i] != expected[i]) return false;
+        return true;
+    }
+
+    /**
+     * read an array of "ONE"/"ZERO" strings into `bits` and `width`
+     */
+    private void readBits() throws IOException {
+        bits = 0;
+        width = 0;
+        scanner.expect('[');
+        if (scanner.peekToken() != ']') {
+            do {
+                scanner.expect('"');
+                boolean one = scanner.peek() == 'O';
+                if (!scanner.matchString(one ? ONE : ZERO)) throw scanner.error("expected ONE or ZERO");
+
+                if (++width > 64) throw scanner.error("field is wider than 64 bits");
+                bits = (bits << 1) | (one ? 1 : 0);
+            } while (scanner.skipComma());
+        }
+        scanner.expect(']');
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+}
@@ -0,0 +1,67 @@
+package hardwar.branch.prediction.trace;
+
+/*
+ * converts an instruction.json and result.json pair to the binary trace format
+ * ------------------------------------------------------
+ * ASSUMPTIONS:
+ * 1) the json files are read twice: the first pass finds the widest opcode and addresses,
+ * which become the widths of the binary trace, the second pass writes the records
+ *
+ * 2) both files have the same number of entries
+ * -------------------------------------------------------
+ */
+
+
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public final class TraceConverter {
+
+    private TraceConverter() {
+    }
+
+    /**
+     * @param instructions the instruction.json file
+     * @param results      the result.json file
+     * @param output       the binary trace file, replaced if it exists
+     * @return number of converted records
+     * @throws IOException if a file can not be read or written, or the files do not match
+     */
+    public static long convert(Path instructions, Path results, Path output) throws IOException {
+        PackedBranchInstruction instruction = new PackedBranchInstruction();
+        int opcodeWidth = 0, instructionAddressWidth = 0, jumpAddressWidth = 0;
+        try (JsonTraceReader reader = JsonTraceReader.open(instructions)) {
+            while (reader.next(instruction)) {
+                opcodeWidth = Math.max(opcodeWidth, instruction.getOpcodeWidth());
+                instructionAddressWidth = Math.max(instructionAddressWidth, instruction.getInstructionAddressWidth());
+                jumpAddressWidth = Math.max(jumpAddressWidth, instruction.getJumpAddressWidth());
+            }
+        }
+
+        try (JsonTraceReader reader = JsonTraceReader.open(instructions);
+             JsonResultReader resultReader = JsonResultReader.open(results);
+             BinaryTraceWriter writer = new BinaryTraceWriter(output, opcodeWidth, instructionAddressWidth,
+                     jumpAddressWidth)) {
+            while (reader.next(instruction)) {
+                BranchResult result = resultReader.next();
+                if (result == null) throw new IOException("result file has fewer entries than the trace");
+                writer.write(instruction, result);
+            }
+            if (resultReader.next() != null) throw new IOException("result file has more entries than the trace");
+            return writer.getCount();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: TraceConverter <instruction.json> <result.json> <output>");
+            System.exit(1);
+        }
+        long count = convert(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2]));
+        System.out.println(count + " records written to " + args[2]);
+    }
+}
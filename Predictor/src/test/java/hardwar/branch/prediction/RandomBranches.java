@@ -0,0 +1,97 @@
+package hardwar.branch.prediction;
+
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * a reproducible stream of branches for the tests: a few hot addresses whose outcomes follow a short pattern
+ * with some noise, so the histories and the counters of the predictors are all exercised
+ */
+public final class RandomBranches {
+    public final long[] addresses;
+    public final boolean[] outcomes;
+    public final int addressWidth;
+
+    private RandomBranches(long[] addresses, boolean[] outcomes, int addressWidth) {
+        this.addresses = addresses;
+        this.outcomes = outcomes;
+        this.addressWidth = addressWidth;
+    }
+
+    /**
+     * @param seed         seed of the stream
+     * @param count        number of branches
+     * @param addressWidth number of bits of the addresses
+     * @param footprint    number of distinct addresses
+     */
+    public static RandomBranches generate(long seed, int count, int addressWidth, int footprint) {
+        Random random = new Random(seed);
+        long mask = addressWidth == 64 ? -1L : (1L << addressWidth) - 1;
+        long[] sites = new long[footprint];
+        for (int i = 0; i < footprint; i++) sites[i] = random.nextLong() & mask;
+
+        long[] addresses = new long[count];
+        boolean[] outcomes = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            long address = sites[random.nextInt(footprint)];
+            addresses[i] = address;
+            outcomes[i] = ((address * 31 + i / 7) % 3 != 0) ^ random.nextInt(10) == 0;
+        }
+        return new RandomBranches(addresses, outcomes, addressWidth);
+    }
+
+    public int size() {
+        return addresses.length;
+    }
+
+    /**
+     * @return the branch as a plain instruction, which goes through the Bit[] API of the predictors
+     */
+    public BranchInstruction instruction(int i) {
+        return new BranchInstruction(Bits.fromNumber(0, 3), Bits.fromNumber(addresses[i], addressWidth),
+                Bits.fromNumber(0, 8));
+    }
+
+    /**
+     * @return the branch as a packed instruction, which goes through the numeric API of the predictors
+     */
+    public PackedBranchInstruction packed(int i) {
+        return new PackedBranchInstruction(0, 3, addresses[i], addressWidth, 0, 8);
+    }
+
+    /**
+     * @return the predictions of the predictor on the branches, predicted and updated one by one
+     */
+    public boolean[] predictions(BranchPredictor predictor) {
+        boolean[] predictions = new boolean[size()];
+        for (int i = 0; i < size(); i++) {
+            predictions[i] = BranchResult.isTaken(predictor.predict(instruction(i)));
+            predictor.update(instruction(i), BranchResult.of(outcomes[i]));
+        }
+        return predictions;
+    }
+
+    /**
+     * simulate the branches in two batches split at the given branch, so the state of the predictor is carried
+     * from one call to the next, and check that it predicts like the reference predicted and updated one by one
+     *
+     * @param reference the predictor of the expected predictions, through predict and update
+     * @param simulated the predictor of the batch simulation, in the state of the reference
+     * @param split     the first branch of the second batch
+     */
+    public void assertSimulateMatchesPredictUpdate(BranchPredictor reference, BranchPredictor simulated, int split) {
+        boolean[] expected = predictions(reference);
+        boolean[] predictions = new boolean[size()];
+        BatchPredictor.simulate(simulated, addresses, addressWidth, outcomes, predictions, 0, split);
+        BatchPredictor.simulate(simulated, addresses, addressWidth, outcomes, predictions, split, size());
+        assertArrayEquals(expected, predictions, simulated.getClass().getSimpleName() + " split at " + split);
+    }
+}
@@ -0,0 +1,87 @@
+package hardwar.branch.prediction.extended.FrontEnd;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.extended.Bimodal.Bimodal;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.packed.devices.BranchTargetBuffer;
+import hardwar.branch.prediction.packed.devices.LoopTable;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * a taken branch must count as a target hit exactly when the BTB held its target at the prediction
+ */
+class FrontEndTest {
+    private static final int ADDRESS_WIDTH = 8;
+
+    @Test
+    void countsTheTargetsOfTheTakenBranches() {
+        FrontEnd frontEnd = frontEnd(new BranchTargetBuffer(2, 2, 8, ReplacementPolicy.LRU));
+        run(frontEnd, 0x11, 0x40, true); // cold
+        run(frontEnd, 0x11, 0x40, true);
+        run(frontEnd, 0x11, 0x40, false); // not taken, neither a hit nor a miss
+        run(frontEnd, 0x11, 0x50, true); // another target
+        run(frontEnd, 0x11, 0x50, true);
+        run(frontEnd, 0x22, 0x50, true); // another branch
+
+        assertEquals(2, frontEnd.getTargetHits());
+        assertEquals(3, frontEnd.getTargetMisses());
+        assertEquals(2, frontEnd.getBTB().countValid());
+    }
+
+    @Test
+    void evictedTargetsMiss() {
+        // one entry, so two taken branches take it in turns
+        FrontEnd frontEnd = frontEnd(new BranchTargetBuffer(0, 1, 8, ReplacementPolicy.LRU));
+        for (int i = 0; i < 10; i++) {
+            run(frontEnd, 0x11, 0x40, true);
+            run(frontEnd, 0x22, 0x80, true);
+        }
+        assertEquals(0, frontEnd.getTargetHits());
+        assertEquals(20, frontEnd.getTargetMisses());
+    }
+
+    @Test
+    void countsLikeAnUnboundedBuffer() {
+        // one way per address, so the BTB never evicts and holds the last target of every taken branch
+        FrontEnd frontEnd = frontEnd(new BranchTargetBuffer(ADDRESS_WIDTH, 1, 8, ReplacementPolicy.PSEUDO_LRU));
+        RandomBranches branches = RandomBranches.generate(3, 5000, ADDRESS_WIDTH, 40);
+        Map<Long, Long> targets = new HashMap<>();
+        long hits = 0;
+        long misses = 0;
+        for (int i = 0; i < branches.size(); i++) {
+            long address = branches.addresses[i];
+            long target = (address * 7 + i / 500) & 0xFF; // the targets change now and then
+            boolean taken = branches.outcomes[i];
+            run(frontEnd, address, target, taken);
+
+            if (!taken) continue;
+            if (targets.containsKey(address) && targets.get(address) == target) hits++;
+            else misses++;
+            targets.put(address, target);
+        }
+
+        assertEquals(hits, frontEnd.getTargetHits());
+        assertEquals(misses, frontEnd.getTargetMisses());
+        assertEquals(targets.size(), frontEnd.getBTB().countValid());
+    }
+
+    private static FrontEnd frontEnd(BranchTargetBuffer BTB) {
+        return new FrontEnd(new Bimodal(4, 2, HashMode.XOR, StorageMode.PACKED), BTB,
+                new LoopTable(2, 2, 6, 6, ReplacementPolicy.LRU));
+    }
+
+    private static void run(FrontEnd frontEnd, long address, long target, boolean taken) {
+        PackedBranchInstruction instruction = new PackedBranchInstruction(0, 3, address, ADDRESS_WIDTH, target, 8);
+        frontEnd.predict(instruction);
+        frontEnd.update(instruction, BranchResult.of(taken));
+    }
+}
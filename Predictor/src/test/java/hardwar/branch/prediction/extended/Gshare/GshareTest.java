@@ -0,0 +1,65 @@
+package hardwar.branch.prediction.extended.Gshare;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.packed.CacheGeometry;
+import hardwar.branch.prediction.packed.HashFunction;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchResult;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * the PACKED gshare predictor must predict and print like the MAP one, through predict and update and simulate
+ */
+class GshareTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 3000;
+
+    static List<Arguments> configurations() {
+        List<Arguments> configurations = new ArrayList<>();
+        for (HashFunction hashFunction : HashFunction.values()) {
+            configurations.add(Arguments.of(4, 2, 4, hashFunction));
+            // histories longer and shorter than the index
+            configurations.add(Arguments.of(9, 2, 5, hashFunction));
+            configurations.add(Arguments.of(2, 3, 6, hashFunction));
+        }
+        return configurations;
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void packedPredictsLikeTheMap(int BHRSize, int SCSize, int KSize, HashFunction hashFunction) {
+        RandomBranches branches = RandomBranches.generate(BHRSize * 31 + KSize, BRANCHES, ADDRESS_WIDTH, 40);
+        Gshare map = new Gshare(BHRSize, SCSize, KSize, hashFunction, StorageMode.MAP, CacheGeometry.DEFAULT);
+        Gshare packed = new Gshare(BHRSize, SCSize, KSize, hashFunction, StorageMode.PACKED, CacheGeometry.DEFAULT);
+        Gshare plain = new Gshare(BHRSize, SCSize, KSize, hashFunction, StorageMode.PACKED, CacheGeometry.DEFAULT);
+        for (int i = 0; i < BRANCHES; i++) {
+            BranchResult expected = map.predict(branches.instruction(i));
+            assertEquals(expected, packed.predict(branches.packed(i)), "branch " + i);
+            assertEquals(expected, plain.predict(branches.instruction(i)), "branch " + i);
+
+            BranchResult actual = BranchResult.of(branches.outcomes[i]);
+            map.update(branches.instruction(i), actual);
+            packed.update(branches.packed(i), actual);
+            plain.update(branches.instruction(i), actual);
+        }
+        assertEquals(map.monitor(), packed.monitor());
+        assertEquals(map.monitor(), plain.monitor());
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void simulatePredictsLikeTheMap(int BHRSize, int SCSize, int KSize, HashFunction hashFunction) {
+        RandomBranches branches = RandomBranches.generate(BHRSize * 31 + KSize, BRANCHES, ADDRESS_WIDTH, 40);
+        Gshare map = new Gshare(BHRSize, SCSize, KSize, hashFunction, StorageMode.MAP, CacheGeometry.DEFAULT);
+        Gshare packed = new Gshare(BHRSize, SCSize, KSize, hashFunction, StorageMode.PACKED, CacheGeometry.DEFAULT);
+        branches.assertSimulateMatchesPredictUpdate(map, packed, 1000);
+        assertEquals(map.monitor(), packed.monitor());
+    }
+}
@@ -0,0 +1,43 @@
+package hardwar.branch.prediction.extended.Perceptron;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.HashFunction;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * the batch simulation of the perceptron must predict like its predict and update, with each hash function
+ */
+class PerceptronTest {
+    private static final int ADDRESS_WIDTH = 16;
+    private static final int BRANCHES = 5000;
+
+    @ParameterizedTest
+    @EnumSource(HashFunction.class)
+    void simulatePredictsLikePredictAndUpdate(HashFunction hashFunction) {
+        RandomBranches branches = RandomBranches.generate(hashFunction.ordinal(), BRANCHES, ADDRESS_WIDTH, 200);
+        Perceptron reference = new Perceptron(24, 6, hashFunction);
+        Perceptron perceptron = new Perceptron(24, 6, hashFunction);
+        branches.assertSimulateMatchesPredictUpdate(reference, perceptron, 1234);
+        assertEquals(reference.monitor(), perceptron.monitor());
+    }
+
+    @ParameterizedTest
+    @EnumSource(HashFunction.class)
+    void hashFunctionSelectsTheWeights(HashFunction hashFunction) {
+        RandomBranches branches = RandomBranches.generate(7, BRANCHES, ADDRESS_WIDTH, 200);
+        HashFunction other = hashFunction == HashFunction.XOR ? HashFunction.SIMPLE_CUT : HashFunction.XOR;
+        Perceptron perceptron = new Perceptron(24, 6, hashFunction);
+        Perceptron otherPerceptron = new Perceptron(24, 6, other);
+        boolean[] predictions = new boolean[BRANCHES];
+        BatchPredictor.simulate(perceptron, branches.addresses, ADDRESS_WIDTH, branches.outcomes, predictions, 0,
+                BRANCHES);
+        BatchPredictor.simulate(otherPerceptron, branches.addresses, ADDRESS_WIDTH, branches.outcomes, predictions, 0,
+                BRANCHES);
+        assertNotEquals(perceptron.monitor(), otherPerceptron.monitor());
+    }
+}
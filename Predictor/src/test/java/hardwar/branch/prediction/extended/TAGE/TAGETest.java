@@ -0,0 +1,102 @@
+package hardwar.branch.prediction.extended.TAGE;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.extended.Bimodal.Bimodal;
+import hardwar.branch.prediction.extended.Gshare.Gshare;
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.HashMode;
+import hardwar.branch.prediction.simulation.Configuration;
+import hardwar.branch.prediction.simulation.PredictorFamily;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the batch simulation of TAGE must predict like its predict and update, the sweep must build it, and its long
+ * histories must learn a correlation which a bimodal and a short gshare can not see
+ */
+class TAGETest {
+    private static final int ADDRESS_WIDTH = 16;
+    private static final int BRANCHES = 20000;
+
+    static List<Arguments> shapes() {
+        return Arrays.asList(
+                Arguments.of(10, 4, 4, 64, 8, 9),
+                Arguments.of(8, 7, 4, 640, 10, 11),
+                Arguments.of(6, 1, 3, 3, 4, 2));
+    }
+
+    @ParameterizedTest
+    @MethodSource("shapes")
+    void simulatePredictsLikePredictAndUpdate(int baseSize, int nTables, int minHistory, int maxHistory,
+                                              int indexSize, int tagSize) {
+        RandomBranches branches = RandomBranches.generate(nTables, BRANCHES, ADDRESS_WIDTH, 300);
+        TAGE reference = new TAGE(baseSize, nTables, minHistory, maxHistory, indexSize, tagSize);
+        TAGE tage = new TAGE(baseSize, nTables, minHistory, maxHistory, indexSize, tagSize);
+        branches.assertSimulateMatchesPredictUpdate(reference, tage, 7777);
+        assertEquals(reference.monitor(), tage.monitor());
+    }
+
+    @Test
+    void sweepBuildsTAGE() {
+        Configuration configuration = new Configuration(PredictorFamily.TAGE, 32, 2, ADDRESS_WIDTH, 8, null,
+                StorageMode.PACKED);
+        TAGE tage = (TAGE) configuration.create();
+        assertArrayEquals(new int[]{4, 8, 16, 32}, tage.getHistoryLengths());
+
+        // the base table has K + 2 bits and the tags 9 bits
+        RandomBranches branches = RandomBranches.generate(5, BRANCHES, ADDRESS_WIDTH, 300);
+        assertArrayEquals(branches.predictions(new TAGE(10, 4, 4, 32, 8, 9)), branches.predictions(tage));
+    }
+
+    @Test
+    void longHistoryLearnsAFarCorrelation() {
+        // a random branch, 8 always taken branches, then a branch with the outcome of the random one:
+        // the outcome is 9 branches back, beyond the 4 bit history of the gshare
+        int period = 10;
+        int iterations = 4000;
+        long[] addresses = new long[period * iterations];
+        boolean[] outcomes = new boolean[period * iterations];
+        Random random = new Random(19);
+        for (int i = 0; i < iterations; i++) {
+            boolean x = random.nextBoolean();
+            for (int j = 0; j < period; j++) {
+                addresses[i * period + j] = 0x100 + 4 * j;
+                outcomes[i * period + j] = j == 0 || j == period - 1 ? x : true;
+            }
+        }
+
+        double tage = accuracyOfTheLastBranch(new TAGE(10, 4, 4, 32, 8, 9), addresses, outcomes, period);
+        double bimodal = accuracyOfTheLastBranch(new Bimodal(10, 2, HashMode.XOR), addresses, outcomes, period);
+        double gshare = accuracyOfTheLastBranch(new Gshare(4, 2, 10, HashMode.XOR), addresses, outcomes, period);
+        assertTrue(tage > 0.95, "TAGE predicts " + tage + " of the correlated branch");
+        assertTrue(bimodal < 0.6, "Bimodal predicts " + bimodal + " of the correlated branch");
+        assertTrue(gshare < 0.6, "Gshare predicts " + gshare + " of the correlated branch");
+    }
+
+    /**
+     * @return the part of the correlated branches of the second half which the predictor predicts correctly
+     */
+    private static double accuracyOfTheLastBranch(BatchPredictor predictor, long[] addresses, boolean[] outcomes,
+                                                  int period) {
+        boolean[] predictions = new boolean[outcomes.length];
+        BatchPredictor.simulate(predictor, addresses, ADDRESS_WIDTH, outcomes, predictions, 0, outcomes.length);
+        int correct = 0;
+        int total = 0;
+        for (int i = outcomes.length / 2 + period - 1; i < outcomes.length; i += period) {
+            if (predictions[i] == outcomes[i]) correct++;
+            total++;
+        }
+        return (double) correct / total;
+    }
+}
@@ -0,0 +1,79 @@
+package hardwar.branch.prediction.extended.Tournament;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.extended.Bimodal.Bimodal;
+import hardwar.branch.prediction.extended.Gshare.Gshare;
+import hardwar.branch.prediction.judged.GAs.GAs;
+import hardwar.branch.prediction.judged.PAg.PAg;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * a tournament of PACKED components must predict and print like the tournament of the MAP ones,
+ * through predict and update and simulate
+ */
+class TournamentTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 3000;
+
+    static List<Arguments> tournaments() {
+        List<Arguments> tournaments = new ArrayList<>();
+        for (HashMode hashMode : HashMode.values()) {
+            tournaments.add(Arguments.of((Function<StorageMode, Tournament>) storageMode -> new Tournament(
+                    new Bimodal(5, 2, hashMode, storageMode), new Gshare(6, 2, 5, hashMode, storageMode),
+                    4, 2, hashMode)));
+            tournaments.add(Arguments.of((Function<StorageMode, Tournament>) storageMode -> new Tournament(
+                    new PAg(4, 2, ADDRESS_WIDTH, storageMode),
+                    new GAs(4, 2, ADDRESS_WIDTH, 3, HashMode.XOR, storageMode),
+                    6, 3, hashMode)));
+            // a single chooser counter of one bit
+            tournaments.add(Arguments.of((Function<StorageMode, Tournament>) storageMode -> new Tournament(
+                    new Gshare(3, 1, 4, hashMode, storageMode), new Bimodal(3, 3, hashMode, storageMode),
+                    0, 1, hashMode)));
+        }
+        return tournaments;
+    }
+
+    @ParameterizedTest
+    @MethodSource("tournaments")
+    void packedComponentsPredictLikeTheMap(Function<StorageMode, Tournament> tournament) {
+        RandomBranches branches = RandomBranches.generate(11, BRANCHES, ADDRESS_WIDTH, 40);
+        Tournament map = tournament.apply(StorageMode.MAP);
+        Tournament packed = tournament.apply(StorageMode.PACKED);
+        Tournament plain = tournament.apply(StorageMode.PACKED);
+        for (int i = 0; i < BRANCHES; i++) {
+            BranchResult expected = map.predict(branches.instruction(i));
+            assertEquals(expected, packed.predict(branches.packed(i)), "branch " + i);
+            assertEquals(expected, plain.predict(branches.instruction(i)), "branch " + i);
+
+            BranchResult actual = BranchResult.of(branches.outcomes[i]);
+            map.update(branches.instruction(i), actual);
+            packed.update(branches.packed(i), actual);
+            plain.update(branches.instruction(i), actual);
+        }
+        assertEquals(map.monitor(), packed.monitor());
+        assertEquals(map.monitor(), plain.monitor());
+    }
+
+    @ParameterizedTest
+    @MethodSource("tournaments")
+    void simulatePredictsLikeTheMap(Function<StorageMode, Tournament> tournament) {
+        RandomBranches branches = RandomBranches.generate(11, BRANCHES, ADDRESS_WIDTH, 40);
+        for (StorageMode storageMode : new StorageMode[]{StorageMode.MAP, StorageMode.PACKED}) {
+            Tournament map = tournament.apply(StorageMode.MAP);
+            Tournament simulated = tournament.apply(storageMode);
+            branches.assertSimulateMatchesPredictUpdate(map, simulated, 1000);
+            assertEquals(map.monitor(), simulated.monitor(), storageMode.name());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package hardwar.branch.prediction.judged;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.packed.CacheGeometry;
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.simulation.Configuration;
+import hardwar.branch.prediction.simulation.PredictorFamily;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * the BOUNDED predictors must predict like the MAP ones while their tables hold every entry, and lose counters
+ * once the entries of a set do not fit in its ways
+ */
+class BoundedStorageTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 3000;
+    // more sets than the entries of the configurations have values, so no two entries share a set
+    private static final CacheGeometry LARGE = new CacheGeometry(16, 1, ReplacementPolicy.LRU);
+
+    static List<Configuration> configurations() {
+        return StorageModeTest.configurations();
+    }
+
+    /**
+     * the configurations whose predictions read the counters which the updates write, the PAs and SAs ones whose
+     * K is not their BHR size predict on rows of K bits which no update writes
+     */
+    static List<Configuration> trainedConfigurations() {
+        List<Configuration> configurations = new ArrayList<>();
+        for (Configuration c : configurations()) {
+            boolean perSet = c.getFamily() == PredictorFamily.PAs || c.getFamily() == PredictorFamily.SAs;
+            if (!perSet || c.getKSize() == c.getBHRSize()) configurations.add(c);
+        }
+        return configurations;
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void boundedPredictsLikeTheMapWhenTheEntriesFit(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        assertArrayEquals(predictions(StorageModeTest.create(configuration, StorageMode.MAP), branches),
+                predictions(bounded(configuration, LARGE), branches));
+    }
+
+    @ParameterizedTest
+    @MethodSource("trainedConfigurations")
+    void boundedLosesCountersWhenTheEntriesDoNotFit(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        // a single counter for the whole table, every new entry evicts the last one
+        CacheGeometry tiny = new CacheGeometry(0, 1, ReplacementPolicy.LRU);
+        boolean[] expected = predictions(StorageModeTest.create(configuration, StorageMode.MAP), branches);
+        boolean[] actual = predictions(bounded(configuration, tiny), branches);
+        assertFalse(Arrays.equals(expected, actual));
+    }
+
+    @Test
+    void geometryIsPartOfTheConfiguration() {
+        CacheGeometry small = new CacheGeometry(4, 2, ReplacementPolicy.FIFO);
+        Configuration configuration = new Configuration(PredictorFamily.GAp, 6, 1, ADDRESS_WIDTH, 0, null,
+                StorageMode.BOUNDED, small);
+        assertEquals(small, configuration.getGeometry());
+        assertEquals("GAp(BHR=6, SC=1, address=8, bounded=16x2 FIFO)", configuration.toString());
+        assertNull(new Configuration(PredictorFamily.GAp, 6, 1, ADDRESS_WIDTH, 0, null, StorageMode.MAP,
+                small).getGeometry());
+    }
+
+    private static BranchPredictor bounded(Configuration c, CacheGeometry geometry) {
+        return new Configuration(c.getFamily(), c.getBHRSize(), c.getSCSize(), c.getBranchInstructionSize(),
+                c.getKSize(), c.getHashMode(), StorageMode.BOUNDED, geometry).create();
+    }
+
+    private static boolean[] predictions(BranchPredictor predictor, RandomBranches branches) {
+        boolean[] predictions = new boolean[branches.size()];
+        for (int i = 0; i < branches.size(); i++) {
+            predictions[i] = BranchResult.isTaken(predictor.predict(branches.instruction(i)));
+            predictor.update(branches.instruction(i), BranchResult.of(branches.outcomes[i]));
+        }
+        return predictions;
+    }
+}
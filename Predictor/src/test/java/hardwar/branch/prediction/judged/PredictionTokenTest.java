@@ -0,0 +1,159 @@
+package hardwar.branch.prediction.judged;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.judged.GAg.GAg;
+import hardwar.branch.prediction.judged.PAs.PAs;
+import hardwar.branch.prediction.judged.SAs.SAs;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.PipelinedBranchPredictor;
+import hardwar.branch.prediction.packed.PredictionToken;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import hardwar.branch.prediction.simulation.ConcurrentPredictor;
+import hardwar.branch.prediction.simulation.Configuration;
+import hardwar.branch.prediction.simulation.PredictorFamily;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * a branch which is predicted with a token and updated with the token must predict like predict and update,
+ * and the updates of many tokens in flight must all take effect
+ */
+class PredictionTokenTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 3000;
+
+    static Iterable<Configuration> configurations() {
+        return StorageModeTest.configurations();
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void tokensPredictLikePredictAndUpdate(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        BranchPredictor expected = StorageModeTest.create(configuration, StorageMode.MAP);
+        PipelinedBranchPredictor actual =
+                (PipelinedBranchPredictor) StorageModeTest.create(configuration, StorageMode.PACKED);
+
+        for (int i = 0; i < BRANCHES; i++) {
+            BranchResult result = BranchResult.of(branches.outcomes[i]);
+            BranchResult prediction = expected.predict(branches.instruction(i));
+            expected.update(branches.instruction(i), result);
+
+            long token = actual.predictToken(branches.packed(i));
+            assertEquals(prediction, PredictionToken.result(token), "branch " + i);
+            actual.update(token, result);
+        }
+        assertEquals(expected.monitor(), actual.monitor());
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void tokensMixWithPredictAndUpdate(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        BranchPredictor expected = StorageModeTest.create(configuration, StorageMode.MAP);
+        PipelinedBranchPredictor actual =
+                (PipelinedBranchPredictor) StorageModeTest.create(configuration, StorageMode.PACKED);
+
+        for (int i = 0; i < BRANCHES; i++) {
+            BranchResult result = BranchResult.of(branches.outcomes[i]);
+            BranchResult prediction = expected.predict(branches.instruction(i));
+            expected.update(branches.instruction(i), result);
+
+            // every third branch goes through predict and update, the others through tokens
+            if (i % 3 == 0) {
+                assertEquals(prediction, actual.predict(branches.packed(i)), "branch " + i);
+                actual.update(branches.packed(i), result);
+            } else {
+                long token = actual.predictToken(branches.packed(i));
+                assertEquals(prediction, PredictionToken.result(token), "branch " + i);
+                actual.update(token, result);
+            }
+        }
+        assertEquals(expected.monitor(), actual.monitor());
+    }
+
+    /**
+     * the configurations whose concurrent predictor reads and counts the same rows, see its header
+     */
+    static List<Configuration> sameRowConfigurations() {
+        return StorageModeTest.configurations().stream()
+                .filter(c -> c.getFamily() != PredictorFamily.PAs && c.getFamily() != PredictorFamily.SAs)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * the concurrent predictor counts the table at the update, so it predicts like the judged predictors
+     * with any number of tokens in flight
+     */
+    @ParameterizedTest
+    @MethodSource("sameRowConfigurations")
+    void manyTokensInFlightPredictLikeTheConcurrentPredictor(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        PipelinedBranchPredictor actual =
+                (PipelinedBranchPredictor) StorageModeTest.create(configuration, StorageMode.PACKED);
+        ConcurrentPredictor expected = new ConcurrentPredictor(configuration, 1);
+        Random random = new Random(configuration.hashCode());
+        long[] tokens = new long[8];
+        long[] expectedTokens = new long[8];
+
+        int from = 0;
+        while (from < BRANCHES) {
+            // a group of up to 8 branches is predicted before any of them is updated
+            int to = Math.min(BRANCHES, from + 1 + random.nextInt(8));
+            for (int i = from; i < to; i++) {
+                tokens[i - from] = actual.predictToken(branches.packed(i));
+                expectedTokens[i - from] = expected.predictToken(branches.packed(i));
+                assertEquals(PredictionToken.result(expectedTokens[i - from]), PredictionToken.result(tokens[i - from]),
+                        "branch " + i);
+            }
+            for (int i = from; i < to; i++) {
+                BranchResult result = BranchResult.of(branches.outcomes[i]);
+                actual.update(tokens[i - from], result);
+                expected.update(expectedTokens[i - from], result);
+            }
+            from = to;
+        }
+    }
+
+    @Test
+    void tokensInFlightOnOneRowAllCount() {
+        PackedBranchInstruction instruction = new PackedBranchInstruction(0, 3, 5, ADDRESS_WIDTH, 0, 8);
+        GAg predictor = new GAg(2, 3, StorageMode.PACKED);
+        long[] tokens = new long[4];
+        // the four tokens read row 00 before any of them is updated
+        for (int i = 0; i < tokens.length; i++) tokens[i] = predictor.predictToken(instruction);
+        for (long token : tokens) predictor.update(token, BranchResult.TAKEN);
+
+        // two not taken branches bring the BHR back from 11 to 00
+        predictor.update(predictor.predictToken(instruction), BranchResult.NOT_TAKEN);
+        predictor.update(predictor.predictToken(instruction), BranchResult.NOT_TAKEN);
+        // the counter of row 00 is 4, the last update alone would have left it at 1
+        assertEquals(BranchResult.TAKEN, PredictionToken.result(predictor.predictToken(instruction)));
+    }
+
+    @Test
+    void tokensWiderThan63BitsAreUnsupported() {
+        PackedBranchInstruction instruction = new PackedBranchInstruction(0, 3, 0x12345678L, 32, 0, 8);
+        // 2 counter bits, 16 history bits, a 20 bit selector and a 32 bit address
+        PipelinedBranchPredictor PAs = new PAs(16, 2, 32, 20, HashMode.XOR, StorageMode.PACKED);
+        // 2 counter bits, 32 history bits and a 30 bit selector
+        PipelinedBranchPredictor SAs = new SAs(32, 2, 32, 30, HashMode.XOR, StorageMode.PACKED);
+        for (PipelinedBranchPredictor predictor : new PipelinedBranchPredictor[]{PAs, SAs}) {
+            String monitor = predictor.monitor();
+            assertThrows(UnsupportedOperationException.class, () -> predictor.predictToken(instruction));
+            // the predictor is not touched
+            assertEquals(monitor, predictor.monitor());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package hardwar.branch.prediction.judged;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.judged.GAg.GAg;
+import hardwar.branch.prediction.judged.GAp.GAp;
+import hardwar.branch.prediction.judged.GAs.GAs;
+import hardwar.branch.prediction.packed.HistoryMode;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.PipelinedBranchPredictor;
+import hardwar.branch.prediction.packed.PredictionToken;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * a SPECULATIVE predictor must end up with the BHR and the counters of a RETIRED one once its in-flight branches
+ * are updated, and must be a RETIRED predictor when a single branch is in flight
+ */
+class SpeculativeHistoryTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 3000;
+
+    static List<Arguments> predictors() {
+        List<Arguments> arguments = new ArrayList<>();
+        for (StorageMode storageMode : new StorageMode[]{StorageMode.MAP, StorageMode.PACKED}) {
+            for (String family : new String[]{"GAg", "GAp", "GAs"}) {
+                arguments.add(Arguments.of(family, storageMode));
+            }
+        }
+        return arguments;
+    }
+
+    private static PipelinedBranchPredictor create(String family, StorageMode storageMode, HistoryMode historyMode) {
+        switch (family) {
+            case "GAg":
+                return new GAg(6, 2, storageMode, historyMode);
+            case "GAp":
+                return new GAp(6, 2, ADDRESS_WIDTH, storageMode, historyMode);
+            default:
+                return new GAs(6, 2, ADDRESS_WIDTH, 4, HashMode.XOR, storageMode, historyMode);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = StorageMode.class, names = {"MAP", "PACKED"})
+    void twoMispredictedBranchesInFlight(StorageMode storageMode) {
+        PackedBranchInstruction instruction = new PackedBranchInstruction(0, 6, 1, ADDRESS_WIDTH, 0, ADDRESS_WIDTH);
+        GAg speculative = new GAg(4, 2, storageMode, HistoryMode.SPECULATIVE);
+        speculative.predict(instruction);
+        speculative.predict(instruction);
+        speculative.update(instruction, BranchResult.TAKEN);
+        speculative.update(instruction, BranchResult.TAKEN);
+
+        GAg retired = new GAg(4, 2, storageMode, HistoryMode.RETIRED);
+        for (int i = 0; i < 2; i++) {
+            retired.predict(instruction);
+            retired.update(instruction, BranchResult.TAKEN);
+        }
+        assertEquals(retired.monitor(), speculative.monitor());
+        assertEquals("|Gag BHR  | 1 | 1 | 0 | 0 |", BHR(speculative.monitor()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("predictors")
+    void manyBranchesInFlightRetireToTheRetiredPredictor(String family, StorageMode storageMode) {
+        RandomBranches branches = RandomBranches.generate(family.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        PipelinedBranchPredictor speculative = create(family, storageMode, HistoryMode.SPECULATIVE);
+        PipelinedBranchPredictor retired = create(family, storageMode, HistoryMode.RETIRED);
+        Random random = new Random(family.hashCode());
+
+        int from = 0;
+        while (from < BRANCHES) {
+            // a group of up to 8 branches is predicted before any of them is updated
+            int to = Math.min(BRANCHES, from + 1 + random.nextInt(8));
+            for (int i = from; i < to; i++) speculative.predict(branches.instruction(i));
+            for (int i = from; i < to; i++) {
+                BranchResult result = BranchResult.of(branches.outcomes[i]);
+                speculative.update(branches.instruction(i), result);
+                retired.predict(branches.instruction(i));
+                retired.update(branches.instruction(i), result);
+            }
+            assertEquals(retired.monitor(), speculative.monitor(), "after branch " + to);
+            from = to;
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = StorageMode.class, names = {"PACKED"})
+    void manyTokensInFlightRetireToTheRetiredPredictor(StorageMode storageMode) {
+        for (String family : new String[]{"GAg", "GAp", "GAs"}) {
+            RandomBranches branches = RandomBranches.generate(family.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+            PipelinedBranchPredictor speculative = create(family, storageMode, HistoryMode.SPECULATIVE);
+            PipelinedBranchPredictor retired = create(family, storageMode, HistoryMode.RETIRED);
+            Random random = new Random(family.hashCode());
+            long[] tokens = new long[8];
+
+            int from = 0;
+            while (from < BRANCHES) {
+                int to = Math.min(BRANCHES, from + 1 + random.nextInt(8));
+                for (int i = from; i < to; i++) tokens[i - from] = speculative.predictToken(branches.packed(i));
+                for (int i = from; i < to; i++) {
+                    BranchResult result = BranchResult.of(branches.outcomes[i]);
+                    speculative.update(tokens[i - from], result);
+                    retired.update(retired.predictToken(branches.packed(i)), result);
+                }
+                assertEquals(retired.monitor(), speculative.monitor(), family + " after branch " + to);
+                from = to;
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("predictors")
+    void oneBranchInFlightIsRetired(String family, StorageMode storageMode) {
+        RandomBranches branches = RandomBranches.generate(family.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        PipelinedBranchPredictor speculative = create(family, storageMode, HistoryMode.SPECULATIVE);
+        PipelinedBranchPredictor retired = create(family, storageMode, HistoryMode.RETIRED);
+        StorageModeTest.assertSameRun(branches, retired, branches::instruction, speculative, branches::instruction);
+
+        if (storageMode == StorageMode.PACKED) {
+            for (int i = 0; i < BRANCHES; i++) {
+                BranchResult result = BranchResult.of(branches.outcomes[i]);
+                long token = speculative.predictToken(branches.packed(i));
+                assertEquals(retired.predict(branches.packed(i)), PredictionToken.result(token), "branch " + i);
+                speculative.update(token, result);
+                retired.update(branches.packed(i), result);
+            }
+            assertEquals(retired.monitor(), speculative.monitor());
+        }
+    }
+
+    /**
+     * @return the line of the BHR in the monitor of a predictor
+     */
+    private static String BHR(String monitor) {
+        for (String line : monitor.split("\n")) if (line.contains("BHR")) return line;
+        throw new AssertionError("no BHR in the monitor");
+    }
+}
@@ -0,0 +1,143 @@
+package hardwar.branch.prediction.judged;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.judged.GAs.GAs;
+import hardwar.branch.prediction.judged.PAs.PAs;
+import hardwar.branch.prediction.judged.SAs.SAs;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import hardwar.branch.prediction.simulation.Configuration;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import static hardwar.branch.prediction.simulation.PredictorFamily.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * the PACKED predictors must predict and print exactly like the MAP ones, through each of their APIs
+ */
+class StorageModeTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 3000;
+
+    static List<Configuration> configurations() {
+        return Arrays.asList(
+                configuration(GAg, 4, 2, 0, 0, null),
+                configuration(GAg, 10, 3, 0, 0, null),
+                configuration(GAp, 4, 2, ADDRESS_WIDTH, 0, null),
+                configuration(GAs, 4, 2, ADDRESS_WIDTH, 4, HashMode.XOR),
+                configuration(GAs, 5, 2, ADDRESS_WIDTH, 3, HashMode.SIMPLE_CUT),
+                configuration(PAg, 4, 2, ADDRESS_WIDTH, 0, null),
+                configuration(PAp, 3, 2, ADDRESS_WIDTH, 0, null),
+                configuration(PAs, 4, 2, ADDRESS_WIDTH, 4, HashMode.XOR),
+                // the predictions read rows of K bits and the updates write rows of BHRSize bits
+                configuration(PAs, 4, 1, ADDRESS_WIDTH, 2, HashMode.XOR),
+                configuration(PAs, 2, 2, ADDRESS_WIDTH, 5, HashMode.SIMPLE_CUT),
+                configuration(SAg, 4, 2, ADDRESS_WIDTH, 3, null),
+                configuration(SAp, 3, 2, ADDRESS_WIDTH, 4, null),
+                configuration(SAs, 4, 2, ADDRESS_WIDTH, 4, HashMode.XOR),
+                configuration(SAs, 5, 2, ADDRESS_WIDTH, 3, HashMode.XOR),
+                configuration(SAs, 3, 2, ADDRESS_WIDTH, 6, HashMode.SIMPLE_CUT));
+    }
+
+    /**
+     * the predictors whose packed devices are selected by the whole address, on 32 bit addresses
+     */
+    static List<Configuration> wideConfigurations() {
+        return Arrays.asList(
+                configuration(GAp, 4, 2, 32, 0, null),
+                configuration(PAg, 4, 2, 32, 0, null),
+                configuration(PAp, 3, 2, 32, 0, null),
+                configuration(PAs, 4, 2, 32, 20, HashMode.SIMPLE_CUT),
+                configuration(SAs, 4, 2, 32, 28, HashMode.XOR));
+    }
+
+    private static Configuration configuration(hardwar.branch.prediction.simulation.PredictorFamily family,
+                                               int BHRSize, int SCSize, int branchInstructionSize, int KSize,
+                                               HashMode hashMode) {
+        return new Configuration(family, BHRSize, SCSize, branchInstructionSize, KSize, hashMode, StorageMode.MAP);
+    }
+
+    static BranchPredictor create(Configuration c, StorageMode storageMode) {
+        return new Configuration(c.getFamily(), c.getBHRSize(), c.getSCSize(), c.getBranchInstructionSize(),
+                c.getKSize(), c.getHashMode(), storageMode).create();
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void packedInstructionsPredictLikeTheMap(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        assertSameRun(branches, create(configuration, StorageMode.MAP), branches::instruction,
+                create(configuration, StorageMode.PACKED), branches::packed);
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void packedDevicesPredictLikeTheMapWithPlainInstructions(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        assertSameRun(branches, create(configuration, StorageMode.MAP), branches::instruction,
+                create(configuration, StorageMode.PACKED), branches::instruction);
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void packedSimulatePredictsLikeTheMap(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        BranchPredictor map = create(configuration, StorageMode.MAP);
+        BranchPredictor packed = create(configuration, StorageMode.PACKED);
+        branches.assertSimulateMatchesPredictUpdate(map, packed, 1000);
+        assertEquals(map.monitor(), packed.monitor());
+    }
+
+    @ParameterizedTest
+    @MethodSource("wideConfigurations")
+    void packedPredictorsTake32BitAddresses(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, 32, 40);
+        assertSameRun(branches, create(configuration, StorageMode.MAP), branches::instruction,
+                create(configuration, StorageMode.PACKED), branches::packed);
+    }
+
+    static List<Function<HashMode, BranchPredictor>> judgedHashingPredictors() {
+        return Arrays.asList(
+                hashMode -> new GAs(5, 2, ADDRESS_WIDTH, 3, hashMode, StorageMode.MAP),
+                hashMode -> new GAs(5, 2, ADDRESS_WIDTH, 3, hashMode, StorageMode.PACKED),
+                hashMode -> new PAs(2, 2, ADDRESS_WIDTH, 5, hashMode, StorageMode.MAP),
+                hashMode -> new PAs(2, 2, ADDRESS_WIDTH, 5, hashMode, StorageMode.PACKED),
+                hashMode -> new SAs(3, 2, ADDRESS_WIDTH, 6, hashMode, StorageMode.MAP),
+                hashMode -> new SAs(3, 2, ADDRESS_WIDTH, 6, hashMode, StorageMode.PACKED));
+    }
+
+    /**
+     * the judged predictors hash with XOR whatever hash mode they are given, like the baseline ones
+     */
+    @ParameterizedTest
+    @MethodSource("judgedHashingPredictors")
+    void judgedPredictorsAlwaysHashWithXor(Function<HashMode, BranchPredictor> predictor) {
+        RandomBranches branches = RandomBranches.generate(7, BRANCHES, ADDRESS_WIDTH, 40);
+        assertSameRun(branches, predictor.apply(HashMode.XOR), branches::instruction,
+                predictor.apply(HashMode.SIMPLE_CUT), branches::packed);
+    }
+
+    static void assertSameRun(RandomBranches branches, BranchPredictor expected,
+                              IntFunction<BranchInstruction> expectedInstructions, BranchPredictor actual,
+                              IntFunction<BranchInstruction> actualInstructions) {
+        for (int i = 0; i < branches.size(); i++) {
+            BranchInstruction expectedInstruction = expectedInstructions.apply(i);
+            BranchInstruction actualInstruction = actualInstructions.apply(i);
+            assertEquals(expected.predict(expectedInstruction), actual.predict(actualInstruction), "branch " + i);
+
+            BranchResult result = BranchResult.of(branches.outcomes[i]);
+            expected.update(expectedInstruction, result);
+            actual.update(actualInstruction, result);
+        }
+        assertEquals(expected.monitor(), actual.monitor());
+    }
+}
@@ -0,0 +1,64 @@
+package hardwar.branch.prediction.packed;
+
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * the packed instruction must look like a BranchInstruction built from the same bits
+ */
+class PackedBranchInstructionTest {
+
+    @Test
+    void toStringMatchesTheBitInstruction() {
+        PackedBranchInstruction packed = new PackedBranchInstruction(1, 4, 5, 16, 9, 16);
+        BranchInstruction bits = new BranchInstruction(
+                Bits.fromNumber(1, 4), Bits.fromNumber(5, 16), Bits.fromNumber(9, 16));
+
+        assertEquals(bits.toString(), packed.toString());
+        assertEquals("BranchInstruction{opcode=0001, sourceAddress=0000000000000101, targetAddress=0000000000001001}",
+                packed.toString());
+    }
+
+    @Test
+    void toStringOfAnEmptyInstruction() {
+        assertEquals("BranchInstruction{opcode=, sourceAddress=, targetAddress=}",
+                new PackedBranchInstruction().toString());
+    }
+
+    @Test
+    void bitViewsAreBuiltOnce() {
+        PackedBranchInstruction packed = new PackedBranchInstruction(1, 4, 5, 16, 9, 16);
+        Bit[] opcode = packed.getOpcode();
+        Bit[] address = packed.getInstructionAddress();
+        Bit[] jump = packed.getJumpAddress();
+
+        // the kept arrays are returned, like the fields of the base class
+        assertSame(opcode, packed.getOpcode());
+        assertSame(address, packed.getInstructionAddress());
+        assertSame(jump, packed.getJumpAddress());
+        assertArrayEquals(Bits.fromNumber(1, 4), opcode);
+        assertArrayEquals(Bits.fromNumber(5, 16), address);
+        assertArrayEquals(Bits.fromNumber(9, 16), jump);
+
+        packed.set(1, 4, 5, 16, 9, 16);
+        assertNotSame(address, packed.getInstructionAddress());
+        assertArrayEquals(address, packed.getInstructionAddress());
+    }
+
+    @Test
+    void bitViewsFollowSet() {
+        PackedBranchInstruction packed = new PackedBranchInstruction(1, 4, 5, 16, 9, 16);
+        packed.getInstructionAddress();
+        packed.set(2, 4, 6, 8, 10, 8);
+
+        assertArrayEquals(Bits.fromNumber(6, 8), packed.getInstructionAddress());
+        assertEquals("BranchInstruction{opcode=0010, sourceAddress=00000110, targetAddress=00001010}",
+                packed.toString());
+    }
+}
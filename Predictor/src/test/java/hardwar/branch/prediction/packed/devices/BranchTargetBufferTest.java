@@ -0,0 +1,101 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * the BTB must hit on the targets it holds, miss on the others and evict the victim of its replacement policy
+ */
+class BranchTargetBufferTest {
+
+    @ParameterizedTest
+    @EnumSource(value = ReplacementPolicy.class, names = {"LRU", "PSEUDO_LRU"})
+    void hitsTheTargetsItHolds(ReplacementPolicy policy) {
+        BranchTargetBuffer BTB = new BranchTargetBuffer(2, 2, 8, policy);
+        assertEquals(-1, BTB.find(0x15));
+
+        int entry = BTB.put(0x15, 0x40);
+        assertEquals(entry, BTB.find(0x15));
+        assertEquals(0x40, BTB.getTarget(entry));
+
+        // a new target of the same branch takes its entry
+        assertEquals(entry, BTB.put(0x15, 0x80));
+        assertEquals(0x80, BTB.getTarget(BTB.find(0x15)));
+        assertEquals(1, BTB.countValid());
+
+        // same set, another tag
+        assertEquals(-1, BTB.find(0x19));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ReplacementPolicy.class, names = {"LRU", "PSEUDO_LRU"})
+    void shortTagsAlias(ReplacementPolicy policy) {
+        BranchTargetBuffer BTB = new BranchTargetBuffer(2, 2, 2, policy);
+        int entry = BTB.put(0x15, 0x40);
+        // 0x35 differs from 0x15 above the 2 bit tag
+        assertEquals(entry, BTB.find(0x35));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ReplacementPolicy.class, names = {"LRU", "PSEUDO_LRU"})
+    void entriesOfDifferentSetsDoNotEvictEachOther(ReplacementPolicy policy) {
+        BranchTargetBuffer BTB = new BranchTargetBuffer(3, 2, 8, policy);
+        for (long address = 0; address < 16; address++) BTB.put(address, address + 100);
+        assertEquals(16, BTB.countValid());
+        for (long address = 0; address < 16; address++) assertEquals(address + 100, BTB.getTarget(BTB.find(address)));
+    }
+
+    @Test
+    void lruEvictsTheLeastRecentlyUsedWay() {
+        BranchTargetBuffer BTB = fullSet(ReplacementPolicy.LRU);
+        BTB.put(0x10, 5);
+
+        // way 0 was used last by the find, way 1 is the oldest
+        assertNotEquals(-1, BTB.find(0x00));
+        assertEquals(-1, BTB.find(0x04));
+        assertNotEquals(-1, BTB.find(0x08));
+        assertNotEquals(-1, BTB.find(0x0C));
+        assertEquals(5, BTB.getTarget(BTB.find(0x10)));
+        assertEquals(4, BTB.countValid());
+    }
+
+    @Test
+    void pseudoLruEvictsTheWayTheTreePointsTo() {
+        BranchTargetBuffer BTB = fullSet(ReplacementPolicy.PSEUDO_LRU);
+        BTB.put(0x10, 5);
+
+        // the find of way 0 points the root to ways 2 and 3, and the fill of way 3 points their node to way 2,
+        // so way 2 goes while way 1, which true LRU would evict, stays
+        assertNotEquals(-1, BTB.find(0x00));
+        assertNotEquals(-1, BTB.find(0x04));
+        assertEquals(-1, BTB.find(0x08));
+        assertNotEquals(-1, BTB.find(0x0C));
+        assertEquals(5, BTB.getTarget(BTB.find(0x10)));
+        assertEquals(4, BTB.countValid());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ReplacementPolicy.class, names = {"LRU", "PSEUDO_LRU"})
+    void clearEmptiesTheBuffer(ReplacementPolicy policy) {
+        BranchTargetBuffer BTB = fullSet(policy);
+        BTB.clear();
+        assertEquals(0, BTB.countValid());
+        assertEquals(-1, BTB.find(0x00));
+    }
+
+    /**
+     * @return a BTB whose set 0 holds the branches 0x00, 0x04, 0x08 and 0x0C in ways 0 to 3, and way 0 was
+     * used after the others
+     */
+    private static BranchTargetBuffer fullSet(ReplacementPolicy policy) {
+        BranchTargetBuffer BTB = new BranchTargetBuffer(2, 4, 8, policy);
+        for (long address = 0; address < 16; address += 4) BTB.put(address, address);
+        BTB.find(0x00);
+        return BTB;
+    }
+}
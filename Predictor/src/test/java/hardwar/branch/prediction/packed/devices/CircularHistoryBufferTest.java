@@ -0,0 +1,42 @@
+package hardwar.branch.prediction.packed.devices;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * the buffer must round its capacity up to a power of two of at least 64 and read the outcomes by their age
+ */
+class CircularHistoryBufferTest {
+
+    @Test
+    void capacityIsAPowerOfTwoOfAtLeast64() {
+        assertEquals(64, new CircularHistoryBuffer(1).getCapacity());
+        assertEquals(64, new CircularHistoryBuffer(64).getCapacity());
+        assertEquals(128, new CircularHistoryBuffer(65).getCapacity());
+        assertEquals(256, new CircularHistoryBuffer(200).getCapacity());
+        assertEquals(1024, new CircularHistoryBuffer(641).getCapacity());
+    }
+
+    @Test
+    void readsTheOutcomesByAgeAcrossTheWrapAround() {
+        CircularHistoryBuffer history = new CircularHistoryBuffer(100);
+        int capacity = history.getCapacity();
+        boolean[] outcomes = new boolean[5 * capacity + 17];
+        Random random = new Random(19);
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = random.nextBoolean();
+            history.insert(outcomes[i]);
+            for (int age = 0; age < capacity; age++) {
+                boolean expected = age <= i && outcomes[i - age];
+                assertEquals(expected, history.get(age), "insert " + i + ", age " + age);
+            }
+        }
+
+        history.clear();
+        for (int age = 0; age < capacity; age++) assertFalse(history.get(age));
+    }
+}
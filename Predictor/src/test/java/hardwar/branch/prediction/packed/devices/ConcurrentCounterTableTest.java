@@ -0,0 +1,118 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.shared.CountMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * counts of many threads on the packed counters must all take effect, whether the threads count the same
+ * counter or different counters of the same word
+ */
+class ConcurrentCounterTableTest {
+    private static final int THREADS = 8;
+    private static final int COUNTS = 200000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 12})
+    void threadsCountDisjointCountersOfTheSameWords(int width) throws InterruptedException {
+        // thread t owns the counters t, t + THREADS, ..., so neighbouring counters of a word belong to other threads
+        ConcurrentCounterTable table = new ConcurrentCounterTable(2, 16, width);
+        int counters = 4 * 16;
+        run(thread -> {
+            for (int i = 0; i < COUNTS + thread; i++) {
+                int counter = thread + (i % (counters / THREADS)) * THREADS;
+                table.count(counter / 16, counter % 16, true, CountMode.UP_DOWN);
+            }
+        });
+
+        int mask = (1 << width) - 1;
+        for (int counter = 0; counter < counters; counter++) {
+            int thread = counter % THREADS;
+            int index = counter / THREADS;
+            int perCounter = COUNTS + thread;
+            int expected = perCounter / (counters / THREADS) + (index < perCounter % (counters / THREADS) ? 1 : 0);
+            assertEquals(expected & mask, table.read(counter / 16, counter % 16), "counter " + counter);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 12})
+    void threadsCountTheSameCounter(int width) throws InterruptedException {
+        ConcurrentCounterTable table = new ConcurrentCounterTable(0, 4, width);
+        // every thread counts row 1 up, then down and up in turns, so it adds COUNTS. rows 0 and 2 must not change
+        run(thread -> {
+            for (int i = 0; i < COUNTS; i++) {
+                table.count(0, 1, true, CountMode.UP_DOWN);
+                table.count(0, 1, i % 2 == 0, CountMode.UP_DOWN);
+            }
+        });
+
+        assertEquals(THREADS * COUNTS & ((1 << width) - 1), table.read(0, 1));
+        assertEquals(0, table.read(0, 0));
+        assertEquals(0, table.read(0, 2));
+    }
+
+    @Test
+    void saturatingCountersStopAtTheirLimits() throws InterruptedException {
+        ConcurrentCounterTable table = new ConcurrentCounterTable(1, 32, 2);
+        run(thread -> {
+            for (int i = 0; i < COUNTS; i++) {
+                table.count(0, i % 32, true, CountMode.SATURATING);
+                table.count(1, i % 32, false, CountMode.SATURATING);
+            }
+        });
+
+        for (int row = 0; row < 32; row++) {
+            assertEquals(3, table.read(0, row));
+            assertEquals(0, table.read(1, row));
+        }
+    }
+
+    @Test
+    void singleThreadCountsLikeTheCounterCircuit() {
+        ConcurrentCounterTable table = new ConcurrentCounterTable(3, 8, 3);
+        int[] expected = new int[64];
+        Random random = new Random(17);
+        for (int i = 0; i < 5000; i++) {
+            int counter = random.nextInt(64);
+            boolean up = random.nextBoolean();
+            expected[counter] = PackedLogic.count(expected[counter], 3, up, CountMode.SATURATING);
+            assertEquals(expected[counter], table.count(counter >>> 3, counter & 7, up, CountMode.SATURATING));
+        }
+        for (int counter = 0; counter < 64; counter++) {
+            assertEquals(expected[counter], table.read(counter >>> 3, counter & 7));
+        }
+    }
+
+    /**
+     * run the body on THREADS threads which start together, the argument is the thread number
+     */
+    static void run(IntConsumer body) throws InterruptedException {
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    body.accept(thread);
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        if (failure[0] != null) throw new AssertionError(failure[0]);
+    }
+}
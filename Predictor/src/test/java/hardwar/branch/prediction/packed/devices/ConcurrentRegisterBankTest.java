@@ -0,0 +1,49 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.shared.Bit;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static hardwar.branch.prediction.packed.devices.ConcurrentCounterTableTest.run;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * shifts of many threads into the registers must all take effect, in the striped and the dense layouts
+ */
+class ConcurrentRegisterBankTest {
+    private static final int THREADS = 8;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void threadsShiftTheirOwnRegisters(boolean striped) throws InterruptedException {
+        ConcurrentRegisterBank bank = new ConcurrentRegisterBank(3, 64, striped);
+        // thread t shifts the pattern of its number into its register, 64 times so the whole register is replaced
+        run(thread -> {
+            for (int i = 0; i < 64 * 1000; i++) bank.shiftIn(thread, Bit.of((thread >>> (i % 3) & 1) == 1));
+        });
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            long expected = 0;
+            for (int i = 0; i < 64; i++) expected = (expected >>> 1) | ((long) (thread >>> (i % 3) & 1) << 63);
+            assertEquals(expected, bank.read(thread), "register " + thread);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void threadsShiftTheSameRegister(boolean striped) throws InterruptedException {
+        ConcurrentRegisterBank[] banks = new ConcurrentRegisterBank[20000];
+        for (int i = 0; i < banks.length; i++) banks[i] = new ConcurrentRegisterBank(1, 64, striped);
+        // 7 ones per thread fill the top 56 bits of register 1 only if no shift is lost
+        run(thread -> {
+            for (ConcurrentRegisterBank bank : banks) {
+                for (int i = 0; i < 7; i++) bank.shiftIn(1, Bit.ONE);
+            }
+        });
+
+        for (ConcurrentRegisterBank bank : banks) {
+            assertEquals(-1L << 8, bank.read(1));
+            assertEquals(0, bank.read(0));
+        }
+    }
+}
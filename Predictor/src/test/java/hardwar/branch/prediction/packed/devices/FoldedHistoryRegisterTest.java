@@ -0,0 +1,59 @@
+package hardwar.branch.prediction.packed.devices;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * the incrementally updated fold must equal the fold of the history buffer recomputed from scratch,
+ * at every insert and across the wrap-arounds of the buffer
+ */
+class FoldedHistoryRegisterTest {
+    private static final int INSERTS = 3000;
+
+    static List<Arguments> shapes() {
+        List<Arguments> shapes = new ArrayList<>();
+        // 63 reads the oldest bit of a 64 bit buffer, 64 and 127 the oldest bits of a 128 bit one
+        for (int length : new int[]{0, 1, 5, 17, 63, 64, 127, 200, 640}) {
+            for (int width : new int[]{1, 3, 7, 12, 30}) shapes.add(Arguments.of(length, width));
+        }
+        return shapes;
+    }
+
+    @ParameterizedTest
+    @MethodSource("shapes")
+    void incrementalFoldMatchesTheRecomputedFold(int length, int width) {
+        // like TAGE, the buffer keeps the bit which leaves the window
+        CircularHistoryBuffer history = new CircularHistoryBuffer(length + 1);
+        FoldedHistoryRegister fold = new FoldedHistoryRegister(length, width);
+        Random random = new Random(length * 31L + width);
+        // enough inserts to wrap the buffer a few times
+        int inserts = Math.max(INSERTS, 4 * history.getCapacity());
+        for (int i = 0; i < inserts; i++) {
+            boolean bit = random.nextInt(3) != 0;
+            history.insert(bit);
+            fold.update(bit, history.get(length));
+            assertEquals(fold(history, length, width), fold.get(), "insert " + i);
+        }
+
+        fold.clear();
+        assertEquals(0, fold.get());
+    }
+
+    /**
+     * @return the bits of age 0 to length - 1 xored into bit (age mod width)
+     */
+    private static int fold(CircularHistoryBuffer history, int length, int width) {
+        int value = 0;
+        for (int age = 0; age < length; age++) {
+            if (history.get(age)) value ^= 1 << age % width;
+        }
+        return value;
+    }
+}
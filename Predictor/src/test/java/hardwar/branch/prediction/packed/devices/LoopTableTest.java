@@ -0,0 +1,105 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the loop table must learn the trip count of a loop, trust it after CONFIDENCE_MAX equal loops and free the
+ * entries of the loops its iteration counters cannot follow
+ */
+class LoopTableTest {
+
+    @Test
+    void learnsTheTripCount() {
+        LoopTable loops = new LoopTable(2, 2, 8, 8, ReplacementPolicy.LRU);
+        int entry = loops.allocate(0x21);
+        assertEquals(0, loops.trip(entry));
+
+        loop(loops, entry, 5);
+        assertEquals(5, loops.trip(entry));
+        assertEquals(0, loops.iteration(entry));
+        assertEquals(0, loops.confidence(entry));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(loops.predict(entry), "iteration " + i);
+            loops.update(entry, true);
+        }
+        assertFalse(loops.predict(entry));
+        loops.update(entry, false);
+        assertEquals(entry, loops.find(0x21));
+    }
+
+    @Test
+    void becomesConfidentAfterEqualLoops() {
+        LoopTable loops = new LoopTable(2, 2, 8, 8, ReplacementPolicy.PSEUDO_LRU);
+        int entry = loops.allocate(0x21);
+        loop(loops, entry, 4); // learns the trip count
+        for (int confidence = 1; confidence <= LoopTable.CONFIDENCE_MAX; confidence++) {
+            assertFalse(loops.isConfident(entry));
+            loop(loops, entry, 4);
+            assertEquals(confidence, loops.confidence(entry));
+        }
+        assertTrue(loops.isConfident(entry));
+
+        // the confidence saturates
+        loop(loops, entry, 4);
+        assertEquals(LoopTable.CONFIDENCE_MAX, loops.confidence(entry));
+        assertTrue(loops.isConfident(entry));
+    }
+
+    @Test
+    void anotherTripCountResetsTheConfidence() {
+        LoopTable loops = new LoopTable(2, 2, 8, 8, ReplacementPolicy.LRU);
+        int entry = loops.allocate(0x21);
+        for (int i = 0; i <= LoopTable.CONFIDENCE_MAX; i++) loop(loops, entry, 4);
+        assertTrue(loops.isConfident(entry));
+
+        // a shorter loop
+        loop(loops, entry, 2);
+        assertEquals(2, loops.trip(entry));
+        assertEquals(0, loops.confidence(entry));
+
+        for (int i = 0; i < LoopTable.CONFIDENCE_MAX; i++) loop(loops, entry, 2);
+        assertTrue(loops.isConfident(entry));
+
+        // a longer loop loses the confidence as soon as it passes the trip count
+        loops.update(entry, true);
+        loops.update(entry, true);
+        assertTrue(loops.isConfident(entry));
+        loops.update(entry, true);
+        assertFalse(loops.isConfident(entry));
+        loops.update(entry, false);
+        assertEquals(3, loops.trip(entry));
+    }
+
+    @Test
+    void loopsLongerThanTheIterationCounterFreeTheirEntry() {
+        // 3 bit iteration counters follow loops of up to 7 taken outcomes
+        LoopTable loops = new LoopTable(2, 2, 8, 3, ReplacementPolicy.LRU);
+        int entry = loops.allocate(0x21);
+        loop(loops, entry, 7);
+        assertEquals(7, loops.trip(entry));
+        assertEquals(entry, loops.find(0x21));
+
+        for (int i = 0; i < 7; i++) loops.update(entry, true);
+        assertEquals(1, loops.countValid());
+        loops.update(entry, true);
+        assertEquals(0, loops.countValid());
+        assertEquals(-1, loops.find(0x21));
+
+        // the freed way is the empty way of the next branch of the set
+        assertEquals(entry, loops.allocate(0x25));
+    }
+
+    /**
+     * run one loop of the entry: trip taken outcomes, then the exit
+     */
+    private static void loop(LoopTable loops, int entry, int trip) {
+        for (int i = 0; i < trip; i++) loops.update(entry, true);
+        loops.update(entry, false);
+    }
+}
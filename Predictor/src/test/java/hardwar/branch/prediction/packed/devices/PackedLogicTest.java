@@ -0,0 +1,165 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.HashFunction;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.CountMode;
+import hardwar.branch.prediction.shared.HashMode;
+import hardwar.branch.prediction.shared.devices.CombinationalLogic;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the numeric hash must give the bits of CombinationalLogic and reject a hash without output bits, the hash unit
+ * must give the hash of PackedLogic, and every counter step must be the one of a bit by bit counter
+ */
+class PackedLogicTest {
+
+    @Test
+    void xorMatchesCombinationalLogic() {
+        Random random = new Random(6);
+        for (int i = 0; i < 1000; i++) {
+            int outBits = 1 + random.nextInt(16);
+            int inBits = outBits + random.nextInt(65 - outBits); // narrower inputs leave null bits in the Bit[] form
+            Bit[] input = Bits.fromNumber(random.nextLong(), inBits);
+            assertArrayEquals(CombinationalLogic.hash(input, outBits, HashMode.XOR),
+                    PackedLogic.hash(input, outBits, HashMode.XOR));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(HashFunction.class)
+    @Timeout(5)
+    void rejectsZeroOutputBits(HashFunction function) {
+        assertThrows(IllegalArgumentException.class, () -> PackedLogic.hash(0x1234L, 16, 0, function));
+        assertThrows(IllegalArgumentException.class, () -> PackedLogic.hash(0L, 0, 0, function));
+        assertThrows(IllegalArgumentException.class, () -> PackedLogic.hash(Bits.fromNumber(0x1234L, 16), 0, function));
+        assertThrows(IllegalArgumentException.class, () -> PackedLogic.hash(new Bit[70], 0, function));
+    }
+
+    @Test
+    @Timeout(5)
+    void rejectsZeroOutputBitsOfAHashMode() {
+        assertThrows(IllegalArgumentException.class, () -> PackedLogic.hash(0x1234L, 16, 0, HashMode.XOR));
+        assertThrows(IllegalArgumentException.class,
+                () -> PackedLogic.gshare(0x1234L, 16, 0x3L, 4, 0, HashMode.XOR));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = HashFunction.class, names = {"MULTIPLICATIVE", "SKEWED"})
+    void newFunctionsStayInTheOutputBits(HashFunction function) {
+        Random random = new Random(function.ordinal());
+        for (int i = 0; i < 1000; i++) {
+            int outBits = 1 + random.nextInt(16);
+            int inBits = 1 + random.nextInt(64);
+            long input = random.nextLong();
+            int hash = PackedLogic.hash(input, inBits, outBits, function);
+            assertTrue(hash >= 0 && hash < 1 << outBits, function + " of " + inBits + " to " + outBits + " bits");
+            assertArrayEquals(Bits.fromNumber(hash, outBits), PackedLogic.hash(Bits.fromNumber(input, inBits), outBits,
+                    function));
+        }
+    }
+
+    @Test
+    void skewedIsAPermutationOfTheLowBits() {
+        for (int bits = 1; bits <= 10; bits++) {
+            boolean[] seen = new boolean[1 << bits];
+            for (int input = 0; input < 1 << bits; input++) {
+                seen[PackedLogic.hash(input, bits, bits, HashFunction.SKEWED)] = true;
+            }
+            for (int hash = 0; hash < 1 << bits; hash++) assertTrue(seen[hash], bits + " bits miss " + hash);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(HashFunction.class)
+    void hashUnitHashesLikePackedLogic(HashFunction function) {
+        Random random = new Random(function.ordinal());
+        long[] addresses = new long[300];
+        for (int i = 0; i < addresses.length; i++) addresses[i] = random.nextLong();
+        for (int inBits : new int[]{8, 32, 64}) {
+            HashUnit unit = new HashUnit(inBits, 10, function, 64);
+            // the addresses repeat, so the remembered results are read back
+            for (int i = 0; i < 5000; i++) {
+                long address = addresses[random.nextInt(addresses.length)];
+                long input = inBits == 64 ? address : address & ((1L << inBits) - 1);
+                assertEquals(PackedLogic.hash(input, inBits, 10, function), unit.hash(address));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CountMode.class)
+    void everyCounterStepMatchesTheReference(CountMode mode) {
+        // widths up to 10 are read from the transition tables, 11 and 12 are computed
+        for (int width = 1; width <= 12; width++) {
+            for (int value = 0; value < 1 << width; value++) {
+                for (boolean up : new boolean[]{false, true}) {
+                    String step = mode + " " + width + " bits " + value + (up ? " up" : " down");
+                    int expected = referenceCount(value, width, up, mode);
+                    assertEquals(expected, PackedLogic.count(value, width, up, mode), step);
+                    assertArrayEquals(Bits.fromNumber(expected, width),
+                            PackedLogic.count(Bits.fromNumber(value, width), up, mode), step);
+                    if (mode == CountMode.SATURATING) {
+                        assertArrayEquals(CombinationalLogic.count(Bits.fromNumber(value, width), up, mode),
+                                PackedLogic.count(Bits.fromNumber(value, width), up, mode), step);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void upDownWrapsAndJohnsonReverses() {
+        for (int width = 1; width <= 12; width++) {
+            int max = (1 << width) - 1;
+            assertEquals(0, PackedLogic.count(max, width, true, CountMode.UP_DOWN), width + " bits");
+            assertEquals(max, PackedLogic.count(0, width, false, CountMode.UP_DOWN), width + " bits");
+            for (int value = 0; value <= max; value++) {
+                int forward = PackedLogic.count(value, width, true, CountMode.JOHNSON);
+                assertEquals(value, PackedLogic.count(forward, width, false, CountMode.JOHNSON), width + " bits");
+            }
+
+            // a johnson counter of width bits goes back to zero after 2 x width steps
+            int value = 0;
+            for (int i = 0; i < 2 * width; i++) {
+                value = PackedLogic.count(value, width, true, CountMode.JOHNSON);
+                if (i < 2 * width - 1) assertTrue(value != 0, width + " bits step " + i);
+            }
+            assertEquals(0, value, width + " bits");
+        }
+    }
+
+    /**
+     * the counter on its bits, the first bit is the most significant one
+     */
+    private static int referenceCount(int value, int width, boolean up, CountMode mode) {
+        int max = (1 << width) - 1;
+        switch (mode) {
+            case SATURATING:
+                return up ? Math.min(value + 1, max) : Math.max(value - 1, 0);
+            case UP_DOWN:
+                if (up) return value == max ? 0 : value + 1;
+                return value == 0 ? max : value - 1;
+            default:
+                // JOHNSON: up shifts toward the last bit and feeds the inverted last bit into the first one,
+                // down shifts toward the first bit and feeds the inverted first bit into the last one
+                Bit[] bits = Bits.fromNumber(value, width);
+                Bit[] next = new Bit[width];
+                for (int i = 0; i < width; i++) {
+                    if (up) next[i] = i == 0 ? Bit.of(!bits[width - 1].getValue()) : bits[i - 1];
+                    else next[i] = i == width - 1 ? Bit.of(!bits[0].getValue()) : bits[i + 1];
+                }
+                return Bit.toNumber(next);
+        }
+    }
+}
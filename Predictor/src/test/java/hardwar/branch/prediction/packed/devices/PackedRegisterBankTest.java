@@ -0,0 +1,70 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * the packed register bank must behave like the map based one, for every selector width it takes
+ */
+class PackedRegisterBankTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 3, 10, 13, 24, 32})
+    void behavesLikeTheMapBank(int selectorSize) {
+        int registerSize = 6;
+        MapRegisterBank map = new MapRegisterBank(selectorSize, registerSize);
+        PackedRegisterBank packed = new PackedRegisterBank(selectorSize, registerSize);
+        Random random = new Random(selectorSize);
+        long[] selectors = new long[50];
+        for (int i = 0; i < selectors.length; i++) {
+            selectors[i] = selectorSize == 0 ? 0 : random.nextLong() >>> (64 - selectorSize);
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            Bit[] selector = Bits.fromNumber(selectors[random.nextInt(selectors.length)], selectorSize);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertArrayEquals(map.read(selector).read(), packed.read(selector).read());
+                    break;
+                case 1:
+                    Bit[] value = Bits.fromNumber(random.nextInt(1 << registerSize), registerSize);
+                    map.write(selector, value);
+                    packed.write(selector, value);
+                    break;
+                default:
+                    Bit bit = Bit.of(random.nextBoolean());
+                    map.shiftIn(selector, bit);
+                    packed.shiftIn(selector, bit);
+            }
+        }
+        assertEquals(map.monitor(), packed.monitor());
+    }
+
+    @Test
+    void numericApiWorksOnTheSameRegisters() {
+        PackedRegisterBank packed = new PackedRegisterBank(32, 4);
+        int selector = 0xF0000001; // above the signed int range as an unsigned selector
+        packed.write(selector, 0b0011);
+        packed.shiftIn(selector, Bit.ONE);
+        assertEquals(0b1001, packed.read(selector));
+        assertArrayEquals(Bits.fromNumber(0b1001, 4), packed.read(Bits.fromNumber(0xF0000001L, 32)).read());
+        assertEquals(0, packed.read(selector + 1));
+
+        packed.clear();
+        assertEquals(new PackedRegisterBank(32, 4).monitor(), packed.monitor());
+    }
+
+    @Test
+    void rejectsSelectorsWiderThan32Bits() {
+        assertThrows(IllegalArgumentException.class, () -> new PackedRegisterBank(33, 4));
+    }
+}
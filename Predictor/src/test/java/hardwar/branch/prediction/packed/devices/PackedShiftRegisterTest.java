@@ -0,0 +1,86 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.devices.SIPORegister;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * the packed shift register must behave like SIPORegister, the registers longer than a word included
+ */
+class PackedShiftRegisterTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 63, 64, 65, 130})
+    void behavesLikeTheSIPORegister(int size) {
+        Random random = new Random(size);
+        Bit[] defaultValue = randomBits(random, size);
+        SIPORegister register = new SIPORegister("BHR", size, defaultValue);
+        PackedShiftRegister packed = new PackedShiftRegister("BHR", size, defaultValue);
+        assertArrayEquals(register.read(), packed.read());
+
+        for (int i = 0; i < 3000; i++) {
+            switch (random.nextInt(10)) {
+                case 0:
+                    Bit[] value = randomBits(random, size);
+                    register.load(value);
+                    packed.load(value);
+                    break;
+                case 1:
+                    register.clear();
+                    packed.clear();
+                    break;
+                default:
+                    // mostly inserts, so the bits cross the word boundaries
+                    Bit bit = Bit.of(random.nextBoolean());
+                    register.insert(bit);
+                    packed.insert(bit);
+            }
+            assertArrayEquals(register.read(), packed.read(), "operation " + i);
+            assertEquals(lowBits(register.read()), packed.readLong(), "operation " + i);
+        }
+        assertEquals(register.monitor(), packed.monitor());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {65, 130})
+    void loadLongClearsTheUpperWords(int size) {
+        Bit[] ones = new Bit[size];
+        Arrays.fill(ones, Bit.ONE);
+        PackedShiftRegister packed = new PackedShiftRegister("BHR", size, ones);
+        packed.loadLong(0x8000000000000005L);
+
+        Bit[] expected = new Bit[size];
+        Arrays.fill(expected, Bit.ZERO);
+        System.arraycopy(Bits.fromNumber(0x8000000000000005L, 64), 0, expected, size - 64, 64);
+        assertArrayEquals(expected, packed.read());
+        assertEquals(0x8000000000000005L, packed.readLong());
+
+        // the new bit enters at the first bit, the bits of the low word move one place towards the end
+        packed.insert(Bit.ONE);
+        assertEquals(Bit.ONE, packed.read()[0]);
+        assertEquals(Bit.ZERO, packed.read()[size - 64]);
+        assertEquals(Bit.ONE, packed.read()[size - 63]);
+        assertEquals(0x4000000000000002L, packed.readLong());
+    }
+
+    private static Bit[] randomBits(Random random, int size) {
+        Bit[] bits = new Bit[size];
+        for (int i = 0; i < size; i++) bits[i] = Bit.of(random.nextBoolean());
+        return bits;
+    }
+
+    /**
+     * @return the last 64 bits of the register as a number, the lowest word of the packed register
+     */
+    private static long lowBits(Bit[] bits) {
+        return Bits.toLong(Arrays.copyOfRange(bits, Math.max(0, bits.length - 64), bits.length));
+    }
+}
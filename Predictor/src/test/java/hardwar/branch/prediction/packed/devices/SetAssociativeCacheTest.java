@@ -0,0 +1,71 @@
+package hardwar.branch.prediction.packed.devices;
+
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.CacheGeometry;
+import hardwar.branch.prediction.packed.ReplacementPolicy;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * a full set of the bounded cache must evict the victim of its replacement policy
+ */
+class SetAssociativeCacheTest {
+
+    @Test
+    void lruEvictsTheLeastRecentlyUsedWay() {
+        SetAssociativeCache cache = new SetAssociativeCache(new CacheGeometry(0, 2, ReplacementPolicy.LRU), 2);
+        long a = SetAssociativeCache.key(1, 4), b = SetAssociativeCache.key(2, 4), c = SetAssociativeCache.key(3, 4);
+        cache.put(a, 1);
+        cache.put(b, 2);
+        assertEquals(1, cache.get(a));
+        cache.put(c, 3);
+
+        assertEquals(1, cache.get(a));
+        assertEquals(-1, cache.get(b));
+        assertEquals(3, cache.get(c));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void fifoEvictsTheFirstFilledWay() {
+        SetAssociativeCache cache = new SetAssociativeCache(new CacheGeometry(0, 2, ReplacementPolicy.FIFO), 2);
+        long a = SetAssociativeCache.key(1, 4), b = SetAssociativeCache.key(2, 4), c = SetAssociativeCache.key(3, 4);
+        cache.put(a, 1);
+        cache.put(b, 2);
+        assertEquals(1, cache.get(a));
+        cache.put(c, 3);
+
+        assertEquals(-1, cache.get(a));
+        assertEquals(2, cache.get(b));
+        assertEquals(3, cache.get(c));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void entriesOfDifferentSetsDoNotEvictEachOther() {
+        CacheGeometry geometry = new CacheGeometry(2, 1, ReplacementPolicy.LRU);
+        SetAssociativeCache cache = new SetAssociativeCache(geometry, 2);
+        for (int entry = 0; entry < geometry.capacity(); entry++) cache.put(SetAssociativeCache.key(entry, 2), entry);
+        for (int entry = 0; entry < geometry.capacity(); entry++)
+            assertEquals(entry, cache.get(SetAssociativeCache.key(entry, 2)));
+        assertEquals(0, cache.getEvictions());
+
+        // a 3 bit entry of the same set as the 2 bit entry 01, the set has one way
+        cache.put(SetAssociativeCache.key(1, 3), 3);
+        assertEquals(-1, cache.get(SetAssociativeCache.key(1, 2)));
+        assertEquals(3, cache.get(SetAssociativeCache.key(1, 3)));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void entriesOfDifferentLengthsAreDifferentEntries() {
+        SetAssociativeCache cache = new SetAssociativeCache(2);
+        cache.put(Bits.fromNumber(0b0110, 4), Bits.fromNumber(1, 2));
+        assertNull(cache.get(Bits.fromNumber(0b110, 3)));
+        assertNull(cache.get(Bits.fromNumber(0b00110, 5)));
+        assertArrayEquals(Bits.fromNumber(1, 2), cache.get(Bits.fromNumber(0b0110, 4)));
+    }
+}
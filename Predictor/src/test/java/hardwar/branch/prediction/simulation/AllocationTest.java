@@ -0,0 +1,115 @@
+package hardwar.branch.prediction.simulation;
+
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * the PACKED predictors must not allocate once they are warmed up. the allocated bytes are read from the thread
+ * allocation counter of the HotSpot ThreadMXBean around a long replay of a synthetic trace, the first branches
+ * associate the tables and let the JIT compile the hot path
+ */
+class AllocationTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int TRACE_SIZE = 1 << 16;
+    private static final int WARMUP_BRANCHES = 2_000_000;
+    private static final int MEASURED_BRANCHES = 4_000_000;
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static PackedBranchInstruction[] instructions;
+    private static BranchResult[] results;
+    private static long[] addresses;
+    private static boolean[] outcomes;
+
+    @BeforeAll
+    static void buildTrace() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "thread allocation counters are not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // a synthetic trace over 256 branch addresses, every address has its own taken bias
+        Random random = new Random(42);
+        PackedBranchInstruction[] sites = new PackedBranchInstruction[1 << ADDRESS_WIDTH];
+        double[] bias = new double[sites.length];
+        for (int k = 0; k < sites.length; k++) {
+            sites[k] = new PackedBranchInstruction(0, 6, k, ADDRESS_WIDTH, random.nextInt(1 << ADDRESS_WIDTH),
+                    ADDRESS_WIDTH);
+            bias[k] = random.nextDouble();
+        }
+        instructions = new PackedBranchInstruction[TRACE_SIZE];
+        results = new BranchResult[TRACE_SIZE];
+        addresses = new long[TRACE_SIZE];
+        outcomes = new boolean[TRACE_SIZE];
+        for (int i = 0; i < TRACE_SIZE; i++) {
+            int k = random.nextInt(sites.length);
+            instructions[i] = sites[k];
+            addresses[i] = k;
+            outcomes[i] = random.nextDouble() < bias[k];
+            results[i] = BranchResult.of(outcomes[i]);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PredictorFamily.class)
+    void predictAndUpdateDoNotAllocate(PredictorFamily family) {
+        BranchPredictor predictor = configuration(family).create();
+        replay(predictor, WARMUP_BRANCHES);
+        long bytes = allocatedBytes();
+        replay(predictor, MEASURED_BRANCHES);
+        assertEquals(0, allocatedBytes() - bytes - overhead(), "bytes over " + MEASURED_BRANCHES + " branches");
+    }
+
+    @ParameterizedTest
+    @EnumSource(PredictorFamily.class)
+    void simulateDoesNotAllocate(PredictorFamily family) {
+        BranchPredictor predictor = configuration(family).create();
+        boolean[] predictions = new boolean[TRACE_SIZE];
+        simulate(predictor, predictions, WARMUP_BRANCHES);
+        long bytes = allocatedBytes();
+        simulate(predictor, predictions, MEASURED_BRANCHES);
+        assertEquals(0, allocatedBytes() - bytes - overhead(), "bytes over " + MEASURED_BRANCHES + " branches");
+    }
+
+    private static Configuration configuration(PredictorFamily family) {
+        return new Configuration(family, 6, 2, ADDRESS_WIDTH, 4, HashMode.XOR, StorageMode.PACKED);
+    }
+
+    private static void replay(BranchPredictor predictor, int branches) {
+        for (int n = 0; n < branches; n++) {
+            int i = n & (TRACE_SIZE - 1);
+            predictor.predict(instructions[i]);
+            predictor.update(instructions[i], results[i]);
+        }
+    }
+
+    private static void simulate(BranchPredictor predictor, boolean[] predictions, int branches) {
+        for (int n = 0; n < branches; n += TRACE_SIZE) {
+            BatchPredictor.simulate(predictor, addresses, ADDRESS_WIDTH, outcomes, predictions, 0,
+                    Math.min(TRACE_SIZE, branches - n));
+        }
+    }
+
+    private static long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return bytes which are allocated by reading the allocation counter itself
+     */
+    private static long overhead() {
+        long first = allocatedBytes();
+        return allocatedBytes() - first;
+    }
+}
@@ -0,0 +1,53 @@
+package hardwar.branch.prediction.simulation;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchResult;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a compiled predictor must predict like the MAP predictor of its configuration, in batches and branch by branch
+ */
+class CompiledPredictorTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 5000;
+
+    static List<Configuration> configurations() {
+        return new ParameterGrid(ADDRESS_WIDTH)
+                .families(PredictorFamily.GAg, PredictorFamily.GAp, PredictorFamily.PAg, PredictorFamily.PAp)
+                .BHRSizes(1, 3, 4)
+                .SCSizes(1, 2, 3)
+                .storageMode(StorageMode.MAP)
+                .configurations();
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void simulatePredictsLikeTheReference(Configuration configuration) {
+        assertTrue(CompiledPredictor.supports(configuration, ADDRESS_WIDTH), configuration.toString());
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 60);
+        CompiledPredictor compiled = CompiledPredictor.compile(configuration);
+        branches.assertSimulateMatchesPredictUpdate(configuration.create(), compiled, 2000);
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void predictAndUpdatePredictLikeTheReference(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 60);
+        boolean[] expected = branches.predictions(configuration.create());
+
+        CompiledPredictor compiled = CompiledPredictor.compile(configuration);
+        boolean[] predictions = new boolean[BRANCHES];
+        for (int i = 0; i < BRANCHES; i++) {
+            predictions[i] = BranchResult.isTaken(compiled.predict(branches.packed(i)));
+            compiled.update(branches.packed(i), BranchResult.of(branches.outcomes[i]));
+        }
+        assertArrayEquals(expected, predictions);
+    }
+}
@@ -0,0 +1,146 @@
+package hardwar.branch.prediction.simulation;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.packed.PredictionToken;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.packed.devices.PackedLogic;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.CountMode;
+import hardwar.branch.prediction.shared.HashMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * a concurrent predictor driven by one thread must predict like the PACKED predictor of its configuration,
+ * and threads which touch disjoint counters must not disturb each other
+ */
+class ConcurrentPredictorTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 4000;
+    private static final int THREADS = 4;
+
+    static List<Configuration> configurations() {
+        return new ParameterGrid(ADDRESS_WIDTH)
+                .families(PredictorFamily.GAg, PredictorFamily.GAp, PredictorFamily.GAs, PredictorFamily.PAg,
+                        PredictorFamily.PAp, PredictorFamily.SAg, PredictorFamily.SAp)
+                .BHRSizes(2, 5)
+                .SCSizes(1, 2, 3)
+                .KSizes(3)
+                .storageMode(StorageMode.PACKED)
+                .configurations();
+    }
+
+    /**
+     * the PAs and SAs variants read and count the row of the hashed history, while the PAs and SAs predictors
+     * read the row of the hashed history and count the row of the history itself (see the ConcurrentPredictor
+     * header), so they are checked against a model of the documented behaviour instead
+     */
+    static List<Configuration> hashedHistoryConfigurations() {
+        return new ParameterGrid(ADDRESS_WIDTH)
+                .families(PredictorFamily.PAs, PredictorFamily.SAs)
+                .BHRSizes(2, 6)
+                .SCSizes(1, 2)
+                .KSizes(3, 5)
+                .storageMode(StorageMode.PACKED)
+                .configurations();
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void singleThreadPredictsLikeThePackedPredictor(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        boolean[] expected = branches.predictions(configuration.create());
+
+        assertArrayEquals(expected, branches.predictions(new ConcurrentPredictor(configuration, 1)));
+        assertArrayEquals(expected, tokenPredictions(new ConcurrentPredictor(configuration, THREADS), 0, branches));
+    }
+
+    @ParameterizedTest
+    @MethodSource("hashedHistoryConfigurations")
+    void hashedHistoryVariantsCountTheRowTheyRead(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 40);
+        int K = configuration.getKSize();
+        int BHRSize = configuration.getBHRSize();
+        int SCSize = configuration.getSCSize();
+        Map<Long, Long> histories = new HashMap<>();
+        Map<Long, Integer> counters = new HashMap<>();
+
+        boolean[] expected = new boolean[BRANCHES];
+        for (int i = 0; i < BRANCHES; i++) {
+            long address = branches.addresses[i];
+            long set = PackedLogic.hash(address, ADDRESS_WIDTH, K, HashMode.XOR);
+            long historySelector = configuration.getFamily() == PredictorFamily.PAs ? address : set;
+            long history = histories.getOrDefault(historySelector, 0L);
+            long counter = set << K | PackedLogic.hash(history, BHRSize, K, HashMode.XOR);
+            int value = counters.getOrDefault(counter, 0);
+            expected[i] = value >>> (SCSize - 1) != 0;
+
+            boolean taken = branches.outcomes[i];
+            counters.put(counter, PackedLogic.count(value, SCSize, taken, CountMode.SATURATING));
+            histories.put(historySelector, history >>> 1 | (taken ? 1L : 0L) << (BHRSize - 1));
+        }
+
+        assertArrayEquals(expected, branches.predictions(new ConcurrentPredictor(configuration, 1)));
+    }
+
+    /**
+     * thread t only runs the addresses whose low bits are t, so with per address PHTs no two threads share
+     * a counter and every thread must predict like a predictor of its own, while they still share the words
+     * of the counter table
+     */
+    @Test
+    void threadsWithDisjointCountersPredictLikeSingleThreads() throws Exception {
+        Configuration configuration = new Configuration(PredictorFamily.GAp, 4, 2, ADDRESS_WIDTH, 0, null,
+                StorageMode.PACKED);
+        RandomBranches[] streams = new RandomBranches[THREADS];
+        boolean[][] expected = new boolean[THREADS][];
+        for (int t = 0; t < THREADS; t++) {
+            RandomBranches branches = RandomBranches.generate(t, 50000, ADDRESS_WIDTH, 40);
+            for (int i = 0; i < branches.size(); i++) branches.addresses[i] = branches.addresses[i] & ~3L | t;
+            streams[t] = branches;
+            expected[t] = tokenPredictions(new ConcurrentPredictor(configuration, 1), 0, branches);
+        }
+
+        ConcurrentPredictor shared = new ConcurrentPredictor(configuration, THREADS);
+        boolean[][] predictions = new boolean[THREADS][];
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    predictions[thread] = tokenPredictions(shared, thread, streams[thread]);
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        if (failure[0] != null) throw new AssertionError(failure[0]);
+
+        for (int t = 0; t < THREADS; t++) assertArrayEquals(expected[t], predictions[t], "thread " + t);
+    }
+
+    private static boolean[] tokenPredictions(ConcurrentPredictor predictor, int thread, RandomBranches branches) {
+        boolean[] predictions = new boolean[branches.size()];
+        for (int i = 0; i < branches.size(); i++) {
+            long token = predictor.predictToken(thread, branches.packed(i));
+            predictions[i] = BranchResult.isTaken(PredictionToken.result(token));
+            predictor.update(token, BranchResult.of(branches.outcomes[i]));
+        }
+        return predictions;
+    }
+}
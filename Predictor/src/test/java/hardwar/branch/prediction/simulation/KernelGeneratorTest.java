@@ -0,0 +1,77 @@
+package hardwar.branch.prediction.simulation;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.packed.BatchPredictor;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a generated kernel must predict like the MAP predictor of its configuration, in batches and branch by branch
+ */
+class KernelGeneratorTest {
+    private static final int ADDRESS_WIDTH = 8;
+    private static final int BRANCHES = 5000;
+
+    static List<Configuration> configurations() {
+        return new ParameterGrid(ADDRESS_WIDTH)
+                .families(PredictorFamily.GAg, PredictorFamily.GAp, PredictorFamily.GAs, PredictorFamily.PAg,
+                        PredictorFamily.PAp, PredictorFamily.Bimodal, PredictorFamily.Gshare)
+                .BHRSizes(1, 5, 12)
+                .SCSizes(1, 2, 3)
+                .KSizes(3, 8)
+                .hashModes(HashMode.XOR, HashMode.SIMPLE_CUT)
+                .storageMode(StorageMode.MAP)
+                .configurations();
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void simulatePredictsLikeTheReference(Configuration configuration) {
+        assertTrue(KernelGenerator.supports(configuration, ADDRESS_WIDTH), configuration.toString());
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 60);
+        PredictorKernel kernel = KernelGenerator.generate(configuration, ADDRESS_WIDTH);
+        branches.assertSimulateMatchesPredictUpdate(configuration.create(), kernel, 2000);
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void predictAndUpdatePredictLikeTheReference(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 60);
+        boolean[] expected = branches.predictions(configuration.create());
+
+        PredictorKernel kernel = KernelGenerator.generate(configuration, ADDRESS_WIDTH);
+        boolean[] predictions = new boolean[BRANCHES];
+        for (int i = 0; i < BRANCHES; i++) {
+            // every other block of branches goes through the generated loop
+            if (i / 100 % 2 == 1) {
+                BatchPredictor.simulate(kernel, branches.addresses, ADDRESS_WIDTH, branches.outcomes, predictions, i,
+                        i + 1);
+                continue;
+            }
+            predictions[i] = BranchResult.isTaken(kernel.predict(branches.packed(i)));
+            kernel.update(branches.packed(i), BranchResult.of(branches.outcomes[i]));
+        }
+        assertArrayEquals(expected, predictions);
+    }
+
+    @ParameterizedTest
+    @MethodSource("configurations")
+    void sweepGivesTheHitsOfTheReference(Configuration configuration) {
+        RandomBranches branches = RandomBranches.generate(configuration.hashCode(), BRANCHES, ADDRESS_WIDTH, 60);
+        boolean[] expected = branches.predictions(configuration.create());
+        long hits = 0;
+        for (int i = 0; i < BRANCHES; i++) if (expected[i] == branches.outcomes[i]) hits++;
+
+        Trace trace = Trace.of(branches.addresses, ADDRESS_WIDTH, branches.outcomes);
+        assertEquals(hits, SweepRunner.simulate(trace, configuration).getHits());
+    }
+}
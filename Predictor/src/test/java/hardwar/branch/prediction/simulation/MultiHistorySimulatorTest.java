@@ -0,0 +1,78 @@
+package hardwar.branch.prediction.simulation;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.packed.StorageMode;
+import hardwar.branch.prediction.shared.HashMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * one pass over the trace must give every configuration the hits of its own predictor
+ */
+class MultiHistorySimulatorTest {
+    private static final int ADDRESS_WIDTH = 12;
+
+    @Test
+    void runGivesTheHitsOfTheSweep() {
+        Trace trace = trace(5000);
+        List<Configuration> configurations = new ParameterGrid(ADDRESS_WIDTH)
+                .families(PredictorFamily.GAg, PredictorFamily.GAp, PredictorFamily.GAs)
+                .BHRSizes(1, 4, 9, 16)
+                .SCSizes(1, 2, 3)
+                .KSizes(3, 8)
+                .hashModes(HashMode.XOR, HashMode.SIMPLE_CUT)
+                .configurations();
+
+        assertSameHits(trace, configurations, new MultiHistorySimulator(configurations).run(trace));
+    }
+
+    @Test
+    void runGivesTheHitsOfTheMapPredictors() {
+        Trace trace = trace(2000);
+        List<Configuration> configurations = new ParameterGrid(ADDRESS_WIDTH)
+                .families(PredictorFamily.GAg, PredictorFamily.GAp, PredictorFamily.GAs)
+                .BHRSizes(2, 6)
+                .SCSizes(2)
+                .KSizes(5)
+                .hashModes(HashMode.XOR, HashMode.SIMPLE_CUT)
+                .storageMode(StorageMode.MAP)
+                .configurations();
+
+        assertSameHits(trace, configurations, new MultiHistorySimulator(configurations).run(trace));
+    }
+
+    @Test
+    void aConfigurationWhichCanNotBeSimulatedFailsAlone() {
+        Trace trace = trace(1000);
+        Configuration tooLong = new Configuration(PredictorFamily.GAg, 31, 2, 0, 0, null, StorageMode.PACKED);
+        Configuration wrongWidth = new Configuration(PredictorFamily.GAp, 4, 2, 8, 0, null, StorageMode.PACKED);
+        Configuration valid = new Configuration(PredictorFamily.GAg, 4, 2, 0, 0, null, StorageMode.PACKED);
+
+        List<SweepResult> results = new MultiHistorySimulator(Arrays.asList(tooLong, wrongWidth, valid)).run(trace);
+        assertTrue(results.get(0).isFailed());
+        assertTrue(results.get(1).isFailed());
+        assertFalse(results.get(2).isFailed());
+        assertEquals(SweepRunner.simulate(trace, valid).getHits(), results.get(2).getHits());
+    }
+
+    private static void assertSameHits(Trace trace, List<Configuration> configurations, List<SweepResult> results) {
+        assertEquals(configurations.size(), results.size());
+        for (int k = 0; k < configurations.size(); k++) {
+            SweepResult expected = SweepRunner.simulate(trace, configurations.get(k));
+            assertFalse(expected.isFailed(), expected.getError());
+            assertFalse(results.get(k).isFailed(), results.get(k).getError());
+            assertEquals(expected.getHits(), results.get(k).getHits(), configurations.get(k).toString());
+        }
+    }
+
+    private static Trace trace(int branches) {
+        RandomBranches random = RandomBranches.generate(branches, branches, ADDRESS_WIDTH, 64);
+        return Trace.of(random.addresses, ADDRESS_WIDTH, random.outcomes);
+    }
+}
@@ -0,0 +1,157 @@
+package hardwar.branch.prediction.trace;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.judged.GAs.GAs;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchPredictor;
+import hardwar.branch.prediction.shared.BranchResult;
+import hardwar.branch.prediction.shared.HashMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static hardwar.branch.prediction.trace.JsonTraceReaderTest.readInstructions;
+import static hardwar.branch.prediction.trace.JsonTraceReaderTest.readResults;
+import static hardwar.branch.prediction.trace.JsonTraceReaderTest.resource;
+import static hardwar.branch.prediction.trace.JsonTraceReaderTest.writeJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a converted trace must replay the branches of its json files, window by window, and a broken binary trace
+ * must be rejected when it is opened
+ */
+class BinaryTraceReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void convertedResourceTraceReplaysLikeTheJson() throws Exception {
+        assertRoundTrip(resource("instruction.json"), resource("result.json"));
+    }
+
+    @Test
+    void convertedTraceReplaysLikeTheJson() throws Exception {
+        Path instructions = directory.resolve("instruction.json");
+        Path results = directory.resolve("result.json");
+        writeJson(RandomBranches.generate(10, 3000, 12, 50), instructions, results);
+
+        assertRoundTrip(instructions, results);
+    }
+
+    @Test
+    void binaryReaderReadsAcrossWindows() throws IOException {
+        Path trace = directory.resolve("trace.bin");
+        Random random = new Random(11);
+        long[][] records = new long[1000][4];
+        try (BinaryTraceWriter writer = new BinaryTraceWriter(trace, 5, 20, 40)) {
+            for (long[] record : records) {
+                record[0] = random.nextInt(1 << 5);
+                record[1] = random.nextInt(1 << 20);
+                record[2] = random.nextLong() >>> 24;
+                record[3] = random.nextInt(2);
+                writer.write(record[0], record[1], record[2], record[3] == 1);
+            }
+        }
+
+        int recordSize = new BinaryTraceFormat(5, 20, 40).recordSize;
+        for (long windowSize : new long[]{1, recordSize, recordSize + 1, 7L * recordSize + 3,
+                1000L * recordSize - 1, 1L << 30}) {
+            try (BinaryTraceReader reader = BinaryTraceReader.open(trace, windowSize)) {
+                assertEquals(records.length, reader.getCount());
+                PackedBranchInstruction instruction = new PackedBranchInstruction();
+                for (long[] record : records) {
+                    assertTrue(reader.next(instruction));
+                    assertEquals(record[0], instruction.getOpcodeBits());
+                    assertEquals(record[1], instruction.getInstructionAddressBits());
+                    assertEquals(record[2], instruction.getJumpAddressBits());
+                    assertEquals(BranchResult.of(record[3] == 1), reader.getResult());
+                }
+                assertFalse(reader.next(instruction), "window of " + windowSize + " bytes");
+                assertEquals(records.length, reader.getPosition());
+            }
+        }
+    }
+
+    @Test
+    void binaryReaderRejectsBadHeaders() throws IOException {
+        Path trace = directory.resolve("trace.bin");
+        try (BinaryTraceWriter writer = new BinaryTraceWriter(trace, 3, 3, 3)) {
+            for (int i = 0; i < 10; i++) writer.write(i & 7, i & 7, i & 7, i % 2 == 0);
+        }
+        byte[] valid = Files.readAllBytes(trace);
+
+        // truncated header
+        for (int length : new int[]{0, 4, 16, BinaryTraceFormat.HEADER_SIZE - 1}) {
+            assertRejected(Arrays.copyOf(valid, length));
+        }
+        // truncated records
+        assertRejected(Arrays.copyOf(valid, valid.length - 1));
+
+        ByteBuffer header = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        assertRejected(header.putInt(0, 0x12345678).array());
+        header = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        assertRejected(header.putShort(4, (short) 2).array());
+        header = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        assertRejected(header.put(7, (byte) 65).array());
+        header = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        assertRejected(header.put(8, (byte) -1).array());
+        header = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        assertRejected(header.putLong(BinaryTraceFormat.COUNT_OFFSET, -1).array());
+        header = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        assertRejected(header.putLong(BinaryTraceFormat.COUNT_OFFSET, Long.MAX_VALUE).array());
+    }
+
+    private void assertRejected(byte[] bytes) throws IOException {
+        Path trace = directory.resolve("bad.bin");
+        Files.write(trace, bytes);
+        assertThrows(IOException.class, () -> BinaryTraceReader.open(trace).close());
+    }
+
+    /**
+     * convert the json trace, read the records back and replay them on a predictor
+     */
+    private void assertRoundTrip(Path instructions, Path results) throws IOException {
+        List<BranchInstruction> expected = readInstructions(instructions);
+        List<BranchResult> expectedResults = readResults(results);
+        Path trace = directory.resolve("trace.bin");
+        assertEquals(expected.size(), TraceConverter.convert(instructions, results, trace));
+
+        try (BinaryTraceReader reader = BinaryTraceReader.open(trace)) {
+            assertEquals(expected.size(), reader.getCount());
+            assertEquals(expected.get(0).getInstructionAddress().length, reader.getInstructionAddressWidth());
+            PackedBranchInstruction instruction = new PackedBranchInstruction();
+            for (int i = 0; i < expected.size(); i++) {
+                assertTrue(reader.next(instruction));
+                assertEquals(expected.get(i).toString(), instruction.toString(), "record " + i);
+                assertEquals(expectedResults.get(i), reader.getResult(), "record " + i);
+            }
+            assertFalse(reader.next(instruction));
+        }
+
+        int addressWidth = expected.get(0).getInstructionAddress().length;
+        BranchPredictor reference = new GAs(4, 2, addressWidth, 2, HashMode.XOR);
+        long hits = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            if (reference.predict(expected.get(i)) == expectedResults.get(i)) hits++;
+            reference.update(expected.get(i), expectedResults.get(i));
+        }
+        BranchPredictor replayed = new GAs(4, 2, addressWidth, 2, HashMode.XOR);
+        try (BinaryTraceReader reader = BinaryTraceReader.open(trace)) {
+            assertEquals(hits, reader.replay(replayed));
+        }
+        assertEquals(reference.monitor(), replayed.monitor());
+    }
+}
@@ -0,0 +1,184 @@
+package hardwar.branch.prediction.trace;
+
+import hardwar.branch.prediction.RandomBranches;
+import hardwar.branch.prediction.packed.Bits;
+import hardwar.branch.prediction.packed.PackedBranchInstruction;
+import hardwar.branch.prediction.shared.Bit;
+import hardwar.branch.prediction.shared.BranchInstruction;
+import hardwar.branch.prediction.shared.BranchResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the streaming json readers must give the branches of a trace read the plain way:
+ * the whole file as a string, every bit an enum name
+ */
+class JsonTraceReaderTest {
+
+    private static final Pattern OBJECT = Pattern.compile("\\{[^{}]*}");
+    private static final Pattern FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*\\[([^\\]]*)]");
+    private static final Pattern STRING = Pattern.compile("\"(\\w*)\"");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void jsonReadersReadTheResourceTrace() throws Exception {
+        assertJsonReadersMatch(resource("instruction.json"), resource("result.json"));
+    }
+
+    @Test
+    void jsonReadersReadATraceBiggerThanTheirBuffer() throws Exception {
+        Path instructions = directory.resolve("instruction.json");
+        Path results = directory.resolve("result.json");
+        writeJson(RandomBranches.generate(9, 3000, 12, 50), instructions, results);
+        assertTrue(Files.size(instructions) > 1 << 16);
+
+        assertJsonReadersMatch(instructions, results);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "OK", "ONES", "ON", "ZER", "ZEROO", "1", "0", "one", "TAKEN"})
+    void jsonTraceReaderRejectsUnknownBits(String bit) {
+        String json = "[{\"opcode\": [\"ONE\"], \"instructionAddress\": [\"ZERO\", \"" + bit
+                + "\", \"ONE\"], \"jumpAddress\": []}]";
+        JsonTraceReader reader = new JsonTraceReader(channel(json));
+        assertThrows(IOException.class, () -> reader.next(new PackedBranchInstruction()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "T", "TAKE", "TAKENN", "NOT", "NOT_TAKEN_", "N", "ONE", "taken"})
+    void jsonResultReaderRejectsUnknownResults(String result) throws IOException {
+        JsonResultReader reader = new JsonResultReader(channel("[\"TAKEN\", \"" + result + "\", \"NOT_TAKEN\"]"));
+        assertEquals(BranchResult.TAKEN, reader.next());
+        assertThrows(IOException.class, reader::next);
+    }
+
+    @Test
+    void jsonReadersRejectBrokenJson() {
+        for (String json : Arrays.asList("", "{}", "[{\"opcode\": [\"ONE\"]", "[{\"opcode\": [\"ONE\" \"ZERO\"]}]",
+                "[{\"opcode\": [\"ONE]}]")) {
+            JsonTraceReader reader = new JsonTraceReader(channel(json));
+            assertThrows(IOException.class, () -> {
+                PackedBranchInstruction instruction = new PackedBranchInstruction();
+                while (reader.next(instruction)) ;
+            }, json);
+        }
+        for (String json : Arrays.asList("", "[\"TAKEN\"", "[\"TAKEN\" \"TAKEN\"]", "[\"TAKEN")) {
+            JsonResultReader reader = new JsonResultReader(channel(json));
+            assertThrows(IOException.class, () -> {
+                while (reader.next() != null) ;
+            }, json);
+        }
+    }
+
+    @Test
+    void jsonReadersSkipUnknownFields() throws IOException {
+        JsonTraceReader reader = new JsonTraceReader(channel("[{\"comment\": \"\", \"opcode\": [\"ONE\", \"ZERO\"],"
+                + " \"extra\": {\"a\": [1, true, \"\"]}, \"instructionAddress\": [\"ONE\"], \"jumpAddress\": []}]"));
+        PackedBranchInstruction instruction = new PackedBranchInstruction();
+        assertTrue(reader.next(instruction));
+        assertEquals(new PackedBranchInstruction(2, 2, 1, 1, 0, 0).toString(), instruction.toString());
+        assertFalse(reader.next(instruction));
+    }
+
+    private void assertJsonReadersMatch(Path instructions, Path results) throws IOException {
+        List<BranchInstruction> expected = readInstructions(instructions);
+        List<BranchResult> expectedResults = readResults(results);
+
+        try (JsonTraceReader reader = JsonTraceReader.open(instructions)) {
+            PackedBranchInstruction instruction = new PackedBranchInstruction();
+            for (BranchInstruction branch : expected) {
+                assertTrue(reader.next(instruction));
+                assertEquals(branch.toString(), instruction.toString());
+            }
+            assertFalse(reader.next(instruction));
+        }
+        try (JsonResultReader reader = JsonResultReader.open(results)) {
+            for (BranchResult result : expectedResults) assertEquals(result, reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    /**
+     * read the instructions of a json trace the plain way
+     */
+    static List<BranchInstruction> readInstructions(Path path) throws IOException {
+        String json = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        List<BranchInstruction> instructions = new ArrayList<>();
+        for (Matcher object = OBJECT.matcher(json); object.find(); ) {
+            Bit[] opcode = null, instructionAddress = null, jumpAddress = null;
+            for (Matcher field = FIELD.matcher(object.group()); field.find(); ) {
+                List<Bit> bits = new ArrayList<>();
+                for (Matcher bit = STRING.matcher(field.group(2)); bit.find(); ) bits.add(Bit.valueOf(bit.group(1)));
+                Bit[] value = bits.toArray(new Bit[0]);
+                if (field.group(1).equals("opcode")) opcode = value;
+                else if (field.group(1).equals("instructionAddress")) instructionAddress = value;
+                else if (field.group(1).equals("jumpAddress")) jumpAddress = value;
+            }
+            instructions.add(new BranchInstruction(opcode, instructionAddress, jumpAddress));
+        }
+        return instructions;
+    }
+
+    static List<BranchResult> readResults(Path path) throws IOException {
+        String json = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        List<BranchResult> results = new ArrayList<>();
+        for (Matcher result = STRING.matcher(json); result.find(); ) results.add(BranchResult.valueOf(result.group(1)));
+        return results;
+    }
+
+    static void writeJson(RandomBranches branches, Path instructions, Path results) throws IOException {
+        StringBuilder trace = new StringBuilder("[\n");
+        StringBuilder outcomes = new StringBuilder("[\n");
+        for (int i = 0; i < branches.size(); i++) {
+            String separator = i == 0 ? "" : ",\n";
+            long address = branches.addresses[i];
+            trace.append(separator).append("  {\n    \"opcode\": ").append(bits(address & 7, 3))
+                    .append(",\n    \"instructionAddress\": ").append(bits(address, branches.addressWidth))
+                    .append(",\n    \"jumpAddress\": ").append(bits(~address, branches.addressWidth)).append("\n  }");
+            outcomes.append(separator).append("  \"").append(BranchResult.of(branches.outcomes[i])).append('"');
+        }
+        Files.write(instructions, trace.append("\n]").toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(results, outcomes.append("\n]").toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String bits(long value, int width) {
+        StringBuilder json = new StringBuilder("[");
+        for (Bit bit : Bits.fromNumber(value, width)) {
+            json.append(json.length() == 1 ? "" : ", ").append('"').append(bit.name()).append('"');
+        }
+        return json.append(']').toString();
+    }
+
+    static Path resource(String name) throws URISyntaxException {
+        return Paths.get(JsonTraceReaderTest.class.getResource("/GAg/" + name).toURI());
+    }
+
+    private static ReadableByteChannel channel(String json) {
+        return Channels.newChannel(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}